@@ -0,0 +1,78 @@
+package com.bigdata.codec;
+
+import com.bigdata.schema.CompactOrder;
+import com.bigdata.schema.Order;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Converts between Order and its compact wire form, CompactOrder: the product as
+ * its id in a {@link ProductDictionary} and the price in integer cents. An order
+ * the compact form cannot carry exactly - a product not in the dictionary yet, a
+ * price with a fraction of a cent - stays a full Order, so producers can switch
+ * formats before the dictionary covers every product.
+ */
+public final class OrderCodec {
+
+    private final ProductDictionary dictionary;
+
+    private final LongAdder compacted = new LongAdder();
+    private final LongAdder kept = new LongAdder();
+
+    public OrderCodec(ProductDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+
+    // Null when the order has to be sent in full
+    public CompactOrder compact(Order order) {
+        int productId = dictionary.idOf(order.getProduct().toString());
+        float price = order.getPrice();
+        long cents = Math.round(price * 100.0);
+        if (productId < 0 || (float) (cents / 100.0) != price) {
+            kept.increment();
+            return null;
+        }
+        compacted.increment();
+        return CompactOrder.newBuilder()
+                .setOrderId(order.getOrderId())
+                .setProductId(productId)
+                .setDictionaryVersion(dictionary.version())
+                .setPriceCents(cents)
+                .setEventTime(order.getEventTime())
+                .build();
+    }
+
+
+    // Throws IllegalArgumentException when the record needs a newer dictionary
+    public Order expand(CompactOrder compact) {
+        return Order.newBuilder()
+                .setOrderId(compact.getOrderId())
+                .setProduct(dictionary.product(compact.getProductId(), compact.getDictionaryVersion()))
+                .setPrice((float) (compact.getPriceCents() / 100.0))
+                .setEventTime(compact.getEventTime())
+                .build();
+    }
+
+
+    // A deserialized value of either format as an Order; anything else passes through
+    public Object decode(Object value) {
+        return value instanceof CompactOrder compact ? expand(compact) : value;
+    }
+
+
+    public ProductDictionary dictionary() {
+        return dictionary;
+    }
+
+
+    // Orders sent compact / in full because compact() could not carry them
+    public long compacted() {
+        return compacted.sum();
+    }
+
+
+    public long kept() {
+        return kept.sum();
+    }
+}
@@ -0,0 +1,115 @@
+package com.bigdata.codec;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Product names of the compact order format by id, read from a dictionary file
+ * (see the bundled product-dictionary.txt). The file is append only, so a
+ * dictionary with more entries decodes everything an older one encoded; its
+ * entry count is the version a CompactOrder records.
+ */
+public final class ProductDictionary {
+
+    public static final String DEFAULT_RESOURCE = "product-dictionary.txt";
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+    private static final String FILE_PREFIX = "file:";
+
+    private final String[] products;
+    private final Map<String, Integer> ids;
+
+    private ProductDictionary(List<String> products) {
+        this.products = products.toArray(String[]::new);
+        this.ids = new HashMap<>();
+        for (int id = 0; id < this.products.length; id++) {
+            if (ids.putIfAbsent(this.products[id], id) != null) {
+                throw new IllegalArgumentException("Product listed twice in the dictionary: " + this.products[id]);
+            }
+        }
+    }
+
+
+    // The dictionary bundled with this jar
+    public static ProductDictionary defaults() {
+        return load(CLASSPATH_PREFIX + DEFAULT_RESOURCE);
+    }
+
+
+    /**
+     * Reads "classpath:name", "file:path" or a plain path; a null or blank location
+     * means the bundled dictionary.
+     */
+    public static ProductDictionary load(String location) {
+        if (location == null || location.isBlank()) {
+            return defaults();
+        }
+        try {
+            if (location.startsWith(CLASSPATH_PREFIX)) {
+                String resource = location.substring(CLASSPATH_PREFIX.length());
+                try (InputStream in = ProductDictionary.class.getClassLoader().getResourceAsStream(resource)) {
+                    if (in == null) {
+                        throw new IllegalStateException(resource + " not found on the classpath");
+                    }
+                    return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+                }
+            }
+            String path = location.startsWith(FILE_PREFIX) ? location.substring(FILE_PREFIX.length()) : location;
+            try (Reader reader = Files.newBufferedReader(Path.of(path), StandardCharsets.UTF_8)) {
+                return parse(reader);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read product dictionary " + location, e);
+        }
+    }
+
+
+    public static ProductDictionary parse(Reader source) throws IOException {
+        List<String> products = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(source);
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            String product = line.strip();
+            if (!product.isEmpty() && !product.startsWith("#")) {
+                products.add(product);
+            }
+        }
+        return new ProductDictionary(products);
+    }
+
+
+    // -1 when the product has no id yet
+    public int idOf(String product) {
+        Integer id = ids.get(product);
+        return id != null ? id : -1;
+    }
+
+
+    /**
+     * Product name of an id, for a record written with a dictionary of
+     * {@code recordVersion} entries. Fails when this dictionary is older than the
+     * one that encoded the record.
+     */
+    public String product(int id, int recordVersion) {
+        if (id < 0 || id >= products.length) {
+            throw new IllegalArgumentException("Product id " + id + " unknown: record needs dictionary version "
+                    + recordVersion + ", this one is " + version());
+        }
+        return products[id];
+    }
+
+
+    public int version() {
+        return products.length;
+    }
+}
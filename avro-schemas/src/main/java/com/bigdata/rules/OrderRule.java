@@ -0,0 +1,112 @@
+package com.bigdata.rules;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One compiled line of the rule file. {@link OrderRules#check} returns the rule
+ * that rejected an order; its type, category and message say how to fail it.
+ */
+public final class OrderRule {
+
+    public enum Stage {VALIDATION, BUSINESS, EXTERNAL}
+
+    public static final String PERMANENT = "PERMANENT";
+    public static final String TEMPORARY = "TEMPORARY";
+
+    @FunctionalInterface
+    interface Check {
+        boolean rejects(String orderId, String product, float price);
+    }
+
+    private final Stage stage;
+    private final String name;
+    private final String failureType;
+    private final String category;
+    private final String message;
+    final Check check;
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder samples = new LongAdder();
+    final LongAdder sampledNanos = new LongAdder();
+
+    OrderRule(Stage stage, String name, String failureType, String category, String message, Check check) {
+        this.stage = stage;
+        this.name = name;
+        this.failureType = failureType;
+        this.category = category;
+        this.message = message;
+        this.check = check;
+    }
+
+
+    public Stage stage() {
+        return stage;
+    }
+
+
+    public String name() {
+        return name;
+    }
+
+
+    public String failureType() {
+        return failureType;
+    }
+
+
+    public boolean isTemporary() {
+        return TEMPORARY.equals(failureType);
+    }
+
+
+    public String category() {
+        return category;
+    }
+
+
+    // Only built for rejected orders
+    public String message(String orderId, String product, float price) {
+        return message
+                .replace("{orderId}", String.valueOf(orderId))
+                .replace("{product}", String.valueOf(product))
+                .replace("{price}", String.valueOf(price));
+    }
+
+
+    // Orders this rule rejected
+    public long hits() {
+        return hits.sum();
+    }
+
+
+    // Timed evaluations (one in OrderRules.SAMPLE_EVERY) and their total duration
+    public long samples() {
+        return samples.sum();
+    }
+
+
+    public long sampledNanos() {
+        return sampledNanos.sum();
+    }
+
+
+    public Map<String, Object> describe() {
+        long timed = samples();
+        Map<String, Object> rule = new LinkedHashMap<>();
+        rule.put("stage", stage);
+        rule.put("name", name);
+        rule.put("failureType", failureType);
+        rule.put("category", category);
+        rule.put("hits", hits());
+        rule.put("meanNanos", timed > 0 ? (double) sampledNanos() / timed : 0.0);
+        return rule;
+    }
+
+
+    @Override
+    public String toString() {
+        return stage.name().toLowerCase() + "." + name;
+    }
+}
@@ -0,0 +1,199 @@
+package com.bigdata.rules;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+
+/**
+ * Validation and business rules for orders, read from a rule file (see the
+ * bundled order-rules.txt for the format) and compiled once into one array of
+ * checks per stage. {@link #check} runs a stage's checks in file order and
+ * returns the first rule that rejects the order, or null - no exception is
+ * built unless the caller decides to throw one.
+ *
+ * Every rule counts its hits; one evaluation in {@value #SAMPLE_EVERY} is also
+ * timed per rule, so the cost of the clock stays off most calls.
+ */
+public final class OrderRules {
+
+    public static final String DEFAULT_RESOURCE = "order-rules.txt";
+
+    static final int SAMPLE_EVERY = 64;
+
+    private static final int COLUMNS = 8;
+
+    private final List<OrderRule> rules;
+    private final OrderRule[][] byStage;
+
+    private OrderRules(List<OrderRule> rules) {
+        this.rules = Collections.unmodifiableList(rules);
+        this.byStage = new OrderRule[OrderRule.Stage.values().length][];
+        for (OrderRule.Stage stage : OrderRule.Stage.values()) {
+            byStage[stage.ordinal()] = rules.stream()
+                    .filter(rule -> rule.stage() == stage)
+                    .toArray(OrderRule[]::new);
+        }
+    }
+
+
+    // The rule file bundled with this jar
+    public static OrderRules defaults() {
+        try (InputStream in = OrderRules.class.getClassLoader().getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException(DEFAULT_RESOURCE + " not found on the classpath");
+            }
+            return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    public static OrderRules parse(Reader source) throws IOException {
+        List<OrderRule> rules = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(source);
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            try {
+                rules.add(compile(trimmed.split("\\s+", COLUMNS)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Order rules line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return new OrderRules(rules);
+    }
+
+
+    /**
+     * First rule of the stage that rejects the order, or null when all pass.
+     */
+    public OrderRule check(OrderRule.Stage stage, String orderId, String product, float price) {
+        OrderRule[] checks = byStage[stage.ordinal()];
+        if (ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) == 0) {
+            return checkTimed(checks, orderId, product, price);
+        }
+        for (OrderRule rule : checks) {
+            if (rule.check.rejects(orderId, product, price)) {
+                rule.hits.increment();
+                return rule;
+            }
+        }
+        return null;
+    }
+
+
+    public List<OrderRule> rules() {
+        return rules;
+    }
+
+
+    private static OrderRule checkTimed(OrderRule[] checks, String orderId, String product, float price) {
+        for (OrderRule rule : checks) {
+            long start = System.nanoTime();
+            boolean rejected = rule.check.rejects(orderId, product, price);
+            rule.sampledNanos.add(System.nanoTime() - start);
+            rule.samples.increment();
+            if (rejected) {
+                rule.hits.increment();
+                return rule;
+            }
+        }
+        return null;
+    }
+
+
+    private static OrderRule compile(String[] columns) {
+        if (columns.length < COLUMNS) {
+            throw new IllegalArgumentException("expected " + COLUMNS + " columns, got " + columns.length);
+        }
+        OrderRule.Stage stage = OrderRule.Stage.valueOf(columns[0].toUpperCase(Locale.ROOT));
+        String name = columns[1];
+        String field = columns[2];
+        String op = columns[3];
+        String operand = columns[4];
+        String failureType = columns[5].toUpperCase(Locale.ROOT);
+        if (!OrderRule.PERMANENT.equals(failureType) && !OrderRule.TEMPORARY.equals(failureType)) {
+            throw new IllegalArgumentException("type must be PERMANENT or TEMPORARY: " + columns[5]);
+        }
+
+        double chance = 1.0;
+        int at = operand.lastIndexOf('@');
+        if (at >= 0) {
+            chance = Double.parseDouble(operand.substring(at + 1));
+            operand = operand.substring(0, at);
+        }
+
+        OrderRule.Check check = "price".equals(field)
+                ? priceCheck(op, Float.parseFloat(operand))
+                : stringCheck(op, operand, stringField(field));
+        if (chance < 1.0) {
+            OrderRule.Check always = check;
+            double probability = chance;
+            check = (orderId, product, price) -> always.rejects(orderId, product, price)
+                    && ThreadLocalRandom.current().nextDouble() < probability;
+        }
+        return new OrderRule(stage, name, failureType, columns[6], columns[7], check);
+    }
+
+
+    private static BiFunction<String, String, String> stringField(String field) {
+        return switch (field) {
+            case "orderId" -> (orderId, product) -> orderId;
+            case "product" -> (orderId, product) -> product;
+            default -> throw new IllegalArgumentException("unknown field: " + field);
+        };
+    }
+
+
+    private static OrderRule.Check stringCheck(String op, String operand, BiFunction<String, String, String> field) {
+        return switch (op) {
+            case "ends-with" -> (orderId, product, price) -> {
+                String value = field.apply(orderId, product);
+                return value != null && value.endsWith(operand);
+            };
+            case "starts-with" -> (orderId, product, price) -> {
+                String value = field.apply(orderId, product);
+                return value != null && value.startsWith(operand);
+            };
+            case "equals" -> (orderId, product, price) -> operand.equals(field.apply(orderId, product));
+            case "blank" -> (orderId, product, price) -> {
+                String value = field.apply(orderId, product);
+                return value == null || value.isBlank();
+            };
+            case "longer-than" -> {
+                int length = Integer.parseInt(operand);
+                yield (orderId, product, price) -> {
+                    String value = field.apply(orderId, product);
+                    return value != null && value.length() > length;
+                };
+            }
+            default -> throw new IllegalArgumentException("unknown string op: " + op);
+        };
+    }
+
+
+    private static OrderRule.Check priceCheck(String op, float limit) {
+        return switch (op) {
+            case "<" -> (orderId, product, price) -> price < limit;
+            case "<=" -> (orderId, product, price) -> price <= limit;
+            case ">" -> (orderId, product, price) -> price > limit;
+            case ">=" -> (orderId, product, price) -> price >= limit;
+            default -> throw new IllegalArgumentException("unknown price op: " + op);
+        };
+    }
+}
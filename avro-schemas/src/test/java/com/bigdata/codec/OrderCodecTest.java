@@ -0,0 +1,140 @@
+package com.bigdata.codec;
+
+import com.bigdata.schema.CompactOrder;
+import com.bigdata.schema.Order;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderCodecTest {
+
+    private static final long EVENT_TIME = 1_700_000_000_000L;
+
+    private final OrderCodec codec = new OrderCodec(dictionary("Item-1", "Item-2", "Item-3"));
+
+    @ParameterizedTest
+    @ValueSource(floats = {0f, 0.01f, 0.1f, 0.99f, 5.00f, 19.99f, 129.50f, 1299.99f, 99999.99f})
+    void compactOrderRoundTripsThroughTheWire(float price) throws IOException {
+        Order order = order("order-1", "Item-2", price);
+
+        CompactOrder compact = codec.compact(order);
+        assertNotNull(compact);
+        assertEquals(1, compact.getProductId());
+        assertEquals(3, compact.getDictionaryVersion());
+
+        Order expanded = codec.expand(roundTrip(compact, CompactOrder.class));
+        assertSameOrder(expanded, order);
+    }
+
+    @Test
+    void fullOrderRoundTripsThroughTheWireAndDecodesAsItIs() throws IOException {
+        Order order = order("order-1", "Item-1", 19.99f);
+
+        Object decoded = codec.decode(roundTrip(order, Order.class));
+
+        assertSameOrder(assertInstanceOf(Order.class, decoded), order);
+    }
+
+    @Test
+    void decodeExpandsCompactOrders() throws IOException {
+        Order order = order("order-1", "Item-3", 5.25f);
+
+        Object decoded = codec.decode(roundTrip(codec.compact(order), CompactOrder.class));
+
+        assertSameOrder(assertInstanceOf(Order.class, decoded), order);
+    }
+
+    @Test
+    void keepsAnUnknownProductInFull() {
+        assertNull(codec.compact(order("order-1", "Item-99", 10f)));
+        assertEquals(1, codec.kept());
+        assertEquals(0, codec.compacted());
+    }
+
+    @ParameterizedTest
+    @ValueSource(floats = {19.995f, 0.001f, 1.2345f})
+    void keepsAFractionalCentPriceInFull(float price) {
+        assertNull(codec.compact(order("order-1", "Item-1", price)));
+        assertEquals(1, codec.kept());
+    }
+
+    @Test
+    void countsCompactedOrders() {
+        codec.compact(order("order-1", "Item-1", 1f));
+        codec.compact(order("order-2", "Item-2", 2f));
+
+        assertEquals(2, codec.compacted());
+        assertEquals(0, codec.kept());
+    }
+
+    @Test
+    void newerDictionaryExpandsRecordsOfAnOlderOne() {
+        OrderCodec older = new OrderCodec(dictionary("Item-1", "Item-2"));
+        OrderCodec newer = new OrderCodec(dictionary("Item-1", "Item-2", "Item-3", "Item-4"));
+        Order order = order("order-1", "Item-2", 3.5f);
+
+        Order expanded = newer.expand(older.compact(order));
+
+        assertSameOrder(expanded, order);
+    }
+
+    @Test
+    void olderDictionaryRejectsAProductItDoesNotHave() {
+        OrderCodec older = new OrderCodec(dictionary("Item-1", "Item-2"));
+        OrderCodec newer = new OrderCodec(dictionary("Item-1", "Item-2", "Item-3", "Item-4"));
+
+        CompactOrder compact = newer.compact(order("order-1", "Item-4", 3.5f));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> older.expand(compact));
+        assertTrue(e.getMessage().contains("version 4"), e.getMessage());
+    }
+
+    private static void assertSameOrder(Order actual, Order expected) {
+        assertEquals(expected.getOrderId().toString(), actual.getOrderId().toString());
+        assertEquals(expected.getProduct().toString(), actual.getProduct().toString());
+        assertEquals(expected.getPrice(), actual.getPrice());
+        assertEquals(expected.getEventTime(), actual.getEventTime());
+    }
+
+    private static Order order(String orderId, String product, float price) {
+        return Order.newBuilder()
+                .setOrderId(orderId)
+                .setProduct(product)
+                .setPrice(price)
+                .setEventTime(EVENT_TIME)
+                .build();
+    }
+
+    private static <T extends SpecificRecord> T roundTrip(T record, Class<T> type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new SpecificDatumWriter<>(type).write(record, encoder);
+        encoder.flush();
+        return new SpecificDatumReader<>(type).read(null, DecoderFactory.get().binaryDecoder(out.toByteArray(), null));
+    }
+
+    private static ProductDictionary dictionary(String... products) {
+        try {
+            return ProductDictionary.parse(new StringReader(String.join("\n", products)));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
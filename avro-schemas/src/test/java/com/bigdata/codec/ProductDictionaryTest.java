@@ -0,0 +1,77 @@
+package com.bigdata.codec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductDictionaryTest {
+
+    @Test
+    void idsArePositionsAmongTheEntriesIgnoringCommentsAndBlankLines() throws IOException {
+        ProductDictionary dictionary = ProductDictionary.parse(new StringReader("""
+                # header
+
+                Item-1
+                  Item-2
+                # between
+                Item-3
+                """));
+
+        assertEquals(3, dictionary.version());
+        assertEquals(0, dictionary.idOf("Item-1"));
+        assertEquals(1, dictionary.idOf("Item-2"));
+        assertEquals(2, dictionary.idOf("Item-3"));
+        assertEquals("Item-3", dictionary.product(2, 3));
+    }
+
+    @Test
+    void unknownProductHasNoId() throws IOException {
+        assertEquals(-1, ProductDictionary.parse(new StringReader("Item-1")).idOf("Item-2"));
+    }
+
+    @Test
+    void rejectsAProductListedTwice() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ProductDictionary.parse(new StringReader("Item-1\nItem-2\nItem-1")));
+        assertTrue(e.getMessage().contains("Item-1"), e.getMessage());
+    }
+
+    @Test
+    void rejectsAnIdBeyondTheDictionary() throws IOException {
+        ProductDictionary dictionary = ProductDictionary.parse(new StringReader("Item-1\nItem-2"));
+
+        assertThrows(IllegalArgumentException.class, () -> dictionary.product(2, 3));
+        assertThrows(IllegalArgumentException.class, () -> dictionary.product(-1, 2));
+    }
+
+    @Test
+    void loadsTheBundledDictionary() {
+        ProductDictionary dictionary = ProductDictionary.defaults();
+
+        assertTrue(dictionary.version() > 0);
+        assertEquals(0, dictionary.idOf("Item-1"));
+        assertEquals(dictionary.version(), ProductDictionary.load(null).version());
+        assertEquals(dictionary.version(), ProductDictionary.load(" ").version());
+    }
+
+    @Test
+    void loadsAFileWithOrWithoutPrefix(@TempDir Path dir) throws IOException {
+        Path file = Files.writeString(dir.resolve("dictionary.txt"), "Item-1\nItem-2\nItem-7\n");
+
+        assertEquals(2, ProductDictionary.load(file.toString()).idOf("Item-7"));
+        assertEquals(2, ProductDictionary.load("file:" + file).idOf("Item-7"));
+    }
+
+    @Test
+    void failsForAMissingClasspathResource() {
+        assertThrows(IllegalStateException.class, () -> ProductDictionary.load("classpath:no-such-dictionary.txt"));
+    }
+}
@@ -0,0 +1,183 @@
+package com.bigdata.rules;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderRulesTest {
+
+    @Test
+    void returnsTheRuleThatRejectedTheOrder() throws IOException {
+        OrderRules rules = parse("""
+                # comment, then a blank line
+
+                business  inventory  orderId  ends-with  55  permanent  INSUFFICIENT_INVENTORY  No stock of {product} for {orderId} at {price}
+                external  payment    orderId  ends-with  99  TEMPORARY  NETWORK_ERROR           Payment timed out
+                """);
+
+        OrderRule rule = rules.check(OrderRule.Stage.BUSINESS, "order-155", "Item-1", 12.5f);
+
+        assertSame(rules.rules().get(0), rule);
+        assertEquals(OrderRule.Stage.BUSINESS, rule.stage());
+        assertEquals("inventory", rule.name());
+        assertEquals(OrderRule.PERMANENT, rule.failureType());
+        assertFalse(rule.isTemporary());
+        assertEquals("INSUFFICIENT_INVENTORY", rule.category());
+        assertEquals("No stock of Item-1 for order-155 at 12.5", rule.message("order-155", "Item-1", 12.5f));
+        assertEquals("business.inventory", rule.toString());
+        assertTrue(rules.rules().get(1).isTemporary());
+        assertNull(rules.check(OrderRule.Stage.BUSINESS, "order-154", "Item-1", 12.5f));
+    }
+
+    @Test
+    void checksOnlyTheRequestedStage() throws IOException {
+        OrderRules rules = parse("""
+                validation  v  orderId  equals  a  PERMANENT  C  m
+                external    e  orderId  equals  a  TEMPORARY  C  m
+                """);
+
+        assertEquals("v", rules.check(OrderRule.Stage.VALIDATION, "a", "p", 1f).name());
+        assertNull(rules.check(OrderRule.Stage.BUSINESS, "a", "p", 1f));
+        assertEquals("e", rules.check(OrderRule.Stage.EXTERNAL, "a", "p", 1f).name());
+    }
+
+    @Test
+    void firstMatchingRuleInFileOrderWinsAndStopsTheStage() throws IOException {
+        OrderRules rules = parse("""
+                business  first   orderId  ends-with    7   PERMANENT  C  m
+                business  second  orderId  ends-with    77  PERMANENT  C  m
+                business  third   product  starts-with  X   PERMANENT  C  m
+                """);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("first", rules.check(OrderRule.Stage.BUSINESS, "order-77", "X-1", 1f).name());
+        }
+        assertEquals("third", rules.check(OrderRule.Stage.BUSINESS, "order-78", "X-1", 1f).name());
+
+        // the sampled (timed) evaluations return the same rule and count their hit too
+        assertEquals(1000, rules.rules().get(0).hits());
+        assertEquals(0, rules.rules().get(1).hits());
+        assertEquals(1, rules.rules().get(2).hits());
+        assertTrue(rules.rules().get(0).samples() > 0);
+    }
+
+    @Test
+    void stringOps() throws IOException {
+        OrderRules rules = parse("""
+                validation  ends     orderId  ends-with    -x      PERMANENT  C  m
+                validation  starts   orderId  starts-with  bad-    PERMANENT  C  m
+                validation  equals   product  equals       Banned  PERMANENT  C  m
+                validation  blank    product  blank        -       PERMANENT  C  m
+                validation  longer   orderId  longer-than  10      PERMANENT  C  m
+                """);
+
+        assertEquals("ends", name(rules, "o-x", "Item"));
+        assertEquals("starts", name(rules, "bad-1", "Item"));
+        assertEquals("equals", name(rules, "o-1", "Banned"));
+        assertEquals("blank", name(rules, "o-1", "  "));
+        assertEquals("blank", name(rules, "o-1", null));
+        assertEquals("longer", name(rules, "o-123456789", "Item"));
+        assertNull(name(rules, "o-12345678", "Item"));
+        assertNull(name(rules, "o-1", "banned"));
+        // a missing orderId matches none of the string ops but blank
+        assertNull(name(rules, null, "Item"));
+    }
+
+    @Test
+    void priceOps() throws IOException {
+        List<String> ops = List.of("<", "<=", ">", ">=");
+        float[] prices = {9.99f, 10f, 10.01f};
+        boolean[][] expected = {
+                {true, false, false},
+                {true, true, false},
+                {false, false, true},
+                {false, true, true},
+        };
+
+        for (int op = 0; op < ops.size(); op++) {
+            OrderRules rules = parse("validation  r  price  " + ops.get(op) + "  10  PERMANENT  C  m");
+            for (int p = 0; p < prices.length; p++) {
+                assertEquals(expected[op][p], rules.check(OrderRule.Stage.VALIDATION, "o", "Item", prices[p]) != null,
+                        "price " + prices[p] + " " + ops.get(op) + " 10");
+            }
+        }
+    }
+
+    @Test
+    void probabilityOperandRejectsOnlyThatShareOfMatches() throws IOException {
+        OrderRules rules = parse("""
+                external  never   orderId  ends-with  1@0    TEMPORARY  C  m
+                external  half    orderId  ends-with  2@0.5  TEMPORARY  C  m
+                external  always  orderId  ends-with  3@1    TEMPORARY  C  m
+                """);
+
+        int half = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertNull(rules.check(OrderRule.Stage.EXTERNAL, "order-1", "Item", 1f));
+            assertEquals("always", rules.check(OrderRule.Stage.EXTERNAL, "order-3", "Item", 1f).name());
+            if (rules.check(OrderRule.Stage.EXTERNAL, "order-2", "Item", 1f) != null) {
+                half++;
+            }
+        }
+        // the probability only applies to orders the rule matches
+        assertNull(rules.check(OrderRule.Stage.EXTERNAL, "order-4", "Item", 1f));
+        assertTrue(half > 4_500 && half < 5_500, "rejected " + half + " of 10000");
+    }
+
+    @Test
+    void messageIsTheRestOfTheLine() throws IOException {
+        OrderRule rule = parse("validation  r  price  >  5  PERMANENT  C  Price   ${price} is  over 5")
+                .check(OrderRule.Stage.VALIDATION, "o", "Item", 6f);
+
+        assertEquals("Price   $6.0 is  over 5", rule.message("o", "Item", 6f));
+    }
+
+    @Test
+    void parseErrorsNameTheLine() {
+        assertLineError(3, "expected 8 columns", """
+                # header
+                validation  ok  price  >  5  PERMANENT  C  m
+                validation  short  price  >  5
+                """);
+        assertLineError(1, "unknown field: customer", "validation  r  customer  equals  x  PERMANENT  C  m");
+        assertLineError(1, "unknown string op: contains", "validation  r  product  contains  x  PERMANENT  C  m");
+        assertLineError(1, "unknown price op: ==", "validation  r  price  ==  5  PERMANENT  C  m");
+        assertLineError(1, "type must be PERMANENT or TEMPORARY", "validation  r  price  >  5  FATAL  C  m");
+        assertLineError(2, "", "\nlater  r  price  >  5  PERMANENT  C  m");
+        assertLineError(1, "", "validation  r  price  >  five  PERMANENT  C  m");
+        assertLineError(1, "", "validation  r  orderId  ends-with  5@often  PERMANENT  C  m");
+    }
+
+    @Test
+    void bundledRulesParse() {
+        OrderRules rules = OrderRules.defaults();
+
+        assertFalse(rules.rules().isEmpty());
+        assertEquals("price-positive", rules.check(OrderRule.Stage.VALIDATION, "order-1", "Item-1", 0f).name());
+        assertNull(rules.check(OrderRule.Stage.VALIDATION, "order-1", "Item-1", 10f));
+    }
+
+    private static void assertLineError(int line, String detail, String source) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> parse(source));
+        assertTrue(e.getMessage().startsWith("Order rules line " + line + ": "), e.getMessage());
+        assertTrue(e.getMessage().contains(detail), e.getMessage());
+    }
+
+    private static String name(OrderRules rules, String orderId, String product) {
+        OrderRule rule = rules.check(OrderRule.Stage.VALIDATION, orderId, product, 1f);
+        return rule != null ? rule.name() : null;
+    }
+
+    private static OrderRules parse(String source) throws IOException {
+        return OrderRules.parse(new StringReader(source));
+    }
+}
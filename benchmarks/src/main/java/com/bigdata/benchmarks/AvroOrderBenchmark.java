@@ -0,0 +1,79 @@
+package com.bigdata.benchmarks;
+
+import com.bigdata.schema.Order;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Avro binary encoding of a single Order, i.e. the payload part of what the
+ * Confluent serializer does on the producer and both consumers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AvroOrderBenchmark {
+
+    private final SpecificDatumWriter<Order> writer = new SpecificDatumWriter<>(Order.class);
+    private final SpecificDatumReader<Order> reader = new SpecificDatumReader<>(Order.class);
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+
+    private Order order;
+    private byte[] encoded;
+    private BinaryEncoder encoder;
+    private BinaryDecoder decoder;
+    private Order reuse;
+
+    @Setup
+    public void setUp() throws IOException {
+        order = Order.newBuilder()
+                .setOrderId("1042")
+                .setProduct("Laptop")
+                .setPrice(1299.99f)
+                .setEventTime(1_700_000_000_000L)
+                .build();
+        encoded = serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        out.reset();
+        encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+        writer.write(order, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Order deserialize() throws IOException {
+        decoder = DecoderFactory.get().binaryDecoder(encoded, decoder);
+        return reader.read(null, decoder);
+    }
+
+    @Benchmark
+    public Order deserializeReusingRecord() throws IOException {
+        decoder = DecoderFactory.get().binaryDecoder(encoded, decoder);
+        reuse = reader.read(reuse, decoder);
+        return reuse;
+    }
+}
@@ -0,0 +1,93 @@
+package com.bigdata.benchmarks;
+
+import com.bigdata.order_consumer_service.config.ShardRoutingDataSource;
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.repository.OrderProductHourlyRepository;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.bigdata.order_consumer_service.service.OrderLookupService;
+import com.bigdata.order_consumer_service.service.OrderService;
+import com.bigdata.order_consumer_service.service.OrderStatisticsTracker;
+import com.bigdata.order_consumer_service.service.ProductRollupService;
+import com.bigdata.order_consumer_service.service.ShardRouter;
+import com.bigdata.schema.Order;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderService.saveOrder without a database: the repositories are proxies whose
+ * claimOrderId always succeeds, whose save returns the entity untouched and
+ * whose rollup upsert is a no-op, so only the mapping work is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderServiceMappingBenchmark {
+
+    private static final String CORRELATION_ID = "3f2b8c1e-5d4a-4e6f-9a7b-2c1d0e9f8a7b";
+
+    private OrderService orderService;
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        OrderRepository repository = stubRepository(OrderRepository.class);
+        OrderProductHourlyRepository rollupRepository = stubRepository(OrderProductHourlyRepository.class);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // single unconnected shard: saveOrder itself never routes
+        ShardRouter shardRouter = new ShardRouter(
+                new ShardRoutingDataSource(List.of(new HikariDataSource())), meterRegistry, false);
+
+        orderService = new OrderService(repository,
+                new OrderStatisticsTracker(repository, shardRouter),
+                new ProductRollupService(rollupRepository, repository, shardRouter),
+                new OrderLookupService(repository, shardRouter, meterRegistry,
+                        10_000, Duration.ofMinutes(10), Duration.ofSeconds(30)));
+        order = Order.newBuilder()
+                .setOrderId("1042")
+                .setProduct("Laptop")
+                .setPrice(1299.99f)
+                .setEventTime(1_700_000_000_000L)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stubRepository(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "claimOrderId" -> 1;
+                    case "save" -> args[0];
+                    case "upsertOrder" -> 1;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Benchmark
+    public OrderEntity saveOrder() {
+        return orderService.saveOrder(order, CORRELATION_ID, "orders", 0, 42L);
+    }
+
+    // the listener path: Utf8 fields already converted once by OrderListener
+    @Benchmark
+    public OrderEntity saveOrderFromFields() {
+        return orderService.saveOrder("1042", "Laptop", 1299.99f, CORRELATION_ID, "orders", 0, 42L);
+    }
+}
@@ -0,0 +1,122 @@
+package com.bigdata.benchmarks;
+
+import com.bigdata.codec.OrderCodec;
+import com.bigdata.codec.ProductDictionary;
+import com.bigdata.schema.CompactOrder;
+import com.bigdata.schema.Order;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full Order against the dictionary-encoded CompactOrder, payload only (the
+ * Confluent framing adds the same 5 bytes to both). Serialize includes
+ * OrderCodec.compact on the producer, deserialize OrderCodec.expand on the
+ * consumers, so the comparison is what each side pays per order. wireSize
+ * reports the bytes per order of the sample orders as the secondary result
+ * wireSize:bytesPerOrder.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderWireFormatBenchmark {
+
+    private static final float[] PRICES = {19.99f, 5.00f, 129.50f, 1299.99f, 0.99f};
+
+    @Param({"full", "compact"})
+    private String format;
+
+    private final OrderCodec codec = new OrderCodec(ProductDictionary.defaults());
+    private final SpecificDatumWriter<Order> orderWriter = new SpecificDatumWriter<>(Order.class);
+    private final SpecificDatumReader<Order> orderReader = new SpecificDatumReader<>(Order.class);
+    private final SpecificDatumWriter<CompactOrder> compactWriter = new SpecificDatumWriter<>(CompactOrder.class);
+    private final SpecificDatumReader<CompactOrder> compactReader = new SpecificDatumReader<>(CompactOrder.class);
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+
+    // JMH sums EVENTS counters over iterations, so wireSize measures exactly one
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class WireSize {
+        public double bytesPerOrder;
+    }
+
+    private Order[] orders;
+    private byte[][] encoded;
+    private int next;
+    private BinaryEncoder encoder;
+    private BinaryDecoder decoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        orders = new Order[PRICES.length];
+        encoded = new byte[orders.length][];
+        for (int i = 0; i < orders.length; i++) {
+            orders[i] = Order.newBuilder()
+                    .setOrderId(String.valueOf(100_000 + i))
+                    .setProduct("Item-" + (i + 1))
+                    .setPrice(PRICES[i])
+                    .setEventTime(1_700_000_000_000L + i)
+                    .build();
+            encoded[i] = serialize(orders[i]);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return serialize(orders[next++ % orders.length]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public void wireSize(WireSize size) {
+        long bytes = 0;
+        for (byte[] payload : encoded) {
+            bytes += payload.length;
+        }
+        size.bytesPerOrder = (double) bytes / encoded.length;
+    }
+
+    @Benchmark
+    public Order deserialize() throws IOException {
+        decoder = DecoderFactory.get().binaryDecoder(encoded[next++ % encoded.length], decoder);
+        return "compact".equals(format)
+                ? codec.expand(compactReader.read(null, decoder))
+                : orderReader.read(null, decoder);
+    }
+
+    private byte[] serialize(Order order) throws IOException {
+        out.reset();
+        encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+        if ("compact".equals(format)) {
+            compactWriter.write(codec.compact(order), encoder);
+        } else {
+            orderWriter.write(order, encoder);
+        }
+        encoder.flush();
+        return out.toByteArray();
+    }
+}
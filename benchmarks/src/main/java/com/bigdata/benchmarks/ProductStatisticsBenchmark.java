@@ -0,0 +1,75 @@
+package com.bigdata.benchmarks;
+
+import com.bigdata.order_aggregation_service.model.ProductStatistics;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonSerde;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-record work of the statistics aggregations: the in-place update and
+ * the JsonSerde round trip every state store read/write goes through.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProductStatisticsBenchmark {
+
+    private static final String TOPIC = "order-aggregation-service-product-statistics-store-changelog";
+
+    private final JsonSerde<ProductStatistics> serde = new JsonSerde<>(ProductStatistics.class);
+
+    private Serializer<ProductStatistics> serializer;
+    private Deserializer<ProductStatistics> deserializer;
+    private ProductStatistics stats;
+    private byte[] encoded;
+    private long eventTime = 1_700_000_000_000L;
+
+    @Setup
+    public void setUp() {
+        serializer = serde.serializer();
+        deserializer = serde.deserializer();
+
+        stats = new ProductStatistics();
+        stats.setProduct("Laptop");
+        for (int i = 0; i < 100; i++) {
+            stats.update(1000f + i, eventTime++);
+        }
+        encoded = serializer.serialize(TOPIC, stats);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serde.close();
+    }
+
+    @Benchmark
+    public ProductStatistics update() {
+        return stats.update(1299.99f, eventTime++);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(TOPIC, stats);
+    }
+
+    @Benchmark
+    public ProductStatistics deserialize() {
+        return deserializer.deserialize(TOPIC, encoded);
+    }
+}
@@ -0,0 +1,131 @@
+package com.bigdata.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Platform against virtual threads for the blocking request shape of the
+ * services (a send waiting on the broker, a JDBC round trip): one operation is a
+ * burst of {@code requests} concurrent requests, each blocking for
+ * {@code blockMillis}. Throughput is bursts per second; the SampleTime
+ * percentiles are the time until the slowest request of a burst is done.
+ *
+ * - platform: a fixed pool of 200 threads, Tomcat's default max-threads
+ * - virtual: a thread per request, as with spring.threads.virtual.enabled
+ *
+ * {@code guard} is how the blocking call is entered: "none", a ReentrantLock
+ * (HikariCP and pgjdbc since 42.6) or a synchronized block, which pins the
+ * virtual thread to its carrier on JDK 21 - run with -Djdk.tracePinnedThreads=short
+ * to see it.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+    private static final int PLATFORM_POOL = 200;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"none", "lock", "synchronized"})
+    private String guard;
+
+    @Param({"1000"})
+    private int requests;
+
+    @Param({"1"})
+    private long blockMillis;
+
+    private ExecutorService executor;
+    private ReentrantLock[] locks;
+    private Object[] monitors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        locks = new ReentrantLock[requests];
+        monitors = new Object[requests];
+        for (int i = 0; i < requests; i++) {
+            locks[i] = new ReentrantLock();
+            monitors[i] = new Object();
+        }
+        executor = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(PLATFORM_POOL);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    @Benchmark
+    public void burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(requests);
+        for (int i = 0; i < requests; i++) {
+            int request = i;
+            executor.execute(() -> {
+                try {
+                    request(request);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+
+    // Each request has its own guard: the cost measured is pinning, not contention.
+    // They live in fields so escape analysis cannot elide them.
+    private void request(int request) {
+        switch (guard) {
+            case "lock" -> {
+                ReentrantLock lock = locks[request];
+                lock.lock();
+                try {
+                    block();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            case "synchronized" -> {
+                synchronized (monitors[request]) {
+                    block();
+                }
+            }
+            default -> block();
+        }
+    }
+
+
+    private void block() {
+        try {
+            Thread.sleep(blockMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
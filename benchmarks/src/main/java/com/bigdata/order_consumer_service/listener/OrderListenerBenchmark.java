@@ -0,0 +1,59 @@
+package com.bigdata.order_consumer_service.listener;
+
+import com.bigdata.order_consumer_service.exception.PermanentProcessingException;
+import com.bigdata.rules.OrderRule;
+import com.bigdata.rules.OrderRules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation and business-rule checks of the consumer. Lives in the listener
+ * package because the checks are package-private. The rejected case includes
+ * building the (trace-less) PermanentProcessingException, which is what a poison
+ * message costs; ruleCodes is the same check without any exception.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderListenerBenchmark {
+
+    private final OrderRules rules = OrderRules.defaults();
+
+    // the checks never touch the repositories or the service
+    private final OrderListener listener = new OrderListener(null, null, null, null, null, rules, null);
+
+    @Benchmark
+    public void validOrder() {
+        listener.validateOrder("1042", "Laptop", 1299.99f);
+        listener.checkBusinessRules("1042", "Laptop", 1299.99f);
+    }
+
+    @Benchmark
+    public PermanentProcessingException rejectedOrder() {
+        try {
+            listener.validateOrder("1077", "Laptop", 1299.99f);
+            listener.checkBusinessRules("1077", "Laptop", 1299.99f);
+            return null;
+        } catch (PermanentProcessingException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public OrderRule ruleCodes() {
+        OrderRule rejected = rules.check(OrderRule.Stage.VALIDATION, "1077", "Laptop", 1299.99f);
+        return rejected != null ? rejected : rules.check(OrderRule.Stage.BUSINESS, "1077", "Laptop", 1299.99f);
+    }
+}
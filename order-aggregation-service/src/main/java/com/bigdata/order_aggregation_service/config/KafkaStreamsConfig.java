@@ -1,15 +1,31 @@
 package com.bigdata.order_aggregation_service.config;
 
+import com.bigdata.codec.OrderCodec;
+import com.bigdata.codec.ProductDictionary;
 import com.bigdata.order_aggregation_service.model.ProductStatistics;
+import com.bigdata.order_aggregation_service.stream.EventTimeNormalizer;
+import com.bigdata.order_aggregation_service.stream.HotKeyDetector;
+import com.bigdata.order_aggregation_service.stream.LateOrderCounter;
+import com.bigdata.order_aggregation_service.stream.OrderBatchUnpacker;
+import com.bigdata.order_aggregation_service.stream.OrderDeduplicationProcessor;
+import com.bigdata.order_aggregation_service.stream.OrderTimestampExtractor;
+import com.bigdata.order_aggregation_service.stream.OrderViewProcessor;
+import com.bigdata.order_aggregation_service.stream.OrderWireDeserializer;
 import com.bigdata.schema.Order;
+import com.bigdata.schema.OrderBatch;
 import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
 import io.confluent.kafka.streams.serdes.avro.SpecificAvroSerde;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecord;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.kstream.*;
 import org.apache.kafka.streams.state.KeyValueBytesStoreSupplier;
+import org.apache.kafka.streams.state.WindowBytesStoreSupplier;
 import org.apache.kafka.streams.state.Stores;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -18,6 +34,7 @@ import org.springframework.kafka.annotation.EnableKafkaStreams;
 import org.springframework.kafka.support.serializer.JsonSerde;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -28,13 +45,83 @@ public class KafkaStreamsConfig {
     @Value("${spring.kafka.properties.schema.registry.url}")
     private String schemaRegistryUrl;
 
+    @Value("${app.dedup.enabled:true}")
+    private boolean dedupEnabled;
+
+    @Value("${app.dedup.retention-minutes:60}")
+    private long dedupRetentionMinutes;
+
+    // Orders per second one stream task (one orders partition) sees; sizes each bloom generation
+    @Value("${app.dedup.bloom.expected-orders-per-second:0}")
+    private long dedupExpectedOrdersPerSecond;
+
+    // Used as the generation size when expected-orders-per-second is 0
+    @Value("${app.dedup.bloom.expected-insertions:100000}")
+    private int dedupExpectedInsertions;
+
+    @Value("${app.dedup.bloom.false-positive-rate:0.01}")
+    private double dedupFalsePositiveRate;
+
+    @Value("${app.aggregation.salting.enabled:false}")
+    private boolean saltingEnabled;
+
+    @Value("${app.aggregation.salting.buckets:8}")
+    private int saltBuckets;
+
+    @Value("${app.aggregation.salting.hot-products:}")
+    private List<String> hotProducts;
+
+    @Value("${app.aggregation.salting.auto-threshold-per-second:0}")
+    private long hotProductThresholdPerSecond;
+
+    @Value("${app.aggregation.window-grace-seconds:30}")
+    private long windowGraceSeconds;
+
+    // How long closed windows stay queryable, on top of the grace period
+    @Value("${app.aggregation.window-retention-minutes:5}")
+    private long windowRetentionMinutes;
+
+    @Value("${app.streams.in-memory-state:false}")
+    private boolean inMemoryState;
+
+    @Value("${app.views.orders.retention-minutes:1440}")
+    private long orderViewRetentionMinutes;
+
+    // Blank: the product dictionary bundled with avro-schemas
+    @Value("${app.products.dictionary.location:}")
+    private String dictionaryLocation;
+
     public static final String ORDERS_TOPIC = "orders";
+    public static final String ORDER_BATCHES_TOPIC = "orders-batch";
+    public static final String BATCH_SKIPPED_METRIC = "orders.batch.skipped";
+    public static final String LATE_ORDERS_METRIC = "orders.windowed.late";
     public static final String PRODUCT_STATS_STORE = "product-statistics-store";
     public static final String WINDOWED_STATS_STORE = "windowed-statistics-store";
+    public static final String DEDUP_STORE = "order-dedup-store";
+    public static final String DEDUP_DROPPED_METRIC = "orders.dedup.dropped";
+    public static final String PARTIAL_STATS_STORE = "product-statistics-partial-store";
+    public static final String SALTED_MERGE_GROUPING = "product-statistics-merge";
+    public static final String ORDERS_BY_ID_STORE = "orders-by-id-store";
+    public static final String RECENT_ORDERS_STORE = "recent-orders-store";
+
+    private static final char SALT_SEPARATOR = '#';
 
 
     private SpecificAvroSerde<Order> orderSerde() {
-        SpecificAvroSerde<Order> serde = new SpecificAvroSerde<>();
+        return avroSerde();
+    }
+
+
+    // Orders topic: full and compact (dictionary-encoded) orders, read as Order
+    private Serde<Order> orderWireSerde() {
+        OrderCodec codec = new OrderCodec(ProductDictionary.load(dictionaryLocation));
+        return Serdes.serdeFrom(orderSerde().serializer(),
+                new OrderWireDeserializer(this.<SpecificRecord>avroSerde().deserializer(), codec));
+    }
+
+
+    private <T extends SpecificRecord> SpecificAvroSerde<T> avroSerde() {
+        SpecificAvroSerde<T> serde = new SpecificAvroSerde<>();
         Map<String, String> config = Map.of(
                 AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, schemaRegistryUrl
         );
@@ -48,23 +135,135 @@ public class KafkaStreamsConfig {
     }
 
 
-    @Bean
-    public KTable<String, ProductStatistics> productStatisticsTable(StreamsBuilder builder) {
+    // in-memory stores still get changelogs, so state survives restarts via restoration
+    private KeyValueBytesStoreSupplier keyValueStore(String name) {
+        return inMemoryState
+                ? Stores.inMemoryKeyValueStore(name)
+                : Stores.persistentKeyValueStore(name);
+    }
+
 
+    private WindowBytesStoreSupplier windowStore(String name, Duration retention, Duration windowSize) {
+        return inMemoryState
+                ? Stores.inMemoryWindowStore(name, retention, windowSize, false)
+                : Stores.persistentWindowStore(name, retention, windowSize, false);
+    }
 
-        KeyValueBytesStoreSupplier storeSupplier =
-                Stores.persistentKeyValueStore(PRODUCT_STATS_STORE);
 
+    /**
+     * Single stream of orders, shared by every aggregation: the orders topic plus
+     * the orders unpacked from orders-batch records. DLQ reprocessing and producer
+     * retries re-publish orders, so copies of an orderId already seen within the
+     * dedup retention are dropped here.
+     */
+    @Bean
+    public KStream<String, Order> ordersStream(StreamsBuilder builder, MeterRegistry meterRegistry) {
+
+        Counter skipped = Counter.builder(BATCH_SKIPPED_METRIC)
+                .description("Orders of an orders-batch record skipped for a missing orderId or product")
+                .register(meterRegistry);
+        KStream<String, Order> batchedOrders = builder
+                .stream(ORDER_BATCHES_TOPIC, Consumed.with(Serdes.String(), this.<OrderBatch>avroSerde())
+                        .withTimestampExtractor(new OrderTimestampExtractor()))
+                .process(() -> new OrderBatchUnpacker(skipped));
 
         KStream<String, Order> ordersStream = builder
-                .stream(ORDERS_TOPIC, Consumed.with(Serdes.String(), orderSerde()))
+                .stream(ORDERS_TOPIC, Consumed.with(Serdes.String(), orderWireSerde())
+                        .withTimestampExtractor(new OrderTimestampExtractor()))
+                .merge(batchedOrders)
+                .processValues(EventTimeNormalizer::new)
                 .peek((key, order) ->
                         log.info("📊 Processing order for aggregation: {} - {} - ${}",
                                 order.getOrderId(), order.getProduct(), order.getPrice())
                 );
 
+        if (dedupEnabled) {
+            ordersStream = deduplicate(builder, ordersStream, meterRegistry);
+        }
+
+        addOrderViews(builder, ordersStream);
+        return ordersStream;
+    }
+
+
+    private KStream<String, Order> deduplicate(StreamsBuilder builder, KStream<String, Order> ordersStream,
+                                               MeterRegistry meterRegistry) {
+
+        Duration retention = Duration.ofMinutes(dedupRetentionMinutes);
+
+        builder.addStateStore(
+                Stores.windowStoreBuilder(
+                        windowStore(DEDUP_STORE, retention, retention),
+                        Serdes.String(),
+                        Serdes.Long()
+                )
+        );
+
+        // A filter generation takes every orderId of one retention period of stream time
+        int expectedInsertions = dedupExpectedOrdersPerSecond > 0
+                ? (int) Math.min(Integer.MAX_VALUE, dedupExpectedOrdersPerSecond * retention.toSeconds())
+                : dedupExpectedInsertions;
+        log.info("Dedup bloom filters sized for {} orderIds per {} min generation", expectedInsertions,
+                dedupRetentionMinutes);
+
+        Counter droppedDuplicates = Counter.builder(DEDUP_DROPPED_METRIC)
+                .description("Orders dropped by the aggregation topology as duplicates")
+                .register(meterRegistry);
+
+        return ordersStream.processValues(
+                () -> new OrderDeduplicationProcessor(DEDUP_STORE, retention,
+                        expectedInsertions, dedupFalsePositiveRate, droppedDuplicates),
+                DEDUP_STORE
+        );
+    }
+
+
+    /**
+     * Read model for the consumer's order lookups: orders-by-id and recent-orders,
+     * served through interactive queries (OrderViewController). The orders topic is
+     * keyed by orderId, so both stores are co-partitioned with it.
+     */
+    private void addOrderViews(StreamsBuilder builder, KStream<String, Order> ordersStream) {
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                keyValueStore(ORDERS_BY_ID_STORE), Serdes.String(), orderSerde()));
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                keyValueStore(RECENT_ORDERS_STORE), Serdes.String(), orderSerde()));
+
+        Duration retention = Duration.ofMinutes(orderViewRetentionMinutes);
+        ordersStream.processValues(
+                () -> new OrderViewProcessor(ORDERS_BY_ID_STORE, RECENT_ORDERS_STORE,
+                        retention, Duration.ofMinutes(1)),
+                ORDERS_BY_ID_STORE, RECENT_ORDERS_STORE
+        );
+    }
+
+
+    @Bean
+    public KTable<String, ProductStatistics> productStatisticsTable(KStream<String, Order> ordersStream) {
+
+
+        KeyValueBytesStoreSupplier storeSupplier = keyValueStore(PRODUCT_STATS_STORE);
+
+
+        KTable<String, ProductStatistics> statsTable = saltingEnabled
+                ? saltedProductStatistics(ordersStream, storeSupplier)
+                : directProductStatistics(ordersStream, storeSupplier);
+
+
+        statsTable.toStream().foreach((product, stats) ->
+                log.info(" Stats Update | Product: {} | Count: {} | Avg: ${:.2f} | Min: ${:.2f} | Max: ${:.2f} | Revenue: ${:.2f}",
+                        product, stats.getOrderCount(), stats.getAveragePrice(),
+                        stats.getMinPrice(), stats.getMaxPrice(), stats.getTotalRevenue())
+        );
+
+        return statsTable;
+    }
+
 
-        KTable<String, ProductStatistics> statsTable = ordersStream
+    private KTable<String, ProductStatistics> directProductStatistics(
+            KStream<String, Order> ordersStream, KeyValueBytesStoreSupplier storeSupplier) {
+
+        return ordersStream
                 .groupBy(
                         (orderId, order) -> order.getProduct().toString(),
                         Grouped.with(Serdes.String(), orderSerde())
@@ -76,41 +275,118 @@ public class KafkaStreamsConfig {
                                 .averagePrice(0.0)
                                 .minPrice(0f)
                                 .maxPrice(0f)
-                                .lastUpdated(System.currentTimeMillis())
                                 .build(),
                         (product, order, stats) -> {
                             stats.setProduct(product);
-                            stats.update(order.getPrice());
+                            stats.update(order.getPrice(), order.getEventTime());
                             return stats;
                         },
                         Materialized.<String, ProductStatistics>as(storeSupplier)
                                 .withKeySerde(Serdes.String())
                                 .withValueSerde(statsSerde())
                 );
+    }
 
 
-        statsTable.toStream().foreach((product, stats) ->
-                log.info(" Stats Update | Product: {} | Count: {} | Avg: ${:.2f} | Min: ${:.2f} | Max: ${:.2f} | Revenue: ${:.2f}",
-                        product, stats.getOrderCount(), stats.getAveragePrice(),
-                        stats.getMinPrice(), stats.getMaxPrice(), stats.getTotalRevenue())
-        );
+    /**
+     * Two-phase aggregation for hot products. Phase one spreads a hot product over
+     * {@code product#0..N-1} sub-keys (cold products always use {@code #0}) so its
+     * orders are pre-aggregated by several tasks in parallel. Phase two regroups the
+     * partials by product and merges them into the queryable PRODUCT_STATS_STORE;
+     * every partial update arrives as subtract(old) + add(new), so totals stay exact.
+     */
+    private KTable<String, ProductStatistics> saltedProductStatistics(
+            KStream<String, Order> ordersStream, KeyValueBytesStoreSupplier storeSupplier) {
 
-        return statsTable;
+        HotKeyDetector hotKeys = new HotKeyDetector(hotProducts, hotProductThresholdPerSecond);
+
+        log.info("Salted aggregation enabled | buckets: {} | hot products: {} | auto threshold: {}/s",
+                saltBuckets, hotProducts, hotProductThresholdPerSecond);
+
+        KTable<String, ProductStatistics> partials = ordersStream
+                .groupBy(
+                        (orderId, order) -> saltedKey(order, hotKeys),
+                        Grouped.with(Serdes.String(), orderSerde())
+                )
+                .aggregate(
+                        () -> ProductStatistics.builder()
+                                .orderCount(0L)
+                                .totalRevenue(0.0)
+                                .averagePrice(0.0)
+                                .minPrice(0f)
+                                .maxPrice(0f)
+                                .build(),
+                        (saltedKey, order, partial) -> {
+                            // copy: the old partial is forwarded downstream and must stay intact
+                            ProductStatistics next = partial.toBuilder().build();
+                            next.setProduct(saltedKey.substring(0, saltedKey.lastIndexOf(SALT_SEPARATOR)));
+                            next.update(order.getPrice(), order.getEventTime());
+                            return next;
+                        },
+                        Materialized.<String, ProductStatistics>as(keyValueStore(PARTIAL_STATS_STORE))
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(statsSerde())
+                );
+
+        return partials
+                .groupBy(
+                        (saltedKey, partial) -> KeyValue.pair(partial.getProduct(), partial),
+                        Grouped.with(SALTED_MERGE_GROUPING, Serdes.String(), statsSerde())
+                )
+                .aggregate(
+                        () -> ProductStatistics.builder()
+                                .orderCount(0L)
+                                .totalRevenue(0.0)
+                                .averagePrice(0.0)
+                                .minPrice(0f)
+                                .maxPrice(0f)
+                                .build(),
+                        (product, partial, stats) -> {
+                            stats.setProduct(product);
+                            return stats.merge(partial);
+                        },
+                        (product, partial, stats) -> stats.subtract(partial),
+                        Materialized.<String, ProductStatistics>as(storeSupplier)
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(statsSerde())
+                );
+    }
+
+
+    private String saltedKey(Order order, HotKeyDetector hotKeys) {
+        String product = order.getProduct().toString();
+        int bucket = hotKeys.isHot(product)
+                ? Math.floorMod(order.getOrderId().hashCode(), saltBuckets)
+                : 0;
+        return product + SALT_SEPARATOR + bucket;
     }
 
 
+    /**
+     * Ten-second statistics per product on event time. The grace period admits
+     * out-of-order orders; an order whose window closed more than grace ago (a
+     * backfill, a DLQ reprocess) is dropped by the aggregation and counted in
+     * orders.windowed.late - it still counts in the all-time product statistics.
+     * Backfills older than the grace period go through a separate application.id
+     * whose grace and retention cover them (see application.properties).
+     */
     @Bean
-    public KTable<Windowed<String>, ProductStatistics> windowedStatistics(StreamsBuilder builder) {
+    public KTable<Windowed<String>, ProductStatistics> windowedStatistics(KStream<String, Order> ordersStream,
+                                                                         MeterRegistry meterRegistry) {
 
-        KStream<String, Order> ordersStream = builder
-                .stream(ORDERS_TOPIC, Consumed.with(Serdes.String(), orderSerde()));
+        Duration windowSize = Duration.ofSeconds(10);
+        Duration grace = Duration.ofSeconds(windowGraceSeconds);
+        Counter late = Counter.builder(LATE_ORDERS_METRIC)
+                .description("Orders dropped from the windowed statistics because their window had closed")
+                .register(meterRegistry);
 
+        // Repartitioned explicitly so the counter runs in the aggregation's task, on its stream time
         return ordersStream
-                .groupBy(
-                        (orderId, order) -> order.getProduct().toString(),
-                        Grouped.with(Serdes.String(), orderSerde())
-                )
-                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofSeconds(10)))
+                .selectKey((orderId, order) -> order.getProduct().toString())
+                .repartition(Repartitioned.with(Serdes.String(), orderSerde()))
+                .processValues(() -> new LateOrderCounter(windowSize, grace, late))
+                .groupByKey(Grouped.with(Serdes.String(), orderSerde()))
+                .windowedBy(TimeWindows.ofSizeAndGrace(windowSize, grace))
                 .aggregate(
                         () -> ProductStatistics.builder()
                                 .orderCount(0L)
@@ -121,15 +397,14 @@ public class KafkaStreamsConfig {
                                 .build(),
                         (product, order, stats) -> {
                             stats.setProduct(product);
-                            stats.update(order.getPrice());
+                            stats.update(order.getPrice(), order.getEventTime());
                             return stats;
                         },
                         Materialized.<String, ProductStatistics>as(
-                                        Stores.persistentWindowStore(
+                                        windowStore(
                                                 WINDOWED_STATS_STORE,
-                                                Duration.ofMinutes(5),    // retention > window size
-                                                Duration.ofSeconds(10),   // window size
-                                                false
+                                                Duration.ofMinutes(windowRetentionMinutes).plus(grace), // > window size + grace
+                                                windowSize
                                         )
                                 )
                                 .withKeySerde(Serdes.String())
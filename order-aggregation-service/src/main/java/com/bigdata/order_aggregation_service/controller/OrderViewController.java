@@ -0,0 +1,185 @@
+package com.bigdata.order_aggregation_service.controller;
+
+import com.bigdata.order_aggregation_service.config.KafkaStreamsConfig;
+import com.bigdata.order_aggregation_service.model.OrderView;
+import com.bigdata.schema.Order;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.StreamsMetadata;
+import org.apache.kafka.streams.TaskMetadata;
+import org.apache.kafka.streams.ThreadMetadata;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Interactive queries over the orders-by-id and recent-orders stores.
+ *
+ * With several instances each one only holds the partitions assigned to it: a
+ * lookup by orderId is forwarded to the instance that owns the key, and a recent
+ * listing merges the local results of every instance. Forwarded calls pass
+ * local=true so they are answered from local state only.
+ */
+@RestController
+@RequestMapping("/api/views/orders")
+@Slf4j
+public class OrderViewController {
+
+    private static final int MAX_LIMIT = 500;
+
+    private final StreamsBuilderFactoryBean streamsBuilderFactoryBean;
+    private final RestClient restClient;
+    private final HostInfo self;
+
+    public OrderViewController(StreamsBuilderFactoryBean streamsBuilderFactoryBean,
+                               RestClient.Builder restClientBuilder,
+                               @Value("${spring.kafka.streams.properties.application.server:localhost:8084}")
+                               String applicationServer) {
+        this.streamsBuilderFactoryBean = streamsBuilderFactoryBean;
+        this.restClient = restClientBuilder.build();
+        this.self = HostInfo.buildFromEndpoint(applicationServer);
+    }
+
+
+    @GetMapping("/{orderId}")
+    public ResponseEntity<OrderView> getOrder(
+            @PathVariable String orderId,
+            @RequestParam(defaultValue = "false") boolean local
+    ) {
+        KafkaStreams streams = getStreams();
+
+        if (!local) {
+            KeyQueryMetadata metadata = streams.queryMetadataForKey(
+                    KafkaStreamsConfig.ORDERS_BY_ID_STORE, orderId, Serdes.String().serializer());
+            HostInfo owner = metadata.activeHost();
+
+            if (!owner.equals(self) && !owner.equals(HostInfo.unavailable())) {
+                return forwardGet(owner, orderId);
+            }
+        }
+
+        ReadOnlyKeyValueStore<String, Order> store = streams.store(StoreQueryParameters.fromNameAndType(
+                KafkaStreamsConfig.ORDERS_BY_ID_STORE, QueryableStoreTypes.keyValueStore()));
+        Order order = store.get(orderId);
+
+        return order != null
+                ? ResponseEntity.ok(OrderView.from(order))
+                : ResponseEntity.notFound().build();
+    }
+
+
+    @GetMapping("/recent")
+    public ResponseEntity<List<OrderView>> getRecentOrders(
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "false") boolean local
+    ) {
+        int bounded = Math.max(1, Math.min(limit, MAX_LIMIT));
+        KafkaStreams streams = getStreams();
+
+        List<OrderView> orders = new ArrayList<>(localRecentOrders(streams, bounded));
+
+        if (!local) {
+            for (StreamsMetadata instance : streams.streamsMetadataForStore(KafkaStreamsConfig.RECENT_ORDERS_STORE)) {
+                if (!instance.hostInfo().equals(self)) {
+                    orders.addAll(forwardRecent(instance.hostInfo(), bounded));
+                }
+            }
+        }
+
+        orders.sort(Comparator.comparingLong(OrderView::getEventTime).reversed());
+        return ResponseEntity.ok(orders.size() > bounded ? orders.subList(0, bounded) : orders);
+    }
+
+
+    // Each partition's store is sorted newest first, so take the head of every local partition
+    private List<OrderView> localRecentOrders(KafkaStreams streams, int limit) {
+        List<OrderView> orders = new ArrayList<>();
+
+        for (ThreadMetadata thread : streams.metadataForLocalThreads()) {
+            for (TaskMetadata task : thread.activeTasks()) {
+                for (TopicPartition partition : task.topicPartitions()) {
+                    if (!KafkaStreamsConfig.ORDERS_TOPIC.equals(partition.topic())) {
+                        continue;
+                    }
+
+                    ReadOnlyKeyValueStore<String, Order> store = streams.store(
+                            StoreQueryParameters.fromNameAndType(
+                                            KafkaStreamsConfig.RECENT_ORDERS_STORE,
+                                            QueryableStoreTypes.<String, Order>keyValueStore())
+                                    .withPartition(partition.partition()));
+
+                    try (KeyValueIterator<String, Order> iterator = store.all()) {
+                        for (int i = 0; i < limit && iterator.hasNext(); i++) {
+                            orders.add(OrderView.from(iterator.next().value));
+                        }
+                    }
+                }
+            }
+        }
+        return orders;
+    }
+
+
+    private ResponseEntity<OrderView> forwardGet(HostInfo owner, String orderId) {
+        try {
+            OrderView order = restClient.get()
+                    .uri("http://{host}:{port}/api/views/orders/{orderId}?local=true",
+                            owner.host(), owner.port(), orderId)
+                    .retrieve()
+                    .body(OrderView.class);
+            return ResponseEntity.ok(order);
+        } catch (HttpClientErrorException.NotFound e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+
+    private List<OrderView> forwardRecent(HostInfo instance, int limit) {
+        try {
+            List<OrderView> orders = restClient.get()
+                    .uri("http://{host}:{port}/api/views/orders/recent?limit={limit}&local=true",
+                            instance.host(), instance.port(), limit)
+                    .retrieve()
+                    .body(new ParameterizedTypeReference<List<OrderView>>() {});
+            return orders != null ? orders : List.of();
+        } catch (Exception e) {
+            log.warn("Recent orders from {} unavailable: {}", instance, e.getMessage());
+            return List.of();
+        }
+    }
+
+
+    private KafkaStreams getStreams() {
+        KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+
+        if (streams == null) {
+            throw new IllegalStateException("KafkaStreams is not initialized");
+        }
+        return streams;
+    }
+
+
+    // not started yet, or stores migrating during a rebalance
+    @ExceptionHandler({IllegalStateException.class, InvalidStateStoreException.class})
+    public ResponseEntity<Void> handleUnavailable(RuntimeException e) {
+        log.warn("Order view unavailable: {}", e.getMessage());
+        return ResponseEntity.status(503).build();
+    }
+}
@@ -0,0 +1,32 @@
+package com.bigdata.order_aggregation_service.model;
+
+import com.bigdata.schema.Order;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * JSON shape of an order served from the orders-by-id / recent-orders views.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderView {
+
+    private String orderId;
+    private String product;
+    private float price;
+    private long eventTime;
+
+
+    public static OrderView from(Order order) {
+        return OrderView.builder()
+                .orderId(order.getOrderId().toString())
+                .product(order.getProduct().toString())
+                .price(order.getPrice())
+                .eventTime(order.getEventTime())
+                .build();
+    }
+}
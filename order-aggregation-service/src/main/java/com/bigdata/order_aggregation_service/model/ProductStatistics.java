@@ -7,7 +7,7 @@ import lombok.NoArgsConstructor;
 
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ProductStatistics {
@@ -21,7 +21,7 @@ public class ProductStatistics {
     private long lastUpdated;
 
 
-    public ProductStatistics update(float newPrice) {
+    public ProductStatistics update(float newPrice, long eventTime) {
         this.orderCount++;
         this.totalRevenue += newPrice;
         this.averagePrice = this.totalRevenue / this.orderCount;
@@ -34,8 +34,49 @@ public class ProductStatistics {
             this.maxPrice = newPrice;
         }
 
-        this.lastUpdated = System.currentTimeMillis();
+        // event time, not wall clock: a replayed order must not look fresh
+        if (eventTime > this.lastUpdated) {
+            this.lastUpdated = eventTime;
+        }
+
+        return this;
+    }
+
+
+    public ProductStatistics merge(ProductStatistics partial) {
+        if (partial == null || partial.orderCount == 0) {
+            return this;
+        }
+
+        this.orderCount += partial.orderCount;
+        this.totalRevenue += partial.totalRevenue;
+        this.averagePrice = this.totalRevenue / this.orderCount;
+
+        if (this.minPrice == 0 || (partial.minPrice != 0 && partial.minPrice < this.minPrice)) {
+            this.minPrice = partial.minPrice;
+        }
+
+        if (partial.maxPrice > this.maxPrice) {
+            this.maxPrice = partial.maxPrice;
+        }
+
+        this.lastUpdated = Math.max(this.lastUpdated, partial.lastUpdated);
+
+        return this;
+    }
+
+
+    // min/max cannot be taken back out, but partials only ever grow, so the
+    // replacement partial that follows a subtract carries bounds at least as wide
+    public ProductStatistics subtract(ProductStatistics partial) {
+        if (partial == null || partial.orderCount == 0) {
+            return this;
+        }
+
+        this.orderCount -= partial.orderCount;
+        this.totalRevenue -= partial.totalRevenue;
+        this.averagePrice = this.orderCount > 0 ? this.totalRevenue / this.orderCount : 0.0;
 
         return this;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import com.bigdata.schema.Order;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+
+/**
+ * Stamps the extracted record timestamp onto orders that carry no eventTime,
+ * so aggregators can rely on {@link Order#getEventTime()} for every order.
+ */
+public class EventTimeNormalizer implements FixedKeyProcessor<String, Order, Order> {
+
+    private FixedKeyProcessorContext<String, Order> context;
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, Order> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, Order> record) {
+        Order order = record.value();
+        if (order != null && order.getEventTime() <= 0) {
+            order.setEventTime(record.timestamp());
+        }
+        context.forward(record);
+    }
+}
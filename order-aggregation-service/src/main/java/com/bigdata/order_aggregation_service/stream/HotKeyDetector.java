@@ -0,0 +1,76 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Decides which products are "hot" and should be salted across several sub-keys.
+ *
+ * Products listed in configuration are always hot. When a per-second threshold is
+ * set, any product that reached it during the previous one-second interval is hot
+ * for the current one. The decision does not need to be consistent across stream
+ * threads or instances: the merge phase sums every sub-key of a product, salted or not.
+ */
+@Slf4j
+public class HotKeyDetector {
+
+    private static final long INTERVAL_MS = 1000L;
+
+    private final Set<String> configuredHotKeys;
+    private final long thresholdPerSecond;
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+    private volatile Set<String> detectedHotKeys = Set.of();
+    private volatile long intervalStart = System.currentTimeMillis();
+
+    public HotKeyDetector(Collection<String> configuredHotKeys, long thresholdPerSecond) {
+        this.configuredHotKeys = configuredHotKeys.stream()
+                .map(String::trim)
+                .filter(key -> !key.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.thresholdPerSecond = thresholdPerSecond;
+    }
+
+    public boolean isHot(String key) {
+        if (configuredHotKeys.contains(key)) {
+            return true;
+        }
+        if (thresholdPerSecond <= 0) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - intervalStart >= INTERVAL_MS) {
+            rollInterval(now);
+        }
+
+        counts.computeIfAbsent(key, k -> new LongAdder()).increment();
+        return detectedHotKeys.contains(key);
+    }
+
+    private synchronized void rollInterval(long now) {
+        if (now - intervalStart < INTERVAL_MS) {
+            return;
+        }
+
+        long threshold = thresholdPerSecond * (now - intervalStart) / INTERVAL_MS;
+        Set<String> hot = counts.entrySet().stream()
+                .filter(entry -> entry.getValue().sum() >= threshold)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toUnmodifiableSet());
+
+        if (!hot.equals(detectedHotKeys)) {
+            log.info("🔥 Hot products changed: {} -> {}", detectedHotKeys, hot);
+        }
+
+        detectedHotKeys = hot;
+        counts.clear();
+        intervalStart = now;
+    }
+}
@@ -0,0 +1,46 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import com.bigdata.schema.Order;
+import io.micrometer.core.instrument.Counter;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+
+import java.time.Duration;
+
+/**
+ * Counts the orders a tumbling-window aggregation right after it will drop as
+ * late, without dropping anything itself. It sits in the aggregation's task and
+ * sees the same records, so it tracks the same stream time: an order is late
+ * when its window ended at or before stream time minus grace.
+ */
+public class LateOrderCounter implements FixedKeyProcessor<String, Order, Order> {
+
+    private final long windowSizeMs;
+    private final long graceMs;
+    private final Counter late;
+    private FixedKeyProcessorContext<String, Order> context;
+    private long observedStreamTime = -1;
+
+    public LateOrderCounter(Duration windowSize, Duration grace, Counter late) {
+        this.windowSizeMs = windowSize.toMillis();
+        this.graceMs = grace.toMillis();
+        this.late = late;
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, Order> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, Order> record) {
+        long timestamp = record.timestamp();
+        observedStreamTime = Math.max(observedStreamTime, timestamp);
+        long windowEnd = timestamp - Math.floorMod(timestamp, windowSizeMs) + windowSizeMs;
+        if (windowEnd <= observedStreamTime - graceMs) {
+            late.increment();
+        }
+        context.forward(record);
+    }
+}
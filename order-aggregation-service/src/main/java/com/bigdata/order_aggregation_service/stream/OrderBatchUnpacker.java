@@ -0,0 +1,50 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import com.bigdata.schema.Order;
+import com.bigdata.schema.OrderBatch;
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+
+/**
+ * Turns an OrderBatch record into one record per order, keyed by orderId and
+ * stamped with the order's eventTime - what the orders topic would have carried
+ * for it. The producer puts a batch on the partition its orders' keys hash to,
+ * so the re-keyed orders stay co-partitioned with the orders topic.
+ *
+ * An order without an orderId or product is counted and skipped; the other
+ * orders of its batch go on.
+ */
+@Slf4j
+public class OrderBatchUnpacker implements Processor<String, OrderBatch, String, Order> {
+
+    private final Counter skipped;
+    private ProcessorContext<String, Order> context;
+
+    public OrderBatchUnpacker(Counter skipped) {
+        this.skipped = skipped;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, Order> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void process(Record<String, OrderBatch> record) {
+        if (record.value() == null) {
+            return;
+        }
+        for (Order order : record.value().getOrders()) {
+            if (order.getOrderId().isEmpty() || order.getProduct().isEmpty()) {
+                skipped.increment();
+                log.warn("Skipping order without orderId/product in batch {}: {}", record.key(), order);
+                continue;
+            }
+            long timestamp = order.getEventTime() > 0 ? order.getEventTime() : record.timestamp();
+            context.forward(record.withKey(order.getOrderId().toString()).withValue(order).withTimestamp(timestamp));
+        }
+    }
+}
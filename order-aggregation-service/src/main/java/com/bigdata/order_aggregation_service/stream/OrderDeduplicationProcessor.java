@@ -0,0 +1,122 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import com.bigdata.schema.Order;
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+
+import java.time.Duration;
+
+/**
+ * Drops orders whose orderId was already seen within the retention period.
+ *
+ * The window store (keyed by orderId) is the source of truth; two rotating bloom
+ * filters sit in front of it so that the common case - a brand new orderId - never
+ * touches the store for a lookup. Each filter generation spans one retention period
+ * of stream time and the previous generation is kept, so the filters always cover
+ * at least everything the store still retains.
+ */
+@Slf4j
+public class OrderDeduplicationProcessor implements FixedKeyProcessor<String, Order, Order> {
+
+    private final String storeName;
+    private final long retentionMs;
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private final Counter droppedDuplicates;
+
+    private FixedKeyProcessorContext<String, Order> context;
+    private WindowStore<String, Long> store;
+
+    private BloomFilter currentFilter;
+    private BloomFilter previousFilter;
+    private long generationStart = -1L;
+    private long streamTime = -1L;
+
+    public OrderDeduplicationProcessor(String storeName, Duration retention,
+                                       int expectedInsertions, double falsePositiveRate,
+                                       Counter droppedDuplicates) {
+        this.storeName = storeName;
+        this.retentionMs = retention.toMillis();
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.droppedDuplicates = droppedDuplicates;
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, Order> context) {
+        this.context = context;
+        this.store = context.getStateStore(storeName);
+        this.currentFilter = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.previousFilter = new BloomFilter(expectedInsertions, falsePositiveRate);
+
+        // Restored store content must be visible to the pre-filter, otherwise a
+        // restart would let every duplicate through until the store was hit again.
+        int warmed = 0;
+        try (KeyValueIterator<Windowed<String>, Long> iterator = store.all()) {
+            while (iterator.hasNext()) {
+                KeyValue<Windowed<String>, Long> entry = iterator.next();
+                currentFilter.put(entry.key.key());
+                streamTime = Math.max(streamTime, entry.key.window().start());
+                warmed++;
+            }
+        }
+        generationStart = streamTime;
+
+        if (warmed > 0) {
+            log.info("Dedup filter warmed from {} with {} orderIds", storeName, warmed);
+        }
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, Order> record) {
+        Order order = record.value();
+        if (order == null) {
+            return;
+        }
+
+        String orderId = order.getOrderId().toString();
+        long timestamp = record.timestamp();
+        advanceStreamTime(timestamp);
+
+        if ((currentFilter.mightContain(orderId) || previousFilter.mightContain(orderId))
+                && seenWithinRetention(orderId, timestamp)) {
+            droppedDuplicates.increment();
+            log.debug("Dropping duplicate order {}", orderId);
+            return;
+        }
+
+        store.put(orderId, timestamp, timestamp);
+        currentFilter.put(orderId);
+        context.forward(record);
+    }
+
+    private boolean seenWithinRetention(String orderId, long timestamp) {
+        try (WindowStoreIterator<Long> iterator =
+                     store.fetch(orderId, Math.max(0L, timestamp - retentionMs), timestamp + retentionMs)) {
+            return iterator.hasNext();
+        }
+    }
+
+    private void advanceStreamTime(long timestamp) {
+        if (timestamp <= streamTime) {
+            return;
+        }
+        streamTime = timestamp;
+
+        if (generationStart < 0) {
+            generationStart = streamTime;
+        } else if (streamTime - generationStart >= retentionMs) {
+            previousFilter = currentFilter;
+            currentFilter = new BloomFilter(expectedInsertions, falsePositiveRate);
+            generationStart = streamTime;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import com.bigdata.schema.Order;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.streams.processor.TimestampExtractor;
+
+/**
+ * Uses the order's own eventTime as the stream timestamp, so replays and
+ * catch-up land in the windows the orders were placed in rather than "now".
+ * Orders produced before eventTime existed fall back to the record timestamp.
+ */
+public class OrderTimestampExtractor implements TimestampExtractor {
+
+    @Override
+    public long extract(ConsumerRecord<Object, Object> record, long partitionTime) {
+        if (record.value() instanceof Order order && order.getEventTime() > 0) {
+            return order.getEventTime();
+        }
+        if (record.timestamp() >= 0) {
+            return record.timestamp();
+        }
+        return Math.max(partitionTime, 0L);
+    }
+}
@@ -0,0 +1,102 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import com.bigdata.schema.Order;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintains the queryable order views: orders-by-id (orderId -> order) and
+ * recent-orders, whose keys sort newest first so a listing is a prefix scan.
+ *
+ * Both stores only hold orders whose event time is within the retention period;
+ * a wall-clock punctuation walks recent-orders from its oldest end and removes
+ * expired orders from both stores. Older orders are served from Postgres.
+ */
+public class OrderViewProcessor implements FixedKeyProcessor<String, Order, Order> {
+
+    private static final char KEY_SEPARATOR = '#';
+
+    private final String byIdStoreName;
+    private final String recentStoreName;
+    private final long retentionMs;
+    private final Duration expiryInterval;
+
+    private KeyValueStore<String, Order> byId;
+    private KeyValueStore<String, Order> recent;
+
+    public OrderViewProcessor(String byIdStoreName, String recentStoreName,
+                              Duration retention, Duration expiryInterval) {
+        this.byIdStoreName = byIdStoreName;
+        this.recentStoreName = recentStoreName;
+        this.retentionMs = retention.toMillis();
+        this.expiryInterval = expiryInterval;
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, Order> context) {
+        this.byId = context.getStateStore(byIdStoreName);
+        this.recent = context.getStateStore(recentStoreName);
+        context.schedule(expiryInterval, PunctuationType.WALL_CLOCK_TIME, this::expire);
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, Order> record) {
+        Order order = record.value();
+        if (order == null) {
+            return;
+        }
+
+        String orderId = order.getOrderId().toString();
+        Order previous = byId.get(orderId);
+        if (previous != null) {
+            recent.delete(recentKey(previous.getEventTime(), orderId));
+        }
+
+        byId.put(orderId, order);
+        recent.put(recentKey(order.getEventTime(), orderId), order);
+    }
+
+    private void expire(long now) {
+        long cutoff = now - retentionMs;
+
+        List<KeyValue<String, Order>> expired = new ArrayList<>();
+        try (KeyValueIterator<String, Order> oldestFirst = recent.reverseAll()) {
+            while (oldestFirst.hasNext()) {
+                KeyValue<String, Order> entry = oldestFirst.next();
+                if (entry.value.getEventTime() >= cutoff) {
+                    break;
+                }
+                expired.add(entry);
+            }
+        }
+
+        for (KeyValue<String, Order> entry : expired) {
+            recent.delete(entry.key);
+
+            String orderId = entry.value.getOrderId().toString();
+            Order current = byId.get(orderId);
+            if (current != null && current.getEventTime() == entry.value.getEventTime()) {
+                byId.delete(orderId);
+            }
+        }
+    }
+
+    // Inverted, zero-padded event time: ascending key order is newest first
+    public static String recentKey(long eventTime, String orderId) {
+        String inverted = Long.toString(Long.MAX_VALUE - eventTime);
+        StringBuilder key = new StringBuilder(19 + 1 + orderId.length());
+        for (int i = inverted.length(); i < 19; i++) {
+            key.append('0');
+        }
+        return key.append(inverted).append(KEY_SEPARATOR).append(orderId).toString();
+    }
+}
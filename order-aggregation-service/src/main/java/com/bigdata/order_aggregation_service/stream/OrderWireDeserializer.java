@@ -0,0 +1,50 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import com.bigdata.codec.OrderCodec;
+import com.bigdata.schema.Order;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * Reads the orders topic in either wire format: Order records as they are, and
+ * CompactOrder records expanded through the product dictionary. A compact order
+ * written with a newer dictionary than this service has fails to deserialize,
+ * which stops the stream rather than dropping it from the statistics - roll out
+ * a new dictionary here before the producer.
+ */
+public class OrderWireDeserializer implements Deserializer<Order> {
+
+    private final Deserializer<SpecificRecord> avro;
+    private final OrderCodec codec;
+
+    public OrderWireDeserializer(Deserializer<SpecificRecord> avro, OrderCodec codec) {
+        this.avro = avro;
+        this.codec = codec;
+    }
+
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        avro.configure(configs, isKey);
+    }
+
+
+    @Override
+    public Order deserialize(String topic, byte[] data) {
+        SpecificRecord value = avro.deserialize(topic, data);
+        try {
+            return (Order) codec.decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Cannot expand compact order from " + topic + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    @Override
+    public void close() {
+        avro.close();
+    }
+}
@@ -0,0 +1,281 @@
+package com.bigdata.order_aggregation_service.benchmark;
+
+import com.bigdata.order_aggregation_service.config.KafkaStreamsConfig;
+import com.bigdata.order_aggregation_service.model.ProductStatistics;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.bigdata.schema.Order;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the real {@link KafkaStreamsConfig} topology through a TopologyTestDriver
+ * with synthetic order streams and reports records/sec, allocated bytes per record
+ * and state-store sizes. Run with {@code mvn test -Pbenchmark}; the record count is
+ * tunable with {@code -Dbenchmark.records=...}.
+ *
+ * Stores are in-memory by default: the test driver commits after every record, and
+ * with RocksDB each commit flushes a memtable to disk, which would measure the driver
+ * rather than the topology. {@code -Dbenchmark.rocksdb=true} switches to RocksDB.
+ */
+@Tag("benchmark")
+class AggregationTopologyBenchmarkTest {
+
+    private static final String SCHEMA_REGISTRY_SCOPE = "topology-benchmark";
+    private static final String SCHEMA_REGISTRY_URL = "mock://" + SCHEMA_REGISTRY_SCOPE;
+
+    private static final int RECORDS = Integer.getInteger("benchmark.records", 100_000);
+    private static final int WARMUP_RECORDS = Math.max(1, RECORDS / 10);
+    private static final boolean ROCKSDB = Boolean.getBoolean("benchmark.rocksdb");
+    private static final int PRODUCTS = 50;
+    private static final double DUPLICATE_RATE = 0.05;
+    private static final int DUPLICATE_LOOKBACK = 10_000;
+    private static final long BASE_EVENT_TIME = 1_700_000_000_000L;
+
+    enum Distribution {
+        UNIFORM,
+        ZIPF,
+        SINGLE_HOT
+    }
+
+    // per-order INFO logging would dominate the measurement; there is no Spring context here to configure it
+    @BeforeAll
+    static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    @AfterEach
+    void dropSchemaRegistryScope() {
+        MockSchemaRegistry.dropScope(SCHEMA_REGISTRY_SCOPE);
+    }
+
+    static Stream<Arguments> scenarios() {
+        return Stream.of(
+                Arguments.of(Distribution.UNIFORM, false),
+                Arguments.of(Distribution.ZIPF, false),
+                Arguments.of(Distribution.SINGLE_HOT, false),
+                Arguments.of(Distribution.ZIPF, true),
+                Arguments.of(Distribution.SINGLE_HOT, true)
+        );
+    }
+
+    @ParameterizedTest(name = "{0} salting={1}")
+    @MethodSource("scenarios")
+    void topologyThroughput(Distribution distribution, boolean salting, @TempDir Path stateDir) throws Exception {
+        List<KeyValue<String, byte[]>> warmup = generateOrders(distribution, WARMUP_RECORDS, 7L, "warmup-", 0);
+        List<KeyValue<String, byte[]>> measured = generateOrders(distribution, RECORDS, 42L, "order-", WARMUP_RECORDS);
+        long uniqueOrders = measured.stream().map(kv -> kv.key).distinct().count()
+                + warmup.stream().map(kv -> kv.key).distinct().count();
+
+        StreamsBuilder builder = new StreamsBuilder();
+        KafkaStreamsConfig config = benchmarkConfig(salting);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        KStream<String, Order> orders = config.ordersStream(builder, meterRegistry);
+        config.productStatisticsTable(orders);
+        config.windowedStatistics(orders, meterRegistry);
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(builder.build(), streamsProperties(stateDir))) {
+            TestInputTopic<String, byte[]> input = driver.createInputTopic(
+                    KafkaStreamsConfig.ORDERS_TOPIC, new StringSerializer(), new ByteArraySerializer());
+
+            input.pipeRecordList(toTestRecords(warmup));
+
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+
+            input.pipeRecordList(toTestRecords(measured));
+
+            long elapsedNanos = System.nanoTime() - start;
+            long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+            KeyValueStore<String, ProductStatistics> statsStore =
+                    driver.getKeyValueStore(KafkaStreamsConfig.PRODUCT_STATS_STORE);
+
+            long aggregatedOrders = 0;
+            try (KeyValueIterator<String, ProductStatistics> iterator = statsStore.all()) {
+                while (iterator.hasNext()) {
+                    aggregatedOrders += iterator.next().value.getOrderCount();
+                }
+            }
+
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            System.out.printf("%n=== Topology benchmark | %s | salting=%s | %s stores ===%n",
+                    distribution, salting, ROCKSDB ? "rocksdb" : "in-memory");
+            System.out.printf("records:            %,d (%,d warmup)%n", measured.size(), warmup.size());
+            System.out.printf("throughput:         %,.0f records/sec%n", measured.size() / seconds);
+            System.out.printf("allocation:         %,.0f bytes/record (%,.1f MB/sec)%n",
+                    (double) allocated / measured.size(), allocated / seconds / (1024 * 1024));
+            System.out.printf("%-40s %,d entries%n", KafkaStreamsConfig.PRODUCT_STATS_STORE + ":",
+                    statsStore.approximateNumEntries());
+            if (salting) {
+                KeyValueStore<String, ProductStatistics> partialStore =
+                        driver.getKeyValueStore(KafkaStreamsConfig.PARTIAL_STATS_STORE);
+                System.out.printf("%-40s %,d entries%n", KafkaStreamsConfig.PARTIAL_STATS_STORE + ":",
+                        partialStore.approximateNumEntries());
+            }
+            System.out.printf("%-40s %,d entries%n", KafkaStreamsConfig.WINDOWED_STATS_STORE + ":",
+                    countWindows(driver.getWindowStore(KafkaStreamsConfig.WINDOWED_STATS_STORE)));
+            System.out.printf("%-40s %,d entries%n", KafkaStreamsConfig.DEDUP_STORE + ":",
+                    countWindows(driver.getWindowStore(KafkaStreamsConfig.DEDUP_STORE)));
+            System.out.printf("%-40s %,d entries%n", KafkaStreamsConfig.ORDERS_BY_ID_STORE + ":",
+                    driver.getKeyValueStore(KafkaStreamsConfig.ORDERS_BY_ID_STORE).approximateNumEntries());
+            System.out.printf("%-40s %,d bytes on disk%n", "state directory:", directorySize(stateDir));
+
+            assertEquals(uniqueOrders, aggregatedOrders,
+                    "every unique order must be counted exactly once");
+        }
+    }
+
+    private KafkaStreamsConfig benchmarkConfig(boolean salting) {
+        KafkaStreamsConfig config = new KafkaStreamsConfig();
+        ReflectionTestUtils.setField(config, "schemaRegistryUrl", SCHEMA_REGISTRY_URL);
+        ReflectionTestUtils.setField(config, "dedupEnabled", true);
+        ReflectionTestUtils.setField(config, "dedupRetentionMinutes", 60L);
+        ReflectionTestUtils.setField(config, "dedupExpectedInsertions", RECORDS);
+        ReflectionTestUtils.setField(config, "dedupFalsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(config, "saltingEnabled", salting);
+        ReflectionTestUtils.setField(config, "saltBuckets", 8);
+        ReflectionTestUtils.setField(config, "hotProducts", List.of());
+        ReflectionTestUtils.setField(config, "hotProductThresholdPerSecond", 1_000L);
+        ReflectionTestUtils.setField(config, "windowGraceSeconds", 30L);
+        ReflectionTestUtils.setField(config, "windowRetentionMinutes", 5L);
+        ReflectionTestUtils.setField(config, "inMemoryState", !ROCKSDB);
+        ReflectionTestUtils.setField(config, "orderViewRetentionMinutes", 1440L);
+        return config;
+    }
+
+    private Properties streamsProperties(Path stateDir) {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "order-aggregation-benchmark");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "benchmark:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        props.put(AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, SCHEMA_REGISTRY_URL);
+        return props;
+    }
+
+    // Orders are serialized up front so the measured section is the topology alone.
+    // one order per millisecond of event time; duplicates re-send a recent order, as retries do
+    private List<KeyValue<String, byte[]>> generateOrders(Distribution distribution, int count, long seed,
+                                                         String idPrefix, long eventTimeOffset) {
+        KafkaAvroSerializer serializer = new KafkaAvroSerializer();
+        serializer.configure(Map.of(
+                AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, SCHEMA_REGISTRY_URL), false);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] zipfCdf = zipfCdf(PRODUCTS, 1.2);
+        List<KeyValue<String, byte[]>> orders = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            boolean duplicate = i > 0 && random.nextDouble() < DUPLICATE_RATE;
+            int sequence = duplicate ? i - 1 - random.nextInt(Math.min(i, DUPLICATE_LOOKBACK)) : i;
+            String orderId = idPrefix + sequence;
+
+            Order order = Order.newBuilder()
+                    .setOrderId(orderId)
+                    .setProduct("Item-" + pickProduct(distribution, zipfCdf, sequence))
+                    .setPrice(1 + (sequence % 1000))
+                    .setEventTime(BASE_EVENT_TIME + eventTimeOffset + sequence)
+                    .build();
+
+            orders.add(KeyValue.pair(orderId, serializer.serialize(KafkaStreamsConfig.ORDERS_TOPIC, order)));
+        }
+        return orders;
+    }
+
+    // duplicates keep the product of the original order so they are true copies
+    private int pickProduct(Distribution distribution, double[] zipfCdf, int sequence) {
+        SplittableRandom productRandom = new SplittableRandom(sequence);
+        return switch (distribution) {
+            case UNIFORM -> 1 + productRandom.nextInt(PRODUCTS);
+            case ZIPF -> {
+                double u = productRandom.nextDouble();
+                int product = 0;
+                while (product < zipfCdf.length - 1 && zipfCdf[product] < u) {
+                    product++;
+                }
+                yield product + 1;
+            }
+            case SINGLE_HOT -> productRandom.nextDouble() < 0.9 ? 1 : 2 + productRandom.nextInt(PRODUCTS - 1);
+        };
+    }
+
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static List<TestRecord<String, byte[]>> toTestRecords(List<KeyValue<String, byte[]>> orders) {
+        List<TestRecord<String, byte[]>> records = new ArrayList<>(orders.size());
+        Instant recordTime = Instant.ofEpochMilli(BASE_EVENT_TIME);
+        for (KeyValue<String, byte[]> order : orders) {
+            records.add(new TestRecord<>(order.key, order.value, recordTime));
+        }
+        return records;
+    }
+
+    private static <V> long countWindows(WindowStore<String, V> store) {
+        long count = 0;
+        try (KeyValueIterator<Windowed<String>, V> iterator = store.all()) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long directorySize(Path dir) throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .mapToLong(file -> file.toFile().length())
+                    .sum();
+        }
+    }
+}
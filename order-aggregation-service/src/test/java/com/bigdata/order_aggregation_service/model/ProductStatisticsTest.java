@@ -0,0 +1,81 @@
+package com.bigdata.order_aggregation_service.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductStatisticsTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    void mergeAddsThePartialAndWidensTheBounds() {
+        ProductStatistics stats = empty().update(10f, T0).update(20f, T0 + 5);
+        ProductStatistics partial = empty().update(5f, T0 + 2).update(40f, T0 + 9);
+
+        stats.merge(partial);
+
+        assertThat(stats.getOrderCount()).isEqualTo(4);
+        assertThat(stats.getTotalRevenue()).isEqualTo(75.0);
+        assertThat(stats.getAveragePrice()).isEqualTo(18.75);
+        assertThat(stats.getMinPrice()).isEqualTo(5f);
+        assertThat(stats.getMaxPrice()).isEqualTo(40f);
+        assertThat(stats.getLastUpdated()).isEqualTo(T0 + 9);
+    }
+
+    @Test
+    void mergeIntoEmptyStatisticsTakesThePartialsBounds() {
+        ProductStatistics stats = empty();
+
+        stats.merge(empty().update(7f, T0));
+
+        assertThat(stats.getOrderCount()).isEqualTo(1);
+        assertThat(stats.getMinPrice()).isEqualTo(7f);
+        assertThat(stats.getMaxPrice()).isEqualTo(7f);
+        assertThat(stats.getLastUpdated()).isEqualTo(T0);
+    }
+
+    @Test
+    void mergeIgnoresAnEmptyPartial() {
+        ProductStatistics stats = empty().update(10f, T0);
+
+        stats.merge(empty());
+        stats.merge(null);
+
+        // an empty partial's min of 0 means unset, it must not become the minimum
+        assertThat(stats.getOrderCount()).isEqualTo(1);
+        assertThat(stats.getMinPrice()).isEqualTo(10f);
+        assertThat(stats.getAveragePrice()).isEqualTo(10.0);
+    }
+
+    @Test
+    void subtractThenMergeOfTheGrownPartialCountsItOnce() {
+        ProductStatistics old = empty().update(10f, T0);
+        ProductStatistics grown = old.toBuilder().build().update(30f, T0 + 1);
+        ProductStatistics stats = empty().update(4f, T0).merge(old);
+
+        stats.subtract(old).merge(grown);
+
+        assertThat(stats.getOrderCount()).isEqualTo(3);
+        assertThat(stats.getTotalRevenue()).isEqualTo(44.0);
+        assertThat(stats.getAveragePrice()).isEqualTo(44.0 / 3);
+        assertThat(stats.getMinPrice()).isEqualTo(4f);
+        assertThat(stats.getMaxPrice()).isEqualTo(30f);
+    }
+
+    @Test
+    void subtractingEverythingLeavesAZeroAverage() {
+        ProductStatistics partial = empty().update(10f, T0);
+        ProductStatistics stats = empty().merge(partial);
+
+        stats.subtract(partial);
+
+        assertThat(stats.getOrderCount()).isZero();
+        assertThat(stats.getTotalRevenue()).isZero();
+        assertThat(stats.getAveragePrice()).isZero();
+    }
+
+    private static ProductStatistics empty() {
+        return ProductStatistics.builder().product("Item-1").build();
+    }
+}
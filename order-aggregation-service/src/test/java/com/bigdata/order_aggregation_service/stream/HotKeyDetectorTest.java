@@ -0,0 +1,28 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyDetectorTest {
+
+    @Test
+    void configuredKeysAreAlwaysHot() {
+        HotKeyDetector detector = new HotKeyDetector(List.of(" Item-1 ", ""), 0);
+
+        assertThat(detector.isHot("Item-1")).isTrue();
+        assertThat(detector.isHot("Item-2")).isFalse();
+        assertThat(detector.isHot("")).isFalse();
+    }
+
+    @Test
+    void aKeyIsNotHotBeforeAFullIntervalWasCounted() {
+        HotKeyDetector detector = new HotKeyDetector(List.of(), 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(detector.isHot("Item-1")).isFalse();
+        }
+    }
+}
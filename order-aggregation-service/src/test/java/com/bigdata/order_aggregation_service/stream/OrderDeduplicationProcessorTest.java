@@ -0,0 +1,194 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import com.bigdata.schema.Order;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
+import io.confluent.kafka.streams.serdes.avro.SpecificAvroSerde;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.processor.api.InternalFixedKeyRecordFactory;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderDeduplicationProcessorTest {
+
+    private static final String SCHEMA_REGISTRY_SCOPE = "dedup-test";
+    private static final String SCHEMA_REGISTRY_URL = "mock://" + SCHEMA_REGISTRY_SCOPE;
+    private static final String STORE = "dedup-store";
+    private static final Duration RETENTION = Duration.ofMinutes(60);
+    private static final long R = RETENTION.toMillis();
+    private static final long T0 = 1_700_000_000_000L;
+
+    @TempDir
+    Path stateDir;
+
+    private final Counter dropped = Counter.builder("dropped").register(new SimpleMeterRegistry());
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, Order> input;
+    private TestOutputTopic<String, Order> output;
+
+    @BeforeEach
+    void startTopology() {
+        SpecificAvroSerde<Order> orderSerde = new SpecificAvroSerde<>();
+        orderSerde.configure(Map.of(AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, SCHEMA_REGISTRY_URL), false);
+
+        StreamsBuilder builder = new StreamsBuilder();
+        builder.addStateStore(Stores.windowStoreBuilder(
+                Stores.inMemoryWindowStore(STORE, RETENTION, RETENTION, false), Serdes.String(), Serdes.Long()));
+        builder.stream("orders", Consumed.with(Serdes.String(), orderSerde))
+                .processValues(() -> new OrderDeduplicationProcessor(STORE, RETENTION, 1000, 0.01, dropped), STORE)
+                .to("deduplicated", Produced.with(Serdes.String(), orderSerde));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "dedup-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dedup-test:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props);
+        input = driver.createInputTopic("orders", Serdes.String().serializer(), orderSerde.serializer());
+        output = driver.createOutputTopic("deduplicated", Serdes.String().deserializer(), orderSerde.deserializer());
+    }
+
+    @AfterEach
+    void stopTopology() {
+        driver.close();
+        MockSchemaRegistry.dropScope(SCHEMA_REGISTRY_SCOPE);
+    }
+
+    @Test
+    void dropsADuplicateWithinRetention() {
+        send("order-1", T0);
+        send("order-2", T0 + 1);
+        send("order-1", T0 + R - 1);
+
+        assertThat(forwardedIds()).containsExactly("order-1", "order-2");
+        assertThat(dropped.count()).isEqualTo(1);
+    }
+
+    @Test
+    void acceptsTheOrderIdAgainAfterRetention() {
+        send("order-1", T0);
+        send("order-1", T0 + R + 1);
+
+        assertThat(forwardedIds()).containsExactly("order-1", "order-1");
+        assertThat(dropped.count()).isZero();
+    }
+
+    @Test
+    void dropsADuplicateArrivingOutOfOrder() {
+        send("order-1", T0 + 10_000);
+        send("order-1", T0);
+
+        assertThat(forwardedIds()).containsExactly("order-1");
+    }
+
+    @Test
+    void previousFilterGenerationStillCatchesDuplicatesAfterRotation() {
+        send("order-0", T0);
+        send("order-1", T0 + R / 2);
+        // stream time moves a full retention on: the filter holding order-1 becomes the previous one
+        send("order-2", T0 + R);
+        send("order-1", T0 + R);
+
+        assertThat(forwardedIds()).containsExactly("order-0", "order-1", "order-2");
+        assertThat(dropped.count()).isEqualTo(1);
+    }
+
+    @Test
+    void acceptsAnOrderIdAgainOnceBothGenerationsHaveRotatedPast() {
+        send("order-1", T0);
+        send("order-2", T0 + R);
+        send("order-3", T0 + 2 * R);
+        send("order-1", T0 + 2 * R);
+
+        assertThat(forwardedIds()).containsExactly("order-1", "order-2", "order-3", "order-1");
+    }
+
+    @Test
+    void warmsTheFilterFromTheRestoredStore() {
+        // A restart restores the store but not the filters: init must reload them, or the
+        // filter's "never seen" would skip the store lookup and let the duplicate through
+        MockProcessorContext<String, Order> mockContext = new MockProcessorContext<>();
+        WindowStore<String, Long> store = Stores.windowStoreBuilder(
+                        Stores.inMemoryWindowStore(STORE, RETENTION, RETENTION, false), Serdes.String(), Serdes.Long())
+                .withLoggingDisabled()
+                .build();
+        store.init(mockContext.getStateStoreContext(), store);
+        store.put("order-1", T0, T0);
+
+        List<String> forwarded = new ArrayList<>();
+        OrderDeduplicationProcessor processor =
+                new OrderDeduplicationProcessor(STORE, RETENTION, 1000, 0.01, dropped);
+        processor.init(fixedKeyContext(store, forwarded));
+
+        processor.process(fixedKeyRecord("order-1", T0 + 1));
+        processor.process(fixedKeyRecord("order-2", T0 + 2));
+
+        assertThat(forwarded).containsExactly("order-2");
+        assertThat(dropped.count()).isEqualTo(1);
+        store.close();
+    }
+
+    private void send(String orderId, long timestamp) {
+        input.pipeInput(orderId, order(orderId, timestamp), timestamp);
+    }
+
+    private List<String> forwardedIds() {
+        return output.readValuesToList().stream().map(order -> order.getOrderId().toString()).toList();
+    }
+
+    private static Order order(String orderId, long timestamp) {
+        return Order.newBuilder()
+                .setOrderId(orderId)
+                .setProduct("Item-1")
+                .setPrice(10.0f)
+                .setEventTime(timestamp)
+                .build();
+    }
+
+    private static FixedKeyRecord<String, Order> fixedKeyRecord(String orderId, long timestamp) {
+        return InternalFixedKeyRecordFactory.create(new Record<>(orderId, order(orderId, timestamp), timestamp));
+    }
+
+    // Only the calls the processor makes: its store and forward
+    @SuppressWarnings("unchecked")
+    private static FixedKeyProcessorContext<String, Order> fixedKeyContext(WindowStore<String, Long> store,
+                                                                          List<String> forwarded) {
+        return (FixedKeyProcessorContext<String, Order>) Proxy.newProxyInstance(
+                FixedKeyProcessorContext.class.getClassLoader(),
+                new Class<?>[]{FixedKeyProcessorContext.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getStateStore" -> store;
+                    case "forward" -> {
+                        forwarded.add(((FixedKeyRecord<String, Order>) args[0]).key());
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,173 @@
+package com.bigdata.order_aggregation_service.stream;
+
+import com.bigdata.order_aggregation_service.config.KafkaStreamsConfig;
+import com.bigdata.order_aggregation_service.model.ProductStatistics;
+import com.bigdata.schema.Order;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The same orders through the direct and the salted product statistics: the
+ * merged store must match the unsalted one, whatever the split into sub-keys.
+ */
+class SaltedAggregationTest {
+
+    private static final String SCHEMA_REGISTRY_SCOPE = "salted-aggregation-test";
+    private static final String SCHEMA_REGISTRY_URL = "mock://" + SCHEMA_REGISTRY_SCOPE;
+    private static final long T0 = 1_700_000_000_000L;
+    private static final int BUCKETS = 4;
+
+    @TempDir
+    Path stateDir;
+
+    @AfterEach
+    void dropSchemaRegistryScope() {
+        MockSchemaRegistry.dropScope(SCHEMA_REGISTRY_SCOPE);
+    }
+
+    @Test
+    void saltedStatisticsMatchTheUnsaltedOnes() {
+        List<KeyValue<String, byte[]>> orders = orders();
+
+        Map<String, ProductStatistics> unsalted = run(false, orders, stateDir.resolve("unsalted"));
+        Map<String, ProductStatistics> salted = run(true, orders, stateDir.resolve("salted"));
+
+        assertThat(salted.keySet()).containsExactlyElementsOf(unsalted.keySet());
+        unsalted.forEach((product, expected) -> {
+            ProductStatistics actual = salted.get(product);
+            assertThat(actual.getProduct()).isEqualTo(product);
+            assertThat(actual.getOrderCount()).as(product).isEqualTo(expected.getOrderCount());
+            assertThat(actual.getTotalRevenue()).as(product).isEqualTo(expected.getTotalRevenue());
+            assertThat(actual.getAveragePrice()).as(product).isEqualTo(expected.getAveragePrice());
+            assertThat(actual.getMinPrice()).as(product).isEqualTo(expected.getMinPrice());
+            assertThat(actual.getMaxPrice()).as(product).isEqualTo(expected.getMaxPrice());
+            assertThat(actual.getLastUpdated()).as(product).isEqualTo(expected.getLastUpdated());
+        });
+        // 300 orders, less the 10 re-sent ones the dedup drops
+        assertThat(unsalted.values().stream().mapToLong(ProductStatistics::getOrderCount).sum()).isEqualTo(300);
+    }
+
+    @Test
+    void hotProductIsSpreadOverEverySubKey() {
+        try (TopologyTestDriver driver = driver(true, stateDir)) {
+            pipe(driver, orders());
+
+            KeyValueStore<String, ProductStatistics> partials =
+                    driver.getKeyValueStore(KafkaStreamsConfig.PARTIAL_STATS_STORE);
+            List<String> keys = new ArrayList<>();
+            try (KeyValueIterator<String, ProductStatistics> iterator = partials.all()) {
+                iterator.forEachRemaining(entry -> keys.add(entry.key));
+            }
+
+            assertThat(keys).containsExactlyInAnyOrder(
+                    "Item-1#0", "Item-1#1", "Item-1#2", "Item-1#3", "Item-2#0", "Item-3#0");
+        }
+    }
+
+    private Map<String, ProductStatistics> run(boolean salting, List<KeyValue<String, byte[]>> orders, Path dir) {
+        try (TopologyTestDriver driver = driver(salting, dir)) {
+            pipe(driver, orders);
+
+            KeyValueStore<String, ProductStatistics> store =
+                    driver.getKeyValueStore(KafkaStreamsConfig.PRODUCT_STATS_STORE);
+            Map<String, ProductStatistics> statistics = new TreeMap<>();
+            try (KeyValueIterator<String, ProductStatistics> iterator = store.all()) {
+                iterator.forEachRemaining(entry -> statistics.put(entry.key, entry.value));
+            }
+            return statistics;
+        }
+    }
+
+    private TopologyTestDriver driver(boolean salting, Path dir) {
+        KafkaStreamsConfig config = new KafkaStreamsConfig();
+        ReflectionTestUtils.setField(config, "schemaRegistryUrl", SCHEMA_REGISTRY_URL);
+        ReflectionTestUtils.setField(config, "dedupEnabled", true);
+        ReflectionTestUtils.setField(config, "dedupRetentionMinutes", 60L);
+        ReflectionTestUtils.setField(config, "dedupExpectedInsertions", 1000);
+        ReflectionTestUtils.setField(config, "dedupFalsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(config, "saltingEnabled", salting);
+        ReflectionTestUtils.setField(config, "saltBuckets", BUCKETS);
+        ReflectionTestUtils.setField(config, "hotProducts", List.of("Item-1"));
+        ReflectionTestUtils.setField(config, "hotProductThresholdPerSecond", 0L);
+        ReflectionTestUtils.setField(config, "windowGraceSeconds", 30L);
+        ReflectionTestUtils.setField(config, "windowRetentionMinutes", 5L);
+        ReflectionTestUtils.setField(config, "inMemoryState", true);
+        ReflectionTestUtils.setField(config, "orderViewRetentionMinutes", 1440L);
+
+        StreamsBuilder builder = new StreamsBuilder();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        KStream<String, Order> orders = config.ordersStream(builder, meterRegistry);
+        config.productStatisticsTable(orders);
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "salted-aggregation-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "salted-aggregation-test:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, dir.toString());
+        props.put(AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, SCHEMA_REGISTRY_URL);
+        return new TopologyTestDriver(builder.build(), props);
+    }
+
+    private static void pipe(TopologyTestDriver driver, List<KeyValue<String, byte[]>> orders) {
+        TestInputTopic<String, byte[]> input = driver.createInputTopic(
+                KafkaStreamsConfig.ORDERS_TOPIC, new StringSerializer(), new ByteArraySerializer());
+        for (KeyValue<String, byte[]> order : orders) {
+            input.pipeInput(order.key, order.value, Instant.ofEpochMilli(T0));
+        }
+    }
+
+    // Item-1 is hot and takes most orders; every 30th order is re-sent, as producer retries do
+    private static List<KeyValue<String, byte[]>> orders() {
+        KafkaAvroSerializer serializer = new KafkaAvroSerializer();
+        serializer.configure(Map.of(
+                AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, SCHEMA_REGISTRY_URL), false);
+
+        List<Order> sent = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            sent.add(order(i));
+            if (i % 30 == 29) {
+                sent.add(order(i - 7));
+            }
+        }
+        return sent.stream()
+                .map(order -> KeyValue.pair(order.getOrderId().toString(),
+                        serializer.serialize(KafkaStreamsConfig.ORDERS_TOPIC, order)))
+                .collect(Collectors.toList());
+    }
+
+    // prices are exact in binary, so the totals compare equal whatever order they are summed in
+    private static Order order(int i) {
+        return Order.newBuilder()
+                .setOrderId("order-" + i)
+                .setProduct(i % 5 == 3 ? "Item-2" : i % 5 == 4 ? "Item-3" : "Item-1")
+                .setPrice(0.25f + (i * 37 % 101))
+                .setEventTime(T0 + i)
+                .build();
+    }
+}
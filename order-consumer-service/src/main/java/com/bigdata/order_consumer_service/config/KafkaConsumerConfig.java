@@ -1,13 +1,14 @@
 package com.bigdata.order_consumer_service.config;
+import com.bigdata.order_consumer_service.listener.HybridRetryScheduler;
 import com.bigdata.schema.Order;
 import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
-import io.confluent.kafka.serializers.KafkaAvroDeserializer;
 import io.confluent.kafka.serializers.KafkaAvroDeserializerConfig;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
@@ -26,6 +27,17 @@ public class KafkaConsumerConfig {
     @Value("${spring.kafka.properties.schema.registry.url}")
     private String schemaRegistryUrl;
 
+    // ListenerAutoscaler raises it from here as lag builds up
+    @Value("${app.listener.autoscale.min-concurrency:1}")
+    private int minConcurrency;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Blank: the product dictionary bundled with avro-schemas
+    @Value("${app.products.dictionary.location:}")
+    private String dictionaryLocation;
+
     @Bean
     public Map<String, Object> consumerConfigs() {
         Map<String, Object> props = new HashMap<>();
@@ -34,8 +46,9 @@ public class KafkaConsumerConfig {
         props.put(AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, schemaRegistryUrl);
 
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KafkaAvroDeserializer.class);
-
+        // Full and compact (dictionary-encoded) orders
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, OrderWireDeserializer.class);
+        props.put(OrderWireDeserializer.DICTIONARY_LOCATION_CONFIG, dictionaryLocation);
 
         props.put(KafkaAvroDeserializerConfig.SPECIFIC_AVRO_READER_CONFIG, true);
 
@@ -54,16 +67,28 @@ public class KafkaConsumerConfig {
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, Order> kafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, Order> kafkaListenerContainerFactory(
+            HybridRetryScheduler retryScheduler) {
         ConcurrentKafkaListenerContainerFactory<String, Order> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(minConcurrency);
 
         // Enable manual acknowledgment
         factory.getContainerProperties().setAckMode(
                 org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL
         );
 
+        // Drops held-back acknowledgments of partitions this consumer no longer owns
+        factory.getContainerProperties().setConsumerRebalanceListener(retryScheduler);
+
+        // Our own factory, so Boot's virtual-thread setup does not reach the consumer threads
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor consumerThreads = new SimpleAsyncTaskExecutor("order-listener-");
+            consumerThreads.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(consumerThreads);
+        }
+
         return factory;
     }
 }
\ No newline at end of file
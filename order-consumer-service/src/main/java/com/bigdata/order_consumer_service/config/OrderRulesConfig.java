@@ -0,0 +1,53 @@
+package com.bigdata.order_consumer_service.config;
+
+import com.bigdata.rules.OrderRule;
+import com.bigdata.rules.OrderRules;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order rules checked by OrderListener. By default the rule file bundled with
+ * avro-schemas, the same one the producer checks before sending; point
+ * app.rules.location at another file to change them.
+ */
+@Configuration
+@Slf4j
+public class OrderRulesConfig {
+
+    @Bean
+    public OrderRules orderRules(MeterRegistry meterRegistry,
+                                 @Value("${app.rules.location:classpath:" + OrderRules.DEFAULT_RESOURCE + "}") Resource location)
+            throws IOException {
+        OrderRules rules;
+        try (Reader reader = new InputStreamReader(location.getInputStream(), StandardCharsets.UTF_8)) {
+            rules = OrderRules.parse(reader);
+        }
+
+        for (OrderRule rule : rules.rules()) {
+            FunctionCounter.builder("orders.rules.hits", rule, OrderRule::hits)
+                    .description("Orders rejected by the rule")
+                    .tag("stage", rule.stage().name())
+                    .tag("rule", rule.name())
+                    .register(meterRegistry);
+            FunctionTimer.builder("orders.rules.time", rule, OrderRule::samples, OrderRule::sampledNanos, TimeUnit.NANOSECONDS)
+                    .description("Sampled evaluation time of the rule")
+                    .tag("stage", rule.stage().name())
+                    .tag("rule", rule.name())
+                    .register(meterRegistry);
+        }
+        log.info(" Loaded {} order rules from {}", rules.rules().size(), location.getDescription());
+        return rules;
+    }
+}
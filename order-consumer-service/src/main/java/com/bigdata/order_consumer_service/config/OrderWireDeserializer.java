@@ -0,0 +1,51 @@
+package com.bigdata.order_consumer_service.config;
+
+import com.bigdata.codec.OrderCodec;
+import com.bigdata.codec.ProductDictionary;
+import io.confluent.kafka.serializers.KafkaAvroDeserializer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+
+/**
+ * KafkaAvroDeserializer that hands out CompactOrder records as the Order they
+ * encode, so listeners read both wire formats while producers migrate. Every
+ * other record (Order, OrderBatch) passes through unchanged. The dictionary is
+ * read from {@link #DICTIONARY_LOCATION_CONFIG}; a record written with a newer
+ * dictionary than this one fails to deserialize.
+ */
+@Slf4j
+public class OrderWireDeserializer implements Deserializer<Object> {
+
+    public static final String DICTIONARY_LOCATION_CONFIG = "order.dictionary.location";
+
+    private final KafkaAvroDeserializer avro = new KafkaAvroDeserializer();
+    private OrderCodec codec;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        avro.configure(configs, isKey);
+        Object location = configs.get(DICTIONARY_LOCATION_CONFIG);
+        codec = new OrderCodec(ProductDictionary.load(location != null ? location.toString() : null));
+        log.info(" Reading full and compact orders | dictionary version={}", codec.dictionary().version());
+    }
+
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        Object value = avro.deserialize(topic, data);
+        try {
+            return codec.decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Cannot expand compact order from " + topic + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    @Override
+    public void close() {
+        avro.close();
+    }
+}
@@ -0,0 +1,45 @@
+package com.bigdata.order_consumer_service.config;
+
+import com.bigdata.order_consumer_service.exception.PermanentProcessingException;
+import com.bigdata.order_consumer_service.exception.TemporaryProcessingException;
+import com.bigdata.order_consumer_service.listener.OrderListener;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.retrytopic.DeadLetterPublishingRecovererFactory;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationSupport;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Global settings for the @RetryableTopic chain of OrderListener. Every record
+ * forwarded to a retry topic or the DLT carries the failure type and category as
+ * headers, so the DLT handler does not have to parse them out of the message.
+ */
+@Configuration
+public class RetryTopicConfig extends RetryTopicConfigurationSupport {
+
+    @Override
+    protected Consumer<DeadLetterPublishingRecovererFactory> configureDeadLetterPublishingContainerFactory() {
+        return factory -> factory.setHeadersFunction((record, exception) -> {
+            Throwable failure = processingFailure(exception);
+            RecordHeaders headers = new RecordHeaders();
+            headers.add(OrderListener.FAILURE_TYPE_HEADER,
+                    OrderListener.failureType(failure).getBytes(StandardCharsets.UTF_8));
+            headers.add(OrderListener.FAILURE_CATEGORY_HEADER,
+                    OrderListener.failureCategory(failure).getBytes(StandardCharsets.UTF_8));
+            return headers;
+        });
+    }
+
+
+    // The listener's exception arrives wrapped in ListenerExecutionFailedException
+    private static Throwable processingFailure(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TemporaryProcessingException || cause instanceof PermanentProcessingException) {
+                return cause;
+            }
+        }
+        return exception;
+    }
+}
@@ -0,0 +1,67 @@
+package com.bigdata.order_consumer_service.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataSource that hands out connections of the shard selected for the current
+ * thread (shard 0 when none is). The shard must be chosen before a transaction
+ * starts: once a connection is bound to the transaction it is used throughout.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final List<HikariDataSource> shards;
+
+    public ShardRoutingDataSource(List<HikariDataSource> shards) {
+        this.shards = List.copyOf(shards);
+
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public HikariDataSource shard(int index) {
+        return shards.get(index);
+    }
+
+    public static Integer currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    // Returns the previous selection so callers can restore it
+    public static Integer selectShard(Integer shard) {
+        Integer previous = CURRENT_SHARD.get();
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+        return previous;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = CURRENT_SHARD.get();
+        return shard != null ? shard : 0;
+    }
+
+    @Override
+    public void destroy() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
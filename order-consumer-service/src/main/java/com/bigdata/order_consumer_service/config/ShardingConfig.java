@@ -0,0 +1,119 @@
+package com.bigdata.order_consumer_service.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Order databases. Every URL in app.shards.urls becomes a shard with its own
+ * connection pool (pool name orders-shard-N, published as hikaricp.* metrics);
+ * without it the single spring.datasource.url is shard 0 and nothing changes.
+ */
+@Configuration
+@Slf4j
+public class ShardingConfig {
+
+    private static final String ID_SEQUENCE = "orders_id_seq";
+
+    @Bean
+    public ShardRoutingDataSource dataSource(DataSourceProperties properties,
+                                             MeterRegistry meterRegistry,
+                                             @Value("${app.shards.urls:}") String shardUrls,
+                                             @Value("${app.shards.pool-size:10}") int poolSize) {
+        List<String> urls = Arrays.stream(shardUrls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+        if (urls.isEmpty()) {
+            urls = List.of(properties.determineUrl());
+        }
+
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource shard = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(i))
+                    .build();
+            shard.setPoolName("orders-shard-" + i);
+            shard.setMaximumPoolSize(poolSize);
+            shard.setMetricRegistry(meterRegistry);
+            shards.add(shard);
+        }
+
+        log.info(" Order persistence uses {} shard(s): {}", shards.size(), urls);
+        return new ShardRoutingDataSource(shards);
+    }
+
+
+    // Boot's Flyway only sees the routing DataSource (shard 0); migrate every shard with the same settings
+    @Bean
+    public FlywayMigrationStrategy shardMigrationStrategy(ShardRoutingDataSource dataSource) {
+        return flyway -> {
+            for (int i = 0; i < dataSource.shardCount(); i++) {
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(dataSource.shard(i))
+                        .load()
+                        .migrate();
+            }
+            alignIdSequences(dataSource);
+        };
+    }
+
+
+    /**
+     * Ids must stay unique across shards (the /{id} lookup and keyset cursors rely on
+     * it). With N shards each shard's sequence steps by N and shard i only hands out
+     * ids congruent to i mod N, starting above the highest id any shard has used.
+     */
+    private static void alignIdSequences(ShardRoutingDataSource dataSource) {
+        int shards = dataSource.shardCount();
+        if (shards == 1) {
+            return;
+        }
+
+        boolean aligned = true;
+        long base = 0;
+        for (int i = 0; i < shards; i++) {
+            Map<String, Object> sequence = new JdbcTemplate(dataSource.shard(i)).queryForMap(
+                    "SELECT s.increment_by, COALESCE(s.last_value, s.start_value) AS last_value, " +
+                            "COALESCE((SELECT MAX(id) FROM orders), 0) AS max_id " +
+                            "FROM pg_sequences s WHERE s.sequencename = ?", ID_SEQUENCE);
+            long increment = ((Number) sequence.get("increment_by")).longValue();
+            long lastValue = ((Number) sequence.get("last_value")).longValue();
+            long maxId = ((Number) sequence.get("max_id")).longValue();
+
+            aligned &= increment == shards && Math.floorMod(lastValue, shards) == i;
+            base = Math.max(base, Math.max(lastValue, maxId));
+        }
+        if (aligned) {
+            return;
+        }
+
+        for (int i = 0; i < shards; i++) {
+            long start = sequenceStart(base, i, shards);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource.shard(i));
+            jdbcTemplate.execute("ALTER SEQUENCE " + ID_SEQUENCE + " INCREMENT BY " + shards);
+            jdbcTemplate.queryForObject("SELECT setval('" + ID_SEQUENCE + "', ?)", Long.class, start);
+            log.info(" Shard {} id sequence now steps by {} from {}", i, shards, start);
+        }
+    }
+
+
+    // Smallest value >= base congruent to shard mod shards; the sequence hands out the next one after it
+    static long sequenceStart(long base, int shard, int shards) {
+        return base + Math.floorMod(shard - base, (long) shards);
+    }
+}
@@ -1,13 +1,23 @@
 package com.bigdata.order_consumer_service.controller;
 
+import com.bigdata.order_consumer_service.dto.CursorPage;
+import com.bigdata.order_consumer_service.dto.DlqFilter;
+import com.bigdata.order_consumer_service.dto.FailedOrderSummary;
 import com.bigdata.order_consumer_service.entity.FailedOrderEntity;
+import com.bigdata.order_consumer_service.entity.FailureSignatureEntity;
 import com.bigdata.order_consumer_service.repository.FailedOrderRepository;
+import com.bigdata.order_consumer_service.service.DlqReprocessingJobs;
 import com.bigdata.order_consumer_service.service.DlqReprocessingService;
+import com.bigdata.order_consumer_service.service.FailedOrderQueryService;
+import com.bigdata.order_consumer_service.service.FailedOrderRecorder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,30 +30,33 @@ public class DlqController {
 
     private final FailedOrderRepository failedOrderRepository;
     private final DlqReprocessingService reprocessingService;
+    private final DlqReprocessingJobs reprocessingJobs;
+    private final FailedOrderRecorder failedOrderRecorder;
+    private final FailedOrderQueryService failedOrderQueryService;
 
     /**
-     * Get all failed orders
+     * Failed orders, newest first, without stack traces. Keyset paginated:
+     * pass nextCursor from the previous page as cursor
      */
     @GetMapping("/failed-orders")
-    public ResponseEntity<List<FailedOrderEntity>> getAllFailedOrders(
-            @RequestParam(required = false) String status
+    public ResponseEntity<CursorPage<FailedOrderSummary>> getAllFailedOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size
     ) {
-        List<FailedOrderEntity> orders = status != null
-                ? failedOrderRepository.findByStatus(status)
-                : failedOrderRepository.findAll();
-
-        return ResponseEntity.ok(orders);
+        return ResponseEntity.ok(failedOrderQueryService.getFailedOrders(status, null, cursor, size));
     }
 
     /**
      * Get failed orders by failure type
      */
     @GetMapping("/failed-orders/type/{failureType}")
-    public ResponseEntity<List<FailedOrderEntity>> getByFailureType(
-            @PathVariable String failureType
+    public ResponseEntity<CursorPage<FailedOrderSummary>> getByFailureType(
+            @PathVariable String failureType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size
     ) {
-        List<FailedOrderEntity> orders = failedOrderRepository.findByFailureType(failureType);
-        return ResponseEntity.ok(orders);
+        return ResponseEntity.ok(failedOrderQueryService.getFailedOrders(null, failureType, cursor, size));
     }
 
     /**
@@ -51,16 +64,7 @@ public class DlqController {
      */
     @GetMapping("/statistics")
     public ResponseEntity<Map<String, Object>> getStatistics() {
-        Map<String, Object> stats = new HashMap<>();
-
-        stats.put("total", failedOrderRepository.count());
-        stats.put("pending", failedOrderRepository.countByStatus("PENDING"));
-        stats.put("reprocessed", failedOrderRepository.countByStatus("REPROCESSED"));
-        stats.put("discarded", failedOrderRepository.countByStatus("DISCARDED"));
-        stats.put("temporary", failedOrderRepository.countByFailureType("TEMPORARY"));
-        stats.put("permanent", failedOrderRepository.countByFailureType("PERMANENT"));
-
-        return ResponseEntity.ok(stats);
+        return ResponseEntity.ok(failedOrderQueryService.getStatistics());
     }
 
     /**
@@ -95,39 +99,76 @@ public class DlqController {
     }
 
     /**
-     * Reprocess all pending failed orders
+     * Start a background job reprocessing the pending failed orders that match the filter
      */
     @PostMapping("/reprocess-all")
     public ResponseEntity<Map<String, Object>> reprocessAllPending(
-            @RequestParam(required = false, defaultValue = "system") String reprocessedBy
+            @RequestParam(required = false, defaultValue = "system") String reprocessedBy,
+            @RequestParam(required = false) String failureCategory,
+            @RequestParam(required = false) String failureType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime failedFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime failedTo,
+            @RequestParam(required = false) Double ratePerSecond
     ) {
-        List<FailedOrderEntity> pendingOrders =
-                failedOrderRepository.findByStatus("PENDING");
-
-        int successCount = 0;
-        int failedCount = 0;
-
-        for (FailedOrderEntity order : pendingOrders) {
-            try {
-                boolean success = reprocessingService.reprocessFailedOrder(
-                        order.getId(), reprocessedBy
-                );
-                if (success) {
-                    successCount++;
-                } else {
-                    failedCount++;
-                }
-            } catch (Exception e) {
-                log.error("Error reprocessing order {}", order.getId(), e);
-                failedCount++;
-            }
+        DlqFilter filter = new DlqFilter(failureCategory, failureType, failedFrom, failedTo);
+        try {
+            return ResponseEntity.accepted().body(reprocessingJobs.start(filter, reprocessedBy, ratePerSecond));
+        } catch (IllegalStateException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         }
+    }
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("total", pendingOrders.size());
-        response.put("success", successCount);
-        response.put("failed", failedCount);
+    /**
+     * Reprocessing jobs, most recent last
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<List<Map<String, Object>>> getJobs() {
+        return ResponseEntity.ok(reprocessingJobs.list());
+    }
 
+    /**
+     * Progress of a reprocessing job
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable long id) {
+        return reprocessingJobs.get(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Cancel a running reprocessing job; orders already sent stay REPROCESSED
+     */
+    @PostMapping("/jobs/{id}/cancel")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable long id) {
+        return reprocessingJobs.cancel(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Discard all pending failed orders that match the filter
+     */
+    @PostMapping("/discard")
+    public ResponseEntity<Map<String, Object>> discardMatching(
+            @RequestParam(required = false) String failureCategory,
+            @RequestParam(required = false) String failureType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime failedFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime failedTo
+    ) {
+        DlqFilter filter = new DlqFilter(failureCategory, failureType, failedFrom, failedTo);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("filter", filter.describe());
+        response.put("discarded", reprocessingJobs.discard(filter));
         return ResponseEntity.ok(response);
     }
 
@@ -154,6 +195,26 @@ public class DlqController {
                 });
     }
 
+    /**
+     * Most frequent failure signatures (stack trace fingerprints)
+     */
+    @GetMapping("/signatures")
+    public ResponseEntity<List<FailureSignatureEntity>> getTopSignatures(
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        return ResponseEntity.ok(failedOrderRecorder.getTopSignatures(limit));
+    }
+
+    /**
+     * Normalized stack trace and counts of one failure signature
+     */
+    @GetMapping("/signatures/{fingerprint}")
+    public ResponseEntity<Map<String, Object>> getSignature(@PathVariable String fingerprint) {
+        return failedOrderRecorder.getSignature(fingerprint)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Get details of a specific failed order
      */
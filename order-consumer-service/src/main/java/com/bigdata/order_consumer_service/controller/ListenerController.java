@@ -0,0 +1,45 @@
+package com.bigdata.order_consumer_service.controller;
+
+import com.bigdata.order_consumer_service.listener.ListenerAutoscaler;
+import com.bigdata.order_consumer_service.service.CircuitBreakerService;
+import com.bigdata.rules.OrderRule;
+import com.bigdata.rules.OrderRules;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/orders/listener")
+@RequiredArgsConstructor
+public class ListenerController {
+
+    private final ListenerAutoscaler listenerAutoscaler;
+    private final CircuitBreakerService circuitBreakerService;
+    private final OrderRules orderRules;
+
+
+    // Current concurrency, lag per partition, pool wait and the latest scaling/backpressure decisions
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatus() {
+        return ResponseEntity.ok(listenerAutoscaler.getStatus());
+    }
+
+
+    // Per-category breaker state, failure rates and the adaptive call rate limit
+    @GetMapping("/breakers")
+    public ResponseEntity<Map<String, Object>> getBreakers() {
+        return ResponseEntity.ok(circuitBreakerService.describe());
+    }
+
+
+    // Order rules in evaluation order with their hit counts and sampled mean cost
+    @GetMapping("/rules")
+    public ResponseEntity<List<Map<String, Object>>> getRules() {
+        return ResponseEntity.ok(orderRules.rules().stream().map(OrderRule::describe).toList());
+    }
+}
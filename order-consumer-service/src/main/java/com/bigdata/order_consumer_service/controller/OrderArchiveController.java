@@ -0,0 +1,34 @@
+package com.bigdata.order_consumer_service.controller;
+
+import com.bigdata.order_consumer_service.service.OrderArchiveReader;
+import com.bigdata.order_consumer_service.service.OrderArchiveService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/orders/archive")
+@RequiredArgsConstructor
+@Slf4j
+public class OrderArchiveController {
+
+    private final OrderArchiveService archiveService;
+    private final OrderArchiveReader archiveReader;
+
+
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> getArchiveFiles() {
+        return ResponseEntity.ok(archiveReader.describe());
+    }
+
+
+    @PostMapping("/run")
+    public ResponseEntity<Map<String, Object>> archive() {
+        log.info(" Manual order archival requested");
+        return ResponseEntity.ok(archiveService.archiveOldOrders());
+    }
+}
@@ -1,20 +1,33 @@
 package com.bigdata.order_consumer_service.controller;
 
+import com.bigdata.order_consumer_service.dto.CursorPage;
+import com.bigdata.order_consumer_service.dto.OrderView;
 import com.bigdata.order_consumer_service.entity.OrderEntity;
-import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.bigdata.order_consumer_service.entity.OrderProductHourlyEntity;
+import com.bigdata.order_consumer_service.service.FailedOrderQueryService;
+import com.bigdata.order_consumer_service.service.OrderLookupService;
+import com.bigdata.order_consumer_service.service.OrderQueryService;
+import com.bigdata.order_consumer_service.service.OrderStatisticsTracker;
+import com.bigdata.order_consumer_service.service.OrderViewClient;
+import com.bigdata.order_consumer_service.service.ProductRollupService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -22,7 +35,15 @@ import java.util.Map;
 @Slf4j
 public class OrderController {
 
-    private final OrderRepository orderRepository;
+    private static final LocalDateTime OPEN_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime OPEN_END = LocalDateTime.of(9999, 12, 31, 23, 59);
+
+    private final OrderStatisticsTracker statisticsTracker;
+    private final ProductRollupService productRollupService;
+    private final OrderQueryService orderQueryService;
+    private final OrderLookupService orderLookupService;
+    private final OrderViewClient orderViewClient;
+    private final FailedOrderQueryService failedOrderQueryService;
 
 
     @GetMapping
@@ -36,7 +57,7 @@ public class OrderController {
                 ? Sort.Direction.ASC : Sort.Direction.DESC;
 
         PageRequest pageRequest = PageRequest.of(page, size, Sort.by(sortDirection, sortBy));
-        Page<OrderEntity> orders = orderRepository.findAll(pageRequest);
+        Page<OrderEntity> orders = orderQueryService.getOrdersPage(pageRequest);
 
         return ResponseEntity.ok(orders);
     }
@@ -44,27 +65,85 @@ public class OrderController {
 
     @GetMapping("/{id}")
     public ResponseEntity<OrderEntity> getOrderById(@PathVariable Long id) {
-        return orderRepository.findById(id)
+        return orderLookupService.findById(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
 
+    /**
+     * Postgres first, through the order and dead-lettered caches: it has the order's
+     * real status, which the Kafka Streams read model does not. The read model only
+     * answers for orders on the topic that are not persisted yet - as RECEIVED, with
+     * X-Order-Source: read-model - and never for one that was dead-lettered or
+     * rejected, which is a 404. Repeated lookups are answered from the caches.
+     */
     @GetMapping("/order/{orderId}")
     public ResponseEntity<OrderEntity> getOrderByOrderId(@PathVariable String orderId) {
-        return orderRepository.findByOrderId(orderId)
-                .map(ResponseEntity::ok)
+        Optional<OrderEntity> persisted = orderLookupService.findByOrderId(orderId);
+        if (persisted.isPresent()) {
+            return ResponseEntity.ok(persisted.get());
+        }
+        if (!failedOrderQueryService.deadLettered(List.of(orderId)).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return orderViewClient.findByOrderId(orderId)
+                .map(view -> ResponseEntity.ok()
+                        .header(OrderView.SOURCE_HEADER, OrderView.SOURCE_READ_MODEL)
+                        .body(view.toEntity()))
                 .orElse(ResponseEntity.notFound().build());
     }
 
 
-    @GetMapping("/product/{product}")
-    public ResponseEntity<List<OrderEntity>> getOrdersByProduct(@PathVariable String product) {
-        List<OrderEntity> orders = orderRepository.findByProduct(product);
+    // Newest orders from the read model, each with its persisted row when it has one and without
+    // dead-lettered ones, both looked up through the caches; Postgres keyset page when the view is unavailable
+    @GetMapping("/recent")
+    public ResponseEntity<List<OrderEntity>> getRecentOrders(
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        List<OrderEntity> orders = orderViewClient.findRecent(limit)
+                .map(this::withPersistedStatus)
+                .orElseGet(() -> orderQueryService.getOrders(null, limit).getContent());
+
         return ResponseEntity.ok(orders);
     }
 
 
+    private List<OrderEntity> withPersistedStatus(List<OrderView> views) {
+        List<String> orderIds = views.stream().map(OrderView::getOrderId).toList();
+        Map<String, OrderEntity> persisted = orderLookupService.findByOrderIds(orderIds);
+        Set<String> deadLettered = failedOrderQueryService.deadLettered(orderIds.stream()
+                .filter(orderId -> !persisted.containsKey(orderId))
+                .toList());
+
+        return views.stream()
+                .filter(view -> !deadLettered.contains(view.getOrderId()))
+                .map(view -> persisted.getOrDefault(view.getOrderId(), view.toEntity()))
+                .toList();
+    }
+
+
+    // Keyset-paginated, newest first: pass nextCursor from the previous page as cursor
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<OrderEntity>> scrollOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(orderQueryService.getOrders(cursor, size));
+    }
+
+
+    @GetMapping("/product/{product}")
+    public ResponseEntity<CursorPage<OrderEntity>> getOrdersByProduct(
+            @PathVariable String product,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(orderQueryService.getOrdersByProduct(product, cursor, size));
+    }
+
+
     @GetMapping("/status/{status}")
     public ResponseEntity<Page<OrderEntity>> getOrdersByStatus(
             @PathVariable String status,
@@ -73,18 +152,37 @@ public class OrderController {
     ) {
         PageRequest pageRequest = PageRequest.of(page, size,
                 Sort.by(Sort.Direction.DESC, "processedAt"));
-        Page<OrderEntity> orders = orderRepository.findByStatus(status, pageRequest);
+        Page<OrderEntity> orders = orderQueryService.getOrdersByStatusPage(status, pageRequest);
         return ResponseEntity.ok(orders);
     }
 
 
     @GetMapping("/date-range")
-    public ResponseEntity<List<OrderEntity>> getOrdersInDateRange(
+    public ResponseEntity<CursorPage<OrderEntity>> getOrdersInDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
     ) {
-        List<OrderEntity> orders = orderRepository.findOrdersInDateRange(start, end);
-        return ResponseEntity.ok(orders);
+        return ResponseEntity.ok(orderQueryService.getOrdersInDateRange(start, end, cursor, size));
+    }
+
+
+    // Streams every matching order as NDJSON without loading them into memory
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(required = false) String product,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end
+    ) {
+        LocalDateTime from = start != null ? start : OPEN_START;
+        LocalDateTime to = end != null ? end : OPEN_END;
+
+        StreamingResponseBody body = out -> orderQueryService.exportOrders(product, from, to, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders.ndjson\"")
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
     }
 
 
@@ -92,32 +190,41 @@ public class OrderController {
     public ResponseEntity<Map<String, Object>> getStatistics() {
         Map<String, Object> stats = new HashMap<>();
 
-        stats.put("totalOrders", orderRepository.count());
-        stats.put("processedOrders", orderRepository.countByStatus("PROCESSED"));
-        stats.put("totalRevenue", orderRepository.getTotalRevenue());
-
-        // Orders in last hour
-        LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
-        stats.put("ordersLastHour", orderRepository.countOrdersSince(oneHourAgo));
-
-        // Orders in last 24 hours
-        LocalDateTime oneDayAgo = LocalDateTime.now().minusDays(1);
-        stats.put("ordersLast24Hours", orderRepository.countOrdersSince(oneDayAgo));
+        // Served from in-memory counters, reconciled with the database periodically
+        stats.put("totalOrders", statisticsTracker.getTotalOrders());
+        stats.put("processedOrders", statisticsTracker.getProcessedOrders());
+        stats.put("totalRevenue", statisticsTracker.getTotalRevenue());
+        stats.put("ordersLastHour", statisticsTracker.getOrdersLastHour());
+        stats.put("ordersLast24Hours", statisticsTracker.getOrdersLast24Hours());
+        stats.put("reconciledAt", statisticsTracker.getLastReconciledAt());
 
         return ResponseEntity.ok(stats);
     }
 
+    // Read from the order_product_hourly rollup; start/end narrow it to whole hours
     @GetMapping("/statistics/products")
-    public ResponseEntity<List<Map<String, Object>>> getProductStatistics() {
-        List<Object[]> results = orderRepository.getProductStatistics();
+    public ResponseEntity<List<Map<String, Object>>> getProductStatistics(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end
+    ) {
+        List<Object[]> results = (start == null && end == null)
+                ? productRollupService.getProductStatistics(null, null)
+                : productRollupService.getProductStatistics(
+                        start != null ? start : OPEN_START,
+                        end != null ? end : OPEN_END);
 
         List<Map<String, Object>> stats = results.stream()
                 .map(row -> {
+                    long count = ((Number) row[1]).longValue();
+                    double totalRevenue = ((Number) row[2]).doubleValue();
+
                     Map<String, Object> stat = new HashMap<>();
                     stat.put("product", row[0]);
-                    stat.put("count", row[1]);
-                    stat.put("totalRevenue", row[2]);
-                    stat.put("averagePrice", row[3]);
+                    stat.put("count", count);
+                    stat.put("totalRevenue", totalRevenue);
+                    stat.put("averagePrice", count > 0 ? totalRevenue / count : 0.0);
+                    stat.put("minPrice", row[3]);
+                    stat.put("maxPrice", row[4]);
                     return stat;
                 })
                 .toList();
@@ -126,27 +233,54 @@ public class OrderController {
     }
 
 
+    @GetMapping("/statistics/products/{product}/hourly")
+    public ResponseEntity<List<OrderProductHourlyEntity>> getProductHourlyStatistics(
+            @PathVariable String product,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end
+    ) {
+        return ResponseEntity.ok(
+                productRollupService.getHourlyStatistics(product, start, end));
+    }
+
+
+    @PostMapping("/statistics/products/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildProductStatistics(
+            @RequestParam(defaultValue = "10000") int chunkSize
+    ) {
+        log.info(" Rebuilding product rollup with chunk size {}", chunkSize);
+        return ResponseEntity.ok(productRollupService.rebuild(chunkSize));
+    }
+
+
     @GetMapping("/search")
-    public ResponseEntity<List<OrderEntity>> searchOrders(
+    public ResponseEntity<CursorPage<OrderEntity>> searchOrders(
             @RequestParam(required = false) String orderId,
             @RequestParam(required = false) String product,
-            @RequestParam(required = false) String status
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
     ) {
         if (orderId != null && !orderId.isEmpty()) {
-            return ResponseEntity.ok(
-                    orderRepository.findByOrderId(orderId).stream().toList()
-            );
+            return ResponseEntity.ok(new CursorPage<>(
+                    orderLookupService.findByOrderId(orderId).stream().toList(), null, false));
         }
 
         if (product != null && !product.isEmpty()) {
-            return ResponseEntity.ok(orderRepository.findByProduct(product));
+            return ResponseEntity.ok(orderQueryService.getOrdersByProduct(product, cursor, size));
         }
 
         if (status != null && !status.isEmpty()) {
-            return ResponseEntity.ok(orderRepository.findByStatus(status));
+            return ResponseEntity.ok(orderQueryService.getOrdersByStatus(status, cursor, size));
         }
 
-        return ResponseEntity.ok(List.of());
+        return ResponseEntity.ok(new CursorPage<>(List.of(), null, false));
+    }
+
+
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        return ResponseEntity.ok(orderLookupService.getStatistics());
     }
 
 
@@ -154,8 +288,17 @@ public class OrderController {
     public ResponseEntity<Map<String, Object>> health() {
         Map<String, Object> health = new HashMap<>();
         health.put("status", "UP");
-        health.put("totalOrders", orderRepository.count());
+        health.put("totalOrders", statisticsTracker.getTotalOrders());
         health.put("timestamp", LocalDateTime.now());
         return ResponseEntity.ok(health);
     }
+
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(response);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.bigdata.order_consumer_service.controller;
+
+import com.bigdata.order_consumer_service.service.OrderPartitionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/orders/partitions")
+@RequiredArgsConstructor
+@Slf4j
+public class OrderPartitionController {
+
+    private final OrderPartitionService partitionService;
+
+
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> getPartitions() {
+        return ResponseEntity.ok(partitionService.describePartitions());
+    }
+
+
+    // e.g. /api/orders/partitions/explain?start=2025-01-01T00:00:00&end=2025-01-02T00:00:00
+    @GetMapping("/explain")
+    public ResponseEntity<List<Map<String, Object>>> explainPruning(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end
+    ) {
+        return ResponseEntity.ok(partitionService.explainPruning(start, end != null ? end : LocalDateTime.now()));
+    }
+
+
+    @PostMapping("/maintain")
+    public ResponseEntity<Map<String, Object>> maintain() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("created", partitionService.ensureUpcomingPartitions());
+        response.put("removed", partitionService.applyRetention());
+        log.info(" Manual partition maintenance: {}", response);
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,36 @@
+package com.bigdata.order_consumer_service.controller;
+
+import com.bigdata.order_consumer_service.service.ShardRebalanceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/orders/shards")
+@RequiredArgsConstructor
+@Slf4j
+public class ShardController {
+
+    private final ShardRebalanceService rebalanceService;
+
+
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> getShards() {
+        return ResponseEntity.ok(rebalanceService.describeShards());
+    }
+
+
+    // Run with dryRun=true first to see how many orders would move
+    @PostMapping("/rebalance")
+    public ResponseEntity<Map<String, Object>> rebalance(
+            @RequestParam(defaultValue = "1000") int batchSize,
+            @RequestParam(defaultValue = "false") boolean dryRun
+    ) {
+        log.info(" Shard rebalance requested | batchSize: {} | dryRun: {}", batchSize, dryRun);
+        return ResponseEntity.ok(rebalanceService.rebalance(batchSize, dryRun));
+    }
+}
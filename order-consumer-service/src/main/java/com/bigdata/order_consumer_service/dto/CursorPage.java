@@ -0,0 +1,19 @@
+package com.bigdata.order_consumer_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. Pass nextCursor back as the cursor
+ * parameter to get the following page; it is null once hasMore is false.
+ */
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,45 @@
+package com.bigdata.order_consumer_service.dto;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Selects PENDING failed orders for bulk reprocessing or discarding. Null fields
+ * match everything; failedFrom is inclusive, failedTo exclusive.
+ */
+public record DlqFilter(String failureCategory, String failureType, LocalDateTime failedFrom, LocalDateTime failedTo) {
+
+    // " AND ..." conditions for failed_orders, appending their arguments
+    public String where(List<Object> args) {
+        StringBuilder sql = new StringBuilder();
+        if (failureCategory != null) {
+            sql.append(" AND failure_category = ?");
+            args.add(failureCategory);
+        }
+        if (failureType != null) {
+            sql.append(" AND failure_type = ?");
+            args.add(failureType);
+        }
+        if (failedFrom != null) {
+            sql.append(" AND failed_at >= ?");
+            args.add(Timestamp.valueOf(failedFrom));
+        }
+        if (failedTo != null) {
+            sql.append(" AND failed_at < ?");
+            args.add(Timestamp.valueOf(failedTo));
+        }
+        return sql.toString();
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> filter = new HashMap<>();
+        filter.put("failureCategory", failureCategory);
+        filter.put("failureType", failureType);
+        filter.put("failedFrom", failedFrom);
+        filter.put("failedTo", failedTo);
+        return filter;
+    }
+}
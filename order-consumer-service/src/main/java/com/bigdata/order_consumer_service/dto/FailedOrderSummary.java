@@ -0,0 +1,33 @@
+package com.bigdata.order_consumer_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A failed order as listed on the DLQ page - everything but the stack trace,
+ * which is fetched per order (GET /api/dlq/failed-orders/{id}) or per signature.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FailedOrderSummary {
+
+    private Long id;
+    private String orderId;
+    private String product;
+    private Float price;
+    private String failureType;
+    private String failureCategory;
+    private String errorMessage;
+    private Integer retryCount;
+    private String originalTopic;
+    private String correlationId;
+    private LocalDateTime failedAt;
+    private String status;
+    private LocalDateTime reprocessedAt;
+    private String reprocessedBy;
+    private String signatureHash;
+}
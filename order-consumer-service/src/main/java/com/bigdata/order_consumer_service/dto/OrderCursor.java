@@ -0,0 +1,38 @@
+package com.bigdata.order_consumer_service.dto;
+
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last order of a page: (processedAt, id). Encoded as an opaque
+ * URL-safe string so clients cannot depend on its layout.
+ */
+public record OrderCursor(LocalDateTime processedAt, long id) {
+
+    private static final char SEPARATOR = '|';
+
+    public static OrderCursor of(OrderEntity order) {
+        return new OrderCursor(order.getProcessedAt(), order.getId());
+    }
+
+    public String encode() {
+        String raw = processedAt.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new OrderCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
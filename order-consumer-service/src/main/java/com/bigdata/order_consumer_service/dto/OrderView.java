@@ -0,0 +1,44 @@
+package com.bigdata.order_consumer_service.dto;
+
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * An order as served by the aggregation service's orders-by-id / recent-orders views.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderView {
+
+    // Status of an order only the view knows: on the orders topic, not (yet) in Postgres
+    public static final String STATUS_RECEIVED = "RECEIVED";
+
+    // Set on order lookups answered from the view rather than Postgres
+    public static final String SOURCE_HEADER = "X-Order-Source";
+    public static final String SOURCE_READ_MODEL = "read-model";
+
+    private String orderId;
+    private String product;
+    private float price;
+    private long eventTime;
+
+
+    // The view only knows the order reached the topic, not whether this service processed it
+    public OrderEntity toEntity() {
+        LocalDateTime receivedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(eventTime), ZoneId.systemDefault());
+        return OrderEntity.builder()
+                .orderId(orderId)
+                .product(product)
+                .price(price)
+                .receivedAt(receivedAt)
+                .status(STATUS_RECEIVED)
+                .build();
+    }
+}
@@ -10,7 +10,13 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "failed_orders")
+@Table(name = "failed_orders", indexes = {
+        @Index(name = "idx_failed_orders_failed_at_id", columnList = "failedAt, id"),
+        @Index(name = "idx_failed_orders_status_failed_at_id", columnList = "status, failedAt, id"),
+        @Index(name = "idx_failed_orders_type_failed_at_id", columnList = "failureType, failedAt, id"),
+        @Index(name = "idx_failed_orders_status_type", columnList = "status, failureType"),
+        @Index(name = "idx_failed_orders_order_id", columnList = "orderId")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -30,6 +36,8 @@ public class FailedOrderEntity {
     @Column(nullable = false)
     private Float price;
 
+    private Long eventTime; // epoch millis from the original order, replayed on reprocess
+
     @Column(nullable = false, length = 50)
     private String failureType; // TEMPORARY, PERMANENT
 
@@ -40,7 +48,10 @@ public class FailedOrderEntity {
     private String errorMessage;
 
     @Column(columnDefinition = "TEXT")
-    private String stackTrace;
+    private String stackTrace; // only on rows written before failure_signatures existed
+
+    @Column(length = 64)
+    private String signatureHash; // failure_signatures.fingerprint
 
     @Column(nullable = false)
     private Integer retryCount;
@@ -0,0 +1,40 @@
+package com.bigdata.order_consumer_service.entity;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "failure_signatures")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FailureSignatureEntity {
+
+    @Id
+    @Column(length = 64)
+    private String fingerprint; // SHA-256 of the normalized stack trace
+
+    @Column(nullable = false)
+    private String exceptionClass;
+
+    @JsonIgnore
+    @Column(nullable = false)
+    private byte[] stackTrace; // gzip of the normalized stack trace
+
+    @Column(nullable = false)
+    private LocalDateTime firstSeenAt;
+
+    @Column(nullable = false)
+    private LocalDateTime lastSeenAt;
+
+    @Column(nullable = false)
+    private Long occurrences;
+}
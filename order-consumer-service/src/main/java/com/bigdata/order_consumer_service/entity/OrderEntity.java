@@ -8,12 +8,13 @@ import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
+// Range-partitioned by processed_at (see db/migration); the schema is owned by Flyway
 @Entity
 @Table(name = "orders", indexes = {
         @Index(name = "idx_order_id", columnList = "orderId"),
-        @Index(name = "idx_product", columnList = "product"),
-        @Index(name = "idx_processed_at", columnList = "processedAt"),
-        @Index(name = "idx_status", columnList = "status")
+        @Index(name = "idx_product_id", columnList = "product, id"),
+        @Index(name = "idx_processed_at_id", columnList = "processedAt, id"),
+        @Index(name = "idx_status_processed_at_id", columnList = "status, processedAt, id")
 })
 @Data
 @Builder
@@ -25,7 +26,8 @@ public class OrderEntity {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false, unique = true, length = 100)
+    // unique through order_ids (V5): the partitioned table cannot enforce it itself
+    @Column(nullable = false, length = 100)
     private String orderId;
 
     @Column(nullable = false, length = 200)
@@ -66,10 +68,11 @@ public class OrderEntity {
 
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
-        updatedAt = LocalDateTime.now();
+        LocalDateTime now = LocalDateTime.now();
+        createdAt = now;
+        updatedAt = now;
         if (receivedAt == null) {
-            receivedAt = LocalDateTime.now();
+            receivedAt = now;
         }
     }
 
@@ -0,0 +1,50 @@
+package com.bigdata.order_consumer_service.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Per-product, per-hour rollup of PROCESSED orders. Maintained by OrderService in the
+ * same transaction as the order insert, so it never disagrees with the orders table.
+ */
+@Entity
+@Table(name = "order_product_hourly",
+        uniqueConstraints = @UniqueConstraint(name = "uk_order_product_hourly",
+                columnNames = {"product", "bucketHour"}),
+        indexes = @Index(name = "idx_order_product_hourly_bucket", columnList = "bucketHour"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderProductHourlyEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 200)
+    private String product;
+
+    @Column(nullable = false)
+    private LocalDateTime bucketHour; // processedAt truncated to the hour
+
+    @Column(nullable = false)
+    private Long orderCount;
+
+    @Column(nullable = false)
+    private Double totalRevenue;
+
+    @Column(nullable = false)
+    private Float minPrice;
+
+    @Column(nullable = false)
+    private Float maxPrice;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,23 @@
+package com.bigdata.order_consumer_service.exception;
+
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Thrown instead of calling a dependency whose breaker is open. The listener
+ * redelivers the record after {@code retryAfter} rather than spending a retry on it.
+ */
+@Getter
+public class CircuitOpenException extends TemporaryProcessingException {
+    private final String openCategory;
+    private final Duration retryAfter;
+
+    public CircuitOpenException(String openCategory, Duration retryAfter) {
+        super(ErrorCategory.CIRCUIT_BREAKER_OPEN,
+                "Circuit open for " + openCategory + ", retry in " + retryAfter.toMillis() + " ms");
+        this.openCategory = openCategory;
+        this.retryAfter = retryAfter;
+    }
+}
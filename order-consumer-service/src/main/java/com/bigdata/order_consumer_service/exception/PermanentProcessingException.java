@@ -8,15 +8,25 @@ import lombok.Setter;
 @Setter
 public class PermanentProcessingException extends RuntimeException {
     private final String category;
+    private final String rule; // set when an order rule rejected the order
 
     public PermanentProcessingException(String category, String message) {
         super(message);
         this.category = category;
+        this.rule = null;
     }
 
     public PermanentProcessingException(String category, String message, Throwable cause) {
         super(message, cause);
         this.category = category;
+        this.rule = null;
+    }
+
+    // Rule rejections carry no stack trace: the rule name says where they came from
+    public PermanentProcessingException(String category, String message, String rule) {
+        super(message, null, false, false);
+        this.category = category;
+        this.rule = rule;
     }
 
     public String getCategory() {
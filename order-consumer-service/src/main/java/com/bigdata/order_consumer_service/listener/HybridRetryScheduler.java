@@ -0,0 +1,406 @@
+package com.bigdata.order_consumer_service.listener;
+
+import com.bigdata.order_consumer_service.exception.CircuitOpenException;
+import com.bigdata.order_consumer_service.exception.TemporaryProcessingException;
+import com.bigdata.schema.Order;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Retries temporary failures of the orders topic in-process when the backoff is
+ * short (up to max-in-process-delay) and only sends long backoffs to the
+ * orders-retry-N topics. Short delays wait in a bounded {@link RetryTimerWheel};
+ * when it is full the record spills to its retry topic and its partition is
+ * paused until the wheel has drained to half.
+ *
+ * Offsets stay at-least-once: while a record of a partition is in the wheel, the
+ * acknowledgments of later records of that partition are held back and released
+ * once it has succeeded, spilled to a topic or been dead-lettered. A restart
+ * redelivers whatever was still waiting. Holds are counted per offset, so the
+ * orders of one orders-batch record keep it held until the last one is done.
+ */
+@Component
+@Slf4j
+public class HybridRetryScheduler implements ConsumerAwareRebalanceListener, DisposableBean {
+
+    // Mirrors @RetryableTopic on OrderListener.listen: attempts 4, 2s x3, max 30s
+    static final int MAX_RETRIES = 3;
+    static final long BASE_DELAY_MS = 2000;
+    static final double MULTIPLIER = 3.0;
+    static final long MAX_DELAY_MS = 30000;
+
+    static final String RETRY_TOPIC_PREFIX = ListenerAutoscaler.ORDERS_TOPIC + "-retry-";
+
+    private final KafkaTemplate<String, Order> kafkaTemplate;
+    private final KafkaListenerEndpointRegistry registry;
+    private final boolean enabled;
+    private final long maxInProcessDelayMs;
+    private final RetryTimerWheel<RetryTask> wheel;
+
+    private final Map<TopicPartition, TreeMap<Long, Integer>> inFlight = new HashMap<>();
+    private final Map<TopicPartition, TreeMap<Long, Acknowledgment>> held = new HashMap<>();
+    private final Set<TopicPartition> pausedPartitions = ConcurrentHashMap.newKeySet();
+
+    private final Counter inProcessAttempts;
+    private final Counter topicAttempts;
+    private final Counter overflows;
+    private final Timer inProcessLatency;
+    private final Timer topicLatency;
+
+    /**
+     * A main-topic record being retried in-process. {@code attempt} processes and
+     * saves the order again; {@code deadLetter} records it as failed after the last
+     * retry or a permanent error and completes once that is committed.
+     */
+    static final class RetryTask implements Runnable {
+
+        private final Order order;
+        private final String cid;
+        private final TopicPartition source;
+        private final long offset;
+        private final long timestamp;
+        private final Acknowledgment acknowledgment;
+        private final Runnable attempt;
+        private final BiFunction<RuntimeException, Integer, CompletableFuture<Void>> deadLetter;
+        private HybridRetryScheduler scheduler;
+        private int retry;
+        private RuntimeException lastFailure;
+
+        RetryTask(Order order, String cid, TopicPartition source, long offset, long timestamp,
+                  Acknowledgment acknowledgment, Runnable attempt,
+                  BiFunction<RuntimeException, Integer, CompletableFuture<Void>> deadLetter) {
+            this.order = order;
+            this.cid = cid;
+            this.source = source;
+            this.offset = offset;
+            this.timestamp = timestamp;
+            this.acknowledgment = acknowledgment;
+            this.attempt = attempt;
+            this.deadLetter = deadLetter;
+        }
+
+        @Override
+        public void run() {
+            scheduler.attempt(this);
+        }
+    }
+
+    public HybridRetryScheduler(KafkaTemplate<String, Order> kafkaTemplate,
+                                KafkaListenerEndpointRegistry registry,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.retry.in-process.enabled:true}") boolean enabled,
+                                @Value("${app.retry.in-process.max-delay:10s}") Duration maxInProcessDelay,
+                                @Value("${app.retry.in-process.capacity:1000}") int capacity,
+                                @Value("${app.retry.in-process.tick:100ms}") Duration tick,
+                                @Value("${app.retry.in-process.wheel-size:512}") int wheelSize,
+                                @Value("${app.retry.in-process.workers:4}") int workers,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.registry = registry;
+        this.enabled = enabled;
+        this.maxInProcessDelayMs = maxInProcessDelay.toMillis();
+        this.wheel = enabled
+                ? new RetryTimerWheel<>(tick.toMillis(), wheelSize, capacity,
+                        Executors.newFixedThreadPool(workers, virtualThreads
+                                ? Thread.ofVirtual().name("order-retry-", 0).factory()
+                                : Executors.defaultThreadFactory()), this::resumeIfDrained)
+                : null;
+
+        this.inProcessAttempts = attemptCounter(meterRegistry, "in_process");
+        this.topicAttempts = attemptCounter(meterRegistry, "topic");
+        this.overflows = Counter.builder("orders.retry.overflow")
+                .description("Short retries sent to a retry topic because the in-process wheel was full")
+                .register(meterRegistry);
+        this.inProcessLatency = latencyTimer(meterRegistry, "in_process");
+        this.topicLatency = latencyTimer(meterRegistry, "topic");
+        if (wheel != null) {
+            Gauge.builder("orders.retry.wheel.size", wheel, RetryTimerWheel::size)
+                    .description("Retries waiting or running in-process").register(meterRegistry);
+        }
+    }
+
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    // Delay before retry n (1-based), the same schedule the retry topics use
+    static long delayFor(int retry) {
+        return Math.min(MAX_DELAY_MS, (long) (BASE_DELAY_MS * Math.pow(MULTIPLIER, retry - 1)));
+    }
+
+
+    // A main-topic record is done; acknowledged now unless an earlier record of its partition is still retrying
+    public synchronized void completed(TopicPartition source, long offset, Acknowledgment acknowledgment) {
+        TreeMap<Long, Integer> flying = inFlight.get(source);
+        if (flying == null || offset < flying.firstKey()) {
+            if (acknowledgment != null) {
+                acknowledgment.acknowledge();
+            }
+            return;
+        }
+        held.computeIfAbsent(source, key -> new TreeMap<>()).put(offset, acknowledgment);
+    }
+
+
+    // First temporary failure of a main-topic record (on the consumer thread, or where its async calls ended)
+    void retry(RetryTask task, RuntimeException failure) {
+        task.scheduler = this;
+        task.lastFailure = failure;
+        hold(task.source, task.offset);
+        scheduleNext(task);
+    }
+
+
+    // An order that could not start because a circuit is open waits it out in-process without spending a retry
+    void defer(RetryTask task, CircuitOpenException open) {
+        task.scheduler = this;
+        task.lastFailure = open;
+        hold(task.source, task.offset);
+        schedule(task, open.getRetryAfter().toMillis());
+    }
+
+
+    // Holds back acknowledgments of later records of the partition until a matching release(source, offset, ...)
+    public synchronized void hold(TopicPartition source, long offset) {
+        inFlight.computeIfAbsent(source, key -> new TreeMap<>()).merge(offset, 1, Integer::sum);
+    }
+
+
+    /**
+     * Ends one hold of the record. Once none is left, acknowledges up to the next
+     * record still held, if any; a null acknowledgment just stops holding the offset
+     * without committing it.
+     */
+    public synchronized void release(TopicPartition source, long offset, Acknowledgment acknowledgment) {
+        TreeMap<Long, Integer> flying = inFlight.get(source);
+        Integer holds = flying != null ? flying.get(offset) : null;
+        if (holds == null) {
+            return; // partition was revoked while the record was held
+        }
+
+        TreeMap<Long, Acknowledgment> waiting = held.computeIfAbsent(source, key -> new TreeMap<>());
+        if (acknowledgment != null) {
+            waiting.put(offset, acknowledgment);
+        }
+        if (holds > 1) {
+            flying.put(offset, holds - 1);
+            return;
+        }
+        flying.remove(offset);
+        NavigableMap<Long, Acknowledgment> releasable = flying.isEmpty() ? waiting : waiting.headMap(flying.firstKey(), false);
+        if (!releasable.isEmpty()) {
+            Acknowledgment last = releasable.lastEntry().getValue();
+            releasable.clear();
+            last.acknowledge();
+        }
+
+        if (flying.isEmpty()) {
+            inFlight.remove(source);
+            held.remove(source);
+        }
+    }
+
+
+    // Records of the topic still being processed asynchronously or retried in-process
+    public synchronized boolean hasInFlight(String topic) {
+        return inFlight.keySet().stream().anyMatch(partition -> partition.topic().equals(topic));
+    }
+
+
+    // A retry topic is about to get the record (listener rethrows into @RetryableTopic)
+    public void recordTopicAttempt() {
+        topicAttempts.increment();
+    }
+
+
+    public void recordTopicSuccess(Long timestamp) {
+        if (timestamp != null) {
+            topicLatency.record(Math.max(0, System.currentTimeMillis() - timestamp), TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    private void attempt(RetryTask task) {
+        try {
+            task.attempt.run();
+            inProcessLatency.record(Math.max(0, System.currentTimeMillis() - task.timestamp), TimeUnit.MILLISECONDS);
+            log.info(" [In-process retry {}] Order {} succeeded", task.retry, task.order.getOrderId());
+            release(task.source, task.offset, task.acknowledgment);
+        } catch (CircuitOpenException e) {
+            schedule(task, e.getRetryAfter().toMillis());
+        } catch (TemporaryProcessingException e) {
+            log.warn(" [In-process retry {}] Order {} failed again: {}", task.retry, task.order.getOrderId(), e.getMessage());
+            task.lastFailure = e;
+            scheduleNext(task);
+        } catch (RuntimeException e) {
+            deadLetter(task, e);
+        }
+    }
+
+
+    private void scheduleNext(RetryTask task) {
+        int next = task.retry + 1;
+        if (next > MAX_RETRIES) {
+            deadLetter(task, task.lastFailure);
+            return;
+        }
+
+        task.retry = next;
+        schedule(task, delayFor(next));
+    }
+
+
+    // Runs the task's current retry after the delay; also used to wait out an open circuit without spending a retry
+    private void schedule(RetryTask task, long delay) {
+        if (wheel != null && delay <= maxInProcessDelayMs) {
+            if (wheel.schedule(delay, task)) {
+                inProcessAttempts.increment();
+                return;
+            }
+            overflows.increment();
+            pause(task.source);
+        }
+        spill(task, RETRY_TOPIC_PREFIX + Math.max(0, task.retry - 1), delay);
+    }
+
+
+    // Hands the record to the retry topic the @RetryableTopic chain would have used for this retry
+    private void spill(RetryTask task, String topic, long delay) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(RetryTopicHeaders.DEFAULT_HEADER_BACKOFF_TIMESTAMP,
+                ByteBuffer.allocate(Long.BYTES).putLong(System.currentTimeMillis() + delay).array());
+        headers.add("cid", task.cid.getBytes(StandardCharsets.UTF_8));
+        headers.add(OrderListener.FAILURE_TYPE_HEADER,
+                OrderListener.failureType(task.lastFailure).getBytes(StandardCharsets.UTF_8));
+        headers.add(OrderListener.FAILURE_CATEGORY_HEADER,
+                OrderListener.failureCategory(task.lastFailure).getBytes(StandardCharsets.UTF_8));
+
+        ProducerRecord<String, Order> record = new ProducerRecord<>(topic, null, task.timestamp,
+                task.order.getOrderId().toString(), task.order, headers);
+        topicAttempts.increment();
+        kafkaTemplate.send(record).whenComplete((result, e) -> {
+            if (e == null) {
+                release(task.source, task.offset, task.acknowledgment);
+            } else {
+                // Left in flight: the partition's commits hold here and a restart redelivers it
+                log.error("Could not hand order {} to {}", task.order.getOrderId(), topic, e);
+            }
+        });
+    }
+
+
+    private void deadLetter(RetryTask task, RuntimeException failure) {
+        CompletableFuture<Void> recorded;
+        try {
+            recorded = task.deadLetter.apply(failure, task.retry);
+        } catch (RuntimeException e) {
+            // Left in flight like a failed spill: a restart redelivers it
+            log.error("Could not record failed order {}", task.order.getOrderId(), e);
+            return;
+        }
+        recorded.thenRun(() -> release(task.source, task.offset, task.acknowledgment));
+    }
+
+
+    private void pause(TopicPartition partition) {
+        MessageListenerContainer container = containerFor(partition);
+        if (container != null && pausedPartitions.add(partition)) {
+            container.pausePartition(partition);
+            log.warn(" Retry wheel full ({}), pausing {}", wheel.capacity(), partition);
+        }
+    }
+
+
+    private void resumeIfDrained() {
+        if (pausedPartitions.isEmpty() || wheel.size() > wheel.capacity() / 2) {
+            return;
+        }
+        for (TopicPartition partition : List.copyOf(pausedPartitions)) {
+            MessageListenerContainer container = containerFor(partition);
+            if (pausedPartitions.remove(partition) && container != null) {
+                container.resumePartition(partition);
+                log.info(" Retry wheel drained, resuming {}", partition);
+            }
+        }
+    }
+
+
+    private MessageListenerContainer containerFor(TopicPartition partition) {
+        return registry.getListenerContainer(OrderListener.BATCH_TOPIC.equals(partition.topic())
+                ? OrderListener.BATCH_LISTENER_ID : OrderListener.LISTENER_ID);
+    }
+
+
+    @Override
+    public synchronized void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        inFlight.keySet().removeAll(partitions);
+        held.keySet().removeAll(partitions);
+    }
+
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        onPartitionsRevokedAfterCommit(consumer, partitions);
+    }
+
+
+    @Override
+    public void destroy() {
+        if (wheel != null) {
+            int abandoned = wheel.stop().size();
+            if (abandoned > 0) {
+                log.info(" {} in-process retries left uncommitted; they are redelivered on restart", abandoned);
+            }
+        }
+    }
+
+
+    private static Counter attemptCounter(MeterRegistry meterRegistry, String mode) {
+        return Counter.builder("orders.retry.attempts")
+                .description("Retry attempts by where they wait: in-process or a broker round trip via a retry topic")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+
+    private static Timer latencyTimer(MeterRegistry meterRegistry, String mode) {
+        return Timer.builder("orders.retry.latency")
+                .description("Time from the original record to its successful retry")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+}
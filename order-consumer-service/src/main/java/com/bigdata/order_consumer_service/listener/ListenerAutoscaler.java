@@ -0,0 +1,462 @@
+package com.bigdata.order_consumer_service.listener;
+
+import com.bigdata.order_consumer_service.service.ShardRouter;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adjusts the order listener to what is happening downstream. Every interval it
+ * reads the consumer group's lag on the orders and orders-batch topics and how
+ * long threads waited for a database connection over the last interval, then:
+ *
+ * - pauses every order listener container (main, batch, retry and DLT) while the
+ *   pool is saturated, and resumes after a few healthy checks in a row;
+ * - otherwise raises the concurrency of the main container when the lag of orders
+ *   is above scale-up-lag and lowers it when the lag is below scale-down-lag, and
+ *   the batch container's on the lag of orders-batch, within bounds and at most
+ *   once per cooldown each.
+ *
+ * A concurrency change restarts the container, which would redeliver every record
+ * it has not committed. The container is paused first and restarted only once it
+ * has drained: the pause has taken effect, so the listener finished its last poll
+ * (orders whose external calls run on the listener thread), and
+ * HybridRetryScheduler holds nothing of its topic (orders whose calls run
+ * asynchronously, in-process retries). A container that does not drain within
+ * drain-timeout is resumed unchanged and tried again at the next check.
+ */
+@Component
+@Slf4j
+public class ListenerAutoscaler implements DisposableBean {
+
+    static final String ORDERS_TOPIC = "orders";
+    static final String GROUP_ID = "order-consumer-group";
+
+    private static final int MAX_HISTORY = 20;
+    private static final long ADMIN_TIMEOUT_MS = 5000;
+    private static final long DRAIN_POLL_MS = 50;
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final KafkaAdmin kafkaAdmin;
+    private final ShardRouter shardRouter;
+    private final HybridRetryScheduler retryScheduler;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final long scaleUpLag;
+    private final long scaleDownLag;
+    private final Duration cooldown;
+    private final Duration poolWaitThreshold;
+    private final int resumeAfterHealthyChecks;
+    private final Duration drainTimeout;
+
+    private final List<Scaled> listeners;
+    private final AtomicLong totalLag = new AtomicLong();
+    private final AtomicInteger paused = new AtomicInteger();
+    private volatile double poolWaitMs;
+    private volatile int pendingConnections;
+
+    private final Deque<Map<String, Object>> decisions = new ArrayDeque<>();
+    private final Map<String, Counter> decisionCounters = new HashMap<>();
+    // Guards the state below; check() blocks on the admin client and container restarts,
+    // which would pin a virtual scheduler thread inside a monitor
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Admin admin;
+    private int healthyChecks;
+    private long lastAcquireCount;
+    private double lastAcquireNanos;
+
+    // A container scaled on the lag of its topic
+    private static final class Scaled {
+        private final String listenerId;
+        private final String topic;
+        private final AtomicInteger concurrency;
+        private final AtomicLong lag = new AtomicLong();
+        private volatile Map<Integer, Long> partitionLag = Map.of();
+        private long lastScaledAt;
+
+        private Scaled(String listenerId, String topic, int concurrency) {
+            this.listenerId = listenerId;
+            this.topic = topic;
+            this.concurrency = new AtomicInteger(concurrency);
+        }
+    }
+
+    public ListenerAutoscaler(KafkaListenerEndpointRegistry registry,
+                              KafkaAdmin kafkaAdmin,
+                              ShardRouter shardRouter,
+                              HybridRetryScheduler retryScheduler,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.listener.autoscale.enabled:true}") boolean enabled,
+                              @Value("${app.listener.autoscale.min-concurrency:1}") int minConcurrency,
+                              @Value("${app.listener.autoscale.max-concurrency:4}") int maxConcurrency,
+                              @Value("${app.listener.autoscale.scale-up-lag:1000}") long scaleUpLag,
+                              @Value("${app.listener.autoscale.scale-down-lag:100}") long scaleDownLag,
+                              @Value("${app.listener.autoscale.cooldown:60s}") Duration cooldown,
+                              @Value("${app.listener.autoscale.pool-wait-threshold:50ms}") Duration poolWaitThreshold,
+                              @Value("${app.listener.autoscale.resume-after-healthy-checks:2}") int resumeAfterHealthyChecks,
+                              @Value("${app.listener.autoscale.drain-timeout:30s}") Duration drainTimeout) {
+        if (minConcurrency < 1 || maxConcurrency < minConcurrency) {
+            throw new IllegalArgumentException("Listener concurrency bounds must satisfy 1 <= min <= max");
+        }
+        this.registry = registry;
+        this.kafkaAdmin = kafkaAdmin;
+        this.shardRouter = shardRouter;
+        this.retryScheduler = retryScheduler;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.scaleUpLag = scaleUpLag;
+        this.scaleDownLag = scaleDownLag;
+        this.cooldown = cooldown;
+        this.poolWaitThreshold = poolWaitThreshold;
+        this.resumeAfterHealthyChecks = resumeAfterHealthyChecks;
+        this.drainTimeout = drainTimeout;
+        this.listeners = List.of(new Scaled(OrderListener.LISTENER_ID, ORDERS_TOPIC, minConcurrency),
+                new Scaled(OrderListener.BATCH_LISTENER_ID, OrderListener.BATCH_TOPIC, minConcurrency));
+
+        for (Scaled listener : listeners) {
+            Gauge.builder("orders.listener.concurrency", listener.concurrency, AtomicInteger::get)
+                    .description("Consumer threads of the order listener")
+                    .tag("topic", listener.topic).register(meterRegistry);
+            Gauge.builder("orders.listener.lag", listener.lag, AtomicLong::get)
+                    .description("Consumer group lag on the topic")
+                    .tag("topic", listener.topic).register(meterRegistry);
+        }
+        Gauge.builder("orders.listener.paused", paused, AtomicInteger::get)
+                .description("1 while the order listener is paused for backpressure").register(meterRegistry);
+        Gauge.builder("orders.listener.pool.wait", this, autoscaler -> autoscaler.poolWaitMs)
+                .description("Average connection acquire time over the last check")
+                .baseUnit("milliseconds").register(meterRegistry);
+    }
+
+
+    @Scheduled(fixedDelayString = "${app.listener.autoscale.interval-ms:10000}",
+            initialDelayString = "${app.listener.autoscale.interval-ms:10000}")
+    public void check() {
+        lock.lock();
+        try {
+            adjust();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private void adjust() {
+        if (!enabled) {
+            return;
+        }
+
+        ConcurrentMessageListenerContainer<?, ?> main = container(OrderListener.LISTENER_ID);
+        if (main == null || !main.isRunning()) {
+            return;
+        }
+
+        boolean saturated = readPoolSaturation();
+        try {
+            readLag();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Could not read consumer lag for {}: {}", GROUP_ID, e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (saturated) {
+            healthyChecks = 0;
+            if (paused.get() == 0) {
+                orderContainers().forEach(MessageListenerContainer::pause);
+                paused.set(1);
+                decide("pause", String.format("pool wait %.1f ms, %d threads waiting", poolWaitMs, pendingConnections));
+            }
+            return;
+        }
+
+        if (paused.get() == 1) {
+            if (++healthyChecks < resumeAfterHealthyChecks) {
+                return;
+            }
+            orderContainers().forEach(MessageListenerContainer::resume);
+            paused.set(0);
+            decide("resume", String.format("pool healthy for %d checks", healthyChecks));
+            return;
+        }
+
+        for (Scaled listener : listeners) {
+            scale(listener);
+        }
+    }
+
+
+    private void scale(Scaled listener) {
+        ConcurrentMessageListenerContainer<?, ?> container = container(listener.listenerId);
+        if (container == null || !container.isRunning()
+                || System.currentTimeMillis() - listener.lastScaledAt < cooldown.toMillis()) {
+            return;
+        }
+
+        int current = listener.concurrency.get();
+        int partitions = Math.max(1, listener.partitionLag.size());
+        int ceiling = Math.min(maxConcurrency, partitions);
+        long lag = listener.lag.get();
+
+        if (lag > scaleUpLag && current < ceiling) {
+            rescale(container, listener, current + 1, String.format("%s lag %d > %d", listener.topic, lag, scaleUpLag));
+        } else if (lag < scaleDownLag && current > minConcurrency) {
+            rescale(container, listener, current - 1, String.format("%s lag %d < %d", listener.topic, lag, scaleDownLag));
+        }
+    }
+
+
+    public Map<String, Object> getStatus() {
+        lock.lock();
+        try {
+            return status();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("minConcurrency", minConcurrency);
+        status.put("maxConcurrency", maxConcurrency);
+        status.put("paused", paused.get() == 1);
+        status.put("totalLag", totalLag.get());
+        List<Map<String, Object>> containers = new ArrayList<>();
+        for (Scaled listener : listeners) {
+            Map<String, Object> container = new HashMap<>();
+            container.put("listenerId", listener.listenerId);
+            container.put("topic", listener.topic);
+            container.put("concurrency", listener.concurrency.get());
+            container.put("lag", listener.lag.get());
+            container.put("partitionLag", listener.partitionLag);
+            containers.add(container);
+        }
+        status.put("listeners", containers);
+        status.put("poolWaitMs", poolWaitMs);
+        status.put("pendingConnections", pendingConnections);
+        status.put("decisions", new ArrayList<>(decisions));
+        return status;
+    }
+
+
+    private void rescale(ConcurrentMessageListenerContainer<?, ?> container, Scaled listener, int target,
+                         String reason) {
+        String action = target > listener.concurrency.get() ? "scale_up" : "scale_down";
+        container.pause();
+        if (!awaitDrained(container, listener.topic)) {
+            container.resume();
+            decide("scale_deferred", String.format("%s, %s still in flight after %d ms",
+                    reason, listener.topic, drainTimeout.toMillis()), listener);
+            return;
+        }
+        container.stop();
+        container.setConcurrency(target);
+        container.start();
+        container.resume();
+
+        listener.concurrency.set(target);
+        listener.lastScaledAt = System.currentTimeMillis();
+        decide(action, reason, listener);
+    }
+
+
+    // Paused with nothing left that a restart would redeliver
+    private boolean awaitDrained(MessageListenerContainer container, String topic) {
+        long deadline = System.currentTimeMillis() + drainTimeout.toMillis();
+        while (!container.isContainerPaused() || retryScheduler.hasInFlight(topic)) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(DRAIN_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private void decide(String action, String reason) {
+        decide(action, reason, null);
+    }
+
+
+    // listener is null for decisions that apply to every order container
+    private void decide(String action, String reason, Scaled listener) {
+        decisionCounters.computeIfAbsent(action, key -> Counter.builder("orders.listener.decisions")
+                        .description("Autoscaling and backpressure decisions")
+                        .tag("action", key)
+                        .register(meterRegistry))
+                .increment();
+
+        Map<String, Object> decision = new HashMap<>();
+        decision.put("action", action);
+        decision.put("reason", reason);
+        if (listener != null) {
+            decision.put("listenerId", listener.listenerId);
+            decision.put("concurrency", listener.concurrency.get());
+        }
+        decision.put("at", LocalDateTime.now());
+        decisions.addFirst(decision);
+        if (decisions.size() > MAX_HISTORY) {
+            decisions.removeLast();
+        }
+
+        if (listener != null) {
+            log.info(" Listener {}: {} ({} concurrency {})", action, reason, listener.listenerId,
+                    listener.concurrency.get());
+        } else {
+            log.info(" Listener {}: {}", action, reason);
+        }
+    }
+
+
+    // Saturated when threads are queueing for connections or the average wait since the last check is too long
+    private boolean readPoolSaturation() {
+        int pending = 0;
+        for (int i = 0; i < shardRouter.shardCount(); i++) {
+            HikariPoolMXBean pool = shardRouter.shardDataSource(i).getHikariPoolMXBean();
+            if (pool != null) {
+                pending += pool.getThreadsAwaitingConnection();
+            }
+        }
+        pendingConnections = pending;
+
+        long count = 0;
+        double nanos = 0;
+        for (Timer timer : meterRegistry.find("hikaricp.connections.acquire").timers()) {
+            count += timer.count();
+            nanos += timer.totalTime(TimeUnit.NANOSECONDS);
+        }
+        long acquired = count - lastAcquireCount;
+        poolWaitMs = acquired > 0 ? (nanos - lastAcquireNanos) / acquired / 1_000_000.0 : 0.0;
+        lastAcquireCount = count;
+        lastAcquireNanos = nanos;
+
+        return pending > 0 || poolWaitMs > poolWaitThreshold.toMillis();
+    }
+
+
+    private void readLag() throws ExecutionException, InterruptedException, TimeoutException {
+        Admin client = admin();
+        Map<TopicPartition, OffsetAndMetadata> committed = client.listConsumerGroupOffsets(GROUP_ID)
+                .partitionsToOffsetAndMetadata()
+                .get(ADMIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        Map<String, KafkaFuture<TopicDescription>> topics = client.describeTopics(
+                listeners.stream().map(listener -> listener.topic).toList()).topicNameValues();
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        for (Scaled listener : listeners) {
+            try {
+                topics.get(listener.topic).get(ADMIN_TIMEOUT_MS, TimeUnit.MILLISECONDS).partitions().forEach(partition ->
+                        latest.put(new TopicPartition(listener.topic, partition.partition()), OffsetSpec.latest()));
+            } catch (ExecutionException e) {
+                // orders-batch only exists once the producer's batch path has been used
+                if (!(e.getCause() instanceof UnknownTopicOrPartitionException)) {
+                    throw e;
+                }
+            }
+        }
+
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> ends = client.listOffsets(latest).all()
+                .get(ADMIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        long total = 0;
+        for (Scaled listener : listeners) {
+            Map<Integer, Long> lagByPartition = new TreeMap<>();
+            long topicLag = 0;
+            for (Map.Entry<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> end : ends.entrySet()) {
+                if (!end.getKey().topic().equals(listener.topic)) {
+                    continue;
+                }
+                OffsetAndMetadata offset = committed.get(end.getKey());
+                long lag = Math.max(0, end.getValue().offset() - (offset != null ? offset.offset() : 0));
+                lagByPartition.put(end.getKey().partition(), lag);
+                topicLag += lag;
+            }
+            listener.partitionLag = lagByPartition;
+            listener.lag.set(topicLag);
+            total += topicLag;
+        }
+        totalLag.set(total);
+    }
+
+
+    private ConcurrentMessageListenerContainer<?, ?> container(String listenerId) {
+        MessageListenerContainer container = registry.getListenerContainer(listenerId);
+        return container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent ? concurrent : null;
+    }
+
+
+    // The main and batch listeners plus the retry and DLT containers @RetryableTopic derives from the main one
+    private List<MessageListenerContainer> orderContainers() {
+        return registry.getListenerContainers().stream()
+                .filter(container -> container.getListenerId() != null
+                        && container.getListenerId().startsWith(OrderListener.LISTENER_ID))
+                .toList();
+    }
+
+
+    // package-private so the tests can stand in for the cluster
+    Admin admin() {
+        if (admin == null) {
+            admin = Admin.create(kafkaAdmin.getConfigurationProperties());
+        }
+        return admin;
+    }
+
+
+    @Override
+    public void destroy() {
+        if (admin != null) {
+            admin.close(Duration.ofSeconds(5));
+        }
+    }
+}
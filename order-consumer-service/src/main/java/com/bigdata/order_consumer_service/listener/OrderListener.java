@@ -1,14 +1,21 @@
 package com.bigdata.order_consumer_service.listener;
 
 import com.bigdata.order_consumer_service.entity.FailedOrderEntity;
-import com.bigdata.order_consumer_service.exception.ErrorCategory;
+import com.bigdata.order_consumer_service.exception.CircuitOpenException;
 import com.bigdata.order_consumer_service.exception.PermanentProcessingException;
 import com.bigdata.order_consumer_service.exception.TemporaryProcessingException;
-import com.bigdata.order_consumer_service.repository.FailedOrderRepository;
+import com.bigdata.order_consumer_service.service.CircuitBreakerService;
+import com.bigdata.order_consumer_service.service.ExternalCallStage;
+import com.bigdata.order_consumer_service.service.FailedOrderRecorder;
 import com.bigdata.order_consumer_service.service.OrderService;
+import com.bigdata.order_consumer_service.service.ShardRouter;
+import com.bigdata.rules.OrderRule;
+import com.bigdata.rules.OrderRules;
 import com.bigdata.schema.Order;
+import com.bigdata.schema.OrderBatch;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.annotation.RetryableTopic;
@@ -19,17 +26,42 @@ import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Component;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.Random;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class OrderListener {
 
-    private final FailedOrderRepository failedOrderRepository;
+    // Retry and DLT containers get this id plus a suffix
+    public static final String LISTENER_ID = "orders-listener";
+
+    // OrderBatch records from the producer's batch path; the id keeps it among the autoscaler's order containers
+    public static final String BATCH_TOPIC = "orders-batch";
+    public static final String BATCH_LISTENER_ID = LISTENER_ID + "-batch";
+
+    // Set on records published to the retry topics and the DLT (see RetryTopicConfig)
+    public static final String FAILURE_CATEGORY_HEADER = "failure-category";
+    public static final String FAILURE_TYPE_HEADER = "failure-type";
+
+    private final FailedOrderRecorder failedOrderRecorder;
     private final OrderService orderService;
-    private final Random random = new Random();
+    private final ShardRouter shardRouter;
+    private final HybridRetryScheduler retryScheduler;
+    private final CircuitBreakerService circuitBreakers;
+    private final OrderRules rules;
+    private final ExternalCallStage externalCalls;
+
+    // Last async processing started per orderId; a copy of the order waits for it (see inOrderOf)
+    private final ConcurrentMap<String, CompletableFuture<Void>> processingByOrderId = new ConcurrentHashMap<>();
 
     @RetryableTopic(
             attempts = "4",
@@ -43,12 +75,13 @@ public class OrderListener {
             dltStrategy = org.springframework.kafka.retrytopic.DltStrategy.FAIL_ON_ERROR,
             include = {TemporaryProcessingException.class}
     )
-    @KafkaListener(topics = "orders", groupId = "order-consumer-group")
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = "orders", groupId = "order-consumer-group")
     public void listen(
             Order order,
             @Header(value = KafkaHeaders.RECEIVED_TOPIC, required = false) String topic,
             @Header(value = KafkaHeaders.RECEIVED_PARTITION, required = false) Integer partition,
             @Header(value = KafkaHeaders.OFFSET, required = false) Long offset,
+            @Header(value = KafkaHeaders.RECEIVED_TIMESTAMP, required = false) Long timestamp,
             @Header(value = "cid", required = false) byte[] cidBytes,
             Acknowledgment acknowledgment
     ) {
@@ -64,32 +97,152 @@ public class OrderListener {
             }
         }
 
+        // Avro strings are Utf8; convert once and reuse everywhere below
+        String orderId = order.getOrderId().toString();
+        String product = order.getProduct().toString();
+        float price = order.getPrice();
+
         log.info(" [Attempt {}] Consuming from: {} | cid={} | Order: {} | Product: {} | Price: ${}",
-                retryAttempt, topic, cid, order.getOrderId(), order.getProduct(), order.getPrice());
+                retryAttempt, topic, cid, orderId, product, price);
+
+        // Main-topic records are retried in-process and acknowledged through the scheduler
+        TopicPartition source = retryScheduler.isEnabled() && retryAttempt == 0
+                && topic != null && partition != null && offset != null
+                ? new TopicPartition(topic, partition) : null;
+        Runnable save = () -> shardRouter.forOrderId(orderId,
+                () -> orderService.saveOrder(orderId, product, price, cid, topic, partition, offset));
+        Runnable attempt = () -> {
+            processOrder(orderId, product, price, cid);
+            save.run();
+        };
 
         try {
-            processOrder(order, cid);
-            orderService.saveOrder(order, cid, topic, partition, offset);
-            if (acknowledgment != null) {
+            if (source != null && externalCalls.isAsync()) {
+                // Calls and save continue off this thread; later records do not wait for them
+                long received = timestamp != null ? timestamp : System.currentTimeMillis();
+                CompletableFuture<Void> processing = inOrderOf(orderId,
+                        () -> startProcessing(orderId, product, price, cid, save));
+                retryScheduler.hold(source, offset);
+                processing.whenComplete((ignored, error) -> finishAsync(
+                        error, order, cid, topic, source, offset, received, acknowledgment, attempt));
+                return;
+            }
+
+            attempt.run();
+            if (source != null) {
+                retryScheduler.completed(source, offset, acknowledgment);
+            } else if (acknowledgment != null) {
                 acknowledgment.acknowledge();
             }
+            if (retryAttempt > 0) {
+                retryScheduler.recordTopicSuccess(timestamp);
+            }
 
             log.info("Successfully processed and saved order: {} | Product: {}",
-                    order.getOrderId(), order.getProduct());
+                    orderId, product);
+
+        } catch (CircuitOpenException e) {
+            // Not a failure of this order: wait out the breaker on this partition instead of using up a retry
+            log.warn(" Circuit open ({}) | Order: {} - pausing {} ms and redelivering",
+                    e.getOpenCategory(), orderId, e.getRetryAfter().toMillis());
+            if (acknowledgment == null) {
+                throw e;
+            }
+            acknowledgment.nack(e.getRetryAfter());
 
         } catch (TemporaryProcessingException e) {
             log.warn(" [Attempt {}] Temporary failure | Order: {} | Category: {} | Reason: {} - WILL RETRY",
-                    retryAttempt, order.getOrderId(), e.getCategory(), e.getMessage());
+                    retryAttempt, orderId, e.getCategory(), e.getMessage());
+            if (source != null) {
+                retryScheduler.retry(new HybridRetryScheduler.RetryTask(order, cid, source, offset,
+                        timestamp != null ? timestamp : System.currentTimeMillis(), acknowledgment, attempt,
+                        (failure, retries) -> recordFailure(order, failure, retries, topic, cid)), e);
+                return;
+            }
+            if (retryAttempt < HybridRetryScheduler.MAX_RETRIES) {
+                retryScheduler.recordTopicAttempt();
+            }
             throw e;
 
         } catch (PermanentProcessingException e) {
             log.error(" Permanent failure | Order: {} | Category: {} | Reason: {} - SENDING TO DLQ",
-                    order.getOrderId(), e.getCategory(), e.getMessage());
+                    orderId, e.getCategory(), e.getMessage());
+            if (source != null) {
+                // Recorded here rather than via orders-dlt so the error handler's commit cannot pass held offsets
+                retryScheduler.hold(source, offset);
+                try {
+                    recordFailure(order, e, 0, topic, cid)
+                            .thenRun(() -> retryScheduler.release(source, offset, acknowledgment));
+                } catch (RuntimeException recordFailed) {
+                    retryScheduler.release(source, offset, null);
+                    throw recordFailed;
+                }
+                return;
+            }
             throw e;
         }
     }
 
 
+    /**
+     * Unpacks an OrderBatch and handles every order on its own: each is processed,
+     * retried (in-process or via the orders-retry-N topics, as a single Order) and
+     * dead-lettered separately, so one bad order does not hold up or fail the rest.
+     * The record is acknowledged once all its orders are settled.
+     */
+    @KafkaListener(id = BATCH_LISTENER_ID, idIsGroup = false, topics = BATCH_TOPIC, groupId = "order-consumer-group")
+    public void listenBatch(
+            OrderBatch batch,
+            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+            @Header(KafkaHeaders.OFFSET) long offset,
+            @Header(value = KafkaHeaders.RECEIVED_TIMESTAMP, required = false) Long timestamp,
+            @Header(value = "cid", required = false) byte[] cidBytes,
+            Acknowledgment acknowledgment
+    ) {
+        String batchCid = cidBytes != null ? new String(cidBytes) : "N/A";
+        List<Order> orders = batch.getOrders();
+        TopicPartition source = new TopicPartition(topic, partition);
+        long received = timestamp != null ? timestamp : System.currentTimeMillis();
+
+        log.info(" Consuming batch from: {} | cid={} | Orders: {} | Offset: {}", topic, batchCid, orders.size(), offset);
+
+        // Held for the loop itself, so orders finishing early cannot acknowledge the record
+        retryScheduler.hold(source, offset);
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            String orderId = order.getOrderId().toString();
+            String product = order.getProduct().toString();
+            float price = order.getPrice();
+            String cid = batchCid + "/" + i;
+
+            Runnable save = () -> shardRouter.forOrderId(orderId,
+                    () -> orderService.saveOrder(orderId, product, price, cid, topic, partition, offset));
+            Runnable attempt = () -> {
+                processOrder(orderId, product, price, cid);
+                save.run();
+            };
+
+            retryScheduler.hold(source, offset);
+            CompletableFuture<Void> processing;
+            try {
+                if (externalCalls.isAsync()) {
+                    processing = inOrderOf(orderId, () -> startProcessing(orderId, product, price, cid, save));
+                } else {
+                    attempt.run();
+                    processing = CompletableFuture.completedFuture(null);
+                }
+            } catch (RuntimeException e) {
+                processing = CompletableFuture.failedFuture(e);
+            }
+            // Failures are recorded against the orders topic: DLQ reprocessing re-publishes single orders
+            processing.whenComplete((ignored, error) -> finishAsync(error, order, cid, ListenerAutoscaler.ORDERS_TOPIC,
+                    source, offset, received, acknowledgment, attempt));
+        }
+        retryScheduler.release(source, offset, acknowledgment);
+    }
+
+
     @DltHandler
     public void handleDlt(
             Order order,
@@ -97,7 +250,10 @@ public class OrderListener {
             @Header(KafkaHeaders.EXCEPTION_STACKTRACE) String stackTrace,
             @Header(value = KafkaHeaders.RECEIVED_TOPIC, required = false) String receivedTopic,
             @Header(value = KafkaHeaders.ORIGINAL_TOPIC, required = false) String originalTopic,
-            @Header(value = "cid", required = false) byte[] cidBytes
+            @Header(value = FAILURE_TYPE_HEADER, required = false) byte[] failureTypeBytes,
+            @Header(value = FAILURE_CATEGORY_HEADER, required = false) byte[] failureCategoryBytes,
+            @Header(value = "cid", required = false) byte[] cidBytes,
+            Acknowledgment acknowledgment
     ) {
         String cid = cidBytes != null ? new String(cidBytes) : "N/A";
 
@@ -115,179 +271,229 @@ public class OrderListener {
                 cid, order.getOrderId(), order.getProduct(), retryCount, exceptionMessage);
 
 
-        String failureType = exceptionMessage.contains("Temporary") ? "TEMPORARY" : "PERMANENT";
-        String failureCategory = extractCategory(exceptionMessage);
+        // Records dead-lettered before the headers existed carry neither
+        String failureType = failureTypeBytes != null
+                ? new String(failureTypeBytes, StandardCharsets.UTF_8) : failureType(null);
+        String failureCategory = failureCategoryBytes != null
+                ? new String(failureCategoryBytes, StandardCharsets.UTF_8) : failureCategory(null);
+
+        recordFailure(order, failureType, failureCategory, exceptionMessage, stackTrace, retryCount,
+                originalTopic != null ? originalTopic : "orders", cid)
+                .thenRun(() -> {
+                    if (acknowledgment != null) {
+                        acknowledgment.acknowledge();
+                    }
+                });
+    }
+
+
+    // Failures resolved in-process never reach orders-dlt; record them the same way handleDlt does
+    private CompletableFuture<Void> recordFailure(Order order, RuntimeException failure, int retryCount,
+                                                  String originalTopic, String cid) {
+        StringWriter stackTrace = new StringWriter();
+        failure.printStackTrace(new PrintWriter(stackTrace));
+        String rule = failureRule(failure);
+        if (rule != null) {
+            // one failure signature per rule rather than one for all trace-less rejections
+            stackTrace.append("\tat order-rule ").append(rule).append(System.lineSeparator());
+        }
+
+        return recordFailure(order, failureType(failure), failureCategory(failure), failure.getMessage(),
+                stackTrace.toString(), retryCount, originalTopic, cid);
+    }
 
 
+    // Completes once the row is committed; FailedOrderRecorder writes in batches
+    private CompletableFuture<Void> recordFailure(Order order, String failureType, String failureCategory,
+                                                  String errorMessage, String stackTrace, int retryCount,
+                                                  String originalTopic, String cid) {
         FailedOrderEntity failedOrder = FailedOrderEntity.builder()
                 .orderId(order.getOrderId().toString())
                 .product(order.getProduct().toString())
                 .price(order.getPrice())
+                .eventTime(order.getEventTime())
                 .failureType(failureType)
                 .failureCategory(failureCategory)
-                .errorMessage(exceptionMessage)
-                .stackTrace(stackTrace)
+                .errorMessage(errorMessage)
                 .retryCount(retryCount)
-                .originalTopic(originalTopic != null ? originalTopic : "orders")
+                .originalTopic(originalTopic)
                 .correlationId(cid)
                 .failedAt(LocalDateTime.now())
                 .status("PENDING")
                 .build();
 
-        failedOrderRepository.save(failedOrder);
-
-        log.info(" Saved failed order to database | ID: {} | Order: {}",
-                failedOrder.getId(), order.getOrderId());
+        log.info(" Recording failed order | Order: {} | Category: {}", order.getOrderId(), failureCategory);
+        return failedOrderRecorder.record(failedOrder, stackTrace);
     }
 
 
-    private void processOrder(Order order, String cid) {
-        String orderId = order.getOrderId().toString();
-        String product = order.getProduct().toString();
-        float price = order.getPrice();
-
-
-        validateOrder(orderId, product, price);
-
-
-        checkBusinessRules(orderId, product, price);
-
+    public static String failureType(Throwable failure) {
+        return failure instanceof TemporaryProcessingException ? "TEMPORARY"
+                : failure instanceof PermanentProcessingException ? "PERMANENT"
+                : "UNKNOWN";
+    }
 
-        callExternalServices(orderId);
 
+    private static String failureRule(Throwable failure) {
+        return failure instanceof TemporaryProcessingException temporary ? temporary.getRule()
+                : failure instanceof PermanentProcessingException permanent ? permanent.getRule()
+                : null;
+    }
 
-        log.info(" Processing order | cid={} | Order: {} | Product: {} | Price: ${}",
-                cid, orderId, product, price);
 
+    public static String failureCategory(Throwable failure) {
+        return failure instanceof TemporaryProcessingException temporary ? temporary.getCategory()
+                : failure instanceof PermanentProcessingException permanent ? permanent.getCategory()
+                : "UNKNOWN";
+    }
 
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
 
-        log.info(" Order processed successfully | Order: {}", orderId);
+    // Blocking form: retries and retry topics finish the order on the calling thread
+    private void processOrder(String orderId, String product, float price, String cid) {
+        ExternalCallStage.await(startProcessing(orderId, product, price, cid, () -> { }));
     }
 
 
-    private void validateOrder(String orderId, String product, float price) {
-
-        if (price <= 0) {
-            throw new PermanentProcessingException(
-                    ErrorCategory.INVALID_PRICE,
-                    "Price must be greater than zero: " + price
-            );
-        }
+    // Rule and breaker rejections are thrown here; failures of the external calls (and of then) fail the future
+    private CompletableFuture<Void> startProcessing(String orderId, String product, float price, String cid,
+                                                    Runnable then) {
+        validateOrder(orderId, product, price);
 
 
-        if (price > 10000) {
-            throw new PermanentProcessingException(
-                    ErrorCategory.VALIDATION_ERROR,
-                    "Price exceeds maximum allowed: $" + price
-            );
-        }
+        checkBusinessRules(orderId, product, price);
 
 
-        if (product == null || product.trim().isEmpty()) {
-            throw new PermanentProcessingException(
-                    ErrorCategory.VALIDATION_ERROR,
-                    "Product name cannot be empty"
-            );
+        circuitBreakers.beforeCall();
+        OrderRule failed = rules.check(OrderRule.Stage.EXTERNAL, orderId, product, price);
+        if (failed != null) {
+            circuitBreakers.onFailure(failed.category());
+            throw rejection(failed, orderId, product, price);
         }
 
 
-        if (orderId.endsWith("88")) {
-            throw new PermanentProcessingException(
-                    ErrorCategory.VALIDATION_ERROR,
-                    "Demo: Invalid order format for order: " + orderId
-            );
-        }
-    }
-
+        log.info(" Processing order | cid={} | Order: {} | Product: {} | Price: ${}",
+                cid, orderId, product, price);
 
-    private void checkBusinessRules(String orderId, String product, float price) {
+        return externalCalls.call(orderId, product, price, then).whenComplete((ignored, error) -> {
+            RuntimeException failure = error != null ? ExternalCallStage.unwrap(error) : null;
+            if (failure instanceof TemporaryProcessingException temporary) {
+                circuitBreakers.onFailure(temporary.getCategory());
+                return;
+            }
+            circuitBreakers.onSuccess(); // a permanent outcome still means the dependencies answered
+            if (failure == null) {
+                log.info(" Order processed successfully | Order: {}", orderId);
+            }
+        });
+    }
 
 
-        if (orderId.endsWith("77")) {
-            throw new PermanentProcessingException(
-                    ErrorCategory.DUPLICATE_ORDER,
-                    "Order already exists: " + orderId
-            );
+    /**
+     * Runs the async processing of an order only after the one already running for
+     * the same orderId (a producer retry, a duplicate within a batch) has finished,
+     * so the copy sees the saved order and fails as a duplicate instead of racing
+     * it. Without a predecessor it starts on the calling thread and its immediate
+     * rejections are thrown as before; a chained start reports them through the
+     * future.
+     */
+    private CompletableFuture<Void> inOrderOf(String orderId, Supplier<CompletableFuture<Void>> start) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = processingByOrderId.put(orderId, done);
+        done.whenComplete((ignored, error) -> processingByOrderId.remove(orderId, done));
+
+        if (previous == null) {
+            try {
+                relay(start.get(), done);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                throw e;
+            }
+        } else {
+            previous.handle((ignored, error) -> null)
+                    .thenCompose(ignored -> start.get())
+                    .whenComplete((ignored, error) -> relay(error, done));
         }
+        return done;
+    }
 
 
-        if (orderId.endsWith("66")) {
-            throw new PermanentProcessingException(
-                    ErrorCategory.PRODUCT_NOT_FOUND,
-                    "Product not found in catalog: " + product
-            );
-        }
+    private static void relay(CompletableFuture<Void> from, CompletableFuture<Void> to) {
+        from.whenComplete((ignored, error) -> relay(error, to));
+    }
 
 
-        if (orderId.endsWith("55")) {
-            throw new PermanentProcessingException(
-                    ErrorCategory.INSUFFICIENT_INVENTORY,
-                    "Insufficient inventory for product: " + product
-            );
+    private static void relay(Throwable error, CompletableFuture<Void> to) {
+        if (error != null) {
+            to.completeExceptionally(error);
+        } else {
+            to.complete(null);
         }
     }
 
 
-    private void callExternalServices(String orderId) {
-
-
-        if (orderId.endsWith("99")) {
-            throw new TemporaryProcessingException(
-                    ErrorCategory.NETWORK_ERROR,
-                    "Network timeout while calling payment service"
-            );
+    // Outcome of a main-topic or batched order processed asynchronously; its offset is held until this settles it
+    private void finishAsync(Throwable error, Order order, String cid, String topic, TopicPartition source,
+                             long offset, long timestamp, Acknowledgment acknowledgment, Runnable attempt) {
+        String orderId = order.getOrderId().toString();
+        if (error == null) {
+            retryScheduler.release(source, offset, acknowledgment);
+            log.info("Successfully processed and saved order: {} | Product: {}", orderId, order.getProduct());
+            return;
         }
 
-
-        if (orderId.endsWith("98")) {
-            throw new TemporaryProcessingException(
-                    ErrorCategory.DATABASE_TIMEOUT,
-                    "Database connection timeout - retry will likely succeed"
-            );
+        RuntimeException failure = ExternalCallStage.unwrap(error);
+        if (failure instanceof TemporaryProcessingException temporary) {
+            HybridRetryScheduler.RetryTask task = new HybridRetryScheduler.RetryTask(order, cid, source, offset,
+                    timestamp, acknowledgment, attempt,
+                    (retryFailure, retries) -> recordFailure(order, retryFailure, retries, topic, cid));
+            if (temporary instanceof CircuitOpenException open) {
+                // Batched orders and orders that waited for a copy of themselves (inOrderOf) get here;
+                // any other single record is redelivered by the listener instead
+                log.warn(" Circuit open ({}) | Order: {} - waiting {} ms", open.getOpenCategory(), orderId,
+                        open.getRetryAfter().toMillis());
+                retryScheduler.defer(task, open);
+            } else {
+                log.warn(" [Attempt 0] Temporary failure | Order: {} | Category: {} | Reason: {} - WILL RETRY",
+                        orderId, temporary.getCategory(), temporary.getMessage());
+                retryScheduler.retry(task, temporary);
+            }
+            retryScheduler.release(source, offset, null); // the task holds the offset now
+            return;
         }
 
-
-        if (orderId.endsWith("97")) {
-            throw new TemporaryProcessingException(
-                    ErrorCategory.SERVICE_UNAVAILABLE,
-                    "Inventory service returned 503 - Service Unavailable"
-            );
+        log.error(" Permanent failure | Order: {} | Category: {} | Reason: {} - SENDING TO DLQ",
+                orderId, failureCategory(failure), failure.getMessage());
+        try {
+            recordFailure(order, failure, 0, topic, cid)
+                    .thenRun(() -> retryScheduler.release(source, offset, acknowledgment));
+        } catch (RuntimeException recordFailed) {
+            // Stays held like a failed retry spill: the partition's commits stop here and a restart redelivers it
+            log.error("Could not record failed order {}", orderId, recordFailed);
         }
+    }
 
 
-        if (orderId.endsWith("96")) {
-            throw new TemporaryProcessingException(
-                    ErrorCategory.RATE_LIMIT_EXCEEDED,
-                    "Rate limit exceeded - backing off"
-            );
+    // package-private so the JMH benchmarks can exercise the checks directly
+    void validateOrder(String orderId, String product, float price) {
+        OrderRule rejected = rules.check(OrderRule.Stage.VALIDATION, orderId, product, price);
+        if (rejected != null) {
+            throw rejection(rejected, orderId, product, price);
         }
+    }
 
 
-        if (orderId.endsWith("95")) {
-            if (random.nextInt(10) < 3) {
-                throw new TemporaryProcessingException(
-                        ErrorCategory.SERVICE_UNAVAILABLE,
-                        "Random transient failure - will likely succeed on retry"
-                );
-            }
+    void checkBusinessRules(String orderId, String product, float price) {
+        OrderRule rejected = rules.check(OrderRule.Stage.BUSINESS, orderId, product, price);
+        if (rejected != null) {
+            throw rejection(rejected, orderId, product, price);
         }
     }
 
 
-    private String extractCategory(String message) {
-        if (message.contains(ErrorCategory.NETWORK_ERROR)) return ErrorCategory.NETWORK_ERROR;
-        if (message.contains(ErrorCategory.DATABASE_TIMEOUT)) return ErrorCategory.DATABASE_TIMEOUT;
-        if (message.contains(ErrorCategory.SERVICE_UNAVAILABLE)) return ErrorCategory.SERVICE_UNAVAILABLE;
-        if (message.contains(ErrorCategory.VALIDATION_ERROR)) return ErrorCategory.VALIDATION_ERROR;
-        if (message.contains(ErrorCategory.DUPLICATE_ORDER)) return ErrorCategory.DUPLICATE_ORDER;
-        if (message.contains(ErrorCategory.INVALID_PRICE)) return ErrorCategory.INVALID_PRICE;
-        if (message.contains(ErrorCategory.PRODUCT_NOT_FOUND)) return ErrorCategory.PRODUCT_NOT_FOUND;
-        if (message.contains(ErrorCategory.INSUFFICIENT_INVENTORY)) return ErrorCategory.INSUFFICIENT_INVENTORY;
-        return "UNKNOWN";
+    private static RuntimeException rejection(OrderRule rule, String orderId, String product, float price) {
+        String message = rule.message(orderId, product, price);
+        return rule.isTemporary()
+                ? new TemporaryProcessingException(rule.category(), message, rule.toString())
+                : new PermanentProcessingException(rule.category(), message, rule.toString());
     }
 }
\ No newline at end of file
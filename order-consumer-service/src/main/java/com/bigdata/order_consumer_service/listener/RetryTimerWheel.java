@@ -0,0 +1,146 @@
+package com.bigdata.order_consumer_service.listener;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timer wheel for short retry delays. A task lands in the bucket of its
+ * deadline tick modulo the wheel size; one ticker thread advances a tick at a time
+ * and hands due tasks to the worker pool, leaving tasks due in a later round where
+ * they are. Scheduling is O(1) and the wheel holds at most {@code capacity} tasks,
+ * counting the ones currently running.
+ */
+@Slf4j
+class RetryTimerWheel<T extends Runnable> {
+
+    private final long tickNanos;
+    private final int mask;
+    private final int capacity;
+    private final ArrayDeque<Entry<T>>[] buckets;
+    private final ExecutorService workers;
+    private final AtomicInteger size = new AtomicInteger();
+    private final Runnable onRelease;
+    private final Thread ticker;
+    private final long startNanos = System.nanoTime();
+
+    private final Object lock = new Object();
+    private long currentTick;
+
+    private record Entry<T>(long deadlineTick, T task) {
+    }
+
+    @SuppressWarnings("unchecked")
+    RetryTimerWheel(long tickMillis, int wheelSize, int capacity, ExecutorService workers, Runnable onRelease) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = wheelSize - 1;
+        this.capacity = capacity;
+        this.buckets = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.workers = workers;
+        this.onRelease = onRelease;
+        this.ticker = new Thread(this::run, "order-retry-wheel");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+
+    // False when the wheel is full; the caller has to put the task somewhere else
+    boolean schedule(long delayMillis, T task) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+
+        long due = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        synchronized (lock) {
+            long deadline = Math.max(currentTick + 1, (due + tickNanos - 1) / tickNanos);
+            buckets[(int) (deadline & mask)].add(new Entry<>(deadline, task));
+        }
+        return true;
+    }
+
+
+    int size() {
+        return size.get();
+    }
+
+
+    int capacity() {
+        return capacity;
+    }
+
+
+    // Stops ticking and returns the tasks that never ran
+    List<T> stop() {
+        ticker.interrupt();
+        List<T> remaining = new ArrayList<>();
+        synchronized (lock) {
+            for (ArrayDeque<Entry<T>> bucket : buckets) {
+                bucket.forEach(entry -> remaining.add(entry.task()));
+                bucket.clear();
+            }
+        }
+        workers.shutdown();
+        return remaining;
+    }
+
+
+    private void run() {
+        long tick = 0;
+        List<T> due = new ArrayList<>();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            long sleep = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            tick++;
+
+            synchronized (lock) {
+                currentTick = tick;
+                Iterator<Entry<T>> bucket = buckets[(int) (tick & mask)].iterator();
+                while (bucket.hasNext()) {
+                    Entry<T> entry = bucket.next();
+                    if (entry.deadlineTick() <= tick) {
+                        due.add(entry.task());
+                        bucket.remove();
+                    }
+                }
+            }
+
+            for (T task : due) {
+                try {
+                    workers.execute(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            size.decrementAndGet();
+                            onRelease.run();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    size.decrementAndGet();
+                    log.warn("Retry worker pool is shut down, dropping a due retry");
+                }
+            }
+            due.clear();
+        }
+    }
+}
@@ -4,19 +4,7 @@ import com.bigdata.order_consumer_service.entity.FailedOrderEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
-import java.util.Optional;
-
+// Listings and statistics go through FailedOrderQueryService
 @Repository
 public interface FailedOrderRepository extends JpaRepository<FailedOrderEntity, Long> {
-
-    List<FailedOrderEntity> findByStatus(String status);
-
-    List<FailedOrderEntity> findByFailureType(String failureType);
-
-    Optional<FailedOrderEntity> findByOrderIdAndStatus(String orderId, String status);
-
-    long countByStatus(String status);
-
-    long countByFailureType(String failureType);
 }
\ No newline at end of file
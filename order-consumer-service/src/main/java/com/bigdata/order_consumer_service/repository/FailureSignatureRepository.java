@@ -0,0 +1,14 @@
+package com.bigdata.order_consumer_service.repository;
+
+import com.bigdata.order_consumer_service.entity.FailureSignatureEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface FailureSignatureRepository extends JpaRepository<FailureSignatureEntity, String> {
+
+    List<FailureSignatureEntity> findAllByOrderByOccurrencesDesc(Pageable pageable);
+}
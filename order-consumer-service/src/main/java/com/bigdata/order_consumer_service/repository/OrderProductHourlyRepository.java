@@ -0,0 +1,69 @@
+package com.bigdata.order_consumer_service.repository;
+
+import com.bigdata.order_consumer_service.entity.OrderProductHourlyEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OrderProductHourlyRepository extends JpaRepository<OrderProductHourlyEntity, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO order_product_hourly " +
+            "(product, bucket_hour, order_count, total_revenue, min_price, max_price, updated_at) " +
+            "VALUES (:product, :bucketHour, 1, :price, :price, :price, now()) " +
+            "ON CONFLICT (product, bucket_hour) DO UPDATE SET " +
+            "order_count = order_product_hourly.order_count + 1, " +
+            "total_revenue = order_product_hourly.total_revenue + EXCLUDED.total_revenue, " +
+            "min_price = LEAST(order_product_hourly.min_price, EXCLUDED.min_price), " +
+            "max_price = GREATEST(order_product_hourly.max_price, EXCLUDED.max_price), " +
+            "updated_at = EXCLUDED.updated_at", nativeQuery = true)
+    int upsertOrder(@Param("product") String product,
+                    @Param("bucketHour") LocalDateTime bucketHour,
+                    @Param("price") float price);
+
+    // Used by the rebuild: folds one id range of orders into the rollup, in the rebuild's transaction
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO order_product_hourly " +
+            "(product, bucket_hour, order_count, total_revenue, min_price, max_price, updated_at) " +
+            "SELECT product, date_trunc('hour', processed_at), COUNT(*), SUM(price), MIN(price), MAX(price), now() " +
+            "FROM orders WHERE status = 'PROCESSED' AND id > :fromId AND id <= :toId " +
+            "GROUP BY product, date_trunc('hour', processed_at) " +
+            "ON CONFLICT (product, bucket_hour) DO UPDATE SET " +
+            "order_count = order_product_hourly.order_count + EXCLUDED.order_count, " +
+            "total_revenue = order_product_hourly.total_revenue + EXCLUDED.total_revenue, " +
+            "min_price = LEAST(order_product_hourly.min_price, EXCLUDED.min_price), " +
+            "max_price = GREATEST(order_product_hourly.max_price, EXCLUDED.max_price), " +
+            "updated_at = EXCLUDED.updated_at", nativeQuery = true)
+    int rollupOrderRange(@Param("fromId") long fromIdExclusive, @Param("toId") long toIdInclusive);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM order_product_hourly", nativeQuery = true)
+    int deleteAllRows();
+
+    // Conflicts with the row locks of upsertOrder (and with another rebuild), not with readers
+    @Modifying
+    @Query(value = "LOCK TABLE order_product_hourly IN SHARE ROW EXCLUSIVE MODE", nativeQuery = true)
+    void lockAgainstWriters();
+
+    @Query("SELECT h.product, SUM(h.orderCount), SUM(h.totalRevenue), MIN(h.minPrice), MAX(h.maxPrice) " +
+            "FROM OrderProductHourlyEntity h GROUP BY h.product")
+    List<Object[]> getProductStatistics();
+
+    @Query("SELECT h.product, SUM(h.orderCount), SUM(h.totalRevenue), MIN(h.minPrice), MAX(h.maxPrice) " +
+            "FROM OrderProductHourlyEntity h WHERE h.bucketHour >= :start AND h.bucketHour < :end " +
+            "GROUP BY h.product")
+    List<Object[]> getProductStatistics(@Param("start") LocalDateTime start,
+                                        @Param("end") LocalDateTime end);
+
+    List<OrderProductHourlyEntity> findByProductAndBucketHourBetweenOrderByBucketHour(
+            String product, LocalDateTime start, LocalDateTime end);
+}
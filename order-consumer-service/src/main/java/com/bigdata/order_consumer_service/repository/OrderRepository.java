@@ -1,46 +1,132 @@
 package com.bigdata.order_consumer_service.repository;
 
 import com.bigdata.order_consumer_service.entity.OrderEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
 
     Optional<OrderEntity> findByOrderId(String orderId);
 
-    boolean existsByOrderId(String orderId);
+    List<OrderEntity> findByOrderIdIn(Collection<String> orderIds);
 
-    List<OrderEntity> findByProduct(String product);
-
-    List<OrderEntity> findByStatus(String status);
+    // 0 when the order_id is already taken; order_ids (V5) is the unique constraint the
+    // partitioned orders table cannot have. Blocks while another open transaction holds it.
+    @Modifying
+    @Query(value = "INSERT INTO order_ids (order_id) VALUES (:orderId) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int claimOrderId(@Param("orderId") String orderId);
 
     Page<OrderEntity> findByStatus(String status, Pageable pageable);
 
-    List<OrderEntity> findByProcessedAtBetween(LocalDateTime start, LocalDateTime end);
-
     @Query("SELECT COUNT(o) FROM OrderEntity o WHERE o.status = :status")
     long countByStatus(@Param("status") String status);
 
-    @Query("SELECT o.product, COUNT(o) as count, SUM(o.price) as total, AVG(o.price) as avg " +
-            "FROM OrderEntity o WHERE o.status = 'PROCESSED' GROUP BY o.product")
-    List<Object[]> getProductStatistics();
+    @Query("SELECT MIN(o.id) FROM OrderEntity o")
+    Long findMinId();
+
+    @Query("SELECT MAX(o.id) FROM OrderEntity o")
+    Long findMaxId();
+
+    @Query("SELECT MIN(o.processedAt) FROM OrderEntity o")
+    LocalDateTime findMinProcessedAt();
 
     @Query("SELECT COUNT(o) FROM OrderEntity o WHERE o.processedAt >= :startTime")
     long countOrdersSince(@Param("startTime") LocalDateTime startTime);
 
+    @Query(value = "SELECT CAST(EXTRACT(EPOCH FROM date_trunc('second', processed_at)) AS BIGINT), COUNT(*) " +
+            "FROM orders WHERE processed_at >= :startTime GROUP BY 1", nativeQuery = true)
+    List<Object[]> countOrdersPerSecondSince(@Param("startTime") LocalDateTime startTime);
+
     @Query("SELECT SUM(o.price) FROM OrderEntity o WHERE o.status = 'PROCESSED'")
     Double getTotalRevenue();
 
-    @Query("SELECT o FROM OrderEntity o WHERE o.processedAt BETWEEN :start AND :end ORDER BY o.processedAt DESC")
-    List<OrderEntity> findOrdersInDateRange(@Param("start") LocalDateTime start,
-                                            @Param("end") LocalDateTime end);
-}
\ No newline at end of file
+    // Keyset pages, newest first. The row comparison lets Postgres seek straight into
+    // the (processed_at, id) / (product, id) indexes instead of skipping OFFSET rows.
+
+    @Query(value = "SELECT * FROM orders WHERE (processed_at, id) < (:processedAt, :id) " +
+            "ORDER BY processed_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<OrderEntity> findPageBefore(@Param("processedAt") LocalDateTime processedAt,
+                                     @Param("id") long id,
+                                     @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM orders WHERE processed_at >= :start AND processed_at <= :end " +
+            "AND (processed_at, id) < (:processedAt, :id) " +
+            "ORDER BY processed_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<OrderEntity> findPageInRangeBefore(@Param("start") LocalDateTime start,
+                                            @Param("end") LocalDateTime end,
+                                            @Param("processedAt") LocalDateTime processedAt,
+                                            @Param("id") long id,
+                                            @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM orders WHERE status = :status " +
+            "AND (processed_at, id) < (:processedAt, :id) " +
+            "ORDER BY processed_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<OrderEntity> findPageByStatusBefore(@Param("status") String status,
+                                             @Param("processedAt") LocalDateTime processedAt,
+                                             @Param("id") long id,
+                                             @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM orders WHERE product = :product AND id < :id " +
+            "ORDER BY id DESC LIMIT :limit", nativeQuery = true)
+    List<OrderEntity> findPageByProductBefore(@Param("product") String product,
+                                              @Param("id") long id,
+                                              @Param("limit") int limit);
+
+    // Export streams: server-side cursor (fetch size) and read-only entities
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT o FROM OrderEntity o WHERE o.processedAt >= :start AND o.processedAt <= :end " +
+            "ORDER BY o.processedAt, o.id")
+    Stream<OrderEntity> streamByProcessedAtBetween(@Param("start") LocalDateTime start,
+                                                   @Param("end") LocalDateTime end);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT o FROM OrderEntity o WHERE o.product = :product " +
+            "AND o.processedAt >= :start AND o.processedAt <= :end ORDER BY o.id")
+    Stream<OrderEntity> streamByProductAndProcessedAtBetween(@Param("product") String product,
+                                                             @Param("start") LocalDateTime start,
+                                                             @Param("end") LocalDateTime end);
+
+    // Archival: one day of orders grouped by product, so each product is a contiguous run in the file
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT o FROM OrderEntity o WHERE o.processedAt >= :start AND o.processedAt < :end " +
+            "ORDER BY o.product, o.processedAt, o.id")
+    Stream<OrderEntity> streamForArchive(@Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM orders WHERE processed_at >= :start AND processed_at < :end " +
+            "AND id <= :maxId", nativeQuery = true)
+    int deleteArchived(@Param("start") LocalDateTime start,
+                       @Param("end") LocalDateTime end,
+                       @Param("maxId") long maxId);
+}
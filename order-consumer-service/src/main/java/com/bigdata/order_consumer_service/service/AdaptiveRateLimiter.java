@@ -0,0 +1,119 @@
+package com.bigdata.order_consumer_service.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket whose rate adapts additive-increase / multiplicative-decrease:
+ * every successful call raises the rate by a fixed step, every throttling
+ * response cuts it by a factor, always staying within [minRate, maxRate].
+ *
+ * A limiter created with {@link #onDemand} lets every call through until the
+ * first throttling response and again once its rate has recovered to maxRate,
+ * so it only paces callers while the dependency is pushing back.
+ */
+public class AdaptiveRateLimiter {
+
+    private final double minRate;
+    private final double maxRate;
+    private final double increase;
+    private final double decrease;
+    private final boolean onDemand;
+    private final LongSupplier nanoTime;
+
+    private boolean limiting;
+    private double rate;
+    private double tokens;
+    private long refilledAt;
+
+    public AdaptiveRateLimiter(double minRate, double maxRate, double increase, double decrease) {
+        this(minRate, maxRate, increase, decrease, false, System::nanoTime);
+    }
+
+
+    AdaptiveRateLimiter(double minRate, double maxRate, double increase, double decrease, boolean onDemand,
+                        LongSupplier nanoTime) {
+        if (minRate <= 0 || maxRate < minRate || decrease <= 0 || decrease >= 1) {
+            throw new IllegalArgumentException("Rate limits must satisfy 0 < min <= max and 0 < decrease < 1");
+        }
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.increase = increase;
+        this.decrease = decrease;
+        this.onDemand = onDemand;
+        this.nanoTime = nanoTime;
+        this.limiting = !onDemand;
+        this.rate = maxRate;
+        this.tokens = maxRate;
+        this.refilledAt = nanoTime.getAsLong();
+    }
+
+
+    // Unlimited until the first onThrottled
+    public static AdaptiveRateLimiter onDemand(double minRate, double maxRate, double increase, double decrease) {
+        return new AdaptiveRateLimiter(minRate, maxRate, increase, decrease, true, System::nanoTime);
+    }
+
+
+    /**
+     * Takes a permit, waiting for it if it is due within maxWaitNanos.
+     * Returns 0 when granted, otherwise how long until one would be; with a
+     * maxWaitNanos of 0 it never sleeps.
+     */
+    public long tryAcquire(long maxWaitNanos) throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            if (!limiting) {
+                return 0;
+            }
+            refill();
+            wait = tokens >= 1 ? 0 : (long) ((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+            if (wait > maxWaitNanos) {
+                return wait;
+            }
+            tokens -= 1;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return 0;
+    }
+
+
+    public synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + increase);
+        if (onDemand && rate >= maxRate) {
+            limiting = false;
+        }
+    }
+
+
+    public synchronized void onThrottled() {
+        if (!limiting) {
+            limiting = true;
+            tokens = rate;
+            refilledAt = nanoTime.getAsLong();
+        }
+        refill();
+        rate = Math.max(minRate, rate * decrease);
+        tokens = Math.min(tokens, rate);
+    }
+
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+
+    public synchronized boolean isLimiting() {
+        return limiting;
+    }
+
+
+    // Burst is capped at one second's worth of permits
+    private void refill() {
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(rate, tokens + (now - refilledAt) / 1e9 * rate);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,127 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.exception.ErrorCategory;
+import com.bigdata.order_consumer_service.exception.TemporaryProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Caps the calls in flight to one dependency so a slow one cannot take every
+ * thread and connection with it. A call beyond the cap waits for a permit; one
+ * that has not got a permit or finished within its timeout fails its caller as a
+ * temporary failure, so the order is retried. The permit is only returned when
+ * the call itself ends, even after a timeout. A caller whose timeout ran out
+ * while still waiting for a permit is told the bulkhead was full, not that the
+ * dependency was slow.
+ */
+final class Bulkhead {
+
+    private final String dependency;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final Counter rejected;
+    private final Counter timedOut;
+    private final Timer calls;
+
+    Bulkhead(String dependency, int maxConcurrent, ExecutorService executor, MeterRegistry meterRegistry) {
+        this.dependency = dependency;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+        this.executor = executor;
+        this.rejected = Counter.builder("orders.external.rejected")
+                .description("Calls that did not get a bulkhead permit within their timeout")
+                .tag("dependency", dependency)
+                .register(meterRegistry);
+        this.timedOut = Counter.builder("orders.external.timeouts")
+                .description("Calls whose caller stopped waiting at the timeout")
+                .tag("dependency", dependency)
+                .register(meterRegistry);
+        this.calls = Timer.builder("orders.external.calls")
+                .description("Duration of calls to the dependency")
+                .tag("dependency", dependency)
+                .register(meterRegistry);
+        Gauge.builder("orders.external.in.flight", this, Bulkhead::inFlight)
+                .description("Calls to the dependency currently running")
+                .tag("dependency", dependency)
+                .register(meterRegistry);
+    }
+
+
+    <T> CompletableFuture<T> call(Supplier<T> call, Duration timeout) {
+        CompletableFuture<T> result;
+        AtomicBoolean started = new AtomicBoolean();
+        try {
+            // waiting for a permit parks a virtual thread, not the caller
+            result = CompletableFuture.supplyAsync(() -> {
+                acquire(timeout);
+                started.set(true);
+                long start = System.nanoTime();
+                try {
+                    return call.get();
+                } finally {
+                    calls.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    permits.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new TemporaryProcessingException(
+                    ErrorCategory.SERVICE_UNAVAILABLE, dependency + " executor shut down"));
+        }
+
+        return result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).handle((value, error) -> {
+            if (error == null) {
+                return value;
+            }
+            if (!started.get()) {
+                rejected.increment();
+                throw new TemporaryProcessingException(ErrorCategory.SERVICE_UNAVAILABLE,
+                        dependency + " bulkhead full (" + maxConcurrent + " calls)");
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                timedOut.increment();
+                throw new TemporaryProcessingException(ErrorCategory.NETWORK_ERROR,
+                        dependency + " call timed out after " + timeout.toMillis() + " ms");
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new TemporaryProcessingException(ErrorCategory.NETWORK_ERROR, dependency + " call failed", cause);
+        });
+    }
+
+
+    // Counted as rejected by the caller's handler, which may have given up first
+    private void acquire(Duration timeout) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throw new TemporaryProcessingException(ErrorCategory.SERVICE_UNAVAILABLE,
+                    dependency + " got no permit");
+        }
+    }
+
+
+    int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+}
@@ -0,0 +1,272 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.exception.CircuitOpenException;
+import com.bigdata.order_consumer_service.exception.ErrorCategory;
+import com.bigdata.order_consumer_service.exception.TemporaryProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guards the payment/inventory calls made while processing an order. Each
+ * outage category (network, unavailable, rate limited) has its own breaker that
+ * opens when its share of failed calls over the window crosses the threshold.
+ * While any breaker is open, calls fail fast with {@link CircuitOpenException};
+ * after the open period one call is let through as a probe, closing the breaker
+ * on success and reopening it for twice as long (up to max-open-duration) on
+ * failure. Once a dependency answers RATE_LIMIT_EXCEEDED, calls are also paced
+ * by an {@link AdaptiveRateLimiter} until its rate is back at rate.max; a call
+ * without a permit fails at once with the wait as its retry-after, so the
+ * caller defers the order rather than sleeping on the consumer thread.
+ */
+@Service
+@Slf4j
+public class CircuitBreakerService {
+
+    static final List<String> GUARDED_CATEGORIES = List.of(
+            ErrorCategory.NETWORK_ERROR, ErrorCategory.SERVICE_UNAVAILABLE, ErrorCategory.RATE_LIMIT_EXCEEDED);
+
+    private static final long WINDOW_SECONDS = 30;
+    private static final long PROBE_BUSY_RETRY_MS = 1000;
+
+    enum State {CLOSED, HALF_OPEN, OPEN}
+
+    private final boolean enabled;
+    private final long minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final long maxOpenMillis;
+    private final AdaptiveRateLimiter rateLimiter;
+    private final Counter throttled;
+
+    private final Map<String, Breaker> breakers = new LinkedHashMap<>();
+    private final SlidingWindowCounter calls = new SlidingWindowCounter(WINDOW_SECONDS, 1);
+
+    private static final class Breaker {
+        private final String category;
+        private final Counter rejected;
+        private volatile State state = State.CLOSED;
+        private SlidingWindowCounter failures = new SlidingWindowCounter(WINDOW_SECONDS, 1);
+        private long openMillis;
+        private long openUntil;
+        private boolean probing;
+
+        private Breaker(String category, Counter rejected, long openMillis) {
+            this.category = category;
+            this.rejected = rejected;
+            this.openMillis = openMillis;
+        }
+    }
+
+    public CircuitBreakerService(MeterRegistry meterRegistry,
+                                 @Value("${app.breaker.enabled:true}") boolean enabled,
+                                 @Value("${app.breaker.minimum-calls:20}") long minimumCalls,
+                                 @Value("${app.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                                 @Value("${app.breaker.open-duration:5s}") Duration openDuration,
+                                 @Value("${app.breaker.max-open-duration:60s}") Duration maxOpenDuration,
+                                 @Value("${app.breaker.rate.min:1}") double minRate,
+                                 @Value("${app.breaker.rate.max:1000}") double maxRate,
+                                 @Value("${app.breaker.rate.increase:0.5}") double rateIncrease,
+                                 @Value("${app.breaker.rate.decrease:0.5}") double rateDecrease) {
+        this.enabled = enabled;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openDuration.toMillis();
+        this.maxOpenMillis = maxOpenDuration.toMillis();
+        this.rateLimiter = new AdaptiveRateLimiter(minRate, maxRate, rateIncrease, rateDecrease, true, this::nanoTime);
+
+        for (String category : GUARDED_CATEGORIES) {
+            Breaker breaker = new Breaker(category, Counter.builder("orders.breaker.rejected")
+                    .description("External calls refused while the breaker was open")
+                    .tag("category", category)
+                    .register(meterRegistry), openMillis);
+            breakers.put(category, breaker);
+            Gauge.builder("orders.breaker.state", breaker, b -> b.state.ordinal())
+                    .description("0 closed, 1 half-open, 2 open")
+                    .tag("category", category)
+                    .register(meterRegistry);
+        }
+        this.throttled = Counter.builder("orders.breaker.throttled")
+                .description("External calls refused because the adaptive rate limit had no permit in time")
+                .register(meterRegistry);
+        Gauge.builder("orders.breaker.rate.limit", rateLimiter, AdaptiveRateLimiter::getRate)
+                .description("Current external call rate limit per second; calls are unlimited while orders.breaker.rate.limiting is 0")
+                .register(meterRegistry);
+        Gauge.builder("orders.breaker.rate.limiting", rateLimiter, limiter -> limiter.isLimiting() ? 1 : 0)
+                .description("1 while external calls are paced after a RATE_LIMIT_EXCEEDED")
+                .register(meterRegistry);
+    }
+
+
+    // Throws CircuitOpenException when the call must not be made now
+    public void beforeCall() {
+        if (!enabled) {
+            return;
+        }
+
+        long wait;
+        try {
+            wait = rateLimiter.tryAcquire(0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemporaryProcessingException(ErrorCategory.RATE_LIMIT_EXCEEDED, "Interrupted waiting for a call permit");
+        }
+        if (wait > 0) {
+            throttled.increment();
+            throw new CircuitOpenException(ErrorCategory.RATE_LIMIT_EXCEEDED, Duration.ofNanos(wait));
+        }
+
+        synchronized (this) {
+            long now = nowMillis();
+            for (Breaker breaker : breakers.values()) {
+                if (breaker.state == State.OPEN) {
+                    if (now < breaker.openUntil) {
+                        throw reject(breaker, breaker.openUntil - now);
+                    }
+                    breaker.state = State.HALF_OPEN;
+                    breaker.probing = false;
+                    log.info(" Circuit {} half-open, probing", breaker.category);
+                }
+            }
+            for (Breaker breaker : breakers.values()) {
+                if (breaker.state == State.HALF_OPEN && breaker.probing) {
+                    throw reject(breaker, PROBE_BUSY_RETRY_MS);
+                }
+            }
+            for (Breaker breaker : breakers.values()) {
+                if (breaker.state == State.HALF_OPEN) {
+                    breaker.probing = true;
+                }
+            }
+        }
+    }
+
+
+    public void onSuccess() {
+        if (!enabled) {
+            return;
+        }
+        rateLimiter.onSuccess();
+
+        synchronized (this) {
+            calls.add(nowSeconds(), 1);
+            for (Breaker breaker : breakers.values()) {
+                if (breaker.state == State.HALF_OPEN && breaker.probing) {
+                    breaker.state = State.CLOSED;
+                    breaker.probing = false;
+                    breaker.failures = new SlidingWindowCounter(WINDOW_SECONDS, 1);
+                    breaker.openMillis = openMillis;
+                    log.info(" Circuit {} closed, probe succeeded", breaker.category);
+                }
+            }
+        }
+    }
+
+
+    public void onFailure(String category) {
+        if (!enabled) {
+            return;
+        }
+        if (ErrorCategory.RATE_LIMIT_EXCEEDED.equals(category)) {
+            rateLimiter.onThrottled();
+        }
+
+        synchronized (this) {
+            long now = nowSeconds();
+            calls.add(now, 1);
+            Breaker failed = breakers.get(category);
+            if (failed != null) {
+                failed.failures.add(now, 1);
+            }
+
+            for (Breaker breaker : breakers.values()) {
+                if (breaker == failed && breaker.state == State.HALF_OPEN && breaker.probing) {
+                    open(breaker, Math.min(maxOpenMillis, breaker.openMillis * 2));
+                } else if (breaker == failed && breaker.state == State.CLOSED && tripped(breaker, now)) {
+                    open(breaker, openMillis);
+                } else if (breaker.state == State.HALF_OPEN) {
+                    breaker.probing = false; // probe failed for another reason; the next call probes again
+                }
+            }
+        }
+    }
+
+
+    public synchronized Map<String, Object> describe() {
+        long now = nowSeconds();
+        long window = calls.sum(now - WINDOW_SECONDS + 1, now);
+
+        List<Map<String, Object>> states = new ArrayList<>();
+        for (Breaker breaker : breakers.values()) {
+            long failed = breaker.failures.sum(now - WINDOW_SECONDS + 1, now);
+            Map<String, Object> state = new HashMap<>();
+            state.put("category", breaker.category);
+            state.put("state", breaker.state);
+            state.put("failures", failed);
+            state.put("failureRate", window > 0 ? (double) failed / window : 0.0);
+            state.put("openForMs", breaker.state == State.OPEN
+                    ? Math.max(0, breaker.openUntil - nowMillis()) : 0);
+            state.put("rejected", (long) breaker.rejected.count());
+            states.add(state);
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("enabled", enabled);
+        summary.put("windowSeconds", WINDOW_SECONDS);
+        summary.put("calls", window);
+        summary.put("breakers", states);
+        summary.put("rateLimited", rateLimiter.isLimiting());
+        summary.put("rateLimitPerSecond", rateLimiter.getRate());
+        summary.put("throttled", (long) throttled.count());
+        return summary;
+    }
+
+
+    private boolean tripped(Breaker breaker, long now) {
+        long total = calls.sum(now - WINDOW_SECONDS + 1, now);
+        long failed = breaker.failures.sum(now - WINDOW_SECONDS + 1, now);
+        return total >= minimumCalls && (double) failed / total >= failureRateThreshold;
+    }
+
+
+    private void open(Breaker breaker, long duration) {
+        breaker.state = State.OPEN;
+        breaker.probing = false;
+        breaker.openMillis = duration;
+        breaker.openUntil = nowMillis() + duration;
+        log.warn(" Circuit {} open for {} ms", breaker.category, duration);
+    }
+
+
+    private CircuitOpenException reject(Breaker breaker, long retryAfterMillis) {
+        breaker.rejected.increment();
+        return new CircuitOpenException(breaker.category, Duration.ofMillis(retryAfterMillis));
+    }
+
+
+    // Monotonic: open periods and the failure window are measured, never compared with wall-clock times
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanoTime());
+    }
+
+
+    private long nowSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(nanoTime());
+    }
+}
@@ -0,0 +1,322 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.dto.DlqFilter;
+import com.bigdata.schema.Order;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background jobs that send PENDING failed orders back to their original topic.
+ * A job walks failed_orders in id order, chunk by chunk (keyset, so a chunk costs
+ * the same however far the job is), sends every row of a chunk without waiting,
+ * paced by a fixed-rate token bucket, then waits for all the sends and marks the
+ * delivered rows REPROCESSED in one UPDATE. Rows whose send failed stay PENDING.
+ * The walk stops at the highest matching id seen when the job started: an order
+ * that fails again lands in a new PENDING row, which is left for the next job.
+ *
+ * One job runs at a time so two jobs cannot send the same rows. Cancelling stops
+ * before the next send; sends already made are still awaited and recorded.
+ */
+@Service
+@Slf4j
+public class DlqReprocessingJobs implements DisposableBean {
+
+    private static final String SELECT_PENDING =
+            "SELECT id, order_id, product, price, event_time, original_topic FROM failed_orders " +
+                    "WHERE status = 'PENDING' AND id > ? AND id <= ?";
+
+    private static final String SELECT_MAX_PENDING_ID =
+            "SELECT max(id) FROM failed_orders WHERE status = 'PENDING'";
+
+    private static final String MARK_REPROCESSED =
+            "UPDATE failed_orders SET status = 'REPROCESSED', reprocessed_at = ?, reprocessed_by = ? " +
+                    "WHERE id = ANY(?) AND status = 'PENDING'";
+
+    public enum State {RUNNING, COMPLETED, CANCELLED, FAILED}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final KafkaTemplate<String, Order> kafkaTemplate;
+    private final int chunkSize;
+    private final double defaultRate;
+    private final long sendTimeoutMillis;
+    private final int retainedJobs;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dlq-reprocess");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong jobIds = new AtomicLong();
+    private final Map<Long, Job> jobs = new LinkedHashMap<>();
+
+    private record Row(long id, Order order, String topic) {
+    }
+
+    private static final class Job {
+        private final long id;
+        private final DlqFilter filter;
+        private final String reprocessedBy;
+        private final double rate;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong reprocessed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile State state = State.RUNNING;
+        private volatile boolean cancelRequested;
+        private volatile long lastId;
+        private volatile long maxId;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Job(long id, DlqFilter filter, String reprocessedBy, double rate) {
+            this.id = id;
+            this.filter = filter;
+            this.reprocessedBy = reprocessedBy;
+            this.rate = rate;
+        }
+    }
+
+    public DlqReprocessingJobs(JdbcTemplate jdbcTemplate,
+                               KafkaTemplate<String, Order> kafkaTemplate,
+                               @Value("${app.dlq.reprocess.chunk-size:500}") int chunkSize,
+                               @Value("${app.dlq.reprocess.rate:200}") double defaultRate,
+                               @Value("${app.dlq.reprocess.send-timeout:30s}") Duration sendTimeout,
+                               @Value("${app.dlq.reprocess.retained-jobs:20}") int retainedJobs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.chunkSize = chunkSize;
+        this.defaultRate = defaultRate;
+        this.sendTimeoutMillis = sendTimeout.toMillis();
+        this.retainedJobs = retainedJobs;
+    }
+
+
+    /**
+     * Starts a job, or throws IllegalStateException while another one is running.
+     * A null rate uses app.dlq.reprocess.rate (orders per second).
+     */
+    public synchronized Map<String, Object> start(DlqFilter filter, String reprocessedBy, Double rate) {
+        double perSecond = rate != null ? rate : defaultRate;
+        if (perSecond <= 0) {
+            throw new IllegalArgumentException("rate must be > 0");
+        }
+        for (Job job : jobs.values()) {
+            if (job.state == State.RUNNING) {
+                throw new IllegalStateException("Reprocessing job " + job.id + " is still running");
+            }
+        }
+
+        Job job = new Job(jobIds.incrementAndGet(), filter, reprocessedBy, perSecond);
+        jobs.put(job.id, job);
+        evictFinished();
+        executor.execute(() -> run(job));
+        log.info(" Started DLQ reprocessing job {} | filter: {} | rate: {}/s", job.id, filter, perSecond);
+        return describe(job);
+    }
+
+
+    public synchronized Optional<Map<String, Object>> get(long id) {
+        return Optional.ofNullable(jobs.get(id)).map(this::describe);
+    }
+
+
+    public synchronized List<Map<String, Object>> list() {
+        return jobs.values().stream().map(this::describe).toList();
+    }
+
+
+    public synchronized Optional<Map<String, Object>> cancel(long id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        if (job.state == State.RUNNING) {
+            job.cancelRequested = true;
+            log.info(" Cancelling DLQ reprocessing job {}", id);
+        }
+        return Optional.of(describe(job));
+    }
+
+
+    // Single UPDATE; returns the number of rows discarded
+    public int discard(DlqFilter filter) {
+        List<Object> args = new ArrayList<>();
+        String sql = "UPDATE failed_orders SET status = 'DISCARDED' WHERE status = 'PENDING'" + filter.where(args);
+        int discarded = jdbcTemplate.update(sql, args.toArray());
+        log.info(" Discarded {} failed orders | filter: {}", discarded, filter);
+        return discarded;
+    }
+
+
+    @Override
+    public void destroy() {
+        synchronized (this) {
+            jobs.values().forEach(job -> job.cancelRequested = true);
+        }
+        executor.shutdownNow();
+    }
+
+
+    private void run(Job job) {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(job.rate, job.rate, 0, 0.5);
+        try {
+            job.maxId = maxPendingId(job);
+            while (!job.cancelRequested) {
+                List<Row> rows = nextChunk(job);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                job.scanned.addAndGet(rows.size());
+                job.lastId = rows.get(rows.size() - 1).id();
+
+                List<Row> sentRows = new ArrayList<>(rows.size());
+                List<CompletableFuture<SendResult<String, Order>>> sends = new ArrayList<>(rows.size());
+                for (Row row : rows) {
+                    if (job.cancelRequested) {
+                        break;
+                    }
+                    limiter.tryAcquire(Long.MAX_VALUE);
+                    sends.add(kafkaTemplate.send(row.topic(), row.order().getOrderId().toString(), row.order()));
+                    sentRows.add(row);
+                }
+
+                markReprocessed(job, awaitSends(job, sentRows, sends));
+                if (rows.size() < chunkSize) {
+                    break;
+                }
+            }
+            finish(job, job.cancelRequested ? State.CANCELLED : State.COMPLETED, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(job, State.CANCELLED, "Interrupted");
+        } catch (RuntimeException e) {
+            log.error("DLQ reprocessing job {} failed after id {}", job.id, job.lastId, e);
+            finish(job, State.FAILED, e.getMessage());
+        }
+    }
+
+
+    // 0 when nothing matches, which makes every chunk empty
+    private long maxPendingId(Job job) {
+        List<Object> args = new ArrayList<>();
+        String sql = SELECT_MAX_PENDING_ID + job.filter.where(args);
+        Long maxId = jdbcTemplate.queryForObject(sql, Long.class, args.toArray());
+        return maxId != null ? maxId : 0;
+    }
+
+
+    private List<Row> nextChunk(Job job) {
+        List<Object> args = new ArrayList<>();
+        args.add(job.lastId);
+        args.add(job.maxId);
+        String sql = SELECT_PENDING + job.filter.where(args) + " ORDER BY id LIMIT ?";
+        args.add(chunkSize);
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            long eventTime = rs.getLong("event_time");
+            Order order = Order.newBuilder()
+                    .setOrderId(rs.getString("order_id"))
+                    .setProduct(rs.getString("product"))
+                    .setPrice(rs.getFloat("price"))
+                    .setEventTime(rs.wasNull() ? 0L : eventTime)
+                    .build();
+            return new Row(rs.getLong("id"), order, rs.getString("original_topic"));
+        }, args.toArray());
+    }
+
+
+    private List<Long> awaitSends(Job job, List<Row> rows, List<CompletableFuture<SendResult<String, Order>>> sends)
+            throws InterruptedException {
+        List<Long> delivered = new ArrayList<>(rows.size());
+        long deadline = System.currentTimeMillis() + sendTimeoutMillis;
+        for (int i = 0; i < sends.size(); i++) {
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                delivered.add(rows.get(i).id());
+            } catch (ExecutionException | TimeoutException e) {
+                job.failed.incrementAndGet();
+                log.warn("Job {}: could not resend failed order {}: {}", job.id, rows.get(i).id(), e.getMessage());
+            }
+        }
+        return delivered;
+    }
+
+
+    private void markReprocessed(Job job, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int updated = jdbcTemplate.update(MARK_REPROCESSED, ps -> {
+            ps.setTimestamp(1, now);
+            ps.setString(2, job.reprocessedBy);
+            ps.setArray(3, ps.getConnection().createArrayOf("bigint", ids.toArray()));
+        });
+        job.reprocessed.addAndGet(updated);
+    }
+
+
+    private synchronized void finish(Job job, State state, String error) {
+        job.state = state;
+        job.error = error;
+        job.finishedAt = LocalDateTime.now();
+        log.info(" DLQ reprocessing job {} {} | scanned: {} | reprocessed: {} | failed: {}",
+                job.id, state, job.scanned.get(), job.reprocessed.get(), job.failed.get());
+    }
+
+
+    // Keeps the latest retained-jobs finished jobs
+    private void evictFinished() {
+        int excess = jobs.size() - retainedJobs;
+        Iterator<Job> it = jobs.values().iterator();
+        while (excess > 0 && it.hasNext()) {
+            if (it.next().state != State.RUNNING) {
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+
+    private Map<String, Object> describe(Job job) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("id", job.id);
+        result.put("state", job.state);
+        result.put("cancelRequested", job.cancelRequested);
+        result.put("filter", job.filter.describe());
+        result.put("reprocessedBy", job.reprocessedBy);
+        result.put("ratePerSecond", job.rate);
+        result.put("scanned", job.scanned.get());
+        result.put("reprocessed", job.reprocessed.get());
+        result.put("failed", job.failed.get());
+        result.put("lastId", job.lastId);
+        result.put("maxId", job.maxId);
+        result.put("startedAt", job.startedAt);
+        result.put("finishedAt", job.finishedAt);
+        result.put("error", job.error);
+        return result;
+    }
+}
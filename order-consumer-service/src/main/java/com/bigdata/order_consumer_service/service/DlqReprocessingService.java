@@ -10,12 +10,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DlqReprocessingService {
 
+    // Marked REPROCESSED only once the broker has the order
+    private static final long SEND_TIMEOUT_SECONDS = 30;
+
     private final FailedOrderRepository failedOrderRepository;
     private final KafkaTemplate<String, Order> kafkaTemplate;
 
@@ -37,11 +41,14 @@ public class DlqReprocessingService {
                                 .setOrderId(failedOrder.getOrderId())
                                 .setProduct(failedOrder.getProduct())
                                 .setPrice(failedOrder.getPrice())
+                                .setEventTime(failedOrder.getEventTime() != null
+                                        ? failedOrder.getEventTime() : 0L)
                                 .build();
 
 
                         String topic = failedOrder.getOriginalTopic();
-                        kafkaTemplate.send(topic, failedOrder.getOrderId(), order);
+                        kafkaTemplate.send(topic, failedOrder.getOrderId(), order)
+                                .get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
 
                         failedOrder.setStatus("REPROCESSED");
@@ -0,0 +1,139 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.exception.ErrorCategory;
+import com.bigdata.order_consumer_service.exception.PermanentProcessingException;
+import com.bigdata.order_consumer_service.exception.TemporaryProcessingException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Payment and inventory calls of an order, made concurrently on virtual threads
+ * instead of blocking the listener thread. Each dependency sits behind its own
+ * {@link Bulkhead} with a per-call timeout; inventory lookups are batched and
+ * coalesced by an {@link InventoryBatcher}. At most max-in-flight orders are
+ * between their calls and their save - {@link #call} blocks the caller beyond
+ * that, which is the listener's backpressure.
+ */
+@Service
+public class ExternalCallStage implements DisposableBean {
+
+    private final PaymentClient paymentClient;
+    private final boolean async;
+    private final Duration paymentTimeout;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inventory-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Bulkhead payments;
+    private final InventoryBatcher inventory;
+
+    public ExternalCallStage(PaymentClient paymentClient,
+                             InventoryClient inventoryClient,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.external.async:true}") boolean async,
+                             @Value("${app.external.max-in-flight:256}") int maxInFlight,
+                             @Value("${app.external.payment.max-concurrent:64}") int paymentConcurrency,
+                             @Value("${app.external.payment.timeout:2s}") Duration paymentTimeout,
+                             @Value("${app.external.inventory.max-concurrent:16}") int inventoryConcurrency,
+                             @Value("${app.external.inventory.timeout:2s}") Duration inventoryTimeout,
+                             @Value("${app.external.inventory.batch-window:10ms}") Duration inventoryWindow,
+                             @Value("${app.external.inventory.max-batch:100}") int inventoryMaxBatch) {
+        this.paymentClient = paymentClient;
+        this.async = async;
+        this.paymentTimeout = paymentTimeout;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.payments = new Bulkhead("payment", paymentConcurrency, executor, meterRegistry);
+        this.inventory = new InventoryBatcher(inventoryClient,
+                new Bulkhead("inventory", inventoryConcurrency, executor, meterRegistry),
+                timer, inventoryWindow, inventoryMaxBatch, inventoryTimeout, meterRegistry);
+        Gauge.builder("orders.external.orders.in.flight", this, stage -> stage.maxInFlight - stage.inFlight.availablePermits())
+                .description("Orders with external calls or their save running")
+                .register(meterRegistry);
+    }
+
+
+    // False: the listener waits for the calls on its own thread, as before
+    public boolean isAsync() {
+        return async;
+    }
+
+
+    /**
+     * Starts the calls of one order and runs {@code then} (saving the order) on a
+     * virtual thread once they succeeded. The future fails with a
+     * TemporaryProcessingException when a call failed, timed out or was refused by
+     * its bulkhead, and with a PermanentProcessingException when the product is
+     * out of stock.
+     */
+    public CompletableFuture<Void> call(String orderId, String product, float price, Runnable then) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemporaryProcessingException(ErrorCategory.SERVICE_UNAVAILABLE, "Interrupted waiting for an external call slot");
+        }
+
+        CompletableFuture<Void> payment = payments.call(() -> {
+            paymentClient.authorize(orderId, price);
+            return null;
+        }, paymentTimeout);
+        CompletableFuture<Void> stock = inventory.available(product).thenAccept(units -> {
+            if (units <= 0) {
+                throw new PermanentProcessingException(ErrorCategory.INSUFFICIENT_INVENTORY,
+                        "Insufficient inventory for product: " + product);
+            }
+        });
+
+        CompletableFuture<Void> processed = CompletableFuture.allOf(payment, stock).thenRunAsync(then, executor);
+        processed.whenComplete((ignored, error) -> inFlight.release());
+        return processed;
+    }
+
+
+    // For callers that must finish the order on their own thread (retries, retry topics)
+    public static void await(CompletableFuture<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemporaryProcessingException(ErrorCategory.SERVICE_UNAVAILABLE, "Interrupted waiting for external calls");
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+
+    // The processing exception behind a failed future
+    public static RuntimeException unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException runtime ? runtime
+                : new TemporaryProcessingException(ErrorCategory.NETWORK_ERROR, "External call failed", cause);
+    }
+
+
+    @Override
+    public void destroy() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+}
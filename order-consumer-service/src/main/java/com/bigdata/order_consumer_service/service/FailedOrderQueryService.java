@@ -0,0 +1,193 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.dto.CursorPage;
+import com.bigdata.order_consumer_service.dto.FailedOrderSummary;
+import com.bigdata.order_consumer_service.dto.OrderCursor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * DLQ page queries. Listings are keyset pages over (failed_at, id), newest first,
+ * served by the V4 indexes and leaving out the stack trace; statistics come from
+ * one grouped query instead of a count per figure.
+ *
+ * The dead-lettered check behind the order read path is cached per orderId, as
+ * OrderLookupService caches the orders: a failure recorded here is put into the
+ * cache once committed, "not dead-lettered" answers expire after the shorter
+ * negative TTL so failures recorded by other instances show up soon. A reprocessed
+ * order may stay cached as dead-lettered until its TTL, but once saved it is
+ * served from its persisted row before this check is made.
+ */
+@Service
+public class FailedOrderQueryService {
+
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final String DEAD_LETTERED_CACHE = "failed-orders.dead-lettered";
+
+    // Start of every listing: sorts after any real (failedAt, id)
+    private static final OrderCursor FIRST_PAGE = new OrderCursor(LocalDateTime.of(9999, 12, 31, 23, 59), Long.MAX_VALUE);
+
+    private static final String SUMMARY_COLUMNS = "id, order_id, product, price, failure_type, failure_category, " +
+            "error_message, retry_count, original_topic, correlation_id, failed_at, status, reprocessed_at, " +
+            "reprocessed_by, signature_hash";
+
+    private static final RowMapper<FailedOrderSummary> SUMMARY = (rs, rowNum) -> new FailedOrderSummary(
+            rs.getLong("id"),
+            rs.getString("order_id"),
+            rs.getString("product"),
+            rs.getFloat("price"),
+            rs.getString("failure_type"),
+            rs.getString("failure_category"),
+            rs.getString("error_message"),
+            rs.getInt("retry_count"),
+            rs.getString("original_topic"),
+            rs.getString("correlation_id"),
+            toLocalDateTime(rs.getTimestamp("failed_at")),
+            rs.getString("status"),
+            toLocalDateTime(rs.getTimestamp("reprocessed_at")),
+            rs.getString("reprocessed_by"),
+            rs.getString("signature_hash"));
+
+    private static final String DEAD_LETTERED = "SELECT DISTINCT order_id FROM failed_orders " +
+            "WHERE order_id = ANY(?) AND status <> 'REPROCESSED'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<String, Boolean> deadLettered;
+
+    public FailedOrderQueryService(JdbcTemplate jdbcTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.dlq.dead-lettered-cache.max-size:10000}") long maxSize,
+                                   @Value("${app.dlq.dead-lettered-cache.ttl:10m}") Duration ttl,
+                                   @Value("${app.dlq.dead-lettered-cache.negative-ttl:10s}") Duration negativeTtl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deadLettered = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(String key, Boolean value, long currentTime) {
+                        return (value ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Boolean value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Boolean value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, deadLettered, DEAD_LETTERED_CACHE);
+    }
+
+
+    // Orders whose failure is pending or discarded; a reprocessed one may yet be saved (V6 index)
+    public Set<String> deadLettered(Collection<String> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Set.of();
+        }
+        return deadLettered.getAll(orderIds, this::loadDeadLettered).entrySet().stream()
+                .filter(Map.Entry::getValue)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+
+    // Called once the failed_orders rows are committed
+    public void markDeadLettered(Collection<String> orderIds) {
+        orderIds.forEach(orderId -> deadLettered.put(orderId, true));
+    }
+
+
+    private Map<String, Boolean> loadDeadLettered(Set<? extends String> orderIds) {
+        Set<String> found = new HashSet<>(jdbcTemplate.query(DEAD_LETTERED,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", orderIds.toArray())),
+                (rs, rowNum) -> rs.getString(1)));
+        Map<String, Boolean> loaded = new HashMap<>();
+        orderIds.forEach(orderId -> loaded.put(orderId, found.contains(orderId)));
+        return loaded;
+    }
+
+
+    // Either filter may be null; the cursor is OrderCursor-encoded (failedAt, id)
+    public CursorPage<FailedOrderSummary> getFailedOrders(String status, String failureType, String cursor, int size) {
+        OrderCursor after = cursor == null || cursor.isBlank() ? FIRST_PAGE : OrderCursor.decode(cursor);
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(SUMMARY_COLUMNS).append(" FROM failed_orders WHERE ");
+        List<Object> args = new ArrayList<>();
+        if (status != null) {
+            sql.append("status = ? AND ");
+            args.add(status);
+        }
+        if (failureType != null) {
+            sql.append("failure_type = ? AND ");
+            args.add(failureType);
+        }
+        sql.append("(failed_at, id) < (?, ?) ORDER BY failed_at DESC, id DESC LIMIT ?");
+        args.add(Timestamp.valueOf(after.processedAt()));
+        args.add(after.id());
+        args.add(limit + 1);
+
+        List<FailedOrderSummary> rows = jdbcTemplate.query(sql.toString(), SUMMARY, args.toArray());
+        boolean hasMore = rows.size() > limit;
+        List<FailedOrderSummary> content = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            FailedOrderSummary last = content.get(content.size() - 1);
+            nextCursor = new OrderCursor(last.getFailedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(content, nextCursor, hasMore);
+    }
+
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Long> byStatus = new HashMap<>();
+        Map<String, Long> byType = new HashMap<>();
+        long[] total = new long[1];
+
+        jdbcTemplate.query("SELECT status, failure_type, COUNT(*) FROM failed_orders GROUP BY status, failure_type", rs -> {
+            long count = rs.getLong(3);
+            byStatus.merge(rs.getString(1), count, Long::sum);
+            byType.merge(rs.getString(2), count, Long::sum);
+            total[0] += count;
+        });
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", total[0]);
+        stats.put("pending", byStatus.getOrDefault("PENDING", 0L));
+        stats.put("reprocessed", byStatus.getOrDefault("REPROCESSED", 0L));
+        stats.put("discarded", byStatus.getOrDefault("DISCARDED", 0L));
+        stats.put("temporary", byType.getOrDefault("TEMPORARY", 0L));
+        stats.put("permanent", byType.getOrDefault("PERMANENT", 0L));
+        return stats;
+    }
+
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,242 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.entity.FailedOrderEntity;
+import com.bigdata.order_consumer_service.entity.FailureSignatureEntity;
+import com.bigdata.order_consumer_service.repository.FailureSignatureRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes failed orders in batches. Each stack trace is normalized and
+ * fingerprinted on the caller's thread; a flush then upserts one
+ * failure_signatures row per distinct fingerprint (compressed trace, occurrence
+ * count) and batch-inserts the failed_orders rows pointing at it, all in one
+ * transaction. The future returned by {@link #record} completes once the row is
+ * committed, so callers acknowledge the Kafka record only then. A failed flush
+ * keeps its rows queued for the next one.
+ */
+@Service
+@Slf4j
+public class FailedOrderRecorder {
+
+    private static final String UPSERT_SIGNATURE =
+            "INSERT INTO failure_signatures (fingerprint, exception_class, stack_trace, first_seen_at, last_seen_at, occurrences) " +
+                    "VALUES (?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (fingerprint) DO UPDATE SET " +
+                    "last_seen_at = GREATEST(failure_signatures.last_seen_at, EXCLUDED.last_seen_at), " +
+                    "occurrences = failure_signatures.occurrences + EXCLUDED.occurrences";
+
+    private static final String INSERT_FAILED_ORDER =
+            "INSERT INTO failed_orders (order_id, product, price, event_time, failure_type, failure_category, " +
+                    "error_message, retry_count, original_topic, correlation_id, failed_at, status, signature_hash) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private record Pending(FailedOrderEntity row, String normalizedTrace, CompletableFuture<Void> written) {
+    }
+
+    private record Signature(String exceptionClass, String normalizedTrace, LocalDateTime firstSeen,
+                             LocalDateTime lastSeen, long occurrences) {
+        Signature merge(LocalDateTime failedAt) {
+            return new Signature(exceptionClass, normalizedTrace,
+                    failedAt.isBefore(firstSeen) ? failedAt : firstSeen,
+                    failedAt.isAfter(lastSeen) ? failedAt : lastSeen,
+                    occurrences + 1);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FailureSignatureRepository signatureRepository;
+    private final FailedOrderQueryService failedOrderQueryService;
+    private final int batchSize;
+    private final int maxQueued;
+
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    // Not a monitor: a flush holds it across JDBC, which would pin a virtual thread
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Counter written;
+    private final Timer flushTimer;
+
+    public FailedOrderRecorder(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               FailureSignatureRepository signatureRepository,
+                               FailedOrderQueryService failedOrderQueryService,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.dlq.batch.size:200}") int batchSize,
+                               @Value("${app.dlq.batch.max-queued:5000}") int maxQueued) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.signatureRepository = signatureRepository;
+        this.failedOrderQueryService = failedOrderQueryService;
+        this.batchSize = batchSize;
+        this.maxQueued = maxQueued;
+        this.written = Counter.builder("orders.dlq.written")
+                .description("Failed orders inserted by batch flushes")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("orders.dlq.flush")
+                .description("Batch flushes of failed orders and their signatures")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Queues a failed order; its stack trace is replaced by the signature hash.
+     * Flushes on the caller's thread once a batch is full, and fails the caller
+     * when max-queued rows are already waiting and a flush still fails.
+     */
+    public CompletableFuture<Void> record(FailedOrderEntity row, String stackTrace) {
+        String normalized = FailureSignatures.normalize(stackTrace);
+        row.setSignatureHash(FailureSignatures.fingerprint(normalized));
+        row.setStackTrace(null);
+
+        int queued;
+        synchronized (queue) {
+            queued = queue.size();
+        }
+        if (queued >= maxQueued) {
+            flush(); // throws while the database is down; the row is not queued then
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (queue) {
+            queue.add(new Pending(row, normalized, future));
+            queued = queue.size();
+        }
+        if (queued >= batchSize) {
+            flushQuietly();
+        }
+        return future;
+    }
+
+
+    @Scheduled(fixedDelayString = "${app.dlq.batch.flush-ms:200}")
+    public void flushQuietly() {
+        try {
+            flush();
+        } catch (DataAccessException | TransactionException e) {
+            log.error("Failed order batch could not be written, will retry: {}", e.getMessage());
+        }
+    }
+
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            while (true) {
+                List<Pending> batch = new ArrayList<>(batchSize);
+                synchronized (queue) {
+                    while (batch.size() < batchSize && !queue.isEmpty()) {
+                        batch.add(queue.poll());
+                    }
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                try {
+                    flushTimer.record(() -> write(batch));
+                } catch (RuntimeException e) {
+                    synchronized (queue) {
+                        for (int i = batch.size() - 1; i >= 0; i--) {
+                            queue.addFirst(batch.get(i));
+                        }
+                    }
+                    throw e;
+                }
+
+                written.increment(batch.size());
+                failedOrderQueryService.markDeadLettered(batch.stream()
+                        .filter(pending -> !"REPROCESSED".equals(pending.row().getStatus()))
+                        .map(pending -> pending.row().getOrderId())
+                        .toList());
+                batch.forEach(pending -> pending.written().complete(null));
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+
+    // Top signatures without their traces
+    public List<FailureSignatureEntity> getTopSignatures(int limit) {
+        return signatureRepository.findAllByOrderByOccurrencesDesc(PageRequest.of(0, limit));
+    }
+
+
+    public Optional<Map<String, Object>> getSignature(String fingerprint) {
+        return signatureRepository.findById(fingerprint).map(signature -> {
+            Map<String, Object> result = new HashMap<>();
+            result.put("fingerprint", signature.getFingerprint());
+            result.put("exceptionClass", signature.getExceptionClass());
+            result.put("stackTrace", FailureSignatures.decompress(signature.getStackTrace()));
+            result.put("firstSeenAt", signature.getFirstSeenAt());
+            result.put("lastSeenAt", signature.getLastSeenAt());
+            result.put("occurrences", signature.getOccurrences());
+            return result;
+        });
+    }
+
+
+    private void write(List<Pending> batch) {
+        // sorted so concurrent instances upsert shared signatures in the same order
+        Map<String, Signature> signatures = new TreeMap<>();
+        for (Pending pending : batch) {
+            LocalDateTime failedAt = pending.row().getFailedAt();
+            signatures.merge(pending.row().getSignatureHash(),
+                    new Signature(FailureSignatures.exceptionClass(pending.normalizedTrace()),
+                            pending.normalizedTrace(), failedAt, failedAt, 1),
+                    (existing, added) -> existing.merge(failedAt));
+        }
+
+        List<Object[]> signatureArgs = new ArrayList<>(signatures.size());
+        signatures.forEach((fingerprint, signature) -> signatureArgs.add(new Object[]{
+                fingerprint,
+                signature.exceptionClass(),
+                FailureSignatures.compress(signature.normalizedTrace()),
+                Timestamp.valueOf(signature.firstSeen()),
+                Timestamp.valueOf(signature.lastSeen()),
+                signature.occurrences()
+        }));
+
+        List<Object[]> rowArgs = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            FailedOrderEntity row = pending.row();
+            rowArgs.add(new Object[]{
+                    row.getOrderId(), row.getProduct(), row.getPrice(), row.getEventTime(),
+                    row.getFailureType(), row.getFailureCategory(), row.getErrorMessage(), row.getRetryCount(),
+                    row.getOriginalTopic(), row.getCorrelationId(), Timestamp.valueOf(row.getFailedAt()),
+                    row.getStatus(), row.getSignatureHash()
+            });
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(UPSERT_SIGNATURE, signatureArgs);
+            jdbcTemplate.batchUpdate(INSERT_FAILED_ORDER, rowArgs);
+        });
+        log.info(" Wrote {} failed orders ({} signatures)", batch.size(), signatures.size());
+    }
+}
@@ -0,0 +1,99 @@
+package com.bigdata.order_consumer_service.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Turns a stack trace into the form stored in failure_signatures. Normalizing
+ * drops what differs between occurrences of the same failure - exception
+ * messages (order ids, prices, offsets), "... n more" counts, generated class
+ * suffixes and hex addresses - so identical failures share one fingerprint.
+ */
+final class FailureSignatures {
+
+    private static final Pattern HEADER = Pattern.compile("^((?:Caused by: |Suppressed: )?[\\w$]+(?:\\.[\\w$]+)+)(?::.*)?$");
+    private static final Pattern MORE = Pattern.compile("^\\.\\.\\. \\d+ more$");
+    private static final Pattern LAMBDA = Pattern.compile("\\$\\$Lambda[^.(]*");
+    private static final Pattern GENERATED = Pattern.compile("(\\$Proxy|GeneratedMethodAccessor|\\$\\$SpringCGLIB\\$\\$)\\d+");
+    private static final Pattern HEX = Pattern.compile("0x[0-9a-fA-F]+|@[0-9a-fA-F]{6,}");
+
+    private FailureSignatures() {
+    }
+
+
+    static String normalize(String stackTrace) {
+        if (stackTrace == null || stackTrace.isBlank()) {
+            return "";
+        }
+
+        StringBuilder normalized = new StringBuilder(stackTrace.length() / 2);
+        for (String raw : stackTrace.split("\\R")) {
+            String line = raw.strip();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("at ")) {
+                line = LAMBDA.matcher(line).replaceAll("\\$\\$Lambda");
+                line = GENERATED.matcher(line).replaceAll("$1");
+                line = HEX.matcher(line).replaceAll("");
+            } else if (MORE.matcher(line).matches()) {
+                line = "... more";
+            } else {
+                var header = HEADER.matcher(line);
+                if (!header.matches()) {
+                    continue; // continuation of a multi-line exception message
+                }
+                line = header.group(1);
+            }
+            normalized.append(line).append('\n');
+        }
+        return normalized.toString();
+    }
+
+
+    // Class of the outermost exception, from the first line of the normalized trace
+    static String exceptionClass(String normalized) {
+        int end = normalized.indexOf('\n');
+        String first = end < 0 ? normalized : normalized.substring(0, end);
+        return first.isEmpty() ? "UNKNOWN" : first;
+    }
+
+
+    static String fingerprint(String normalized) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+
+    static byte[] compress(String normalized) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(normalized.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+
+    static String decompress(byte[] compressed) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.bigdata.order_consumer_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects inventory lookups for up to one window (or until maxBatch distinct
+ * products are waiting) and sends them as one InventoryClient call. Lookups of a
+ * product already waiting share its future, so a burst of orders for the same
+ * product costs one entry in one call.
+ */
+final class InventoryBatcher {
+
+    private final InventoryClient client;
+    private final Bulkhead bulkhead;
+    private final ScheduledExecutorService timer;
+    private final long windowMillis;
+    private final int maxBatch;
+    private final Duration timeout;
+    private final Counter coalesced;
+    private final DistributionSummary batchSizes;
+
+    private Map<String, CompletableFuture<Integer>> pending = new HashMap<>();
+
+    InventoryBatcher(InventoryClient client, Bulkhead bulkhead, ScheduledExecutorService timer,
+                     Duration window, int maxBatch, Duration timeout, MeterRegistry meterRegistry) {
+        this.client = client;
+        this.bulkhead = bulkhead;
+        this.timer = timer;
+        this.windowMillis = window.toMillis();
+        this.maxBatch = maxBatch;
+        this.timeout = timeout;
+        this.coalesced = Counter.builder("orders.external.inventory.coalesced")
+                .description("Inventory lookups answered by a lookup of the same product already waiting")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("orders.external.inventory.batch")
+                .description("Distinct products per inventory call")
+                .register(meterRegistry);
+    }
+
+
+    // Units in stock for the product
+    CompletableFuture<Integer> available(String product) {
+        CompletableFuture<Integer> stock;
+        boolean full;
+        synchronized (this) {
+            CompletableFuture<Integer> waiting = pending.get(product);
+            if (waiting != null) {
+                coalesced.increment();
+                return waiting;
+            }
+            stock = new CompletableFuture<>();
+            pending.put(product, stock);
+            if (pending.size() == 1) {
+                timer.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+            full = pending.size() >= maxBatch;
+        }
+        if (full) {
+            flush();
+        }
+        return stock;
+    }
+
+
+    // A timer left over from a batch already sent by size just sends the next one early
+    void flush() {
+        Map<String, CompletableFuture<Integer>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+
+        batchSizes.record(batch.size());
+        bulkhead.call(() -> client.lookup(batch.keySet()), timeout).whenComplete((stock, error) ->
+                batch.forEach((product, future) -> {
+                    if (error != null) {
+                        future.completeExceptionally(error);
+                    } else {
+                        future.complete(stock.getOrDefault(product, 0));
+                    }
+                }));
+    }
+}
@@ -0,0 +1,13 @@
+package com.bigdata.order_consumer_service.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Inventory dependency, looked up in batches (see InventoryBatcher). Returns the
+ * units in stock per product; products missing from the result have none.
+ */
+public interface InventoryClient {
+
+    Map<String, Integer> lookup(Collection<String> products);
+}
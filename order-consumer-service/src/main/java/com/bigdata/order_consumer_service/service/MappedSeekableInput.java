@@ -0,0 +1,48 @@
+package com.bigdata.order_consumer_service.service;
+
+import org.apache.avro.file.SeekableInput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Avro input over a memory-mapped region. Only the container part of an archive
+ * file is exposed, so the Avro reader never sees the footer index behind it.
+ */
+class MappedSeekableInput implements SeekableInput {
+
+    private final ByteBuffer buffer;
+
+    MappedSeekableInput(ByteBuffer mapped, int length) {
+        this.buffer = mapped.slice(0, length);
+    }
+
+    @Override
+    public void seek(long position) {
+        buffer.position((int) position);
+    }
+
+    @Override
+    public long tell() {
+        return buffer.position();
+    }
+
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int read = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, read);
+        return read;
+    }
+
+    @Override
+    public void close() {
+        // the mapping is released when the buffer is garbage collected
+    }
+}
@@ -0,0 +1,154 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * Layout of an archive file: a deflate-compressed Avro container holding one day of
+ * orders sorted by product, followed by a footer
+ *
+ *   [avro container][index json][index length: 8 bytes][MAGIC: 8 bytes]
+ *
+ * The index records where each product's run of records starts (an Avro sync
+ * position) and the processedAt range of the file and of every product, so readers
+ * can skip whole files or seek straight to one product.
+ */
+final class OrderArchiveFormat {
+
+    static final String FILE_SUFFIX = ".avro";
+    static final String FILE_PREFIX = "orders-";
+    static final String SHARD_PREFIX = "shard-";
+    static final String DAY_DIRECTORY_PREFIX = "dt=";
+    static final byte[] MAGIC = "ORDARC01".getBytes(StandardCharsets.US_ASCII);
+    static final int TRAILER_LENGTH = Long.BYTES + MAGIC.length;
+
+    static final Schema SCHEMA = SchemaBuilder.record("ArchivedOrder")
+            .namespace("com.bigdata.order_consumer_service.archive")
+            .fields()
+            .requiredLong("id")
+            .requiredString("orderId")
+            .requiredString("product")
+            .requiredFloat("price")
+            .optionalString("correlationId")
+            .name("receivedAt").type(timestamp()).noDefault()
+            .name("processedAt").type(timestamp()).noDefault()
+            .requiredString("status")
+            .optionalString("kafkaTopic")
+            .optionalInt("kafkaPartition")
+            .optionalLong("kafkaOffset")
+            .optionalString("metadata")
+            .name("createdAt").type(timestamp()).noDefault()
+            .name("updatedAt").type(timestamp()).noDefault()
+            .endRecord();
+
+    private OrderArchiveFormat() {
+    }
+
+
+    record ProductBlock(long position, long count, LocalDateTime minProcessedAt, LocalDateTime maxProcessedAt) {
+    }
+
+    record ArchiveIndex(long count, long minId, long maxId,
+                        LocalDateTime minProcessedAt, LocalDateTime maxProcessedAt,
+                        Map<String, ProductBlock> products) {
+
+        boolean overlaps(LocalDateTime start, LocalDateTime end) {
+            return !maxProcessedAt.isBefore(start) && !minProcessedAt.isAfter(end);
+        }
+    }
+
+
+    // orders-shard-<shard>-<millis>.avro; ids are per-shard identities, so a file belongs to one shard
+    static String fileName(int shard, long millis) {
+        return FILE_PREFIX + SHARD_PREFIX + shard + "-" + millis + FILE_SUFFIX;
+    }
+
+
+    // Files named orders-<millis>.avro were written before sharding, by the only shard there was
+    static int shardOf(String fileName) {
+        String name = fileName.substring(FILE_PREFIX.length());
+        if (!name.startsWith(SHARD_PREFIX)) {
+            return 0;
+        }
+        name = name.substring(SHARD_PREFIX.length());
+        return Integer.parseInt(name.substring(0, name.indexOf('-')));
+    }
+
+
+    static GenericRecord toRecord(OrderEntity order, GenericRecord reuse) {
+        GenericRecord record = reuse != null ? reuse : new GenericData.Record(SCHEMA);
+        record.put("id", order.getId());
+        record.put("orderId", order.getOrderId());
+        record.put("product", order.getProduct());
+        record.put("price", order.getPrice());
+        record.put("correlationId", order.getCorrelationId());
+        record.put("receivedAt", toMicros(order.getReceivedAt()));
+        record.put("processedAt", toMicros(order.getProcessedAt()));
+        record.put("status", order.getStatus());
+        record.put("kafkaTopic", order.getKafkaTopic());
+        record.put("kafkaPartition", order.getKafkaPartition());
+        record.put("kafkaOffset", order.getKafkaOffset());
+        record.put("metadata", order.getMetadata());
+        record.put("createdAt", toMicros(order.getCreatedAt()));
+        record.put("updatedAt", toMicros(order.getUpdatedAt()));
+        return record;
+    }
+
+
+    static OrderEntity toEntity(GenericRecord record) {
+        return OrderEntity.builder()
+                .id((Long) record.get("id"))
+                .orderId(string(record.get("orderId")))
+                .product(string(record.get("product")))
+                .price((Float) record.get("price"))
+                .correlationId(string(record.get("correlationId")))
+                .receivedAt(fromMicros(record.get("receivedAt")))
+                .processedAt(fromMicros(record.get("processedAt")))
+                .status(string(record.get("status")))
+                .kafkaTopic(string(record.get("kafkaTopic")))
+                .kafkaPartition((Integer) record.get("kafkaPartition"))
+                .kafkaOffset((Long) record.get("kafkaOffset"))
+                .metadata(string(record.get("metadata")))
+                .createdAt(fromMicros(record.get("createdAt")))
+                .updatedAt(fromMicros(record.get("updatedAt")))
+                .build();
+    }
+
+
+    static LocalDateTime processedAt(GenericRecord record) {
+        return fromMicros(record.get("processedAt"));
+    }
+
+
+    // local-timestamp-micros: wall-clock time as written by the service, no zone conversion
+    static long toMicros(LocalDateTime time) {
+        return ChronoUnit.MICROS.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), time);
+    }
+
+
+    private static LocalDateTime fromMicros(Object micros) {
+        long value = (Long) micros;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(value, 1_000_000L),
+                (int) Math.floorMod(value, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+
+    private static Schema timestamp() {
+        return LogicalTypes.localTimestampMicros().addToSchema(Schema.create(Schema.Type.LONG));
+    }
+
+
+    private static String string(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
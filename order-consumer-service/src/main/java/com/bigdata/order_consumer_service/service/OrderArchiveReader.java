@@ -0,0 +1,258 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.dto.OrderCursor;
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.service.OrderArchiveFormat.ArchiveIndex;
+import com.bigdata.order_consumer_service.service.OrderArchiveFormat.ProductBlock;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Reads orders back from the archive directory. Files are memory-mapped and their
+ * footer index is used to skip what a query cannot match: day directories outside
+ * the range are never opened, files whose processedAt range misses are not decoded,
+ * and within a file only the product runs that overlap are read.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderArchiveReader {
+
+    private static final Comparator<OrderEntity> BY_PROCESSED_AT_ID =
+            Comparator.comparing(OrderEntity::getProcessedAt).thenComparing(OrderEntity::getId);
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.orders.archive.directory:data/archive/orders}")
+    private String directory;
+
+
+    /**
+     * Archived orders strictly before the cursor in (processedAt, id) order, newest
+     * first - the continuation of a keyset page once the orders table runs out.
+     */
+    public List<OrderEntity> findBefore(LocalDateTime start, LocalDateTime end, String product,
+                                        OrderCursor before, int limit) {
+        LocalDateTime upper = end.isBefore(before.processedAt()) ? end : before.processedAt();
+        List<LocalDate> days = archivedDays(start, upper);
+
+        List<OrderEntity> found = new ArrayList<>();
+        for (int i = days.size() - 1; i >= 0 && found.size() < limit; i--) {
+            List<OrderEntity> orders = readDay(days.get(i), product, start, upper);
+            for (int j = orders.size() - 1; j >= 0 && found.size() < limit; j--) {
+                OrderEntity order = orders.get(j);
+                if (order.getProcessedAt().isBefore(before.processedAt())
+                        || (order.getProcessedAt().equals(before.processedAt()) && order.getId() < before.id())) {
+                    found.add(order);
+                }
+            }
+        }
+        return found;
+    }
+
+
+    // Days with archive files in [start, end], oldest first
+    public List<LocalDate> archivedDays(LocalDateTime start, LocalDateTime end) {
+        Path root = Path.of(directory);
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+
+        LocalDate from = start.toLocalDate();
+        LocalDate to = end.toLocalDate();
+        try (Stream<Path> entries = Files.list(root)) {
+            return entries
+                    .map(path -> parseDay(path.getFileName().toString()))
+                    .filter(day -> day != null && !day.isBefore(from) && !day.isAfter(to))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list order archive " + root, e);
+        }
+    }
+
+
+    // One day of archived orders in [start, end], optionally for a single product, oldest first
+    public List<OrderEntity> readDay(LocalDate day, String product, LocalDateTime start, LocalDateTime end) {
+        List<OrderEntity> orders = new ArrayList<>();
+        for (Path file : archiveFiles(day)) {
+            try {
+                read(file, product, start, end, orders);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read order archive " + file, e);
+            }
+        }
+        orders.sort(BY_PROCESSED_AT_ID);
+        return orders;
+    }
+
+
+    public List<Map<String, Object>> describe() {
+        List<Map<String, Object>> files = new ArrayList<>();
+        for (LocalDate day : archivedDays(LocalDateTime.of(1970, 1, 1, 0, 0), LocalDateTime.of(9999, 12, 31, 23, 59))) {
+            for (Path file : archiveFiles(day)) {
+                try {
+                    ArchiveIndex index = open(file).index();
+                    Map<String, Object> description = new HashMap<>();
+                    description.put("day", day);
+                    description.put("file", file.getFileName().toString());
+                    description.put("bytes", Files.size(file));
+                    description.put("orders", index.count());
+                    description.put("products", index.products().size());
+                    description.put("minProcessedAt", index.minProcessedAt());
+                    description.put("maxProcessedAt", index.maxProcessedAt());
+                    files.add(description);
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable order archive {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return files;
+    }
+
+
+    Path dayDirectory(LocalDate day) {
+        return Path.of(directory).resolve(OrderArchiveFormat.DAY_DIRECTORY_PREFIX + day);
+    }
+
+
+    // Ids a shard already wrote for a day, so a re-run after a failed delete does not archive them twice
+    Set<Long> archivedIds(LocalDate day, int shard) {
+        List<OrderEntity> orders = new ArrayList<>();
+        for (Path file : archiveFiles(day)) {
+            if (OrderArchiveFormat.shardOf(file.getFileName().toString()) != shard) {
+                continue;
+            }
+            try {
+                read(file, null, day.atStartOfDay(), day.plusDays(1).atStartOfDay(), orders);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read order archive " + file, e);
+            }
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (OrderEntity order : orders) {
+            ids.add(order.getId());
+        }
+        return ids;
+    }
+
+
+    private void read(Path file, String product, LocalDateTime start, LocalDateTime end,
+                      List<OrderEntity> sink) throws IOException {
+        MappedArchive archive = open(file);
+        ArchiveIndex index = archive.index();
+        if (!index.overlaps(start, end)) {
+            return;
+        }
+
+        List<ProductBlock> blocks = (product != null
+                ? Stream.ofNullable(index.products().get(product))
+                : index.products().values().stream())
+                .filter(block -> !block.maxProcessedAt().isBefore(start) && !block.minProcessedAt().isAfter(end))
+                .sorted(Comparator.comparingLong(ProductBlock::position))
+                .toList();
+        if (blocks.isEmpty()) {
+            return;
+        }
+
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(
+                new MappedSeekableInput(archive.buffer(), archive.dataLength()),
+                new GenericDatumReader<>(OrderArchiveFormat.SCHEMA))) {
+
+            GenericRecord record = null;
+            for (ProductBlock block : blocks) {
+                reader.seek(block.position());
+                for (long i = 0; i < block.count() && reader.hasNext(); i++) {
+                    record = reader.next(record);
+                    LocalDateTime processedAt = OrderArchiveFormat.processedAt(record);
+                    if (!processedAt.isBefore(start) && !processedAt.isAfter(end)) {
+                        sink.add(OrderArchiveFormat.toEntity(record));
+                    }
+                }
+            }
+        }
+    }
+
+
+    private MappedArchive open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE || size < OrderArchiveFormat.TRAILER_LENGTH) {
+                throw new IOException("Unexpected archive size " + size);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int trailer = (int) size - OrderArchiveFormat.TRAILER_LENGTH;
+            byte[] magic = new byte[OrderArchiveFormat.MAGIC.length];
+            buffer.get(trailer + Long.BYTES, magic);
+            long indexLength = buffer.getLong(trailer);
+            if (!Arrays.equals(magic, OrderArchiveFormat.MAGIC) || indexLength < 0 || indexLength > trailer) {
+                throw new IOException("Missing archive footer");
+            }
+
+            int dataLength = trailer - (int) indexLength;
+            byte[] index = new byte[(int) indexLength];
+            buffer.get(dataLength, index);
+            return new MappedArchive(buffer, dataLength, objectMapper.readValue(index, ArchiveIndex.class));
+        }
+    }
+
+
+    private List<Path> archiveFiles(LocalDate day) {
+        Path dayDirectory = dayDirectory(day);
+        if (!Files.isDirectory(dayDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dayDirectory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().endsWith(OrderArchiveFormat.FILE_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list order archive " + dayDirectory, e);
+        }
+    }
+
+
+    private static LocalDate parseDay(String name) {
+        if (!name.startsWith(OrderArchiveFormat.DAY_DIRECTORY_PREFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(OrderArchiveFormat.DAY_DIRECTORY_PREFIX.length()));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+
+    private record MappedArchive(ByteBuffer buffer, int dataLength, ArchiveIndex index) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.bigdata.order_consumer_service.service.OrderArchiveFormat.ArchiveIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moves orders older than the configured age out of the orders table into the
+ * archive directory, one day at a time, oldest first. A day is deleted from the
+ * table only after its file is on disk; if the delete fails, the next run finds
+ * the file, skips the ids it already holds and retries the delete. Shards are
+ * archived one after the other into the same directory. Each shard numbers its
+ * ids on its own, so files carry the shard in their name and a shard's recovery
+ * only looks at its own files.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderArchiveService {
+
+    private final OrderRepository orderRepository;
+    private final OrderArchiveWriter archiveWriter;
+    private final OrderArchiveReader archiveReader;
+    private final OrderLookupService orderLookupService;
+    private final ShardRouter shardRouter;
+    private final ReentrantLock running = new ReentrantLock();
+
+    @Value("${app.orders.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.orders.archive.older-than-days:90}")
+    private int olderThanDays;
+
+    @Value("${app.orders.archive.max-days-per-run:31}")
+    private int maxDaysPerRun;
+
+
+    @Scheduled(cron = "${app.orders.archive.cron:0 30 2 * * *}")
+    public void archiveScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archiveOldOrders();
+        } catch (DataAccessException | UncheckedIOException | IllegalArgumentException e) {
+            log.error("Order archival failed", e);
+        }
+    }
+
+
+    // One run at a time; a lock rather than a monitor, as a run blocks on JDBC and file I/O
+    public Map<String, Object> archiveOldOrders() {
+        running.lock();
+        try {
+            return archive();
+        } finally {
+            running.unlock();
+        }
+    }
+
+
+    private Map<String, Object> archive() {
+        if (olderThanDays <= 0) {
+            throw new IllegalArgumentException("app.orders.archive.older-than-days must be > 0");
+        }
+
+        long start = System.currentTimeMillis();
+        LocalDate cutoff = LocalDate.now().minusDays(olderThanDays);
+        List<String> days = new ArrayList<>();
+        long archived = 0;
+        long deleted = 0;
+
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            int current = shard;
+            for (int i = 0; i < maxDaysPerRun; i++) {
+                LocalDateTime oldest = shardRouter.onShard(current, orderRepository::findMinProcessedAt);
+                if (oldest == null || !oldest.toLocalDate().isBefore(cutoff)) {
+                    break;
+                }
+
+                LocalDate day = oldest.toLocalDate();
+                long[] result = shardRouter.onShard(current, () -> archiveDay(day, current));
+                if (result[1] == 0) {
+                    log.warn("Archival of {} on shard {} removed no orders, stopping", day, current);
+                    break;
+                }
+
+                days.add(shardRouter.shardCount() > 1 ? day + "@shard-" + current : day.toString());
+                archived += result[0];
+                deleted += result[1];
+            }
+        }
+
+        if (deleted > 0) {
+            orderLookupService.invalidateAll();
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("cutoff", cutoff);
+        summary.put("days", days);
+        summary.put("archivedOrders", archived);
+        summary.put("deletedOrders", deleted);
+        summary.put("durationMs", System.currentTimeMillis() - start);
+        log.info(" Order archival finished: {}", summary);
+        return summary;
+    }
+
+
+    // Archives one day of the current shard: {orders written, rows deleted}
+    private long[] archiveDay(LocalDate day, int shard) {
+        Set<Long> alreadyArchived = archiveReader.archivedIds(day, shard);
+        ArchiveIndex index;
+        try {
+            index = archiveWriter.writeDay(day, archiveReader.dayDirectory(day), shard, alreadyArchived);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot archive orders of " + day, e);
+        }
+
+        long maxId = Math.max(index != null ? index.maxId() : Long.MIN_VALUE,
+                alreadyArchived.stream().mapToLong(Long::longValue).max().orElse(Long.MIN_VALUE));
+        int removed = maxId == Long.MIN_VALUE ? 0 : orderRepository.deleteArchived(
+                day.atStartOfDay(), day.plusDays(1).atStartOfDay(), maxId);
+        return new long[]{index != null ? index.count() : 0, removed};
+    }
+}
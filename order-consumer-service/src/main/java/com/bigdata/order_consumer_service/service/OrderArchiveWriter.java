@@ -0,0 +1,184 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.bigdata.order_consumer_service.service.OrderArchiveFormat.ArchiveIndex;
+import com.bigdata.order_consumer_service.service.OrderArchiveFormat.ProductBlock;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Writes one day of orders to a new archive file (see {@link OrderArchiveFormat}).
+ * The file is written under a temporary name and renamed once the footer is on
+ * disk, so readers only ever see complete files.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderArchiveWriter {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final OrderRepository orderRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.orders.archive.deflate-level:6}")
+    private int deflateLevel;
+
+
+    /**
+     * Streams the day's orders of the current shard, skipping ids that an earlier run
+     * already archived from it. Returns the footer index of the new file, or null when
+     * there was nothing to write.
+     */
+    @Transactional(readOnly = true)
+    public ArchiveIndex writeDay(LocalDate day, Path dayDirectory, int shard, Set<Long> alreadyArchived)
+            throws IOException {
+        Files.createDirectories(dayDirectory);
+        long millis = System.currentTimeMillis();
+        // a re-run within the same millisecond must not replace the file it is recovering from
+        while (Files.exists(dayDirectory.resolve(OrderArchiveFormat.fileName(shard, millis)))) {
+            millis++;
+        }
+        String name = OrderArchiveFormat.fileName(shard, millis);
+        Path temp = dayDirectory.resolve(name + TEMP_SUFFIX);
+
+        IndexBuilder index = new IndexBuilder();
+        try (Stream<OrderEntity> orders = orderRepository.streamForArchive(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+             DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<>(OrderArchiveFormat.SCHEMA))) {
+
+            writer.setCodec(CodecFactory.deflateCodec(deflateLevel));
+            writer.create(OrderArchiveFormat.SCHEMA, Files.newOutputStream(temp));
+
+            GenericRecord record = null;
+            Iterator<OrderEntity> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                OrderEntity order = iterator.next();
+                entityManager.detach(order);
+                if (alreadyArchived.contains(order.getId())) {
+                    continue;
+                }
+
+                // every product starts a new block, so readers can seek straight to it
+                if (!order.getProduct().equals(index.currentProduct)) {
+                    index.startProduct(order.getProduct(), writer.sync());
+                }
+                record = OrderArchiveFormat.toRecord(order, record);
+                writer.append(record);
+                index.add(order);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        if (index.count == 0) {
+            Files.delete(temp);
+            return null;
+        }
+
+        ArchiveIndex footer = index.build();
+        appendFooter(temp, footer);
+        Path file = dayDirectory.resolve(name);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+
+        log.info(" Archived {} orders of {} to {} ({} bytes, {} products)",
+                footer.count(), day, file, Files.size(file), footer.products().size());
+        return footer;
+    }
+
+
+    private void appendFooter(Path file, ArchiveIndex index) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(index);
+        ByteBuffer footer = ByteBuffer.allocate(json.length + OrderArchiveFormat.TRAILER_LENGTH);
+        footer.put(json).putLong(json.length).put(OrderArchiveFormat.MAGIC).flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (footer.hasRemaining()) {
+                channel.write(footer);
+            }
+            channel.force(true);
+        }
+    }
+
+
+    private static class IndexBuilder {
+
+        private final Map<String, ProductBlock> products = new LinkedHashMap<>();
+        private long count;
+        private long minId = Long.MAX_VALUE;
+        private long maxId = Long.MIN_VALUE;
+        private LocalDateTime minProcessedAt;
+        private LocalDateTime maxProcessedAt;
+
+        private String currentProduct;
+        private long blockPosition;
+        private long blockCount;
+        private LocalDateTime blockMin;
+        private LocalDateTime blockMax;
+
+        void startProduct(String product, long position) {
+            finishProduct();
+            currentProduct = product;
+            blockPosition = position;
+            blockCount = 0;
+            blockMin = null;
+            blockMax = null;
+        }
+
+        // rows arrive ordered by processedAt within a product
+        void add(OrderEntity order) {
+            LocalDateTime processedAt = order.getProcessedAt();
+            count++;
+            blockCount++;
+            minId = Math.min(minId, order.getId());
+            maxId = Math.max(maxId, order.getId());
+            if (blockMin == null) {
+                blockMin = processedAt;
+            }
+            blockMax = processedAt;
+            if (minProcessedAt == null || processedAt.isBefore(minProcessedAt)) {
+                minProcessedAt = processedAt;
+            }
+            if (maxProcessedAt == null || processedAt.isAfter(maxProcessedAt)) {
+                maxProcessedAt = processedAt;
+            }
+        }
+
+        ArchiveIndex build() {
+            finishProduct();
+            return new ArchiveIndex(count, minId, maxId, minProcessedAt, maxProcessedAt, products);
+        }
+
+        private void finishProduct() {
+            if (currentProduct != null && blockCount > 0) {
+                products.put(currentProduct, new ProductBlock(blockPosition, blockCount, blockMin, blockMax));
+            }
+        }
+    }
+}
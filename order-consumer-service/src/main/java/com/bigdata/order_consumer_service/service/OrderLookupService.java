@@ -0,0 +1,186 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Read-through cache in front of the order lookups by orderId and by id.
+ *
+ * Misses are cached too (as empty), with a shorter TTL, so repeated lookups of
+ * unknown ids do not reach Postgres either. Saved orders are put into both caches
+ * once their transaction commits, which also replaces any cached miss. Order rows
+ * are never updated after insert - status changes happen on failed_orders - so
+ * entries only go stale when rows are deleted, and those paths call invalidateAll.
+ */
+@Service
+@Slf4j
+public class OrderLookupService {
+
+    public static final String BY_ORDER_ID_CACHE = "orders.by-order-id";
+    public static final String BY_ID_CACHE = "orders.by-id";
+
+    private final OrderRepository orderRepository;
+    private final ShardRouter shardRouter;
+    private final Cache<String, Optional<OrderEntity>> byOrderId;
+    private final Cache<Long, Optional<OrderEntity>> byId;
+
+    public OrderLookupService(OrderRepository orderRepository,
+                              ShardRouter shardRouter,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.orders.cache.max-size:10000}") long maxSize,
+                              @Value("${app.orders.cache.ttl:10m}") Duration ttl,
+                              @Value("${app.orders.cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.orderRepository = orderRepository;
+        this.shardRouter = shardRouter;
+        this.byOrderId = buildCache(maxSize, ttl, negativeTtl);
+        this.byId = buildCache(maxSize, ttl, negativeTtl);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byOrderId, BY_ORDER_ID_CACHE);
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, BY_ID_CACHE);
+    }
+
+
+    public Optional<OrderEntity> findByOrderId(String orderId) {
+        return byOrderId.get(orderId, this::loadByOrderId);
+    }
+
+
+    // Persisted orders among orderIds, by orderId: cached ones first, one query per shard for the rest,
+    // whose rows and misses are cached like single lookups
+    public Map<String, OrderEntity> findByOrderIds(Collection<String> orderIds) {
+        Map<String, OrderEntity> found = new HashMap<>();
+        byOrderId.getAll(orderIds, this::loadByOrderIds)
+                .forEach((orderId, order) -> order.ifPresent(o -> found.put(orderId, o)));
+        return found;
+    }
+
+
+    public Optional<OrderEntity> findById(Long id) {
+        return byId.get(id, this::loadById);
+    }
+
+
+    // The owning shard first; the others only hold it until a rebalance has moved it
+    private Optional<OrderEntity> loadByOrderId(String orderId) {
+        Optional<OrderEntity> order = shardRouter.forOrderId(orderId, () -> orderRepository.findByOrderId(orderId));
+        if (order.isPresent() || shardRouter.shardCount() == 1) {
+            return order;
+        }
+        return first(shardRouter.onAllShards(() -> orderRepository.findByOrderId(orderId)));
+    }
+
+
+    private Map<String, Optional<OrderEntity>> loadByOrderIds(Set<? extends String> orderIds) {
+        List<String> uncached = List.copyOf(orderIds);
+        Map<String, Optional<OrderEntity>> loaded = new HashMap<>();
+        shardRouter.onAllShards(() -> orderRepository.findByOrderIdIn(uncached))
+                .forEach(orders -> orders.forEach(order -> loaded.putIfAbsent(order.getOrderId(), Optional.of(order))));
+        orderIds.forEach(orderId -> loaded.putIfAbsent(orderId, Optional.empty()));
+        return loaded;
+    }
+
+
+    private Optional<OrderEntity> loadById(Long id) {
+        return first(shardRouter.onAllShards(() -> orderRepository.findById(id)));
+    }
+
+
+    private static Optional<OrderEntity> first(List<Optional<OrderEntity>> perShard) {
+        return perShard.stream().flatMap(Optional::stream).findFirst();
+    }
+
+
+    public void cacheSaved(OrderEntity order) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(order);
+                }
+            });
+        } else {
+            put(order);
+        }
+    }
+
+
+    // Rows leaving a shard's orders table (archival, rebalance moves) may still be cached
+    public void invalidateAll() {
+        byOrderId.invalidateAll();
+        byId.invalidateAll();
+    }
+
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put(BY_ORDER_ID_CACHE, describe(byOrderId));
+        statistics.put(BY_ID_CACHE, describe(byId));
+        return statistics;
+    }
+
+
+    private void put(OrderEntity order) {
+        Optional<OrderEntity> cached = Optional.of(order);
+        byOrderId.put(order.getOrderId(), cached);
+        if (order.getId() != null) {
+            byId.put(order.getId(), cached);
+        }
+    }
+
+
+    private static Map<String, Object> describe(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> description = new HashMap<>();
+        description.put("size", cache.estimatedSize());
+        description.put("hitCount", stats.hitCount());
+        description.put("missCount", stats.missCount());
+        description.put("hitRate", stats.hitRate());
+        description.put("evictionCount", stats.evictionCount());
+        return description;
+    }
+
+
+    private static <K> Cache<K, Optional<OrderEntity>> buildCache(long maxSize, Duration ttl, Duration negativeTtl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<K, Optional<OrderEntity>>() {
+                    @Override
+                    public long expireAfterCreate(K key, Optional<OrderEntity> value, long currentTime) {
+                        return (value.isPresent() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(K key, Optional<OrderEntity> value,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(K key, Optional<OrderEntity> value,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+}
@@ -0,0 +1,262 @@
+package com.bigdata.order_consumer_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the range partitions of the orders table in shape: creates the partitions
+ * for the next few intervals ahead of time and detaches (or drops) partitions that
+ * fall entirely outside the retention period.
+ *
+ * Partitions are named orders_pYYYYMM (monthly) or orders_pYYYYMMDD (daily); the
+ * bounds are derived from the name, so both granularities can coexist after the
+ * interval setting is changed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderPartitionService {
+
+    public static final String PARENT_TABLE = "orders";
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("orders_p(\\d{6}|\\d{8})");
+    private static final DateTimeFormatter MONTHLY = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter DAILY = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern PLAN_PARTITION = Pattern.compile("\\b(orders_p\\d+|orders_default)\\b");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final OrderLookupService orderLookupService;
+
+    @Value("${app.orders.partitioning.interval:MONTHLY}")
+    private String interval;
+
+    @Value("${app.orders.partitioning.premake:3}")
+    private int premake;
+
+    @Value("${app.orders.partitioning.retention-days:0}")
+    private int retentionDays;
+
+    @Value("${app.orders.partitioning.retention-action:DETACH}")
+    private String retentionAction;
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.orders.partitioning.maintenance-cron:0 15 * * * *}")
+    public void maintain() {
+        try {
+            ensureUpcomingPartitions();
+            applyRetention();
+        } catch (DataAccessException e) {
+            log.error("Order partition maintenance failed", e);
+        }
+    }
+
+
+    // Partition names are prefixed with shard-N/ when there is more than one shard
+    public List<String> ensureUpcomingPartitions() {
+        return onEveryShard(this::ensureUpcomingPartitionsOnShard);
+    }
+
+
+    public List<String> applyRetention() {
+        List<String> removed = onEveryShard(this::applyRetentionOnShard);
+        if (!removed.isEmpty()) {
+            orderLookupService.invalidateAll(); // the detached orders may still be cached
+        }
+        return removed;
+    }
+
+
+    private List<String> ensureUpcomingPartitionsOnShard() {
+        boolean daily = "DAILY".equalsIgnoreCase(interval);
+        LocalDate start = daily ? LocalDate.now() : LocalDate.now().withDayOfMonth(1);
+
+        Set<String> existing = new LinkedHashSet<>(listPartitionNames());
+        List<String> created = new ArrayList<>();
+
+        for (int i = 0; i <= premake; i++) {
+            LocalDate from = daily ? start.plusDays(i) : start.plusMonths(i);
+            LocalDate to = daily ? from.plusDays(1) : from.plusMonths(1);
+            String name = "orders_p" + from.format(daily ? DAILY : MONTHLY);
+
+            if (existing.contains(name) || overlapsExisting(existing, from, to)) {
+                continue;
+            }
+
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                    name, PARENT_TABLE, from, to));
+            created.add(name);
+            log.info(" Created order partition {} [{} .. {})", name, from, to);
+        }
+        return created;
+    }
+
+
+    private List<String> applyRetentionOnShard() {
+        List<String> removed = new ArrayList<>();
+        if (retentionDays <= 0) {
+            return removed;
+        }
+
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        boolean drop = "DROP".equalsIgnoreCase(retentionAction);
+
+        for (String name : listPartitionNames()) {
+            LocalDate[] bounds = boundsOf(name);
+            if (bounds == null || bounds[1].isAfter(cutoff)) {
+                continue;
+            }
+
+            jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + name);
+            if (drop) {
+                jdbcTemplate.execute("DROP TABLE " + name);
+            }
+            removed.add(name);
+            log.info(" Retention: {} order partition {} (ends {}, cutoff {})",
+                    drop ? "dropped" : "detached", name, bounds[1], cutoff);
+        }
+        return removed;
+    }
+
+
+    public List<Map<String, Object>> describePartitions() {
+        List<Map<String, Object>> partitions = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            int current = shard;
+            for (Map<String, Object> partition : shardRouter.onShard(current, this::describePartitionsOnShard)) {
+                partition.put("shard", current);
+                partitions.add(partition);
+            }
+        }
+        return partitions;
+    }
+
+
+    private List<Map<String, Object>> describePartitionsOnShard() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname AS partition, pg_get_expr(c.relpartbound, c.oid) AS bounds, " +
+                        "c.reltuples::bigint AS estimated_rows, pg_total_relation_size(c.oid) AS total_bytes " +
+                        "FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = ? ORDER BY c.relname", PARENT_TABLE);
+    }
+
+
+    /**
+     * Runs EXPLAIN for the processed_at range queries the API issues and reports
+     * which partitions each plan touches, to verify that pruning kicks in. Runs on
+     * shard 0; every shard has the same partition layout.
+     */
+    public List<Map<String, Object>> explainPruning(LocalDateTime start, LocalDateTime end) {
+        Timestamp from = Timestamp.valueOf(start);
+        Timestamp to = Timestamp.valueOf(end);
+        int total = listPartitionNames().size() + 1; // + default partition
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        result.add(explain("date-range page",
+                "SELECT * FROM orders WHERE processed_at >= ? AND processed_at <= ? " +
+                        "ORDER BY processed_at DESC, id DESC LIMIT 21", total, from, to));
+        result.add(explain("count since",
+                "SELECT COUNT(*) FROM orders WHERE processed_at >= ?", total, from));
+        result.add(explain("per-second counts since",
+                "SELECT date_trunc('second', processed_at), COUNT(*) FROM orders " +
+                        "WHERE processed_at >= ? GROUP BY 1", total, from));
+        return result;
+    }
+
+
+    private Map<String, Object> explain(String name, String sql, int totalPartitions, Object... args) {
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args);
+
+        Set<String> scanned = new LinkedHashSet<>();
+        for (String line : plan) {
+            Matcher matcher = PLAN_PARTITION.matcher(line);
+            while (matcher.find()) {
+                scanned.add(matcher.group(1));
+            }
+        }
+
+        Map<String, Object> explained = new HashMap<>();
+        explained.put("query", name);
+        explained.put("sql", sql);
+        explained.put("partitionsScanned", scanned);
+        explained.put("totalPartitions", totalPartitions);
+        explained.put("pruned", scanned.size() < totalPartitions);
+        explained.put("plan", plan);
+        return explained;
+    }
+
+
+    private List<String> onEveryShard(Supplier<List<String>> work) {
+        if (shardRouter.shardCount() == 1) {
+            return shardRouter.onShard(0, work);
+        }
+
+        List<String> names = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            String prefix = "shard-" + shard + "/";
+            shardRouter.onShard(shard, work).forEach(name -> names.add(prefix + name));
+        }
+        return names;
+    }
+
+
+    private List<String> listPartitionNames() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = ? AND c.relname <> 'orders_default'", String.class, PARENT_TABLE);
+    }
+
+
+    private boolean overlapsExisting(Set<String> existing, LocalDate from, LocalDate to) {
+        for (String name : existing) {
+            LocalDate[] bounds = boundsOf(name);
+            if (bounds != null && bounds[0].isBefore(to) && from.isBefore(bounds[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    // [from, to) of a partition created by this service or the V2 migration
+    static LocalDate[] boundsOf(String partitionName) {
+        Matcher matcher = PARTITION_NAME.matcher(partitionName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String suffix = matcher.group(1);
+        if (suffix.length() == 6) {
+            LocalDate from = LocalDate.parse(suffix + "01", DAILY);
+            return new LocalDate[]{from, from.plusMonths(1)};
+        }
+        LocalDate from = LocalDate.parse(suffix, DAILY);
+        return new LocalDate[]{from, from.plusDays(1)};
+    }
+}
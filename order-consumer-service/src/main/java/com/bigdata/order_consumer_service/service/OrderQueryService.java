@@ -0,0 +1,259 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.dto.CursorPage;
+import com.bigdata.order_consumer_service.dto.OrderCursor;
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Bounded order listings. Pages are keyset based - the cursor carries the
+ * (processedAt, id) of the last row returned - so page N costs the same as
+ * page 1. Exports stream rows straight from a database cursor as NDJSON.
+ *
+ * Archived orders are older than anything left in the orders table, so listings
+ * continue into the archive once the table runs out of matching rows.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderQueryService {
+
+    public static final int MAX_PAGE_SIZE = 500;
+
+    // Start of every listing: sorts after any real (processedAt, id)
+    private static final OrderCursor FIRST_PAGE = new OrderCursor(LocalDateTime.of(9999, 12, 31, 23, 59), Long.MAX_VALUE);
+    private static final LocalDateTime OPEN_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final int EXPORT_FLUSH_EVERY = 1000;
+    private static final Comparator<OrderEntity> NEWEST_FIRST =
+            Comparator.comparing(OrderEntity::getProcessedAt).thenComparing(OrderEntity::getId).reversed();
+    private static final Comparator<OrderEntity> HIGHEST_ID_FIRST =
+            Comparator.comparing(OrderEntity::getId).reversed();
+
+    private final OrderRepository orderRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final OrderArchiveReader archiveReader;
+    private final ShardRouter shardRouter;
+    private final PlatformTransactionManager transactionManager;
+
+
+    public CursorPage<OrderEntity> getOrders(String cursor, int size) {
+        OrderCursor after = decode(cursor);
+        int limit = pageSize(size);
+        List<OrderEntity> rows = gather(
+                () -> orderRepository.findPageBefore(after.processedAt(), after.id(), limit + 1), NEWEST_FIRST, limit + 1);
+        return toPage(withArchive(rows, limit, after, OPEN_START, FIRST_PAGE.processedAt(), null), limit);
+    }
+
+
+    public CursorPage<OrderEntity> getOrdersInDateRange(LocalDateTime start, LocalDateTime end,
+                                                        String cursor, int size) {
+        OrderCursor after = cursor != null ? decode(cursor) : new OrderCursor(end, Long.MAX_VALUE);
+        int limit = pageSize(size);
+        List<OrderEntity> rows = gather(() -> orderRepository.findPageInRangeBefore(
+                start, end, after.processedAt(), after.id(), limit + 1), NEWEST_FIRST, limit + 1);
+        return toPage(withArchive(rows, limit, after, start, end, null), limit);
+    }
+
+
+    public CursorPage<OrderEntity> getOrdersByStatus(String status, String cursor, int size) {
+        OrderCursor after = decode(cursor);
+        int limit = pageSize(size);
+        return toPage(gather(() -> orderRepository.findPageByStatusBefore(
+                status, after.processedAt(), after.id(), limit + 1), NEWEST_FIRST, limit + 1), limit);
+    }
+
+
+    // (product, id) keyset: only the id part of the cursor is used
+    public CursorPage<OrderEntity> getOrdersByProduct(String product, String cursor, int size) {
+        OrderCursor after = decode(cursor);
+        int limit = pageSize(size);
+        List<OrderEntity> rows = gather(
+                () -> orderRepository.findPageByProductBefore(product, after.id(), limit + 1), HIGHEST_ID_FIRST, limit + 1);
+        return toPage(withArchive(rows, limit, after, OPEN_START, FIRST_PAGE.processedAt(), product), limit);
+    }
+
+
+    // OFFSET pages, kept for the frontend: every shard returns its first (page + 1) * size rows
+    public Page<OrderEntity> getOrdersPage(Pageable pageable) {
+        return gatherPage(orderRepository::findAll, pageable);
+    }
+
+
+    public Page<OrderEntity> getOrdersByStatusPage(String status, Pageable pageable) {
+        return gatherPage(page -> orderRepository.findByStatus(status, page), pageable);
+    }
+
+
+    /**
+     * Writes every matching order as one JSON object per line. Entities are detached
+     * as soon as they are written, so the persistence context stays empty and memory
+     * use is flat no matter how many rows match. Archived days come first, one day
+     * in memory at a time, then each shard in turn.
+     */
+    public long exportOrders(String product, LocalDateTime start, LocalDateTime end,
+                             OutputStream out) throws IOException {
+        long written = 0;
+        for (LocalDate day : archiveReader.archivedDays(start, end)) {
+            for (OrderEntity order : archiveReader.readDay(day, product, start, end)) {
+                written = writeLine(order, out, written);
+            }
+        }
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        try {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                long before = written;
+                written = shardRouter.onShard(shard,
+                        () -> readOnly.execute(status -> exportShard(product, start, end, out, before)));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+
+        log.info(" Exported {} orders | product: {} | range: {} .. {}", written, product, start, end);
+        return written;
+    }
+
+
+    private long exportShard(String product, LocalDateTime start, LocalDateTime end,
+                             OutputStream out, long written) {
+        try (Stream<OrderEntity> orders = product != null
+                ? orderRepository.streamByProductAndProcessedAtBetween(product, start, end)
+                : orderRepository.streamByProcessedAtBetween(start, end)) {
+
+            Iterator<OrderEntity> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                OrderEntity order = iterator.next();
+                written = writeLine(order, out, written);
+                entityManager.detach(order);
+            }
+            return written;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    private long writeLine(OrderEntity order, OutputStream out, long written) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(order));
+        out.write('\n');
+        if (++written % EXPORT_FLUSH_EVERY == 0) {
+            out.flush();
+        }
+        return written;
+    }
+
+
+    // Each shard returns its own first rows; the merged page is the first of all of them
+    private List<OrderEntity> gather(Supplier<List<OrderEntity>> query, Comparator<OrderEntity> order, int limit) {
+        List<List<OrderEntity>> perShard = shardRouter.onAllShards(query);
+        if (perShard.size() == 1) {
+            return perShard.get(0);
+        }
+        return perShard.stream()
+                .flatMap(List::stream)
+                .sorted(order)
+                .limit(limit)
+                .toList();
+    }
+
+
+    private Page<OrderEntity> gatherPage(Function<Pageable, Page<OrderEntity>> query, Pageable pageable) {
+        if (shardRouter.shardCount() == 1) {
+            return shardRouter.onShard(0, () -> query.apply(pageable));
+        }
+
+        Pageable head = PageRequest.of(0, (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize()),
+                pageable.getSort());
+        List<Page<OrderEntity>> perShard = shardRouter.onAllShards(() -> query.apply(head));
+
+        List<OrderEntity> content = perShard.stream()
+                .flatMap(page -> page.getContent().stream())
+                .sorted(comparator(pageable.getSort()))
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .toList();
+        long total = perShard.stream().mapToLong(Page::getTotalElements).sum();
+        return new PageImpl<>(content, pageable, total);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<OrderEntity> comparator(Sort sort) {
+        Comparator<OrderEntity> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<OrderEntity> byProperty = Comparator.comparing(
+                    entity -> (Comparable<Object>) new BeanWrapperImpl(entity).getPropertyValue(order.getProperty()),
+                    Comparator.nullsLast(Comparator.naturalOrder()));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+
+    // Tops a short page up from the archive, continuing after its last row
+    private List<OrderEntity> withArchive(List<OrderEntity> rows, int limit, OrderCursor after,
+                                          LocalDateTime start, LocalDateTime end, String product) {
+        if (rows.size() > limit) {
+            return rows;
+        }
+
+        OrderCursor from = rows.isEmpty() ? after : OrderCursor.of(rows.get(rows.size() - 1));
+        List<OrderEntity> archived = archiveReader.findBefore(start, end, product, from, limit + 1 - rows.size());
+        if (archived.isEmpty()) {
+            return rows;
+        }
+
+        List<OrderEntity> combined = new ArrayList<>(rows);
+        combined.addAll(archived);
+        return combined;
+    }
+
+
+    private static OrderCursor decode(String cursor) {
+        return cursor == null || cursor.isBlank() ? FIRST_PAGE : OrderCursor.decode(cursor);
+    }
+
+
+    private static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+
+    // Queries fetch one row more than asked for, to tell whether another page exists
+    private static CursorPage<OrderEntity> toPage(List<OrderEntity> rows, int limit) {
+        boolean hasMore = rows.size() > limit;
+        List<OrderEntity> content = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = hasMore ? OrderCursor.of(content.get(content.size() - 1)).encode() : null;
+        return new CursorPage<>(content, nextCursor, hasMore);
+    }
+}
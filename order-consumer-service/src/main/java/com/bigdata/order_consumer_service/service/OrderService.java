@@ -5,15 +5,17 @@ import com.bigdata.order_consumer_service.exception.ErrorCategory;
 import com.bigdata.order_consumer_service.exception.PermanentProcessingException;
 import com.bigdata.order_consumer_service.repository.OrderRepository;
 import com.bigdata.schema.Order;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
@@ -21,17 +23,35 @@ import java.util.Map;
 public class OrderService {
 
     private final OrderRepository orderRepository;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OrderStatisticsTracker statisticsTracker;
+    private final ProductRollupService productRollupService;
+    private final OrderLookupService orderLookupService;
+    private final JsonFactory jsonFactory = new JsonFactory();
 
 
     @Transactional
     public OrderEntity saveOrder(Order order, String correlationId,
                                  String topic, Integer partition, Long offset) {
+        return saveOrder(order.getOrderId().toString(), order.getProduct().toString(), order.getPrice(),
+                correlationId, topic, partition, offset);
+    }
 
-        String orderId = order.getOrderId().toString();
 
+    // Takes the already converted Avro fields so the listener's Utf8 -> String work is reused
+    @Transactional
+    public OrderEntity saveOrder(String orderId, String product, float price, String correlationId,
+                                 String topic, Integer partition, Long offset) {
 
-        if (orderRepository.existsByOrderId(orderId)) {
+        // Atomic, unlike an exists check: of two concurrent saves of one order the second
+        // waits here for the first to commit or roll back. A rollback releases the claim.
+        if (orderRepository.claimOrderId(orderId) == 0) {
+            OrderEntity stored = orderRepository.findByOrderId(orderId).orElse(null);
+            if (stored != null && isSavedFrom(stored, correlationId, topic, partition, offset)) {
+                // The record was saved but its offset not committed (rebalance, restart): nothing to redo
+                log.info("Order already saved from this record | OrderID: {} | {}-{}@{}",
+                        orderId, topic, partition, offset);
+                return stored;
+            }
             log.warn("Duplicate order detected: {}", orderId);
             throw new PermanentProcessingException(
                     ErrorCategory.DUPLICATE_ORDER,
@@ -40,51 +60,96 @@ public class OrderService {
         }
 
 
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("source", "kafka");
-        metadata.put("originalMessage", String.format(
-                "Order{id=%s, product=%s, price=%.2f}",
-                orderId, order.getProduct(), order.getPrice()
-        ));
-
-        String metadataJson = null;
-        try {
-            metadataJson = objectMapper.writeValueAsString(metadata);
-        } catch (Exception e) {
-            log.warn("Failed to serialize metadata", e);
-        }
-
+        LocalDateTime now = LocalDateTime.now();
 
         OrderEntity entity = OrderEntity.builder()
                 .orderId(orderId)
-                .product(order.getProduct().toString())
-                .price(order.getPrice())
+                .product(product)
+                .price(price)
                 .correlationId(correlationId)
-                .receivedAt(LocalDateTime.now())
-                .processedAt(LocalDateTime.now())
+                .receivedAt(now)
+                .processedAt(now)
                 .status("PROCESSED")
                 .kafkaTopic(topic)
                 .kafkaPartition(partition)
                 .kafkaOffset(offset)
-                .metadata(metadataJson)
+                .metadata(buildMetadata(orderId, product, price))
                 .build();
 
         OrderEntity saved = orderRepository.save(entity);
+        productRollupService.recordOrder(product, now, price);
+        statisticsTracker.recordSaved(saved);
+        orderLookupService.cacheSaved(saved);
 
         log.info("Order saved to database | ID: {} | OrderID: {} | Product: {} | Price: ${}",
-                saved.getId(), orderId, order.getProduct(), order.getPrice());
+                saved.getId(), orderId, product, price);
 
         return saved;
     }
 
 
+    // Orders of one orders-batch record share its offset; the cid tells them apart
+    private static boolean isSavedFrom(OrderEntity stored, String correlationId,
+                                       String topic, Integer partition, Long offset) {
+        return offset != null
+                && offset.equals(stored.getKafkaOffset())
+                && Objects.equals(partition, stored.getKafkaPartition())
+                && Objects.equals(topic, stored.getKafkaTopic())
+                && Objects.equals(correlationId, stored.getCorrelationId());
+    }
+
+
+    // {"source":"kafka","originalMessage":"Order{id=.., product=.., price=..}"} written with
+    // a streaming generator instead of a Map + ObjectMapper + String.format per message
+    private String buildMetadata(String orderId, String product, float price) {
+        StringBuilder originalMessage = new StringBuilder(orderId.length() + product.length() + 40)
+                .append("Order{id=").append(orderId)
+                .append(", product=").append(product)
+                .append(", price=");
+        appendPrice(originalMessage, price);
+        originalMessage.append('}');
+
+        StringWriter writer = new StringWriter(originalMessage.length() + 48);
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeStringField("source", "kafka");
+            generator.writeStringField("originalMessage", originalMessage.toString());
+            generator.writeEndObject();
+        } catch (IOException e) {
+            log.warn("Failed to serialize metadata", e);
+            return null;
+        }
+        return writer.toString();
+    }
+
+
+    // Same output as "%.2f" (half-up) but locale independent and without the Formatter
+    static void appendPrice(StringBuilder sb, float price) {
+        if (Float.isNaN(price) || Float.isInfinite(price)) {
+            sb.append(price);
+            return;
+        }
+
+        long cents = Math.round(Math.abs((double) price) * 100);
+        if (price < 0 && cents != 0) {
+            sb.append('-');
+        }
+        sb.append(cents / 100).append('.');
+        long fraction = cents % 100;
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+
     public OrderEntity getByOrderId(String orderId) {
-        return orderRepository.findByOrderId(orderId)
+        return orderLookupService.findByOrderId(orderId)
                 .orElse(null);
     }
 
 
     public boolean orderExists(String orderId) {
-        return orderRepository.existsByOrderId(orderId);
+        return orderLookupService.findByOrderId(orderId).isPresent();
     }
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * In-memory order statistics so /api/orders/statistics and /api/orders/health do
+ * not scan the orders table on every call.
+ *
+ * Counters are bumped after each order insert commits, seeded from the database
+ * once the application is ready and periodically rebuilt from it. The rebuild
+ * picks up orders saved by other consumer instances and corrects any drift;
+ * between rebuilds the values are exact for this instance only. Orders recorded
+ * while a rebuild reads the database are applied on top of what it read, so they
+ * are not lost when the rebuilt counters replace the old ones.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderStatisticsTracker {
+
+    private static final long HOUR_SECONDS = 3600L;
+    private static final long DAY_SECONDS = 86400L;
+
+    private final OrderRepository orderRepository;
+    private final ShardRouter shardRouter;
+
+    private final Object swapLock = new Object();
+    private volatile Counters counters = new Counters();
+    private volatile LocalDateTime lastReconciledAt;
+    private List<OrderEntity> recordedDuringReconcile; // guarded by swapLock
+
+
+    public void recordSaved(OrderEntity order) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(order);
+                }
+            });
+        } else {
+            record(order);
+        }
+    }
+
+
+    private void record(OrderEntity order) {
+        synchronized (swapLock) {
+            counters.record(order);
+            if (recordedDuringReconcile != null) {
+                recordedDuringReconcile.add(order);
+            }
+        }
+    }
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        reconcile();
+    }
+
+
+    @Scheduled(fixedDelayString = "${app.statistics.reconcile-interval-ms:60000}",
+            initialDelayString = "${app.statistics.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (swapLock) {
+            recordedDuringReconcile = new ArrayList<>();
+        }
+        try {
+            Counters fresh = new Counters();
+            for (ShardTotals shard : shardRouter.onAllShards(() -> readTotals(now))) {
+                fresh.totalOrders.addAndGet(shard.totalOrders());
+                fresh.processedOrders.addAndGet(shard.processedOrders());
+                fresh.totalRevenue.add(shard.totalRevenue() != null ? shard.totalRevenue() : 0.0);
+                for (Object[] row : shard.perSecond()) {
+                    fresh.recordWindow(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+                }
+            }
+
+            // The database read may or may not include them; counting them again errs high
+            // until the next reconcile instead of losing them
+            Counters previous;
+            synchronized (swapLock) {
+                recordedDuringReconcile.forEach(fresh::record);
+                recordedDuringReconcile = null;
+                previous = counters;
+                counters = fresh;
+            }
+            lastReconciledAt = now;
+
+            log.debug("Order statistics reconciled | total: {} (was {}) | revenue: {} (was {})",
+                    fresh.totalOrders.get(), previous.totalOrders.get(),
+                    fresh.totalRevenue.sum(), previous.totalRevenue.sum());
+
+        } catch (DataAccessException e) {
+            log.warn("Failed to reconcile order statistics, keeping in-memory values", e);
+        } finally {
+            synchronized (swapLock) {
+                recordedDuringReconcile = null;
+            }
+        }
+    }
+
+
+    private ShardTotals readTotals(LocalDateTime now) {
+        return new ShardTotals(
+                orderRepository.count(),
+                orderRepository.countByStatus("PROCESSED"),
+                orderRepository.getTotalRevenue(),
+                orderRepository.countOrdersPerSecondSince(now.minusDays(1)));
+    }
+
+
+    public long getTotalOrders() {
+        return counters.totalOrders.get();
+    }
+
+    public long getProcessedOrders() {
+        return counters.processedOrders.get();
+    }
+
+    public double getTotalRevenue() {
+        return counters.totalRevenue.sum();
+    }
+
+    public long getOrdersLastHour() {
+        long now = epochSecond(LocalDateTime.now());
+        return counters.lastHour.sum(now - HOUR_SECONDS, now);
+    }
+
+    public long getOrdersLast24Hours() {
+        long now = epochSecond(LocalDateTime.now());
+        return counters.lastDay.sum(now - DAY_SECONDS, now);
+    }
+
+    public LocalDateTime getLastReconciledAt() {
+        return lastReconciledAt;
+    }
+
+
+    // processedAt is a zone-less LocalDateTime; treating it as UTC matches EXTRACT(EPOCH ...) in Postgres
+    private static long epochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+
+    private record ShardTotals(long totalOrders, long processedOrders, Double totalRevenue, List<Object[]> perSecond) {
+    }
+
+
+    private static final class Counters {
+        private final AtomicLong totalOrders = new AtomicLong();
+        private final AtomicLong processedOrders = new AtomicLong();
+        private final DoubleAdder totalRevenue = new DoubleAdder();
+        private final SlidingWindowCounter lastHour = new SlidingWindowCounter(HOUR_SECONDS, 1);
+        private final SlidingWindowCounter lastDay = new SlidingWindowCounter(DAY_SECONDS, 60);
+
+        private void record(OrderEntity order) {
+            totalOrders.incrementAndGet();
+            if ("PROCESSED".equals(order.getStatus())) {
+                processedOrders.incrementAndGet();
+                totalRevenue.add(order.getPrice());
+            }
+            if (order.getProcessedAt() != null) {
+                recordWindow(epochSecond(order.getProcessedAt()), 1);
+            }
+        }
+
+        private void recordWindow(long epochSecond, long count) {
+            lastHour.add(epochSecond, count);
+            lastDay.add(epochSecond, count);
+        }
+    }
+}
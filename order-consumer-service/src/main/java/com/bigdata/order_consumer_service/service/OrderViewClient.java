@@ -0,0 +1,83 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.dto.OrderView;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.http.client.ClientHttpRequestFactoryBuilder;
+import org.springframework.boot.http.client.ClientHttpRequestFactorySettings;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Client for the order read model kept by the aggregation service in Kafka Streams
+ * state stores. Lookups that miss or fail return empty, and callers fall back to
+ * Postgres; timeouts are short so an unavailable view never slows a request much.
+ */
+@Service
+@Slf4j
+public class OrderViewClient {
+
+    private final boolean enabled;
+    private final RestClient restClient;
+
+    public OrderViewClient(RestClient.Builder restClientBuilder,
+                           @Value("${app.orders.read-model.enabled:true}") boolean enabled,
+                           @Value("${app.orders.read-model.url:http://localhost:8084}") String baseUrl,
+                           @Value("${app.orders.read-model.timeout:500ms}") Duration timeout) {
+        this.enabled = enabled;
+        this.restClient = restClientBuilder
+                .baseUrl(baseUrl)
+                .requestFactory(ClientHttpRequestFactoryBuilder.jdk().build(
+                        ClientHttpRequestFactorySettings.defaults()
+                                .withConnectTimeout(timeout)
+                                .withReadTimeout(timeout)))
+                .build();
+    }
+
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    public Optional<OrderView> findByOrderId(String orderId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(restClient.get()
+                    .uri("/api/views/orders/{orderId}", orderId)
+                    .retrieve()
+                    .body(OrderView.class));
+        } catch (HttpClientErrorException.NotFound e) {
+            return Optional.empty();
+        } catch (RestClientException e) {
+            log.debug("Order view lookup failed for {}: {}", orderId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+
+    // Empty when the view is disabled or unavailable
+    public Optional<List<OrderView>> findRecent(int limit) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(restClient.get()
+                    .uri("/api/views/orders/recent?limit={limit}", limit)
+                    .retrieve()
+                    .body(new ParameterizedTypeReference<List<OrderView>>() {}));
+        } catch (RestClientException e) {
+            log.debug("Recent orders view unavailable: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
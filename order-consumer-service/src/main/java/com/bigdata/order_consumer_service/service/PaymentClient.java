@@ -0,0 +1,10 @@
+package com.bigdata.order_consumer_service.service;
+
+/**
+ * Payment dependency. Calls block; ExternalCallStage runs them on virtual threads.
+ * Throw TemporaryProcessingException for failures worth retrying.
+ */
+public interface PaymentClient {
+
+    void authorize(String orderId, float amount);
+}
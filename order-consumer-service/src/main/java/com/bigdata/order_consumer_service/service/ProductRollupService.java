@@ -0,0 +1,153 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.entity.OrderProductHourlyEntity;
+import com.bigdata.order_consumer_service.repository.OrderProductHourlyRepository;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductRollupService {
+
+    private final OrderProductHourlyRepository rollupRepository;
+    private final OrderRepository orderRepository;
+    private final ShardRouter shardRouter;
+    private final PlatformTransactionManager transactionManager;
+
+
+    // Runs inside the caller's transaction so the rollup commits or rolls back with the order
+    public void recordOrder(String product, LocalDateTime processedAt, float price) {
+        rollupRepository.upsertOrder(product, processedAt.truncatedTo(ChronoUnit.HOURS), price);
+    }
+
+
+    /**
+     * Repopulates order_product_hourly from the orders table, walking the id space in
+     * chunks so no single statement aggregates the whole table. Every shard rebuilds
+     * its own rollup from its own orders in one transaction that first locks the
+     * rollup against writers: an order saved meanwhile waits at its upsert until the
+     * rebuilt totals commit, so it is counted once, on top of them. Readers keep
+     * seeing the previous totals until then.
+     */
+    public Map<String, Object> rebuild(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be > 0");
+        }
+
+        List<Map<String, Object>> perShard = shardRouter.onAllShards(() -> rebuildShard(chunkSize));
+        if (perShard.size() == 1) {
+            return perShard.get(0);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        for (String key : List.of("deletedRows", "chunks", "upserts")) {
+            result.put(key, perShard.stream().mapToLong(shard -> ((Number) shard.get(key)).longValue()).sum());
+        }
+        result.put("shards", perShard);
+        return result;
+    }
+
+
+    /**
+     * Product totals (product, count, revenue, min price, max price) for whole hours
+     * in [start, end), or for all time when both are null, summed over every shard.
+     */
+    public List<Object[]> getProductStatistics(LocalDateTime start, LocalDateTime end) {
+        List<List<Object[]>> perShard = shardRouter.onAllShards(() -> start == null && end == null
+                ? rollupRepository.getProductStatistics()
+                : rollupRepository.getProductStatistics(start, end));
+        if (perShard.size() == 1) {
+            return perShard.get(0);
+        }
+
+        Map<String, Object[]> merged = new LinkedHashMap<>();
+        for (List<Object[]> rows : perShard) {
+            for (Object[] row : rows) {
+                merged.merge((String) row[0], row.clone(), (total, next) -> new Object[]{
+                        total[0],
+                        ((Number) total[1]).longValue() + ((Number) next[1]).longValue(),
+                        ((Number) total[2]).doubleValue() + ((Number) next[2]).doubleValue(),
+                        Math.min(((Number) total[3]).floatValue(), ((Number) next[3]).floatValue()),
+                        Math.max(((Number) total[4]).floatValue(), ((Number) next[4]).floatValue())});
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+
+    public List<OrderProductHourlyEntity> getHourlyStatistics(String product, LocalDateTime start, LocalDateTime end) {
+        List<List<OrderProductHourlyEntity>> perShard = shardRouter.onAllShards(
+                () -> rollupRepository.findByProductAndBucketHourBetweenOrderByBucketHour(product, start, end));
+        if (perShard.size() == 1) {
+            return perShard.get(0);
+        }
+
+        Map<LocalDateTime, OrderProductHourlyEntity> merged = new TreeMap<>();
+        for (List<OrderProductHourlyEntity> buckets : perShard) {
+            for (OrderProductHourlyEntity bucket : buckets) {
+                merged.merge(bucket.getBucketHour(), bucket, (total, next) -> OrderProductHourlyEntity.builder()
+                        .product(product)
+                        .bucketHour(total.getBucketHour())
+                        .orderCount(total.getOrderCount() + next.getOrderCount())
+                        .totalRevenue(total.getTotalRevenue() + next.getTotalRevenue())
+                        .minPrice(Math.min(total.getMinPrice(), next.getMinPrice()))
+                        .maxPrice(Math.max(total.getMaxPrice(), next.getMaxPrice()))
+                        .updatedAt(total.getUpdatedAt().isAfter(next.getUpdatedAt()) ? total.getUpdatedAt() : next.getUpdatedAt())
+                        .build());
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+
+    private Map<String, Object> rebuildShard(int chunkSize) {
+        return new TransactionTemplate(transactionManager).execute(status -> rebuildLocked(chunkSize));
+    }
+
+
+    private Map<String, Object> rebuildLocked(int chunkSize) {
+        long start = System.currentTimeMillis();
+        rollupRepository.lockAgainstWriters();
+        int deleted = rollupRepository.deleteAllRows();
+
+        Long minId = orderRepository.findMinId();
+        Long maxId = orderRepository.findMaxId();
+
+        int chunks = 0;
+        long rows = 0;
+        if (minId != null && maxId != null) {
+            for (long from = minId - 1; from < maxId; from += chunkSize) {
+                long to = Math.min(from + chunkSize, maxId);
+                rows += rollupRepository.rollupOrderRange(from, to);
+                chunks++;
+            }
+        }
+
+        long tookMs = System.currentTimeMillis() - start;
+        log.info("Rebuilt order_product_hourly | orders id {}..{} | chunks: {} | upserts: {} | took {} ms",
+                minId, maxId, chunks, rows, tookMs);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("deletedRows", deleted);
+        result.put("minOrderId", minId);
+        result.put("maxOrderId", maxId);
+        result.put("chunks", chunks);
+        result.put("upserts", rows);
+        result.put("tookMs", tookMs);
+        return result;
+    }
+}
@@ -0,0 +1,306 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moves orders to the shard their orderId hashes to - run it after changing
+ * app.shards.urls. Each shard is scanned in id order, batch by batch; misplaced
+ * rows are written to their owning shard first and only then deleted from the
+ * source, so an interrupted run can simply be repeated.
+ *
+ * A row keeps its id, which the aligned id sequences keep unique across shards.
+ * What keeps it from being inserted twice is its order_ids claim (V5): only rows
+ * whose orderId the target did not hold yet are inserted, in the same transaction
+ * as the claim. A row that is already there - moved by an interrupted run, or
+ * saved on the target meanwhile - is only deleted from the source.
+ *
+ * Moved PROCESSED orders take their rollup contribution along: it is added to the
+ * target's order_product_hourly with the rows and taken off the source's with the
+ * delete. Min and max prices stay on the source bucket; the same price now sits
+ * in the target's bucket for that hour, so the merged statistics do not change.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ShardRebalanceService {
+
+    private static final String COLUMNS = "id, order_id, product, price, correlation_id, received_at, " +
+            "processed_at, status, kafka_topic, kafka_partition, kafka_offset, metadata, created_at, updated_at";
+    private static final int COLUMN_COUNT = 14;
+    private static final int ID = 0;
+    private static final int ORDER_ID = 1;
+    private static final int PRODUCT = 2;
+    private static final int PRICE = 3;
+    private static final int PROCESSED_AT = 6;
+    private static final int STATUS = 7;
+
+    private static final String INSERT_ORDER = "INSERT INTO orders (" + COLUMNS + ") VALUES (" +
+            String.join(", ", Collections.nCopies(COLUMN_COUNT, "?")) + ")";
+    private static final String ADD_ROLLUP = "INSERT INTO order_product_hourly " +
+            "(product, bucket_hour, order_count, total_revenue, min_price, max_price, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, now()) " +
+            "ON CONFLICT (product, bucket_hour) DO UPDATE SET " +
+            "order_count = order_product_hourly.order_count + EXCLUDED.order_count, " +
+            "total_revenue = order_product_hourly.total_revenue + EXCLUDED.total_revenue, " +
+            "min_price = LEAST(order_product_hourly.min_price, EXCLUDED.min_price), " +
+            "max_price = GREATEST(order_product_hourly.max_price, EXCLUDED.max_price), " +
+            "updated_at = EXCLUDED.updated_at";
+    private static final String SUBTRACT_ROLLUP = "UPDATE order_product_hourly SET " +
+            "order_count = order_count - ?, total_revenue = total_revenue - ?, updated_at = now() " +
+            "WHERE product = ? AND bucket_hour = ?";
+
+    private final ShardRouter shardRouter;
+    private final OrderRepository orderRepository;
+    private final OrderLookupService orderLookupService;
+    private final ReentrantLock running = new ReentrantLock();
+
+
+    public List<Map<String, Object>> describeShards() {
+        List<Long> counts = shardRouter.onAllShards(orderRepository::count);
+
+        List<Map<String, Object>> shards = new ArrayList<>();
+        for (int i = 0; i < shardRouter.shardCount(); i++) {
+            HikariDataSource dataSource = shardRouter.shardDataSource(i);
+            Map<String, Object> shard = new HashMap<>();
+            shard.put("shard", i);
+            shard.put("url", dataSource.getJdbcUrl());
+            shard.put("orders", counts.get(i));
+
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            if (pool != null) {
+                Map<String, Object> connections = new HashMap<>();
+                connections.put("active", pool.getActiveConnections());
+                connections.put("idle", pool.getIdleConnections());
+                connections.put("total", pool.getTotalConnections());
+                connections.put("waiting", pool.getThreadsAwaitingConnection());
+                shard.put("pool", connections);
+            }
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+
+    // One run at a time; a lock rather than a monitor, as a run blocks on JDBC
+    public Map<String, Object> rebalance(int batchSize, boolean dryRun) {
+        running.lock();
+        try {
+            return move(batchSize, dryRun);
+        } finally {
+            running.unlock();
+        }
+    }
+
+
+    private Map<String, Object> move(int batchSize, boolean dryRun) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be > 0");
+        }
+
+        long start = System.currentTimeMillis();
+        int shards = shardRouter.shardCount();
+        List<Map<String, Object>> perShard = new ArrayList<>();
+        long totalMoved = 0;
+
+        for (int source = 0; source < shards; source++) {
+            JdbcTemplate from = jdbc(source);
+            long lastId = Long.MIN_VALUE;
+            long scanned = 0;
+            long alreadyOnTarget = 0;
+            long[] movedTo = new long[shards];
+
+            while (true) {
+                List<Object[]> rows = from.query(
+                        "SELECT " + COLUMNS + " FROM orders WHERE id > ? ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> {
+                            Object[] row = new Object[COLUMN_COUNT];
+                            for (int i = 0; i < COLUMN_COUNT; i++) {
+                                row[i] = rs.getObject(i + 1);
+                            }
+                            return row;
+                        },
+                        lastId, batchSize);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                scanned += rows.size();
+                lastId = ((Number) rows.get(rows.size() - 1)[ID]).longValue();
+
+                Map<Integer, List<Object[]>> misplaced = new HashMap<>();
+                for (Object[] row : rows) {
+                    int target = ShardRouter.shardFor((String) row[ORDER_ID], shards);
+                    if (target != source) {
+                        misplaced.computeIfAbsent(target, shard -> new ArrayList<>()).add(row);
+                    }
+                }
+
+                for (Map.Entry<Integer, List<Object[]>> entry : misplaced.entrySet()) {
+                    movedTo[entry.getKey()] += entry.getValue().size();
+                    if (!dryRun) {
+                        alreadyOnTarget += move(source, entry.getKey(), entry.getValue());
+                    }
+                }
+
+                if (rows.size() < batchSize) {
+                    break;
+                }
+            }
+
+            long moved = 0;
+            Map<String, Long> targets = new HashMap<>();
+            for (int target = 0; target < shards; target++) {
+                if (movedTo[target] > 0) {
+                    targets.put("shard-" + target, movedTo[target]);
+                    moved += movedTo[target];
+                }
+            }
+            totalMoved += moved;
+
+            Map<String, Object> shardResult = new HashMap<>();
+            shardResult.put("shard", source);
+            shardResult.put("scanned", scanned);
+            shardResult.put("misplaced", moved);
+            shardResult.put("movedTo", targets);
+            shardResult.put("alreadyOnTarget", alreadyOnTarget);
+            perShard.add(shardResult);
+            log.info(" Rebalance{} shard {}: scanned {} orders, {} misplaced {}, {} already on their shard",
+                    dryRun ? " (dry run)" : "", source, scanned, moved, targets, alreadyOnTarget);
+        }
+
+        if (!dryRun && totalMoved > 0) {
+            orderLookupService.invalidateAll();
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("dryRun", dryRun);
+        result.put("shardCount", shards);
+        result.put("moved", totalMoved);
+        result.put("shards", perShard);
+        result.put("tookMs", System.currentTimeMillis() - start);
+        return result;
+    }
+
+
+    // Returns how many of the rows were already on the target and so were only deleted here
+    private long move(int source, int target, List<Object[]> rows) {
+        String[] orderIds = rows.stream().map(row -> (String) row[ORDER_ID]).toArray(String[]::new);
+
+        JdbcTemplate to = jdbc(target);
+        Integer inserted = transaction(target).execute(status -> {
+            Set<String> claimed = new HashSet<>(to.query(
+                    "INSERT INTO order_ids (order_id) SELECT unnest(?) ON CONFLICT DO NOTHING RETURNING order_id",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", orderIds)),
+                    (rs, rowNum) -> rs.getString(1)));
+            List<Object[]> claimedRows = rows.stream()
+                    .filter(row -> claimed.contains((String) row[ORDER_ID]))
+                    .toList();
+            if (!claimedRows.isEmpty()) {
+                to.batchUpdate(INSERT_ORDER, claimedRows);
+                List<Object[]> buckets = rollup(claimedRows).values().stream()
+                        .map(bucket -> new Object[]{bucket.product, bucket.hour, bucket.count, bucket.revenue,
+                                bucket.minPrice, bucket.maxPrice})
+                        .toList();
+                if (!buckets.isEmpty()) {
+                    to.batchUpdate(ADD_ROLLUP, buckets);
+                }
+            }
+            return claimedRows.size();
+        });
+
+        JdbcTemplate from = jdbc(source);
+        transaction(source).executeWithoutResult(status -> {
+            from.batchUpdate("DELETE FROM orders WHERE id = ? AND processed_at = ?", rows.stream()
+                    .map(row -> new Object[]{row[ID], row[PROCESSED_AT]})
+                    .toList());
+            from.batchUpdate("DELETE FROM order_ids WHERE order_id = ?", Arrays.stream(orderIds)
+                    .map(orderId -> new Object[]{orderId})
+                    .toList());
+            Collection<Bucket> buckets = rollup(rows).values();
+            if (!buckets.isEmpty()) {
+                from.batchUpdate(SUBTRACT_ROLLUP, buckets.stream()
+                        .map(bucket -> new Object[]{bucket.count, bucket.revenue, bucket.product, bucket.hour})
+                        .toList());
+                from.batchUpdate("DELETE FROM order_product_hourly " +
+                        "WHERE product = ? AND bucket_hour = ? AND order_count <= 0", buckets.stream()
+                        .map(bucket -> new Object[]{bucket.product, bucket.hour})
+                        .toList());
+            }
+        });
+        return rows.size() - (inserted != null ? inserted : 0);
+    }
+
+
+    // What the rows add to order_product_hourly: only PROCESSED orders are rolled up
+    private static Map<String, Bucket> rollup(List<Object[]> rows) {
+        Map<String, Bucket> buckets = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            if (!"PROCESSED".equals(row[STATUS])) {
+                continue;
+            }
+            String product = (String) row[PRODUCT];
+            LocalDateTime hour = processedAt(row[PROCESSED_AT]).truncatedTo(ChronoUnit.HOURS);
+            float price = ((Number) row[PRICE]).floatValue();
+            Bucket bucket = buckets.computeIfAbsent(product + "|" + hour, key -> new Bucket(product, hour, price));
+            bucket.count++;
+            bucket.revenue += price;
+            bucket.minPrice = Math.min(bucket.minPrice, price);
+            bucket.maxPrice = Math.max(bucket.maxPrice, price);
+        }
+        return buckets;
+    }
+
+
+    private static LocalDateTime processedAt(Object value) {
+        return value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) value;
+    }
+
+
+    JdbcTemplate jdbc(int shard) {
+        return new JdbcTemplate(shardRouter.shardDataSource(shard));
+    }
+
+
+    TransactionTemplate transaction(int shard) {
+        return new TransactionTemplate(new DataSourceTransactionManager(shardRouter.shardDataSource(shard)));
+    }
+
+
+    private static final class Bucket {
+        private final String product;
+        private final LocalDateTime hour;
+        private long count;
+        private double revenue;
+        private float minPrice;
+        private float maxPrice;
+
+        private Bucket(String product, LocalDateTime hour, float price) {
+            this.product = product;
+            this.hour = hour;
+            this.minPrice = price;
+            this.maxPrice = price;
+        }
+    }
+}
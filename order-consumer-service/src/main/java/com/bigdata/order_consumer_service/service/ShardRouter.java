@@ -0,0 +1,143 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.config.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Picks the shard for an order (hash of orderId) and runs work against one shard
+ * or all of them. Work must open its own transaction: the shard is chosen per
+ * thread and a transaction already in progress keeps the connection it has.
+ */
+@Service
+@Slf4j
+public class ShardRouter implements DisposableBean {
+
+    private final ShardRoutingDataSource dataSource;
+    private final ExecutorService scatterExecutor;
+    private final List<Counter> routedCounters = new ArrayList<>();
+    private final Timer scatterTimer;
+
+    public ShardRouter(ShardRoutingDataSource dataSource, MeterRegistry meterRegistry,
+                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.dataSource = dataSource;
+        int shards = dataSource.shardCount();
+        this.scatterExecutor = shards > 1
+                ? Executors.newFixedThreadPool(shards * 2, virtualThreads
+                        ? Thread.ofVirtual().name("shard-scatter-", 0).factory()
+                        : Executors.defaultThreadFactory())
+                : null;
+
+        for (int i = 0; i < shards; i++) {
+            routedCounters.add(Counter.builder("orders.shard.routed")
+                    .description("Order writes and lookups routed to a single shard")
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry));
+        }
+        this.scatterTimer = Timer.builder("orders.shard.scatter")
+                .description("Queries fanned out to every shard")
+                .register(meterRegistry);
+    }
+
+
+    public int shardCount() {
+        return dataSource.shardCount();
+    }
+
+
+    public int shardFor(String orderId) {
+        return shardFor(orderId, shardCount());
+    }
+
+
+    // String.hashCode is stable across JVMs; the mix spreads sequential ids evenly
+    static int shardFor(String orderId, int shards) {
+        int hash = orderId.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return Math.floorMod(hash, shards);
+    }
+
+
+    public <T> T forOrderId(String orderId, Supplier<T> work) {
+        int shard = shardFor(orderId);
+        routedCounters.get(shard).increment();
+        return onShard(shard, work);
+    }
+
+
+    public <T> T onShard(int shard, Supplier<T> work) {
+        Integer current = ShardRoutingDataSource.currentShard();
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && (current != null ? current : 0) != shard) {
+            throw new IllegalStateException("Cannot switch to shard " + shard + " inside a transaction");
+        }
+
+        Integer previous = ShardRoutingDataSource.selectShard(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardRoutingDataSource.selectShard(previous);
+        }
+    }
+
+
+    // Runs the work on every shard, in parallel when there is more than one; results by shard index
+    public <T> List<T> onAllShards(Supplier<T> work) {
+        int shards = shardCount();
+        if (shards == 1) {
+            return Collections.singletonList(onShard(0, work));
+        }
+
+        return scatterTimer.record(() -> {
+            List<CompletableFuture<T>> futures = new ArrayList<>();
+            for (int i = 0; i < shards; i++) {
+                int shard = i;
+                futures.add(CompletableFuture.supplyAsync(() -> onShard(shard, work), scatterExecutor));
+            }
+
+            List<T> results = new ArrayList<>();
+            try {
+                for (CompletableFuture<T> future : futures) {
+                    results.add(future.join());
+                }
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            return results;
+        });
+    }
+
+
+    public HikariDataSource shardDataSource(int shard) {
+        return dataSource.shard(shard);
+    }
+
+
+    @Override
+    public void destroy() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.bigdata.order_consumer_service.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer of event counts bucketed by epoch second. Each slot remembers which
+ * time bucket it currently holds, so stale slots are recycled lazily on write and
+ * ignored on read - no background ticking needed. Writes cost O(1) and reads
+ * (summing the slots) O(slots), independent of how many orders are in the database.
+ */
+public class SlidingWindowCounter {
+
+    private final long slotSeconds;
+    private final int slots;
+    private final AtomicLongArray buckets;
+    private final AtomicLongArray counts;
+
+    public SlidingWindowCounter(long windowSeconds, long slotSeconds) {
+        if (slotSeconds <= 0 || windowSeconds < slotSeconds) {
+            throw new IllegalArgumentException("windowSeconds must be >= slotSeconds > 0");
+        }
+        this.slotSeconds = slotSeconds;
+        // one extra slot so the bucket at the window's lower edge is not overwritten by "now"
+        this.slots = (int) (windowSeconds / slotSeconds) + 1;
+        this.buckets = new AtomicLongArray(slots);
+        this.counts = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            buckets.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    public void add(long epochSecond, long delta) {
+        long bucket = Math.floorDiv(epochSecond, slotSeconds);
+        int index = (int) Math.floorMod(bucket, (long) slots);
+
+        long current = buckets.get(index);
+        if (current != bucket) {
+            if (current > bucket) {
+                return; // older than the window, its slot already holds newer data
+            }
+            synchronized (this) {
+                if (buckets.get(index) < bucket) {
+                    counts.set(index, 0);
+                    buckets.set(index, bucket);
+                } else if (buckets.get(index) > bucket) {
+                    return;
+                }
+            }
+        }
+        counts.addAndGet(index, delta);
+    }
+
+    /** Sum of the buckets between fromEpochSecond and toEpochSecond, both inclusive. */
+    public long sum(long fromEpochSecond, long toEpochSecond) {
+        long from = Math.floorDiv(fromEpochSecond, slotSeconds);
+        long to = Math.floorDiv(toEpochSecond, slotSeconds);
+
+        long total = 0;
+        for (int i = 0; i < slots; i++) {
+            long bucket = buckets.get(i);
+            if (bucket >= from && bucket <= to) {
+                total += counts.get(i);
+            }
+        }
+        return total;
+    }
+}
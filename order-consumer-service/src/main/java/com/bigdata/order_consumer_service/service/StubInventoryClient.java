@@ -0,0 +1,31 @@
+package com.bigdata.order_consumer_service.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Local stand-in for the inventory service: one latency per batch, every product in stock
+@Component
+public class StubInventoryClient implements InventoryClient {
+
+    private static final int IN_STOCK = 100;
+
+    private final long latencyMillis;
+
+    public StubInventoryClient(@Value("${app.external.stub.inventory-latency:40ms}") Duration latency) {
+        this.latencyMillis = latency.toMillis();
+    }
+
+
+    @Override
+    public Map<String, Integer> lookup(Collection<String> products) {
+        StubPaymentClient.pause(latencyMillis);
+        Map<String, Integer> stock = new HashMap<>();
+        products.forEach(product -> stock.put(product, IN_STOCK));
+        return stock;
+    }
+}
@@ -0,0 +1,35 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.exception.ErrorCategory;
+import com.bigdata.order_consumer_service.exception.TemporaryProcessingException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Local stand-in for the payment service: answers after a fixed latency
+@Component
+public class StubPaymentClient implements PaymentClient {
+
+    private final long latencyMillis;
+
+    public StubPaymentClient(@Value("${app.external.stub.payment-latency:60ms}") Duration latency) {
+        this.latencyMillis = latency.toMillis();
+    }
+
+
+    @Override
+    public void authorize(String orderId, float amount) {
+        pause(latencyMillis);
+    }
+
+
+    static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemporaryProcessingException(ErrorCategory.NETWORK_ERROR, "Interrupted waiting for a stub service");
+        }
+    }
+}
@@ -0,0 +1,60 @@
+-- Schema as previously generated by hibernate ddl-auto=update.
+-- IF NOT EXISTS so databases created before Flyway was introduced migrate cleanly.
+
+CREATE TABLE IF NOT EXISTS orders (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id        VARCHAR(100) NOT NULL UNIQUE,
+    product         VARCHAR(200) NOT NULL,
+    price           REAL         NOT NULL,
+    correlation_id  VARCHAR(50),
+    received_at     TIMESTAMP(6) NOT NULL,
+    processed_at    TIMESTAMP(6) NOT NULL,
+    status          VARCHAR(20)  NOT NULL,
+    kafka_topic     VARCHAR(100),
+    kafka_partition INTEGER,
+    kafka_offset    BIGINT,
+    metadata        TEXT,
+    created_at      TIMESTAMP(6) NOT NULL,
+    updated_at      TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_id ON orders (order_id);
+CREATE INDEX IF NOT EXISTS idx_product_id ON orders (product, id);
+CREATE INDEX IF NOT EXISTS idx_processed_at_id ON orders (processed_at, id);
+CREATE INDEX IF NOT EXISTS idx_status_processed_at_id ON orders (status, processed_at, id);
+
+CREATE TABLE IF NOT EXISTS failed_orders (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id         VARCHAR(255) NOT NULL,
+    product          VARCHAR(255) NOT NULL,
+    price            REAL         NOT NULL,
+    event_time       BIGINT,
+    failure_type     VARCHAR(50)  NOT NULL,
+    failure_category VARCHAR(100) NOT NULL,
+    error_message    TEXT,
+    stack_trace      TEXT,
+    retry_count      INTEGER      NOT NULL,
+    original_topic   VARCHAR(255) NOT NULL,
+    correlation_id   VARCHAR(255),
+    failed_at        TIMESTAMP(6) NOT NULL,
+    status           VARCHAR(20)  NOT NULL,
+    reprocessed_at   TIMESTAMP(6),
+    reprocessed_by   VARCHAR(255)
+);
+
+-- added to the entity after some databases were created
+ALTER TABLE failed_orders ADD COLUMN IF NOT EXISTS event_time BIGINT;
+
+CREATE TABLE IF NOT EXISTS order_product_hourly (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    product       VARCHAR(200)     NOT NULL,
+    bucket_hour   TIMESTAMP(6)     NOT NULL,
+    order_count   BIGINT           NOT NULL,
+    total_revenue DOUBLE PRECISION NOT NULL,
+    min_price     REAL             NOT NULL,
+    max_price     REAL             NOT NULL,
+    updated_at    TIMESTAMP(6)     NOT NULL,
+    CONSTRAINT uk_order_product_hourly UNIQUE (product, bucket_hour)
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_product_hourly_bucket ON order_product_hourly (bucket_hour);
@@ -0,0 +1,70 @@
+-- Turns orders into a table range-partitioned by processed_at (monthly here;
+-- OrderPartitionService creates upcoming partitions at the configured interval).
+--
+-- Postgres requires the partition key in every unique constraint, so the primary
+-- key becomes (id, processed_at) and order_id is no longer unique across the table.
+-- Duplicates are still rejected by OrderService.saveOrder (existsByOrderId).
+
+ALTER TABLE orders RENAME TO orders_legacy;
+ALTER INDEX IF EXISTS idx_order_id RENAME TO idx_order_id_legacy;
+ALTER INDEX IF EXISTS idx_product_id RENAME TO idx_product_id_legacy;
+ALTER INDEX IF EXISTS idx_processed_at_id RENAME TO idx_processed_at_id_legacy;
+ALTER INDEX IF EXISTS idx_status_processed_at_id RENAME TO idx_status_processed_at_id_legacy;
+
+CREATE SEQUENCE orders_id_seq;
+SELECT setval('orders_id_seq', COALESCE((SELECT MAX(id) FROM orders_legacy), 0) + 1, false);
+
+CREATE TABLE orders (
+    id              BIGINT       NOT NULL DEFAULT nextval('orders_id_seq'),
+    order_id        VARCHAR(100) NOT NULL,
+    product         VARCHAR(200) NOT NULL,
+    price           REAL         NOT NULL,
+    correlation_id  VARCHAR(50),
+    received_at     TIMESTAMP(6) NOT NULL,
+    processed_at    TIMESTAMP(6) NOT NULL,
+    status          VARCHAR(20)  NOT NULL,
+    kafka_topic     VARCHAR(100),
+    kafka_partition INTEGER,
+    kafka_offset    BIGINT,
+    metadata        TEXT,
+    created_at      TIMESTAMP(6) NOT NULL,
+    updated_at      TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id, processed_at)
+) PARTITION BY RANGE (processed_at);
+
+ALTER SEQUENCE orders_id_seq OWNED BY orders.id;
+
+-- catches rows outside every range partition; expected to stay empty
+CREATE TABLE orders_default PARTITION OF orders DEFAULT;
+
+-- one monthly partition per month of existing data, plus the current and next month
+DO $$
+DECLARE
+    month_start DATE;
+    last_month  DATE;
+BEGIN
+    SELECT date_trunc('month', COALESCE(MIN(processed_at), now()))::date INTO month_start FROM orders_legacy;
+    last_month := (date_trunc('month', now()) + INTERVAL '1 month')::date;
+
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF orders FOR VALUES FROM (%L) TO (%L)',
+                       'orders_p' || to_char(month_start, 'YYYYMM'),
+                       month_start,
+                       (month_start + INTERVAL '1 month')::date);
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+-- partitioned indexes, propagated to every current and future partition
+CREATE INDEX idx_order_id ON orders (order_id);
+CREATE INDEX idx_product_id ON orders (product, id);
+CREATE INDEX idx_processed_at_id ON orders (processed_at, id);
+CREATE INDEX idx_status_processed_at_id ON orders (status, processed_at, id);
+
+INSERT INTO orders SELECT id, order_id, product, price, correlation_id, received_at, processed_at, status,
+                          kafka_topic, kafka_partition, kafka_offset, metadata, created_at, updated_at
+                   FROM orders_legacy;
+
+DROP TABLE orders_legacy;
+
+ANALYZE orders;
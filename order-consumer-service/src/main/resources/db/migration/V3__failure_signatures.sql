@@ -0,0 +1,14 @@
+-- One row per distinct (normalized) stack trace; failed_orders rows point at it by hash
+-- instead of each carrying its own copy. stack_trace is the gzip of the normalized trace.
+CREATE TABLE IF NOT EXISTS failure_signatures (
+    fingerprint     VARCHAR(64)  PRIMARY KEY,
+    exception_class VARCHAR(255) NOT NULL,
+    stack_trace     BYTEA        NOT NULL,
+    first_seen_at   TIMESTAMP(6) NOT NULL,
+    last_seen_at    TIMESTAMP(6) NOT NULL,
+    occurrences     BIGINT       NOT NULL
+);
+
+-- Rows written before this migration keep their inline stack_trace and have no signature
+ALTER TABLE failed_orders ADD COLUMN IF NOT EXISTS signature_hash VARCHAR(64)
+    REFERENCES failure_signatures (fingerprint);
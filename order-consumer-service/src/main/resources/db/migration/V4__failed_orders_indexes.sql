@@ -0,0 +1,7 @@
+-- Keyset listings of the DLQ page, newest first: all rows, by status, by failure type
+CREATE INDEX IF NOT EXISTS idx_failed_orders_failed_at_id ON failed_orders (failed_at, id);
+CREATE INDEX IF NOT EXISTS idx_failed_orders_status_failed_at_id ON failed_orders (status, failed_at, id);
+CREATE INDEX IF NOT EXISTS idx_failed_orders_type_failed_at_id ON failed_orders (failure_type, failed_at, id);
+
+-- /api/dlq/statistics groups by these two; small enough for an index-only scan
+CREATE INDEX IF NOT EXISTS idx_failed_orders_status_type ON failed_orders (status, failure_type);
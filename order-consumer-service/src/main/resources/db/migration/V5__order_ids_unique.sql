@@ -0,0 +1,15 @@
+-- orders is partitioned by processed_at (V2), so it cannot carry a unique constraint on
+-- order_id alone. order_ids is the constraint instead: OrderService.saveOrder claims the
+-- order_id here (INSERT ... ON CONFLICT DO NOTHING) in the transaction that inserts the
+-- order, so two concurrent saves of one order_id cannot both commit.
+--
+-- Rows stay when their orders are archived, so an archived order re-sent later is
+-- still a duplicate. ShardRebalanceService moves them along with their orders.
+CREATE TABLE IF NOT EXISTS order_ids (
+    order_id   VARCHAR(100) PRIMARY KEY,
+    created_at TIMESTAMP(6) NOT NULL DEFAULT now()
+);
+
+INSERT INTO order_ids (order_id)
+SELECT DISTINCT order_id FROM orders
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,3 @@
+-- Order lookups check whether an order missing from orders was dead-lettered before
+-- falling back to the read model (OrderController)
+CREATE INDEX IF NOT EXISTS idx_failed_orders_order_id ON failed_orders (order_id);
@@ -0,0 +1,35 @@
+package com.bigdata.order_consumer_service.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardingConfigTest {
+
+    @Test
+    void sequenceStartsAreTheFirstShardIdsFromTheBase() {
+        assertThat(ShardingConfig.sequenceStart(100, 0, 3)).isEqualTo(102);
+        assertThat(ShardingConfig.sequenceStart(100, 1, 3)).isEqualTo(100);
+        assertThat(ShardingConfig.sequenceStart(100, 2, 3)).isEqualTo(101);
+        assertThat(ShardingConfig.sequenceStart(0, 1, 2)).isEqualTo(1);
+    }
+
+    @Test
+    void alignedSequencesNeverHandOutTheSameIdOrOneAtOrBelowTheBase() {
+        int shards = 4;
+        long base = 12_345;
+        Set<Long> ids = new HashSet<>();
+        for (int shard = 0; shard < shards; shard++) {
+            long start = ShardingConfig.sequenceStart(base, shard, shards);
+            assertThat(Math.floorMod(start, shards)).isEqualTo(shard);
+            // setval(start) makes the next nextval() start + increment
+            for (long id = start + shards, n = 0; n < 1000; id += shards, n++) {
+                assertThat(id).isGreaterThan(base);
+                assertThat(ids.add(id)).isTrue();
+            }
+        }
+    }
+}
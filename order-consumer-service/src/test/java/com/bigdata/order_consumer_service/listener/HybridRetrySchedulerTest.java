@@ -0,0 +1,301 @@
+package com.bigdata.order_consumer_service.listener;
+
+import com.bigdata.order_consumer_service.exception.CircuitOpenException;
+import com.bigdata.order_consumer_service.exception.ErrorCategory;
+import com.bigdata.order_consumer_service.exception.TemporaryProcessingException;
+import com.bigdata.schema.Order;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Offset bookkeeping of the in-process retries: which acknowledgments run, and
+ * when. An acknowledgment commits everything up to its record, so the tests
+ * assert that only the last releasable one runs and nothing past a held record.
+ */
+class HybridRetrySchedulerTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition(ListenerAutoscaler.ORDERS_TOPIC, 0);
+    private static final TopicPartition OTHER_PARTITION = new TopicPartition(ListenerAutoscaler.ORDERS_TOPIC, 1);
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Order> kafkaTemplate = mock(KafkaTemplate.class);
+    private final KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+    private final MessageListenerContainer container = mock(MessageListenerContainer.class);
+    private HybridRetryScheduler scheduler;
+
+    @AfterEach
+    void stopScheduler() {
+        if (scheduler != null) {
+            scheduler.destroy();
+        }
+    }
+
+    @Test
+    void acknowledgesImmediatelyWhenNothingIsHeld() {
+        scheduler = scheduler(10);
+        FakeAcknowledgment ack = new FakeAcknowledgment();
+
+        scheduler.completed(PARTITION, 5, ack);
+
+        assertThat(ack.count()).isEqualTo(1);
+    }
+
+    @Test
+    void holdsLaterRecordsUntilTheEarliestHoldIsReleased() {
+        scheduler = scheduler(10);
+        FakeAcknowledgment ack10 = new FakeAcknowledgment();
+        FakeAcknowledgment ack11 = new FakeAcknowledgment();
+        FakeAcknowledgment ack12 = new FakeAcknowledgment();
+        FakeAcknowledgment ack13 = new FakeAcknowledgment();
+
+        scheduler.hold(PARTITION, 10);
+        scheduler.hold(PARTITION, 12);
+        scheduler.completed(PARTITION, 11, ack11);
+        scheduler.completed(PARTITION, 13, ack13);
+
+        // released out of order: 10 still holds everything after it
+        scheduler.release(PARTITION, 12, ack12);
+        assertThat(List.of(ack10, ack11, ack12, ack13)).allMatch(ack -> ack.count() == 0);
+
+        scheduler.release(PARTITION, 10, ack10);
+        assertThat(ack13.count()).isEqualTo(1);
+        assertThat(List.of(ack10, ack11, ack12)).allMatch(ack -> ack.count() == 0);
+
+        // nothing left in flight, so the partition is back to immediate acknowledgments
+        FakeAcknowledgment ack14 = new FakeAcknowledgment();
+        scheduler.completed(PARTITION, 14, ack14);
+        assertThat(ack14.count()).isEqualTo(1);
+    }
+
+    @Test
+    void acknowledgesUpToTheNextRecordStillHeld() {
+        scheduler = scheduler(10);
+        FakeAcknowledgment ack10 = new FakeAcknowledgment();
+        FakeAcknowledgment ack11 = new FakeAcknowledgment();
+        FakeAcknowledgment ack13 = new FakeAcknowledgment();
+
+        scheduler.hold(PARTITION, 10);
+        scheduler.hold(PARTITION, 12);
+        scheduler.completed(PARTITION, 11, ack11);
+        scheduler.completed(PARTITION, 13, ack13);
+
+        scheduler.release(PARTITION, 10, ack10);
+
+        assertThat(ack11.count()).isEqualTo(1);
+        assertThat(ack10.count()).isZero();
+        assertThat(ack13.count()).isZero();
+    }
+
+    @Test
+    void keepsABatchRecordHeldUntilItsLastOrderIsReleased() {
+        scheduler = scheduler(10);
+        FakeAcknowledgment batch = new FakeAcknowledgment();
+        FakeAcknowledgment next = new FakeAcknowledgment();
+
+        // two orders of the orders-batch record at offset 7 are retrying
+        scheduler.hold(PARTITION, 7);
+        scheduler.hold(PARTITION, 7);
+        scheduler.completed(PARTITION, 8, next);
+
+        scheduler.release(PARTITION, 7, batch);
+        assertThat(batch.count()).isZero();
+        assertThat(next.count()).isZero();
+
+        scheduler.release(PARTITION, 7, batch);
+        assertThat(next.count()).isEqualTo(1);
+        assertThat(batch.count()).isZero();
+    }
+
+    @Test
+    void releasingWithoutAnAcknowledgmentStopsHoldingWithoutCommittingTheRecord() {
+        scheduler = scheduler(10);
+        FakeAcknowledgment ack4 = new FakeAcknowledgment();
+
+        scheduler.hold(PARTITION, 3);
+        scheduler.completed(PARTITION, 4, ack4);
+        scheduler.release(PARTITION, 3, null);
+
+        assertThat(ack4.count()).isEqualTo(1);
+    }
+
+    @Test
+    void partitionsAreIndependent() {
+        scheduler = scheduler(10);
+        FakeAcknowledgment other = new FakeAcknowledgment();
+
+        scheduler.hold(PARTITION, 1);
+        scheduler.completed(OTHER_PARTITION, 2, other);
+
+        assertThat(other.count()).isEqualTo(1);
+    }
+
+    @Test
+    void forgetsHoldsOfARevokedPartition() {
+        scheduler = scheduler(10);
+        FakeAcknowledgment ack5 = new FakeAcknowledgment();
+        FakeAcknowledgment ack6 = new FakeAcknowledgment();
+
+        scheduler.hold(PARTITION, 5);
+        scheduler.completed(PARTITION, 6, ack6);
+        scheduler.onPartitionsRevokedAfterCommit(null, List.of(PARTITION));
+
+        // the retry finishing after the revocation must not commit for the new owner
+        scheduler.release(PARTITION, 5, ack5);
+        assertThat(ack5.count()).isZero();
+        assertThat(ack6.count()).isZero();
+
+        FakeAcknowledgment reassigned = new FakeAcknowledgment();
+        scheduler.completed(PARTITION, 9, reassigned);
+        assertThat(reassigned.count()).isEqualTo(1);
+    }
+
+    @Test
+    void acknowledgesRecordsRedeliveredAfterARevocation() {
+        scheduler = scheduler(10);
+        FakeAcknowledgment ack5 = new FakeAcknowledgment();
+        FakeAcknowledgment ack6 = new FakeAcknowledgment();
+
+        scheduler.hold(PARTITION, 5);
+        scheduler.completed(PARTITION, 6, ack6);
+        scheduler.onPartitionsRevokedAfterCommit(null, List.of(PARTITION));
+        scheduler.release(PARTITION, 5, ack5);
+
+        // reassigned: 5 and 6 come back from the last commit and save as redeliveries of themselves
+        FakeAcknowledgment redelivered5 = new FakeAcknowledgment();
+        FakeAcknowledgment redelivered6 = new FakeAcknowledgment();
+        scheduler.completed(PARTITION, 5, redelivered5);
+        scheduler.completed(PARTITION, 6, redelivered6);
+
+        assertThat(redelivered5.count()).isEqualTo(1);
+        assertThat(redelivered6.count()).isEqualTo(1);
+        assertThat(ack5.count()).isZero();
+        assertThat(ack6.count()).isZero();
+    }
+
+    @Test
+    void retriesInProcessAndReleasesTheHeldRecords() throws InterruptedException {
+        scheduler = scheduler(10);
+        FakeAcknowledgment ack20 = new FakeAcknowledgment();
+        FakeAcknowledgment ack21 = new FakeAcknowledgment();
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch proceed = new CountDownLatch(1);
+
+        // an open circuit waits in the wheel without spending a retry
+        scheduler.defer(task(20, ack20, () -> {
+            attempts.incrementAndGet();
+            awaitQuietly(proceed);
+        }), new CircuitOpenException("INVENTORY", Duration.ofMillis(20)));
+        scheduler.completed(PARTITION, 21, ack21);
+        assertThat(ack21.count()).isZero();
+
+        proceed.countDown();
+        assertThat(ack21.acknowledged.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(ack20.count()).isZero();
+    }
+
+    @Test
+    void spillsToTheRetryTopicWhenTheWheelIsFull() {
+        scheduler = scheduler(1);
+        when(registry.getListenerContainer(OrderListener.LISTENER_ID)).thenReturn(container);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(new CompletableFuture<>());
+        FakeAcknowledgment ack30 = new FakeAcknowledgment();
+        FakeAcknowledgment ack31 = new FakeAcknowledgment();
+        FakeAcknowledgment ack32 = new FakeAcknowledgment();
+
+        TemporaryProcessingException failure = new TemporaryProcessingException(ErrorCategory.NETWORK_ERROR, "timeout");
+        scheduler.retry(task(30, ack30, () -> { }), failure);
+        scheduler.retry(task(31, ack31, () -> { }), failure);
+        scheduler.completed(PARTITION, 32, ack32);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<ProducerRecord<String, Order>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(sent.capture());
+        assertThat(sent.getValue().topic()).isEqualTo(HybridRetryScheduler.RETRY_TOPIC_PREFIX + 0);
+        assertThat(sent.getValue().key()).isEqualTo("order-31");
+        verify(container).pausePartition(PARTITION);
+
+        // 30 is still in the wheel, so the spilled 31 commits nothing yet
+        assertThat(List.of(ack30, ack31, ack32)).allMatch(ack -> ack.count() == 0);
+    }
+
+    @Test
+    void keepsAFailedSpillInFlight() {
+        scheduler = scheduler(0);
+        CompletableFuture<SendResult<String, Order>> send = new CompletableFuture<>();
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(send);
+        FakeAcknowledgment ack40 = new FakeAcknowledgment();
+        FakeAcknowledgment ack41 = new FakeAcknowledgment();
+
+        scheduler.retry(task(40, ack40, () -> { }),
+                new TemporaryProcessingException(ErrorCategory.NETWORK_ERROR, "timeout"));
+        scheduler.completed(PARTITION, 41, ack41);
+        send.completeExceptionally(new IllegalStateException("broker down"));
+
+        assertThat(ack40.count()).isZero();
+        assertThat(ack41.count()).isZero();
+    }
+
+    private HybridRetryScheduler scheduler(int capacity) {
+        return new HybridRetryScheduler(kafkaTemplate, registry, new SimpleMeterRegistry(), true,
+                Duration.ofSeconds(10), capacity, Duration.ofMillis(5), 8, 1, false);
+    }
+
+    private static HybridRetryScheduler.RetryTask task(long offset, Acknowledgment acknowledgment, Runnable attempt) {
+        Order order = Order.newBuilder()
+                .setOrderId("order-" + offset)
+                .setProduct("Item-1")
+                .setPrice(10.0f)
+                .setEventTime(1_700_000_000_000L)
+                .build();
+        return new HybridRetryScheduler.RetryTask(order, "cid-" + offset, PARTITION, offset,
+                System.currentTimeMillis(), acknowledgment, attempt,
+                (failure, retry) -> CompletableFuture.completedFuture(null));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class FakeAcknowledgment implements Acknowledgment {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final CountDownLatch acknowledged = new CountDownLatch(1);
+
+        @Override
+        public void acknowledge() {
+            count.incrementAndGet();
+            acknowledged.countDown();
+        }
+
+        int count() {
+            return count.get();
+        }
+    }
+}
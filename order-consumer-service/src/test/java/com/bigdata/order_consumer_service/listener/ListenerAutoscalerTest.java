@@ -0,0 +1,238 @@
+package com.bigdata.order_consumer_service.listener;
+
+import com.bigdata.order_consumer_service.service.ShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.DescribeTopicsResult;
+import org.apache.kafka.clients.admin.ListConsumerGroupOffsetsResult;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.apache.kafka.common.internals.KafkaFutureImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Scaling decisions against a mocked cluster: lag comes from the Admin stand-in,
+ * the containers are mocks whose pause takes effect at once.
+ */
+class ListenerAutoscalerTest {
+
+    private static final TopicPartition ORDERS_0 = new TopicPartition(ListenerAutoscaler.ORDERS_TOPIC, 0);
+    private static final TopicPartition ORDERS_1 = new TopicPartition(ListenerAutoscaler.ORDERS_TOPIC, 1);
+    private static final TopicPartition BATCH_0 = new TopicPartition(OrderListener.BATCH_TOPIC, 0);
+    private static final TopicPartition BATCH_1 = new TopicPartition(OrderListener.BATCH_TOPIC, 1);
+
+    private final Admin admin = mock(Admin.class);
+    private final KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+    private final ConcurrentMessageListenerContainer<?, ?> main = mock(ConcurrentMessageListenerContainer.class);
+    private final ConcurrentMessageListenerContainer<?, ?> batch = mock(ConcurrentMessageListenerContainer.class);
+    private final ShardRouter shardRouter = mock(ShardRouter.class);
+    private final Map<TopicPartition, Long> ends = new HashMap<>();
+    private HybridRetryScheduler scheduler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(registry.getListenerContainer(OrderListener.LISTENER_ID)).thenReturn((ConcurrentMessageListenerContainer) main);
+        when(registry.getListenerContainer(OrderListener.BATCH_LISTENER_ID)).thenReturn((ConcurrentMessageListenerContainer) batch);
+        for (ConcurrentMessageListenerContainer<?, ?> container : List.of(main, batch)) {
+            when(container.isRunning()).thenReturn(true);
+            when(container.isContainerPaused()).thenReturn(true);
+        }
+        when(shardRouter.shardCount()).thenReturn(1);
+        when(shardRouter.shardDataSource(anyInt())).thenReturn(mock(HikariDataSource.class));
+        scheduler = new HybridRetryScheduler(mock(KafkaTemplate.class), registry, new SimpleMeterRegistry(), true,
+                Duration.ofSeconds(10), 10, Duration.ofMillis(5), 8, 1, false);
+        stubCluster();
+    }
+
+    @AfterEach
+    void stopScheduler() {
+        scheduler.destroy();
+    }
+
+    @Test
+    void scalesUpTheMainContainerOnceItHasDrained() {
+        ends.put(ORDERS_0, 3000L);
+        ends.put(ORDERS_1, 2000L);
+
+        ListenerAutoscaler autoscaler = autoscaler(Duration.ofSeconds(5));
+        autoscaler.check();
+
+        InOrder order = inOrder(main);
+        order.verify(main).pause();
+        order.verify(main).stop();
+        order.verify(main).setConcurrency(2);
+        order.verify(main).start();
+        order.verify(main).resume();
+        verify(batch, never()).stop();
+        assertThat(listener(autoscaler, OrderListener.LISTENER_ID)).containsEntry("concurrency", 2);
+    }
+
+    @Test
+    void restartsOnlyAfterTheHeldRecordsAreReleased() {
+        ends.put(ORDERS_0, 5000L);
+        ends.put(ORDERS_1, 0L);
+        scheduler.hold(ORDERS_0, 7);
+        AtomicBoolean heldAtStop = new AtomicBoolean(true);
+        doAnswer(call -> {
+            heldAtStop.set(scheduler.hasInFlight(ListenerAutoscaler.ORDERS_TOPIC));
+            return null;
+        }).when(main).stop();
+        Thread.ofVirtual().start(() -> {
+            sleepQuietly(200);
+            scheduler.release(ORDERS_0, 7, null);
+        });
+
+        autoscaler(Duration.ofSeconds(5)).check();
+
+        verify(main).setConcurrency(2);
+        assertThat(heldAtStop).isFalse();
+    }
+
+    @Test
+    void defersTheChangeWhileRecordsStayInFlight() {
+        ends.put(ORDERS_0, 5000L);
+        ends.put(ORDERS_1, 0L);
+        scheduler.hold(ORDERS_0, 7);
+
+        ListenerAutoscaler autoscaler = autoscaler(Duration.ofMillis(150));
+        autoscaler.check();
+
+        verify(main).pause();
+        verify(main).resume();
+        verify(main, never()).stop();
+        assertThat(listener(autoscaler, OrderListener.LISTENER_ID)).containsEntry("concurrency", 1);
+        assertThat(lastDecision(autoscaler)).containsEntry("action", "scale_deferred");
+    }
+
+    @Test
+    void waitsForThePauseToTakeEffect() {
+        ends.put(ORDERS_0, 5000L);
+        ends.put(ORDERS_1, 0L);
+        // the listener is still in the records of its last poll
+        when(main.isContainerPaused()).thenReturn(false);
+
+        autoscaler(Duration.ofMillis(150)).check();
+
+        verify(main, never()).stop();
+        verify(main).resume();
+    }
+
+    @Test
+    void scalesTheBatchContainerOnTheLagOfOrdersBatch() {
+        ends.put(ORDERS_0, 0L);
+        ends.put(ORDERS_1, 0L);
+        ends.put(BATCH_0, 4000L);
+        ends.put(BATCH_1, 1000L);
+
+        ListenerAutoscaler autoscaler = autoscaler(Duration.ofSeconds(5));
+        autoscaler.check();
+
+        verify(batch).setConcurrency(2);
+        verify(main, never()).stop();
+        assertThat(autoscaler.getStatus()).containsEntry("totalLag", 5000L);
+        assertThat(listener(autoscaler, OrderListener.BATCH_LISTENER_ID)).containsEntry("lag", 5000L);
+    }
+
+    private ListenerAutoscaler autoscaler(Duration drainTimeout) {
+        return new ListenerAutoscaler(registry, mock(KafkaAdmin.class), shardRouter, scheduler,
+                new SimpleMeterRegistry(), true, 1, 4, 1000, 100, Duration.ZERO, Duration.ofMillis(50), 2,
+                drainTimeout) {
+            @Override
+            Admin admin() {
+                return admin;
+            }
+        };
+    }
+
+    // Nothing committed yet, so every partition's lag is its end offset; orders-batch exists once it has an end
+    @SuppressWarnings("unchecked")
+    private void stubCluster() {
+        ListConsumerGroupOffsetsResult committed = mock(ListConsumerGroupOffsetsResult.class);
+        when(committed.partitionsToOffsetAndMetadata())
+                .thenReturn(KafkaFuture.completedFuture(Map.<TopicPartition, OffsetAndMetadata>of()));
+        when(admin.listConsumerGroupOffsets(ListenerAutoscaler.GROUP_ID)).thenReturn(committed);
+
+        when(admin.describeTopics(any(Collection.class))).thenAnswer(call -> {
+            Map<String, KafkaFuture<TopicDescription>> descriptions = new HashMap<>();
+            for (String topic : (Collection<String>) call.getArgument(0)) {
+                List<TopicPartitionInfo> partitions = new ArrayList<>();
+                ends.keySet().stream().filter(partition -> partition.topic().equals(topic)).forEach(partition ->
+                        partitions.add(new TopicPartitionInfo(partition.partition(), null, List.of(), List.of())));
+                KafkaFutureImpl<TopicDescription> description = new KafkaFutureImpl<>();
+                if (partitions.isEmpty()) {
+                    description.completeExceptionally(new UnknownTopicOrPartitionException(topic));
+                } else {
+                    description.complete(new TopicDescription(topic, false, partitions));
+                }
+                descriptions.put(topic, description);
+            }
+            DescribeTopicsResult result = mock(DescribeTopicsResult.class);
+            when(result.topicNameValues()).thenReturn(descriptions);
+            return result;
+        });
+
+        when(admin.listOffsets(anyMap())).thenAnswer(call -> {
+            Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> offsets = new HashMap<>();
+            for (TopicPartition partition : ((Map<TopicPartition, ?>) call.getArgument(0)).keySet()) {
+                offsets.put(partition, new ListOffsetsResult.ListOffsetsResultInfo(ends.get(partition), -1, Optional.empty()));
+            }
+            ListOffsetsResult result = mock(ListOffsetsResult.class);
+            when(result.all()).thenReturn(KafkaFuture.completedFuture(offsets));
+            return result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> listener(ListenerAutoscaler autoscaler, String listenerId) {
+        return ((List<Map<String, Object>>) autoscaler.getStatus().get("listeners")).stream()
+                .filter(listener -> listener.get("listenerId").equals(listenerId))
+                .findFirst().orElseThrow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> lastDecision(ListenerAutoscaler autoscaler) {
+        return ((List<Map<String, Object>>) autoscaler.getStatus().get("decisions")).get(0);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.bigdata.order_consumer_service.listener;
+
+import com.bigdata.order_consumer_service.entity.FailedOrderEntity;
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.exception.ErrorCategory;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.bigdata.order_consumer_service.service.CircuitBreakerService;
+import com.bigdata.order_consumer_service.service.ExternalCallStage;
+import com.bigdata.order_consumer_service.service.FailedOrderRecorder;
+import com.bigdata.order_consumer_service.service.OrderLookupService;
+import com.bigdata.order_consumer_service.service.OrderService;
+import com.bigdata.order_consumer_service.service.OrderStatisticsTracker;
+import com.bigdata.order_consumer_service.service.ProductRollupService;
+import com.bigdata.order_consumer_service.service.ShardRouter;
+import com.bigdata.rules.OrderRules;
+import com.bigdata.schema.Order;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * A main-topic record whose order is already saved: redelivered records (same
+ * topic, partition, offset and cid) are acknowledged as done, any other copy of
+ * the order is dead-lettered as a duplicate.
+ */
+class OrderListenerTest {
+
+    private static final String TOPIC = ListenerAutoscaler.ORDERS_TOPIC;
+    private static final String CID = "cid-1";
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final ProductRollupService productRollupService = mock(ProductRollupService.class);
+    private final OrderStatisticsTracker statisticsTracker = mock(OrderStatisticsTracker.class);
+    private final FailedOrderRecorder failedOrderRecorder = mock(FailedOrderRecorder.class);
+    private final ShardRouter shardRouter = mock(ShardRouter.class);
+    private final ExternalCallStage externalCalls = mock(ExternalCallStage.class);
+    private final Acknowledgment acknowledgment = mock(Acknowledgment.class);
+    private HybridRetryScheduler scheduler;
+    private OrderListener listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        when(shardRouter.forOrderId(anyString(), any())).thenAnswer(call -> ((Supplier<?>) call.getArgument(1)).get());
+        when(externalCalls.call(anyString(), anyString(), anyFloat(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(failedOrderRecorder.record(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(orderRepository.claimOrderId("order-1")).thenReturn(0);
+        when(orderRepository.findByOrderId("order-1")).thenReturn(Optional.of(OrderEntity.builder()
+                .id(42L)
+                .orderId("order-1")
+                .product("Item-1")
+                .price(10f)
+                .correlationId(CID)
+                .kafkaTopic(TOPIC)
+                .kafkaPartition(0)
+                .kafkaOffset(5L)
+                .build()));
+
+        scheduler = new HybridRetryScheduler(mock(KafkaTemplate.class), mock(KafkaListenerEndpointRegistry.class),
+                new SimpleMeterRegistry(), true, Duration.ofSeconds(10), 10, Duration.ofMillis(5), 8, 1, false);
+        OrderService orderService = new OrderService(orderRepository, statisticsTracker, productRollupService,
+                mock(OrderLookupService.class));
+        listener = new OrderListener(failedOrderRecorder, orderService, shardRouter, scheduler,
+                mock(CircuitBreakerService.class), OrderRules.parse(new StringReader("")), externalCalls);
+    }
+
+    @AfterEach
+    void stopScheduler() {
+        scheduler.destroy();
+    }
+
+    @Test
+    void acknowledgesARedeliveredRecordWithoutDeadLetteringIt() {
+        listener.listen(order(), TOPIC, 0, 5L, System.currentTimeMillis(), cid(CID), acknowledgment);
+
+        verify(acknowledgment).acknowledge();
+        verifyNoInteractions(failedOrderRecorder);
+        verify(orderRepository, never()).save(any());
+        verifyNoInteractions(productRollupService, statisticsTracker);
+    }
+
+    @Test
+    void deadLettersTheSameOrderFromAnotherRecordAsADuplicate() {
+        listener.listen(order(), TOPIC, 0, 9L, System.currentTimeMillis(), cid("cid-2"), acknowledgment);
+
+        ArgumentCaptor<FailedOrderEntity> failed = ArgumentCaptor.forClass(FailedOrderEntity.class);
+        verify(failedOrderRecorder).record(failed.capture(), anyString());
+        assertThat(failed.getValue().getFailureCategory()).isEqualTo(ErrorCategory.DUPLICATE_ORDER);
+        assertThat(failed.getValue().getStatus()).isEqualTo("PENDING");
+        // acknowledged once the failure is recorded
+        verify(acknowledgment).acknowledge();
+    }
+
+    private static Order order() {
+        return Order.newBuilder()
+                .setOrderId("order-1")
+                .setProduct("Item-1")
+                .setPrice(10f)
+                .setEventTime(1_700_000_000_000L)
+                .build();
+    }
+
+    private static byte[] cid(String cid) {
+        return cid.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+package com.bigdata.order_consumer_service.listener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryTimerWheelTest {
+
+    private RetryTimerWheel<Runnable> wheel;
+
+    @AfterEach
+    void stopWheel() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void rejectsWheelSizeThatIsNotAPowerOfTwo() {
+        assertThatThrownBy(() -> new RetryTimerWheel<>(10, 6, 10, Executors.newSingleThreadExecutor(), () -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void runsDueTasksAndReleasesTheirCapacity() throws InterruptedException {
+        AtomicInteger releases = new AtomicInteger();
+        wheel = new RetryTimerWheel<>(5, 8, 10, Executors.newSingleThreadExecutor(), releases::incrementAndGet);
+        CountDownLatch ran = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(wheel.schedule(10, ran::countDown)).isTrue();
+        }
+
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+        waitUntil(() -> releases.get() == 3);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void refusesTasksBeyondCapacityUntilOneHasRun() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        wheel = new RetryTimerWheel<>(5, 8, 2, Executors.newSingleThreadExecutor(), () -> { });
+
+        assertThat(wheel.schedule(10, () -> {
+            running.countDown();
+            await(release);
+        })).isTrue();
+        assertThat(wheel.schedule(60_000, () -> { })).isTrue();
+        assertThat(wheel.schedule(10, () -> { })).isFalse();
+
+        // a running task still counts against the capacity
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(wheel.size()).isEqualTo(2);
+        assertThat(wheel.schedule(10, () -> { })).isFalse();
+
+        release.countDown();
+        waitUntil(() -> wheel.size() == 1);
+        assertThat(wheel.schedule(60_000, () -> { })).isTrue();
+    }
+
+    @Test
+    void keepsTasksDueInALaterRoundOfTheWheel() throws InterruptedException {
+        // 4 buckets of 10 ms: a 100 ms delay wraps the wheel twice before it is due
+        wheel = new RetryTimerWheel<>(10, 4, 10, Executors.newSingleThreadExecutor(), () -> { });
+        CountDownLatch ran = new CountDownLatch(1);
+        long[] ranAfterNanos = new long[1];
+
+        long start = System.nanoTime();
+        wheel.schedule(100, () -> {
+            ranAfterNanos[0] = System.nanoTime() - start;
+            ran.countDown();
+        });
+
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ranAfterNanos[0]).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void stopReturnsTheTasksThatNeverRan() {
+        wheel = new RetryTimerWheel<>(10, 8, 10, Executors.newSingleThreadExecutor(), () -> { });
+        Runnable first = () -> { };
+        Runnable second = () -> { };
+        wheel.schedule(60_000, first);
+        wheel.schedule(120_000, second);
+
+        List<Runnable> remaining = wheel.stop();
+        wheel = null;
+
+        assertThat(remaining).containsExactlyInAnyOrder(first, second);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.bigdata.order_consumer_service.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveRateLimiterTest {
+
+    private long now = Duration.ofHours(1).toNanos();
+
+    @Test
+    void grantsAtMostOneSecondOfPermitsAtOnce() throws InterruptedException {
+        AdaptiveRateLimiter limiter = limiter(false);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(limiter.tryAcquire(0)).isZero();
+        }
+        assertThat(limiter.tryAcquire(0)).isEqualTo(Duration.ofMillis(250).toNanos());
+
+        // an idle minute refills to the burst cap, not beyond
+        advance(Duration.ofMinutes(1));
+        for (int i = 0; i < 4; i++) {
+            assertThat(limiter.tryAcquire(0)).isZero();
+        }
+        assertThat(limiter.tryAcquire(0)).isPositive();
+    }
+
+    @Test
+    void refillsAtTheCurrentRate() throws InterruptedException {
+        AdaptiveRateLimiter limiter = limiter(false);
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire(0);
+        }
+
+        advance(Duration.ofMillis(100));
+        assertThat(limiter.tryAcquire(0)).isEqualTo(Duration.ofMillis(150).toNanos());
+        advance(Duration.ofMillis(150));
+        assertThat(limiter.tryAcquire(0)).isZero();
+    }
+
+    @Test
+    void increasesAdditivelyAndDecreasesMultiplicativelyWithinTheBounds() {
+        AdaptiveRateLimiter limiter = limiter(false);
+
+        limiter.onThrottled();
+        assertThat(limiter.getRate()).isEqualTo(2.0);
+        limiter.onThrottled();
+        limiter.onThrottled();
+        assertThat(limiter.getRate()).isEqualTo(1.0);
+
+        limiter.onSuccess();
+        assertThat(limiter.getRate()).isEqualTo(1.5);
+        for (int i = 0; i < 10; i++) {
+            limiter.onSuccess();
+        }
+        assertThat(limiter.getRate()).isEqualTo(4.0);
+    }
+
+    @Test
+    void throttlingKeepsNoMorePermitsThanTheNewRate() throws InterruptedException {
+        AdaptiveRateLimiter limiter = limiter(false);
+
+        limiter.onThrottled();
+
+        assertThat(limiter.tryAcquire(0)).isZero();
+        assertThat(limiter.tryAcquire(0)).isZero();
+        assertThat(limiter.tryAcquire(0)).isEqualTo(Duration.ofMillis(500).toNanos());
+    }
+
+    @Test
+    void onDemandLimiterOnlyPacesBetweenAThrottleAndFullRecovery() throws InterruptedException {
+        AdaptiveRateLimiter limiter = limiter(true);
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.tryAcquire(0)).isZero();
+        }
+        assertThat(limiter.isLimiting()).isFalse();
+
+        limiter.onThrottled();
+        assertThat(limiter.isLimiting()).isTrue();
+        assertThat(limiter.tryAcquire(0)).isZero();
+        assertThat(limiter.tryAcquire(0)).isZero();
+        assertThat(limiter.tryAcquire(0)).isPositive();
+
+        for (int i = 0; i < 4; i++) {
+            limiter.onSuccess();
+        }
+        assertThat(limiter.isLimiting()).isFalse();
+        assertThat(limiter.tryAcquire(0)).isZero();
+    }
+
+    @Test
+    void rejectsInconsistentBounds() {
+        assertThatThrownBy(() -> new AdaptiveRateLimiter(5, 1, 1, 0.5)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AdaptiveRateLimiter(1, 5, 1, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // 1 to 4 permits per second, +0.5 per success, halved per throttle
+    private AdaptiveRateLimiter limiter(boolean onDemand) {
+        return new AdaptiveRateLimiter(1, 4, 0.5, 0.5, onDemand, () -> now);
+    }
+
+    private void advance(Duration duration) {
+        now += duration.toNanos();
+    }
+}
@@ -0,0 +1,125 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.exception.ErrorCategory;
+import com.bigdata.order_consumer_service.exception.TemporaryProcessingException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class BulkheadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Bulkhead bulkhead = new Bulkhead("payment", 1, executor, meterRegistry);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void shutDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    @Timeout(5)
+    void returnsTheResultAndThePermit() {
+        assertThat(bulkhead.call(() -> 42, Duration.ofSeconds(1)).join()).isEqualTo(42);
+        assertThat(bulkhead.inFlight()).isZero();
+        assertThat(meterRegistry.get("orders.external.calls").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @Timeout(5)
+    void slowCallFailsItsCallerButHoldsThePermitUntilItEnds() throws InterruptedException {
+        StubPaymentClient slow = new StubPaymentClient(Duration.ofMillis(300));
+        CompletableFuture<Boolean> call = bulkhead.call(() -> {
+            slow.authorize("order-1", 10f);
+            return true;
+        }, Duration.ofMillis(50));
+
+        TemporaryProcessingException failure = failure(call);
+
+        assertThat(failure.getCategory()).isEqualTo(ErrorCategory.NETWORK_ERROR);
+        assertThat(failure.getMessage()).isEqualTo("payment call timed out after 50 ms");
+        assertThat(meterRegistry.get("orders.external.timeouts").counter().count()).isEqualTo(1);
+        assertThat(bulkhead.inFlight()).isEqualTo(1);
+
+        while (bulkhead.inFlight() > 0) {
+            Thread.sleep(10);
+        }
+        assertThat(meterRegistry.get("orders.external.calls").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @Timeout(5)
+    void callWithoutAPermitWithinItsTimeoutIsRejected() {
+        CompletableFuture<Boolean> running = bulkhead.call(this::awaitRelease, Duration.ofSeconds(5));
+        awaitInFlight(1);
+
+        TemporaryProcessingException failure = failure(bulkhead.call(() -> true, Duration.ofMillis(50)));
+
+        assertThat(failure.getCategory()).isEqualTo(ErrorCategory.SERVICE_UNAVAILABLE);
+        assertThat(failure.getMessage()).isEqualTo("payment bulkhead full (1 calls)");
+        assertThat(meterRegistry.get("orders.external.rejected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("orders.external.timeouts").counter().count()).isZero();
+
+        release.countDown();
+        assertThat(running.join()).isTrue();
+        assertThat(bulkhead.call(() -> true, Duration.ofSeconds(1)).join()).isTrue();
+    }
+
+    @Test
+    @Timeout(5)
+    void queuedCallRunsOnceThePermitIsReturned() {
+        CompletableFuture<Boolean> running = bulkhead.call(this::awaitRelease, Duration.ofSeconds(5));
+        awaitInFlight(1);
+        CompletableFuture<Integer> queued = bulkhead.call(() -> 7, Duration.ofSeconds(5));
+
+        assertThat(queued).isNotDone();
+        release.countDown();
+
+        assertThat(queued.join()).isEqualTo(7);
+        assertThat(running.join()).isTrue();
+    }
+
+    @Test
+    void failsAtOnceOnceTheExecutorIsShutDown() {
+        executor.shutdown();
+
+        TemporaryProcessingException failure = failure(bulkhead.call(() -> true, Duration.ofSeconds(1)));
+
+        assertThat(failure.getCategory()).isEqualTo(ErrorCategory.SERVICE_UNAVAILABLE);
+    }
+
+    private boolean awaitRelease() {
+        try {
+            release.await();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void awaitInFlight(int calls) {
+        while (bulkhead.inFlight() < calls) {
+            Thread.onSpinWait();
+        }
+    }
+
+    static TemporaryProcessingException failure(CompletableFuture<?> call) {
+        CompletionException e = catchThrowableOfType(CompletionException.class, call::join);
+        assertThat(e.getCause()).isInstanceOf(TemporaryProcessingException.class);
+        return (TemporaryProcessingException) e.getCause();
+    }
+}
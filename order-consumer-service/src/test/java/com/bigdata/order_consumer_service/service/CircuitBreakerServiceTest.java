@@ -0,0 +1,162 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.exception.CircuitOpenException;
+import com.bigdata.order_consumer_service.exception.ErrorCategory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+/**
+ * Breakers on a hand-driven clock: at least 4 calls in the window, trip at half
+ * of them failing, open 5 s at first and at most 20 s; rates from 1 to 10 per second.
+ */
+class CircuitBreakerServiceTest {
+
+    private long now = Duration.ofHours(1).toNanos();
+
+    private final CircuitBreakerService breakers = new CircuitBreakerService(new SimpleMeterRegistry(), true, 4, 0.5,
+            Duration.ofSeconds(5), Duration.ofSeconds(20), 1, 10, 1, 0.5) {
+        @Override
+        long nanoTime() {
+            return now;
+        }
+    };
+
+    @Test
+    void tripsOnceTheFailureShareReachesTheThreshold() {
+        breakers.onSuccess();
+        breakers.onSuccess();
+        breakers.onFailure(ErrorCategory.NETWORK_ERROR);
+        assertThatCode(breakers::beforeCall).doesNotThrowAnyException();
+
+        breakers.onFailure(ErrorCategory.NETWORK_ERROR);
+
+        assertThat(rejection().getOpenCategory()).isEqualTo(ErrorCategory.NETWORK_ERROR);
+        assertThat(rejection().getRetryAfter()).isEqualTo(Duration.ofSeconds(5));
+        assertThat(state(ErrorCategory.NETWORK_ERROR)).isEqualTo(CircuitBreakerService.State.OPEN);
+        assertThat(state(ErrorCategory.SERVICE_UNAVAILABLE)).isEqualTo(CircuitBreakerService.State.CLOSED);
+    }
+
+    @Test
+    void staysClosedBelowTheMinimumNumberOfCalls() {
+        breakers.onFailure(ErrorCategory.NETWORK_ERROR);
+        breakers.onFailure(ErrorCategory.NETWORK_ERROR);
+        breakers.onFailure(ErrorCategory.NETWORK_ERROR);
+
+        assertThatCode(breakers::beforeCall).doesNotThrowAnyException();
+    }
+
+    @Test
+    void successfulProbeClosesTheBreaker() {
+        trip();
+        advance(Duration.ofSeconds(5));
+
+        assertThatCode(breakers::beforeCall).doesNotThrowAnyException();
+        // only one probe at a time
+        assertThat(rejection().getRetryAfter()).isEqualTo(Duration.ofSeconds(1));
+        assertThat(state(ErrorCategory.NETWORK_ERROR)).isEqualTo(CircuitBreakerService.State.HALF_OPEN);
+
+        breakers.onSuccess();
+
+        assertThat(state(ErrorCategory.NETWORK_ERROR)).isEqualTo(CircuitBreakerService.State.CLOSED);
+        assertThatCode(breakers::beforeCall).doesNotThrowAnyException();
+        assertThatCode(breakers::beforeCall).doesNotThrowAnyException();
+    }
+
+    @Test
+    void failedProbeReopensForTwiceAsLongUpToTheMaximum() {
+        trip();
+
+        for (long expected : new long[]{10, 20, 20}) {
+            advance(rejection().getRetryAfter());
+            breakers.beforeCall();
+            breakers.onFailure(ErrorCategory.NETWORK_ERROR);
+
+            assertThat(rejection().getRetryAfter()).isEqualTo(Duration.ofSeconds(expected));
+        }
+
+        advance(Duration.ofSeconds(20).minusMillis(1));
+        assertThat(rejection().getRetryAfter()).isEqualTo(Duration.ofMillis(1));
+    }
+
+    @Test
+    void probeFailingForAnotherReasonLetsTheNextCallProbe() {
+        trip();
+        advance(Duration.ofSeconds(5));
+        breakers.beforeCall();
+
+        breakers.onFailure(ErrorCategory.SERVICE_UNAVAILABLE);
+
+        assertThat(state(ErrorCategory.NETWORK_ERROR)).isEqualTo(CircuitBreakerService.State.HALF_OPEN);
+        assertThatCode(breakers::beforeCall).doesNotThrowAnyException();
+    }
+
+    @Test
+    void pacesCallsOnlyAfterTheDependencyThrottles() {
+        for (int i = 0; i < 100; i++) {
+            breakers.beforeCall();
+        }
+
+        // 10/s halves to 5/s, with the bucket holding 5 permits
+        breakers.onFailure(ErrorCategory.RATE_LIMIT_EXCEEDED);
+        for (int i = 0; i < 5; i++) {
+            breakers.beforeCall();
+        }
+        CircuitOpenException throttled = rejection();
+
+        assertThat(throttled.getOpenCategory()).isEqualTo(ErrorCategory.RATE_LIMIT_EXCEEDED);
+        assertThat(throttled.getRetryAfter()).isEqualTo(Duration.ofMillis(200));
+        assertThat(breakers.describe()).containsEntry("rateLimited", true).containsEntry("rateLimitPerSecond", 5.0)
+                .containsEntry("throttled", 1L);
+
+        advance(Duration.ofMillis(200));
+        assertThatCode(breakers::beforeCall).doesNotThrowAnyException();
+        assertThat(rejection().getOpenCategory()).isEqualTo(ErrorCategory.RATE_LIMIT_EXCEEDED);
+    }
+
+    @Test
+    void stopsPacingOnceTheRateIsBackAtTheMaximum() {
+        breakers.onFailure(ErrorCategory.RATE_LIMIT_EXCEEDED);
+        for (int i = 0; i < 4; i++) {
+            breakers.onSuccess();
+        }
+        assertThat(breakers.describe()).containsEntry("rateLimited", true);
+
+        breakers.onSuccess();
+
+        assertThat(breakers.describe()).containsEntry("rateLimited", false).containsEntry("rateLimitPerSecond", 10.0);
+        for (int i = 0; i < 100; i++) {
+            breakers.beforeCall();
+        }
+    }
+
+    private void trip() {
+        for (int i = 0; i < 4; i++) {
+            breakers.onFailure(ErrorCategory.NETWORK_ERROR);
+        }
+        assertThat(state(ErrorCategory.NETWORK_ERROR)).isEqualTo(CircuitBreakerService.State.OPEN);
+    }
+
+    private void advance(Duration duration) {
+        now += duration.toNanos();
+    }
+
+    private CircuitOpenException rejection() {
+        return catchThrowableOfType(CircuitOpenException.class, breakers::beforeCall);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CircuitBreakerService.State state(String category) {
+        return ((List<Map<String, Object>>) breakers.describe().get("breakers")).stream()
+                .filter(breaker -> breaker.get("category").equals(category))
+                .map(breaker -> (CircuitBreakerService.State) breaker.get("state"))
+                .findFirst().orElseThrow();
+    }
+}
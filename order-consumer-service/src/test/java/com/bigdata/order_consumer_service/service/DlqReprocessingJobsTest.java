@@ -0,0 +1,182 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.dto.DlqFilter;
+import com.bigdata.schema.Order;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs jobs against an in-memory failed_orders table (id to status) where every
+ * order sent back to its topic fails again and comes back as a new PENDING row.
+ */
+class DlqReprocessingJobsTest {
+
+    private static final DlqFilter EVERYTHING = new DlqFilter(null, null, null, null);
+
+    private final NavigableMap<Long, String> failedOrders = new ConcurrentSkipListMap<>();
+    private final AtomicInteger sends = new AtomicInteger();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class, this::database);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Order> kafkaTemplate = mock(KafkaTemplate.class);
+    private DlqReprocessingJobs jobs;
+
+    @BeforeEach
+    void setUp() {
+        when(kafkaTemplate.send(anyString(), anyString(), any(Order.class))).thenAnswer(call -> {
+            sends.incrementAndGet();
+            // the resent order fails again and is dead-lettered under a new id
+            failedOrders.put(failedOrders.lastKey() + 1, "PENDING");
+            return CompletableFuture.completedFuture(null);
+        });
+        jobs = new DlqReprocessingJobs(jdbcTemplate, kafkaTemplate, 2, 10_000, Duration.ofSeconds(5), 20);
+    }
+
+    @AfterEach
+    void shutDown() {
+        jobs.destroy();
+    }
+
+    @Test
+    @Timeout(10)
+    void stopsAtTheRowsThatWerePendingWhenTheJobStarted() throws InterruptedException {
+        for (long id = 1; id <= 5; id++) {
+            failedOrders.put(id, "PENDING");
+        }
+
+        Map<String, Object> job = awaitFinished((long) jobs.start(EVERYTHING, "test", null).get("id"));
+
+        assertThat(job.get("state")).isEqualTo(DlqReprocessingJobs.State.COMPLETED);
+        assertThat(job.get("scanned")).isEqualTo(5L);
+        assertThat(job.get("reprocessed")).isEqualTo(5L);
+        assertThat(job.get("maxId")).isEqualTo(5L);
+        assertThat(sends.get()).isEqualTo(5);
+        assertThat(failedOrders.headMap(5L, true).values()).containsOnly("REPROCESSED");
+        assertThat(failedOrders.tailMap(5L, false).values()).hasSize(5).containsOnly("PENDING");
+    }
+
+    @Test
+    @Timeout(10)
+    void nextJobPicksUpTheOrdersThatFailedAgain() throws InterruptedException {
+        for (long id = 1; id <= 3; id++) {
+            failedOrders.put(id, "PENDING");
+        }
+        awaitFinished((long) jobs.start(EVERYTHING, "test", null).get("id"));
+
+        Map<String, Object> second = awaitFinished((long) jobs.start(EVERYTHING, "test", null).get("id"));
+
+        assertThat(second.get("scanned")).isEqualTo(3L);
+        assertThat(second.get("maxId")).isEqualTo(6L);
+        assertThat(sends.get()).isEqualTo(6);
+        assertThat(failedOrders.tailMap(6L, false).values()).hasSize(3).containsOnly("PENDING");
+    }
+
+    @Test
+    @Timeout(10)
+    void completesWithoutSendingWhenNothingIsPending() throws InterruptedException {
+        failedOrders.put(1L, "REPROCESSED");
+
+        Map<String, Object> job = awaitFinished((long) jobs.start(EVERYTHING, "test", null).get("id"));
+
+        assertThat(job.get("state")).isEqualTo(DlqReprocessingJobs.State.COMPLETED);
+        assertThat(job.get("scanned")).isEqualTo(0L);
+        assertThat(sends.get()).isZero();
+    }
+
+    private Map<String, Object> awaitFinished(long id) throws InterruptedException {
+        while (true) {
+            Map<String, Object> job = jobs.get(id).orElseThrow();
+            if (job.get("state") != DlqReprocessingJobs.State.RUNNING) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // The three statements a job runs, without a filter
+    private Object database(InvocationOnMock call) throws SQLException {
+        Object[] args = call.getRawArguments();
+        switch (call.getMethod().getName()) {
+            case "queryForObject" -> {
+                return failedOrders.entrySet().stream()
+                        .filter(row -> row.getValue().equals("PENDING"))
+                        .map(Map.Entry::getKey)
+                        .max(Long::compare)
+                        .orElse(null);
+            }
+            case "query" -> {
+                Object[] params = (Object[]) args[2];
+                long lastId = (long) params[0];
+                long maxId = (long) params[1];
+                int limit = (int) params[2];
+                RowMapper<?> mapper = (RowMapper<?>) args[1];
+                List<Object> rows = new ArrayList<>();
+                for (Map.Entry<Long, String> row : failedOrders.subMap(lastId, false, maxId, true).entrySet()) {
+                    if (rows.size() < limit && row.getValue().equals("PENDING")) {
+                        rows.add(mapper.mapRow(resultSet(row.getKey()), rows.size()));
+                    }
+                }
+                return rows;
+            }
+            case "update" -> {
+                List<Long> ids = new ArrayList<>();
+                PreparedStatement ps = mock(PreparedStatement.class);
+                Connection connection = mock(Connection.class);
+                when(ps.getConnection()).thenReturn(connection);
+                when(connection.createArrayOf(eq("bigint"), any())).thenAnswer(create -> {
+                    for (Object id : (Object[]) create.getArgument(1)) {
+                        ids.add((Long) id);
+                    }
+                    return mock(Array.class);
+                });
+                ((PreparedStatementSetter) args[1]).setValues(ps);
+                int updated = 0;
+                for (Long id : ids) {
+                    if (failedOrders.replace(id, "PENDING", "REPROCESSED")) {
+                        updated++;
+                    }
+                }
+                return updated;
+            }
+            default -> throw new UnsupportedOperationException(call.getMethod().toString());
+        }
+    }
+
+    private static ResultSet resultSet(long id) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getString("order_id")).thenReturn("order-" + id);
+        when(rs.getString("product")).thenReturn("Item-1");
+        when(rs.getFloat("price")).thenReturn(1f);
+        when(rs.getLong("event_time")).thenReturn(1_700_000_000_000L);
+        when(rs.getString("original_topic")).thenReturn("orders");
+        return rs;
+    }
+}
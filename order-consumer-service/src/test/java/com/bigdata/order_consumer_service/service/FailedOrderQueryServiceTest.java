@@ -0,0 +1,72 @@
+package com.bigdata.order_consumer_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The cached dead-lettered check: one query for the orderIds not cached yet,
+ * committed failures put straight into the cache.
+ */
+class FailedOrderQueryServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final List<List<Object>> queried = new ArrayList<>();
+    private final Set<String> failedOrders = Set.of("order-1");
+    private final FailedOrderQueryService service = new FailedOrderQueryService(jdbcTemplate,
+            new SimpleMeterRegistry(), 100, Duration.ofMinutes(10), Duration.ofMinutes(10));
+
+    @BeforeEach
+    void setUp() {
+        when(jdbcTemplate.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class))).thenAnswer(call -> {
+            List<Object> orderIds = new ArrayList<>();
+            PreparedStatement ps = mock(PreparedStatement.class);
+            Connection connection = mock(Connection.class);
+            when(ps.getConnection()).thenReturn(connection);
+            when(connection.createArrayOf(eq("varchar"), any())).thenAnswer(array -> {
+                orderIds.addAll(List.of((Object[]) array.getArgument(1)));
+                return mock(Array.class);
+            });
+            call.<PreparedStatementSetter>getArgument(1).setValues(ps);
+            queried.add(orderIds);
+            return orderIds.stream().filter(failedOrders::contains).toList();
+        });
+    }
+
+    @Test
+    void queriesOnlyTheOrderIdsNotCachedYet() {
+        assertThat(service.deadLettered(List.of("order-1", "order-2"))).containsExactly("order-1");
+        assertThat(service.deadLettered(List.of("order-1", "order-2", "order-3"))).containsExactly("order-1");
+
+        assertThat(queried).hasSize(2);
+        assertThat(queried.get(1)).containsExactly("order-3");
+    }
+
+    @Test
+    void recordedFailuresReplaceCachedMisses() {
+        assertThat(service.deadLettered(List.of("order-2"))).isEmpty();
+
+        service.markDeadLettered(List.of("order-2"));
+
+        assertThat(service.deadLettered(List.of("order-2"))).containsExactly("order-2");
+        assertThat(queried).hasSize(1);
+    }
+}
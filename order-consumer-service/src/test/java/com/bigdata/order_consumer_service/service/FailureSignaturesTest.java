@@ -0,0 +1,113 @@
+package com.bigdata.order_consumer_service.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FailureSignaturesTest {
+
+    private static final String TRACE = """
+            com.bigdata.order_consumer_service.exception.PermanentProcessingException: Order already exists: order-%1$s
+            \tat com.bigdata.order_consumer_service.service.OrderService.saveOrder(OrderService.java:88)
+            \tat com.bigdata.order_consumer_service.service.OrderService$$SpringCGLIB$$%2$s.saveOrder(<generated>)
+            \tat com.bigdata.order_consumer_service.listener.OrderListener$$Lambda%3$s.get(Unknown Source)
+            \tat jdk.proxy2.$Proxy%2$s.forOrderId(Unknown Source)
+            \tat jdk.internal.reflect.GeneratedMethodAccessor%2$s.invoke(Unknown Source)
+            \tat org.springframework.kafka.listener.Adapter.invoke(Adapter.java:120) ~[spring-kafka.jar:?] @%4$s
+            Caused by: org.postgresql.util.PSQLException: ERROR: duplicate key value violates unique constraint "order_ids_pkey"
+              Detail: Key (order_id)=(order-%1$s) already exists.
+              Where: SQL statement at 0x%4$s
+            \tat org.postgresql.core.v3.QueryExecutorImpl.receiveErrorResponse(QueryExecutorImpl.java:2725)
+            \t... %5$s more
+            """;
+
+    @Test
+    void occurrencesOfOneFailureShareAFingerprint() {
+        String first = FailureSignatures.normalize(TRACE.formatted("100077", "12", "/0x000001f0012c4a38", "7f3a9c0d", "31"));
+        String second = FailureSignatures.normalize(TRACE.formatted("200177", "4", "$41/0x0000000801234567", "1b2c3d4e5f", "7"));
+
+        assertThat(second).isEqualTo(first);
+        assertThat(FailureSignatures.fingerprint(second)).isEqualTo(FailureSignatures.fingerprint(first));
+    }
+
+    @Test
+    void normalizedTraceKeepsClassesAndFramesOnly() {
+        String normalized = FailureSignatures.normalize(TRACE.formatted("100077", "12", "/0x000001f0012c4a38", "7f3a9c0d", "31"));
+
+        assertThat(normalized).isEqualTo("""
+                com.bigdata.order_consumer_service.exception.PermanentProcessingException
+                at com.bigdata.order_consumer_service.service.OrderService.saveOrder(OrderService.java:88)
+                at com.bigdata.order_consumer_service.service.OrderService$$SpringCGLIB$$.saveOrder(<generated>)
+                at com.bigdata.order_consumer_service.listener.OrderListener$$Lambda.get(Unknown Source)
+                at jdk.proxy2.$Proxy.forOrderId(Unknown Source)
+                at jdk.internal.reflect.GeneratedMethodAccessor.invoke(Unknown Source)
+                at org.springframework.kafka.listener.Adapter.invoke(Adapter.java:120) ~[spring-kafka.jar:?]\s
+                Caused by: org.postgresql.util.PSQLException
+                at org.postgresql.core.v3.QueryExecutorImpl.receiveErrorResponse(QueryExecutorImpl.java:2725)
+                ... more
+                """);
+        assertThat(FailureSignatures.exceptionClass(normalized))
+                .isEqualTo("com.bigdata.order_consumer_service.exception.PermanentProcessingException");
+    }
+
+    @Test
+    void differentFramesGiveDifferentFingerprints() {
+        String trace = TRACE.formatted("100077", "12", "/0x1", "7f3a9c0d", "31");
+        String otherLine = trace.replace("OrderService.java:88", "OrderService.java:91");
+        String otherMethod = trace.replace("receiveErrorResponse", "processResults");
+        String otherCause = trace.replace("Caused by: org.postgresql.util.PSQLException",
+                "Caused by: java.sql.SQLTransientConnectionException");
+
+        String fingerprint = FailureSignatures.fingerprint(FailureSignatures.normalize(trace));
+        for (String other : new String[]{otherLine, otherMethod, otherCause}) {
+            assertThat(FailureSignatures.fingerprint(FailureSignatures.normalize(other))).isNotEqualTo(fingerprint);
+        }
+    }
+
+    @Test
+    void thrownExceptionsWithDifferentMessagesShareAFingerprint() {
+        // one call site, so only the messages differ
+        String[] normalized = new String[2];
+        for (int i = 0; i < 2; i++) {
+            normalized[i] = FailureSignatures.normalize(printed(fail("order-" + i, 10f + 89.5f * i)));
+        }
+
+        assertThat(normalized[0]).startsWith("java.lang.IllegalStateException\nat ");
+        assertThat(FailureSignatures.fingerprint(normalized[1])).isEqualTo(FailureSignatures.fingerprint(normalized[0]));
+    }
+
+    @Test
+    void compressedTraceRoundTrips() {
+        String normalized = FailureSignatures.normalize(TRACE.formatted("1", "2", "/0x3", "abcdef12", "5"));
+
+        assertThat(FailureSignatures.decompress(FailureSignatures.compress(normalized))).isEqualTo(normalized);
+    }
+
+    @Test
+    void blankTraceNormalizesToNothing() {
+        assertThat(FailureSignatures.normalize(null)).isEmpty();
+        assertThat(FailureSignatures.normalize(" \n ")).isEmpty();
+        assertThat(FailureSignatures.exceptionClass("")).isEqualTo("UNKNOWN");
+    }
+
+    private static Exception fail(String orderId, float price) {
+        try {
+            Runnable check = () -> {
+                throw new IllegalStateException("Rejected " + orderId + "\nprice " + price + " over the limit");
+            };
+            check.run();
+            throw new AssertionError();
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+
+    private static String printed(Exception e) {
+        StringWriter trace = new StringWriter();
+        e.printStackTrace(new PrintWriter(trace));
+        return trace.toString();
+    }
+}
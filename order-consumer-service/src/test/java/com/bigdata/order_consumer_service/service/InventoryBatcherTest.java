@@ -0,0 +1,131 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.exception.ErrorCategory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.bigdata.order_consumer_service.service.BulkheadTest.failure;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The window timer is a mock: a test fires the scheduled flush itself, so only
+ * the size limit sends a batch on its own.
+ */
+class InventoryBatcherTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(20);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService timer = mock(ScheduledExecutorService.class);
+    private final List<Set<String>> batches = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @Timeout(5)
+    void lookupsOfAWaitingProductShareItsFuture() {
+        InventoryBatcher batcher = batcher(new StubInventoryClient(Duration.ZERO), 10, Duration.ofSeconds(1));
+
+        CompletableFuture<Integer> first = batcher.available("Item-1");
+        CompletableFuture<Integer> second = batcher.available("Item-1");
+        CompletableFuture<Integer> other = batcher.available("Item-2");
+        CompletableFuture<Integer> third = batcher.available("Item-1");
+
+        assertThat(second).isSameAs(first);
+        assertThat(third).isSameAs(first);
+        assertThat(first).isNotDone();
+
+        fireWindow();
+
+        assertThat(first.join()).isEqualTo(100);
+        assertThat(other.join()).isEqualTo(100);
+        assertThat(batches).containsExactly(Set.of("Item-1", "Item-2"));
+        assertThat(meterRegistry.get("orders.external.inventory.coalesced").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("orders.external.inventory.batch").summary().max()).isEqualTo(2);
+    }
+
+    @Test
+    @Timeout(5)
+    void fullBatchIsSentWithoutWaitingForTheWindow() {
+        InventoryBatcher batcher = batcher(new StubInventoryClient(Duration.ZERO), 3, Duration.ofSeconds(1));
+
+        List<CompletableFuture<Integer>> stock = List.of(
+                batcher.available("Item-1"), batcher.available("Item-2"), batcher.available("Item-3"));
+
+        assertThat(CompletableFuture.allOf(stock.toArray(CompletableFuture[]::new)).join()).isNull();
+        assertThat(batches).containsExactly(Set.of("Item-1", "Item-2", "Item-3"));
+
+        // the window timer of the batch already sent finds nothing left to send
+        fireWindow();
+        assertThat(batches).hasSize(1);
+
+        // the next lookup starts a new window
+        CompletableFuture<Integer> next = batcher.available("Item-1");
+        assertThat(next).isNotDone();
+        verify(timer, times(2)).schedule(any(Runnable.class), eq(WINDOW.toMillis()), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @Timeout(5)
+    void productsMissingFromTheAnswerHaveNoStock() {
+        InventoryBatcher batcher = batcher(products -> Map.of("Item-1", 3), 10, Duration.ofSeconds(1));
+
+        CompletableFuture<Integer> listed = batcher.available("Item-1");
+        CompletableFuture<Integer> missing = batcher.available("Item-2");
+        fireWindow();
+
+        assertThat(listed.join()).isEqualTo(3);
+        assertThat(missing.join()).isZero();
+    }
+
+    @Test
+    @Timeout(5)
+    void slowLookupFailsEveryLookupOfTheBatch() {
+        InventoryBatcher batcher = batcher(new StubInventoryClient(Duration.ofMillis(300)), 10, Duration.ofMillis(50));
+
+        CompletableFuture<Integer> first = batcher.available("Item-1");
+        CompletableFuture<Integer> second = batcher.available("Item-2");
+        fireWindow();
+
+        assertThat(failure(first).getCategory()).isEqualTo(ErrorCategory.NETWORK_ERROR);
+        assertThat(failure(second).getCategory()).isEqualTo(ErrorCategory.NETWORK_ERROR);
+    }
+
+    private InventoryBatcher batcher(InventoryClient client, int maxBatch, Duration timeout) {
+        InventoryClient recording = products -> {
+            batches.add(Set.copyOf(products));
+            return client.lookup(products);
+        };
+        return new InventoryBatcher(recording, new Bulkhead("inventory", 4, executor, meterRegistry), timer,
+                WINDOW, maxBatch, timeout, meterRegistry);
+    }
+
+    private void fireWindow() {
+        ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+        verify(timer, times(1)).schedule(flush.capture(), eq(WINDOW.toMillis()), eq(TimeUnit.MILLISECONDS));
+        flush.getValue().run();
+    }
+}
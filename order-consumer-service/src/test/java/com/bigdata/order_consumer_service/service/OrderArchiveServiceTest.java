@@ -0,0 +1,177 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.config.ShardRoutingDataSource;
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.bigdata.order_consumer_service.service.OrderArchiveTest.order;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Archival runs against an in-memory orders table per shard: write, read back,
+ * delete, and the recovery after a delete that failed.
+ */
+class OrderArchiveServiceTest {
+
+    private static final LocalDate DAY = LocalDate.now().minusDays(100);
+    private static final LocalDateTime T0 = DAY.atTime(10, 0);
+
+    @TempDir
+    Path directory;
+
+    private final Map<Integer, List<OrderEntity>> tables = new ConcurrentHashMap<>();
+    private final List<long[]> deletes = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean failNextDelete = new AtomicBoolean();
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final OrderArchiveReader reader = new OrderArchiveReader(objectMapper);
+    private ShardRouter router;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reader, "directory", directory.toString());
+
+        when(orderRepository.findMinProcessedAt()).thenAnswer(call -> table().stream()
+                .map(OrderEntity::getProcessedAt)
+                .min(Comparator.naturalOrder())
+                .orElse(null));
+        when(orderRepository.streamForArchive(any(), any())).thenAnswer(call -> {
+            LocalDateTime start = call.getArgument(0);
+            LocalDateTime end = call.getArgument(1);
+            return new ArrayList<>(table()).stream()
+                    .filter(order -> !order.getProcessedAt().isBefore(start) && order.getProcessedAt().isBefore(end))
+                    .sorted(Comparator.comparing(OrderEntity::getProduct)
+                            .thenComparing(OrderEntity::getProcessedAt)
+                            .thenComparing(OrderEntity::getId));
+        });
+        when(orderRepository.deleteArchived(any(), any(), anyLong())).thenAnswer(call -> {
+            if (failNextDelete.getAndSet(false)) {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+            LocalDateTime start = call.getArgument(0);
+            LocalDateTime end = call.getArgument(1);
+            long maxId = call.getArgument(2);
+            deletes.add(new long[]{ShardRoutingDataSource.currentShard(), maxId});
+            List<OrderEntity> table = table();
+            int before = table.size();
+            table.removeIf(order -> !order.getProcessedAt().isBefore(start) && order.getProcessedAt().isBefore(end)
+                    && order.getId() <= maxId);
+            return before - table.size();
+        });
+    }
+
+    @AfterEach
+    void shutDown() {
+        router.destroy();
+    }
+
+    @Test
+    void archivesADayAndDeletesItFromTheTable() {
+        OrderArchiveService service = service(1);
+        insert(0, order(1, "Item-1", T0), order(2, "Item-2", T0.plusMinutes(1)), order(3, "Item-1", T0.plusHours(1)));
+
+        Map<String, Object> summary = service.archiveOldOrders();
+
+        assertThat(summary).containsEntry("archivedOrders", 3L).containsEntry("deletedOrders", 3L)
+                .containsEntry("days", List.of(DAY.toString()));
+        assertThat(tables.get(0)).isEmpty();
+        assertThat(readDay()).extracting(OrderEntity::getId).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void rerunAfterAFailedDeleteSkipsTheArchivedIdsAndDeletesThem() {
+        OrderArchiveService service = service(1);
+        insert(0, order(1, "Item-1", T0), order(2, "Item-1", T0.plusMinutes(1)));
+        failNextDelete.set(true);
+
+        assertThatThrownBy(service::archiveOldOrders).isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(tables.get(0)).hasSize(2);
+
+        // a row of that day committed after the failed run
+        insert(0, order(5, "Item-2", T0.plusMinutes(2)));
+        Map<String, Object> summary = service.archiveOldOrders();
+
+        assertThat(summary).containsEntry("archivedOrders", 1L).containsEntry("deletedOrders", 3L);
+        assertThat(deletes).singleElement().satisfies(delete -> assertThat(delete[1]).isEqualTo(5L));
+        assertThat(tables.get(0)).isEmpty();
+        assertThat(readDay()).extracting(OrderEntity::getId).containsExactly(1L, 2L, 5L);
+    }
+
+    @Test
+    void rerunWithNothingNewDeletesUpToTheArchivedIds() {
+        OrderArchiveService service = service(1);
+        insert(0, order(1, "Item-1", T0), order(2, "Item-1", T0.plusMinutes(1)));
+        failNextDelete.set(true);
+        assertThatThrownBy(service::archiveOldOrders).isInstanceOf(DataAccessResourceFailureException.class);
+
+        Map<String, Object> summary = service.archiveOldOrders();
+
+        assertThat(summary).containsEntry("archivedOrders", 0L).containsEntry("deletedOrders", 2L);
+        assertThat(deletes).singleElement().satisfies(delete -> assertThat(delete[1]).isEqualTo(2L));
+        assertThat(readDay()).extracting(OrderEntity::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void shardsWithTheSameIdsArchiveAndDeleteOnlyTheirOwnOrders() {
+        OrderArchiveService service = service(2);
+        insert(0, order(1, "Item-1", T0), order(40, "Item-1", T0.plusMinutes(1)));
+        // shard 1 numbers its ids on its own: id 1 again, and a row below shard 0's highest id
+        insert(1, order(1, "Item-2", T0.plusMinutes(2)), order(7, "Item-2", T0.plusMinutes(3)));
+
+        Map<String, Object> summary = service.archiveOldOrders();
+
+        assertThat(summary).containsEntry("archivedOrders", 4L).containsEntry("deletedOrders", 4L);
+        assertThat(deletes).extracting(delete -> delete[0] + ":" + delete[1]).containsExactly("0:40", "1:7");
+        assertThat(readDay()).extracting(order -> order.getProduct() + "/" + order.getId())
+                .containsExactly("Item-1/1", "Item-1/40", "Item-2/1", "Item-2/7");
+    }
+
+    private OrderArchiveService service(int shards) {
+        router = ShardRouterTest.router(shards);
+        OrderArchiveWriter writer = new OrderArchiveWriter(orderRepository, mock(EntityManager.class), objectMapper);
+        ReflectionTestUtils.setField(writer, "deflateLevel", 6);
+        OrderArchiveService service = new OrderArchiveService(orderRepository, writer, reader,
+                mock(OrderLookupService.class), router);
+        ReflectionTestUtils.setField(service, "olderThanDays", 90);
+        ReflectionTestUtils.setField(service, "maxDaysPerRun", 31);
+        return service;
+    }
+
+    private void insert(int shard, OrderEntity... orders) {
+        tables.computeIfAbsent(shard, s -> new CopyOnWriteArrayList<>()).addAll(List.of(orders));
+    }
+
+    private List<OrderEntity> table() {
+        Integer shard = ShardRoutingDataSource.currentShard();
+        return tables.computeIfAbsent(shard != null ? shard : 0, s -> new CopyOnWriteArrayList<>());
+    }
+
+    private List<OrderEntity> readDay() {
+        return reader.readDay(DAY, null, DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay());
+    }
+}
@@ -0,0 +1,238 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.dto.OrderCursor;
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.bigdata.order_consumer_service.service.OrderArchiveFormat.ArchiveIndex;
+import com.bigdata.order_consumer_service.service.OrderArchiveFormat.ProductBlock;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.persistence.EntityManager;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Writes archive files from a stubbed orders table and reads them back through the
+ * footer index, as the query and archival services do.
+ */
+class OrderArchiveTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 1);
+    private static final LocalDateTime T0 = DAY.atTime(10, 0);
+
+    @TempDir
+    Path directory;
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final OrderArchiveWriter writer =
+            new OrderArchiveWriter(orderRepository, mock(EntityManager.class), objectMapper);
+    private final OrderArchiveReader reader = new OrderArchiveReader(objectMapper);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(writer, "deflateLevel", 6);
+        ReflectionTestUtils.setField(reader, "directory", directory.toString());
+    }
+
+    @Test
+    void readsBackEveryOrderItWrote() throws IOException {
+        List<OrderEntity> orders = List.of(
+                order(1, "Item-2", T0.plusMinutes(5)),
+                order(2, "Item-1", T0),
+                order(3, "Item-1", T0.plusMinutes(5)),
+                order(4, "Item-3", T0.plusMinutes(1)));
+
+        ArchiveIndex index = write(orders, Set.of());
+
+        assertThat(index.count()).isEqualTo(4);
+        assertThat(index.minId()).isEqualTo(1);
+        assertThat(index.maxId()).isEqualTo(4);
+        assertThat(reader.readDay(DAY, null, DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay()))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(orders.get(1), orders.get(3), orders.get(0), orders.get(2));
+    }
+
+    @Test
+    void footerIsReadBackAsWritten() throws IOException {
+        ArchiveIndex written = write(List.of(
+                order(1, "Item-1", T0),
+                order(2, "Item-2", T0.plusMinutes(1)),
+                order(3, "Item-2", T0.plusMinutes(2))), Set.of());
+
+        Path file = onlyFile();
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int trailer = bytes.limit() - OrderArchiveFormat.TRAILER_LENGTH;
+        byte[] magic = new byte[OrderArchiveFormat.MAGIC.length];
+        bytes.get(trailer + Long.BYTES, magic);
+        long indexLength = bytes.getLong(trailer);
+        byte[] json = new byte[(int) indexLength];
+        bytes.get(trailer - (int) indexLength, json);
+
+        assertThat(magic).isEqualTo(OrderArchiveFormat.MAGIC);
+        assertThat(objectMapper.readValue(json, ArchiveIndex.class)).isEqualTo(written);
+        assertThat(written.products()).containsOnlyKeys("Item-1", "Item-2");
+        assertThat(written.products().get("Item-2"))
+                .isEqualTo(new ProductBlock(written.products().get("Item-2").position(), 2,
+                        T0.plusMinutes(1), T0.plusMinutes(2)));
+        assertThat(reader.describe()).singleElement().satisfies(description -> {
+            assertThat(description).containsEntry("orders", 3L).containsEntry("products", 2);
+            assertThat(description).containsEntry("file", file.getFileName().toString());
+        });
+    }
+
+    @Test
+    void eachProductStartsAtItsSyncPosition() throws IOException {
+        List<OrderEntity> orders = new ArrayList<>();
+        long id = 1;
+        for (String product : List.of("Item-1", "Item-2", "Item-3")) {
+            for (int i = 0; i < 500; i++) {
+                orders.add(order(id++, product, T0.plusSeconds(i)));
+            }
+        }
+        ArchiveIndex index = write(orders, Set.of());
+
+        byte[] file = Files.readAllBytes(onlyFile());
+        int dataLength = file.length - OrderArchiveFormat.TRAILER_LENGTH
+                - (int) ByteBuffer.wrap(file).getLong(file.length - OrderArchiveFormat.TRAILER_LENGTH);
+        MappedSeekableInput input = new MappedSeekableInput(ByteBuffer.wrap(file), dataLength);
+        assertThat(input.length()).isEqualTo(dataLength);
+
+        try (DataFileReader<GenericRecord> avro = new DataFileReader<>(input,
+                new GenericDatumReader<>(OrderArchiveFormat.SCHEMA))) {
+            for (Map.Entry<String, ProductBlock> block : index.products().entrySet()) {
+                avro.seek(block.getValue().position());
+                assertThat(avro.next().get("product").toString()).isEqualTo(block.getKey());
+            }
+        }
+        assertThat(reader.readDay(DAY, "Item-2", DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay()))
+                .hasSize(500)
+                .allSatisfy(order -> assertThat(order.getProduct()).isEqualTo("Item-2"));
+        assertThat(reader.readDay(DAY, "Item-3", T0.plusSeconds(10), T0.plusSeconds(19)))
+                .extracting(OrderEntity::getId)
+                .containsExactlyElementsOf(List.of(1011L, 1012L, 1013L, 1014L, 1015L,
+                        1016L, 1017L, 1018L, 1019L, 1020L));
+    }
+
+    @Test
+    void findBeforeContinuesStrictlyAfterTheCursor() throws IOException {
+        write(List.of(
+                order(1, "Item-1", T0),
+                order(2, "Item-1", T0.plusMinutes(1)),
+                order(3, "Item-2", T0.plusMinutes(1)),
+                order(4, "Item-2", T0.plusMinutes(1)),
+                order(5, "Item-1", T0.plusMinutes(2))), Set.of());
+
+        // ties on processedAt continue with the lower ids, newest first
+        List<OrderEntity> page = reader.findBefore(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay(), null,
+                new OrderCursor(T0.plusMinutes(1), 4), 10);
+
+        assertThat(page).extracting(OrderEntity::getId).containsExactly(3L, 2L, 1L);
+        assertThat(reader.findBefore(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay(), null,
+                new OrderCursor(T0.plusMinutes(1), 4), 2))
+                .extracting(OrderEntity::getId).containsExactly(3L, 2L);
+        assertThat(reader.findBefore(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay(), "Item-1",
+                new OrderCursor(T0.plusMinutes(2), 5), 10))
+                .extracting(OrderEntity::getId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void skipsIdsArchivedByAnEarlierRun() throws IOException {
+        ArchiveIndex index = write(List.of(
+                order(1, "Item-1", T0),
+                order(2, "Item-1", T0.plusMinutes(1)),
+                order(3, "Item-2", T0)), Set.of(1L, 3L));
+
+        assertThat(index.count()).isEqualTo(1);
+        assertThat(index.minId()).isEqualTo(2);
+        assertThat(index.products()).containsOnlyKeys("Item-1");
+        assertThat(write(List.of(order(1, "Item-1", T0)), Set.of(1L))).isNull();
+        assertThat(reader.archivedIds(DAY, 0)).containsExactly(2L);
+    }
+
+    @Test
+    void archivedIdsOnlyCoverTheShardsOwnFiles() throws IOException {
+        write(List.of(order(7, "Item-1", T0)), 0, Set.of());
+        write(List.of(order(7, "Item-2", T0), order(9, "Item-2", T0)), 1, Set.of());
+
+        assertThat(reader.archivedIds(DAY, 0)).containsExactly(7L);
+        assertThat(reader.archivedIds(DAY, 1)).containsExactlyInAnyOrder(7L, 9L);
+        assertThat(reader.readDay(DAY, null, DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay())).hasSize(3);
+    }
+
+    @Test
+    void rejectsAFileWithoutFooter() throws IOException {
+        write(List.of(order(1, "Item-1", T0)), Set.of());
+        Path file = onlyFile();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThatThrownBy(() -> reader.readDay(DAY, null, DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay()))
+                .hasRootCauseMessage("Missing archive footer");
+    }
+
+    private ArchiveIndex write(List<OrderEntity> orders, Set<Long> alreadyArchived) throws IOException {
+        return write(orders, 0, alreadyArchived);
+    }
+
+    // The repository hands rows over ordered by product, processedAt and id
+    private ArchiveIndex write(List<OrderEntity> orders, int shard, Set<Long> alreadyArchived) throws IOException {
+        when(orderRepository.streamForArchive(any(), any())).thenAnswer(call -> orders.stream()
+                .sorted(Comparator.comparing(OrderEntity::getProduct)
+                        .thenComparing(OrderEntity::getProcessedAt)
+                        .thenComparing(OrderEntity::getId)));
+        return writer.writeDay(DAY, reader.dayDirectory(DAY), shard, alreadyArchived);
+    }
+
+    private Path onlyFile() throws IOException {
+        try (Stream<Path> files = Files.list(reader.dayDirectory(DAY))) {
+            List<Path> list = files.toList();
+            assertThat(list).hasSize(1);
+            return list.get(0);
+        }
+    }
+
+    static OrderEntity order(long id, String product, LocalDateTime processedAt) {
+        return OrderEntity.builder()
+                .id(id)
+                .orderId("order-" + id)
+                .product(product)
+                .price(1.5f * id)
+                .correlationId("cid-" + id)
+                .receivedAt(processedAt.minusSeconds(1))
+                .processedAt(processedAt)
+                .status("PROCESSED")
+                .kafkaTopic("orders")
+                .kafkaPartition((int) (id % 3))
+                .kafkaOffset(100 + id)
+                .metadata(id % 2 == 0 ? null : "{\"batch\":false}")
+                .createdAt(processedAt)
+                .updatedAt(processedAt)
+                .build();
+    }
+}
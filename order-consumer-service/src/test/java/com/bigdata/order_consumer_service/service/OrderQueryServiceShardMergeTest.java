@@ -0,0 +1,146 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.config.ShardRoutingDataSource;
+import com.bigdata.order_consumer_service.dto.CursorPage;
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Scatter/gather listings over three shards: every shard answers its own first
+ * rows and the merged pages must be exactly the pages one table would have given.
+ */
+class OrderQueryServiceShardMergeTest {
+
+    private static final int SHARDS = 3;
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 12, 0);
+    private static final Comparator<OrderEntity> NEWEST_FIRST =
+            Comparator.comparing(OrderEntity::getProcessedAt).thenComparing(OrderEntity::getId).reversed();
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderArchiveReader archiveReader = mock(OrderArchiveReader.class);
+    private final List<List<OrderEntity>> shardRows = new ArrayList<>();
+    private final List<OrderEntity> allRows = new ArrayList<>();
+    private ShardRouter router;
+    private OrderQueryService queryService;
+
+    @BeforeEach
+    void setUp() {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            shardRows.add(new ArrayList<>());
+        }
+        // ids are congruent to their shard mod 3, as alignIdSequences hands them out;
+        // several orders share a processedAt so the id decides their order across shards
+        for (long id = 1; id <= 50; id++) {
+            OrderEntity order = OrderEntity.builder()
+                    .id(id)
+                    .orderId("order-" + id)
+                    .product("Item-1")
+                    .price(1f)
+                    .status("PROCESSED")
+                    .processedAt(T0.plusSeconds((id * 7) % 13))
+                    .build();
+            shardRows.get((int) (id % SHARDS)).add(order);
+            allRows.add(order);
+        }
+        allRows.sort(NEWEST_FIRST);
+
+        when(orderRepository.findPageBefore(any(), anyLong(), anyInt())).thenAnswer(call -> {
+            LocalDateTime processedAt = call.getArgument(0);
+            long id = call.getArgument(1);
+            int limit = call.getArgument(2);
+            return currentShardRows().stream()
+                    .filter(order -> order.getProcessedAt().isBefore(processedAt)
+                            || (order.getProcessedAt().isEqual(processedAt) && order.getId() < id))
+                    .sorted(NEWEST_FIRST)
+                    .limit(limit)
+                    .toList();
+        });
+        when(orderRepository.findAll(any(Pageable.class))).thenAnswer(call -> {
+            Pageable pageable = call.getArgument(0);
+            List<OrderEntity> rows = currentShardRows().stream().sorted(NEWEST_FIRST).toList();
+            int from = (int) Math.min(pageable.getOffset(), rows.size());
+            int to = Math.min(from + pageable.getPageSize(), rows.size());
+            return new PageImpl<>(rows.subList(from, to), pageable, rows.size());
+        });
+
+        router = ShardRouterTest.router(SHARDS);
+        queryService = new OrderQueryService(orderRepository, mock(EntityManager.class), new ObjectMapper(),
+                archiveReader, router, mock(PlatformTransactionManager.class));
+    }
+
+    @AfterEach
+    void shutDown() {
+        router.destroy();
+    }
+
+    @Test
+    void keysetPagesMergeIntoTheSingleTableOrder() {
+        List<OrderEntity> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<OrderEntity> page = queryService.getOrders(cursor, 7);
+            assertThat(page.getContent()).hasSizeLessThanOrEqualTo(7);
+            assertThat(page.isHasMore()).isEqualTo(page.getNextCursor() != null);
+            seen.addAll(page.getContent());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(8);
+        assertThat(seen).containsExactlyElementsOf(allRows);
+        assertThat(new HashSet<>(seen)).hasSize(allRows.size());
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        CursorPage<OrderEntity> page = queryService.getOrders(null, 50);
+
+        assertThat(page.getContent()).containsExactlyElementsOf(allRows);
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void offsetPagesMergeIntoTheSingleTableOrder() {
+        Sort newestFirst = Sort.by(Sort.Order.desc("processedAt"), Sort.Order.desc("id"));
+
+        for (int page = 0; page < 6; page++) {
+            Page<OrderEntity> merged = queryService.getOrdersPage(PageRequest.of(page, 9, newestFirst));
+
+            int from = Math.min(page * 9, allRows.size());
+            assertThat(merged.getContent())
+                    .containsExactlyElementsOf(allRows.subList(from, Math.min(from + 9, allRows.size())));
+            assertThat(merged.getTotalElements()).isEqualTo(allRows.size());
+        }
+    }
+
+    private List<OrderEntity> currentShardRows() {
+        Integer shard = ShardRoutingDataSource.currentShard();
+        return shardRows.get(shard != null ? shard : 0);
+    }
+}
@@ -0,0 +1,82 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.entity.OrderEntity;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderStatisticsTrackerTest {
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final ShardRouter router = ShardRouterTest.router(1);
+    private final OrderStatisticsTracker tracker = new OrderStatisticsTracker(orderRepository, router);
+
+    @AfterEach
+    void shutDown() {
+        router.destroy();
+    }
+
+    @Test
+    void reconcileReplacesTheCountersWithTheDatabaseTotals() {
+        tracker.recordSaved(order(5f));
+        stubTotals(10, 250.0);
+
+        tracker.reconcile();
+
+        assertThat(tracker.getTotalOrders()).isEqualTo(10);
+        assertThat(tracker.getProcessedOrders()).isEqualTo(10);
+        assertThat(tracker.getTotalRevenue()).isEqualTo(250.0);
+    }
+
+    @Test
+    void keepsOrdersRecordedWhileReconcileReadsTheDatabase() {
+        stubTotals(10, 250.0);
+        // an insert commits between the database read and the swap of the counters
+        when(orderRepository.countOrdersPerSecondSince(any())).thenAnswer(call -> {
+            tracker.recordSaved(order(7f));
+            return List.<Object[]>of();
+        });
+
+        tracker.reconcile();
+
+        assertThat(tracker.getTotalOrders()).isEqualTo(11);
+        assertThat(tracker.getProcessedOrders()).isEqualTo(11);
+        assertThat(tracker.getTotalRevenue()).isEqualTo(257.0);
+        assertThat(tracker.getOrdersLastHour()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsAfterReconcileGoToTheNewCounters() {
+        stubTotals(10, 250.0);
+        tracker.reconcile();
+
+        tracker.recordSaved(order(1f));
+
+        assertThat(tracker.getTotalOrders()).isEqualTo(11);
+        assertThat(tracker.getTotalRevenue()).isEqualTo(251.0);
+    }
+
+    private void stubTotals(long orders, double revenue) {
+        when(orderRepository.count()).thenReturn(orders);
+        when(orderRepository.countByStatus("PROCESSED")).thenReturn(orders);
+        when(orderRepository.getTotalRevenue()).thenReturn(revenue);
+    }
+
+    private static OrderEntity order(float price) {
+        return OrderEntity.builder()
+                .orderId("order-1")
+                .product("Item-1")
+                .price(price)
+                .status("PROCESSED")
+                .processedAt(LocalDateTime.now())
+                .build();
+    }
+}
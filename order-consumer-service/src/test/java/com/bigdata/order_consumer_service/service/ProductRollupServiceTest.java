@@ -0,0 +1,132 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.repository.OrderProductHourlyRepository;
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductRollupServiceTest {
+
+    private final OrderProductHourlyRepository rollupRepository = mock(OrderProductHourlyRepository.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final ShardRouter router = ShardRouterTest.router(1);
+    private final ProductRollupService rollupService =
+            new ProductRollupService(rollupRepository, orderRepository, router, transactionManager);
+
+    @AfterEach
+    void shutDown() {
+        router.destroy();
+    }
+
+    @Test
+    void recordsAnOrderInTheBucketOfItsHour() {
+        rollupService.recordOrder("Item-1", LocalDateTime.of(2026, 3, 1, 14, 59, 59, 999), 19.99f);
+
+        verify(rollupRepository).upsertOrder("Item-1", LocalDateTime.of(2026, 3, 1, 14, 0), 19.99f);
+    }
+
+    @Test
+    void rebuildsUnderTheWriterLockInOneTransaction() {
+        when(orderRepository.findMinId()).thenReturn(1L);
+        when(orderRepository.findMaxId()).thenReturn(10L);
+
+        rollupService.rebuild(4);
+
+        // the bounds are read after the lock, so no order commits between them and the chunks
+        InOrder order = inOrder(transactionManager, rollupRepository, orderRepository);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(rollupRepository).lockAgainstWriters();
+        order.verify(rollupRepository).deleteAllRows();
+        order.verify(orderRepository).findMaxId();
+        order.verify(rollupRepository, times(3)).rollupOrderRange(anyLong(), anyLong());
+        order.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void chunksCoverEveryOrderIdOnce() {
+        List<long[]> ranges = new ArrayList<>();
+        when(orderRepository.findMinId()).thenReturn(7L);
+        when(orderRepository.findMaxId()).thenReturn(30L);
+        when(rollupRepository.deleteAllRows()).thenReturn(12);
+        when(rollupRepository.rollupOrderRange(anyLong(), anyLong())).thenAnswer(call -> {
+            ranges.add(new long[]{call.getArgument(0), call.getArgument(1)});
+            return 2;
+        });
+
+        Map<String, Object> result = rollupService.rebuild(5);
+
+        // (from, to] ranges: contiguous from just below the first id up to the last one
+        assertThat(ranges).extracting(range -> range[0]).containsExactly(6L, 11L, 16L, 21L, 26L);
+        assertThat(ranges).extracting(range -> range[1]).containsExactly(11L, 16L, 21L, 26L, 30L);
+        assertThat(result).containsEntry("deletedRows", 12).containsEntry("chunks", 5).containsEntry("upserts", 10L);
+    }
+
+    @Test
+    void rebuildOfAnEmptyShardOnlyClearsIt() {
+        when(orderRepository.findMinId()).thenReturn(null);
+        when(orderRepository.findMaxId()).thenReturn(null);
+
+        rollupService.rebuild(100);
+
+        verify(rollupRepository).deleteAllRows();
+        verify(rollupRepository, never()).rollupOrderRange(anyLong(), anyLong());
+    }
+
+    @Test
+    void mergesProductTotalsAcrossShards() {
+        ShardRouter shards = ShardRouterTest.router(2);
+        try {
+            when(rollupRepository.getProductStatistics()).thenReturn(
+                    List.<Object[]>of(new Object[]{"Item-1", 2L, 30.0, 10f, 20f}),
+                    List.<Object[]>of(new Object[]{"Item-1", 1L, 5.0, 5f, 5f}));
+
+            List<Object[]> totals = new ProductRollupService(rollupRepository, orderRepository, shards,
+                    transactionManager).getProductStatistics(null, null);
+
+            assertThat(totals).hasSize(1);
+            assertThat(totals.get(0)).containsExactly("Item-1", 3L, 35.0, 5f, 20f);
+        } finally {
+            shards.destroy();
+        }
+    }
+
+    // The SQL needs Postgres to run; this pins the parts both upserts rely on
+    @Test
+    void upsertsAccumulateIntoTheExistingBucket() throws NoSuchMethodException {
+        String upsert = OrderProductHourlyRepository.class
+                .getMethod("upsertOrder", String.class, LocalDateTime.class, float.class)
+                .getAnnotation(Query.class).value();
+        String range = OrderProductHourlyRepository.class
+                .getMethod("rollupOrderRange", long.class, long.class)
+                .getAnnotation(Query.class).value();
+
+        for (String sql : List.of(upsert, range)) {
+            assertThat(sql).contains("ON CONFLICT (product, bucket_hour) DO UPDATE SET",
+                    "total_revenue = order_product_hourly.total_revenue + EXCLUDED.total_revenue",
+                    "min_price = LEAST(order_product_hourly.min_price, EXCLUDED.min_price)",
+                    "max_price = GREATEST(order_product_hourly.max_price, EXCLUDED.max_price)");
+        }
+        assertThat(upsert).contains("order_count = order_product_hourly.order_count + 1");
+        assertThat(range).contains("order_count = order_product_hourly.order_count + EXCLUDED.order_count",
+                "id > :fromId AND id <= :toId", "date_trunc('hour', processed_at)");
+    }
+}
@@ -0,0 +1,218 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rebalancing between two in-memory shards: orders, order_ids claims and hourly
+ * rollup rows, behind a JdbcTemplate that understands the statements the service sends.
+ */
+class ShardRebalanceServiceTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2026, 3, 1, 10, 0);
+
+    private final Shard[] shards = {new Shard(), new Shard()};
+    private final ShardRouter router = ShardRouterTest.router(2);
+    private final ShardRebalanceService service = new ShardRebalanceService(router, mock(OrderRepository.class),
+            mock(OrderLookupService.class)) {
+        @Override
+        JdbcTemplate jdbc(int shard) {
+            return shards[shard];
+        }
+
+        @Override
+        TransactionTemplate transaction(int shard) {
+            return new TransactionTemplate(mock(PlatformTransactionManager.class));
+        }
+    };
+
+    @AfterEach
+    void shutDown() {
+        router.destroy();
+    }
+
+    @Test
+    void movesMisplacedOrdersWithTheirRollup() {
+        String stays = orderIdOn(0, 0);
+        String moves = orderIdOn(1, 0);
+        String alsoMoves = orderIdOn(1, 1);
+        shards[0].save(row(1, stays, "Item-1", 2f));
+        shards[0].save(row(3, moves, "Item-1", 5f));
+        shards[0].save(row(5, alsoMoves, "Item-2", 7f));
+
+        Map<String, Object> result = service.rebalance(2, false);
+
+        assertThat(result).containsEntry("moved", 2L);
+        assertThat(shards[0].ids()).containsExactly(1L);
+        assertThat(shards[1].ids()).containsExactly(3L, 5L);
+        assertThat(shards[0].orderIds).containsExactly(stays);
+        assertThat(shards[1].orderIds).containsExactlyInAnyOrder(moves, alsoMoves);
+
+        assertThat(shards[0].rollup).containsOnlyKeys("Item-1");
+        assertThat(shards[0].rollup.get("Item-1")).containsExactly(1, 2, 2, 5);
+        assertThat(shards[1].rollup.get("Item-1")).containsExactly(1, 5, 5, 5);
+        assertThat(shards[1].rollup.get("Item-2")).containsExactly(1, 7, 7, 7);
+    }
+
+    @Test
+    void onlyDeletesOrdersTheTargetAlreadyHolds() {
+        String moved = orderIdOn(1, 0);
+        String pending = orderIdOn(1, 1);
+        // an interrupted run committed the first order on shard 1 but not the delete on shard 0
+        shards[0].save(row(3, moved, "Item-1", 5f));
+        shards[1].save(row(3, moved, "Item-1", 5f));
+        shards[0].save(row(5, pending, "Item-1", 7f));
+
+        Map<String, Object> result = service.rebalance(10, false);
+
+        assertThat(shards[0].ids()).isEmpty();
+        assertThat(shards[0].rollup).isEmpty();
+        assertThat(shards[1].ids()).containsExactly(3L, 5L);
+        assertThat(shards[1].rollup.get("Item-1")).containsExactly(2, 12, 5, 7);
+        assertThat(shard(result, 0)).containsEntry("alreadyOnTarget", 1L);
+    }
+
+    @Test
+    void dryRunOnlyCounts() {
+        shards[0].save(row(3, orderIdOn(1, 0), "Item-1", 5f));
+
+        Map<String, Object> result = service.rebalance(10, true);
+
+        assertThat(result).containsEntry("moved", 1L);
+        assertThat(shards[0].ids()).containsExactly(3L);
+        assertThat(shards[1].ids()).isEmpty();
+    }
+
+    // The n-th orderId that hashes to the shard
+    private static String orderIdOn(int shard, int n) {
+        int found = 0;
+        for (int i = 0; ; i++) {
+            String orderId = "order-" + i;
+            if (ShardRouter.shardFor(orderId, 2) == shard && found++ == n) {
+                return orderId;
+            }
+        }
+    }
+
+    private static Object[] row(long id, String orderId, String product, float price) {
+        Timestamp processedAt = Timestamp.valueOf(HOUR.plusMinutes(id));
+        return new Object[]{id, orderId, product, price, "cid-" + id, processedAt, processedAt, "PROCESSED",
+                "orders", 0, 100 + id, null, processedAt, processedAt};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> shard(Map<String, Object> result, int shard) {
+        return ((List<Map<String, Object>>) result.get("shards")).get(shard);
+    }
+
+    // Rollup values per product, all in HOUR: count, revenue, min price, max price
+    private static final class Shard extends JdbcTemplate {
+        private final List<Object[]> orders = new ArrayList<>();
+        private final Set<String> orderIds = new LinkedHashSet<>();
+        private final Map<String, int[]> rollup = new HashMap<>();
+
+        void save(Object[] row) {
+            orders.add(row);
+            orderIds.add((String) row[1]);
+            float price = (Float) row[3];
+            rollup.merge((String) row[2], new int[]{1, (int) price, (int) price, (int) price}, (total, next) ->
+                    new int[]{total[0] + 1, total[1] + next[1], Math.min(total[2], next[2]), Math.max(total[3], next[3])});
+        }
+
+        List<Long> ids() {
+            return orders.stream().map(row -> (Long) row[0]).sorted().toList();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            long lastId = (Long) args[0];
+            int limit = (Integer) args[1];
+            return (List<T>) orders.stream()
+                    .filter(row -> (Long) row[0] > lastId)
+                    .sorted(Comparator.comparing(row -> (Long) row[0]))
+                    .limit(limit)
+                    .map(Object[]::clone)
+                    .toList();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, PreparedStatementSetter pss, RowMapper<T> rowMapper) {
+            List<String> claimed = new ArrayList<>();
+            try {
+                PreparedStatement ps = mock(PreparedStatement.class);
+                Connection connection = mock(Connection.class);
+                when(ps.getConnection()).thenReturn(connection);
+                when(connection.createArrayOf(eq("varchar"), any())).thenAnswer(call -> {
+                    for (Object orderId : (Object[]) call.getArgument(1)) {
+                        if (orderIds.add((String) orderId)) {
+                            claimed.add((String) orderId);
+                        }
+                    }
+                    return mock(Array.class);
+                });
+                pss.setValues(ps);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return (List<T>) claimed;
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            for (Object[] args : batchArgs) {
+                if (sql.startsWith("INSERT INTO orders")) {
+                    orders.add(args);
+                } else if (sql.startsWith("INSERT INTO order_product_hourly")) {
+                    int[] added = {((Long) args[2]).intValue(), (int) (double) (Double) args[3],
+                            (int) (float) (Float) args[4], (int) (float) (Float) args[5]};
+                    rollup.merge((String) args[0], added, (total, next) -> new int[]{total[0] + next[0],
+                            total[1] + next[1], Math.min(total[2], next[2]), Math.max(total[3], next[3])});
+                } else if (sql.startsWith("UPDATE order_product_hourly")) {
+                    int[] total = rollup.get((String) args[2]);
+                    total[0] -= ((Long) args[0]).intValue();
+                    total[1] -= (int) (double) (Double) args[1];
+                } else if (sql.startsWith("DELETE FROM order_product_hourly")) {
+                    rollup.computeIfPresent((String) args[0], (product, total) -> total[0] <= 0 ? null : total);
+                } else if (sql.startsWith("DELETE FROM orders")) {
+                    orders.removeIf(row -> row[0].equals(args[0]) && row[6].equals(args[1]));
+                } else if (sql.startsWith("DELETE FROM order_ids")) {
+                    orderIds.remove((String) args[0]);
+                } else {
+                    throw new IllegalArgumentException(sql);
+                }
+            }
+            int[] counts = new int[batchArgs.size()];
+            Arrays.fill(counts, 1);
+            return counts;
+        }
+    }
+}
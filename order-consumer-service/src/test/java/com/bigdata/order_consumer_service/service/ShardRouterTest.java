@@ -0,0 +1,116 @@
+package com.bigdata.order_consumer_service.service;
+
+import com.bigdata.order_consumer_service.config.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardRouterTest {
+
+    private ShardRouter router;
+
+    @AfterEach
+    void shutDown() {
+        if (router != null) {
+            router.destroy();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void routesAnOrderIdToTheSameShardOnEveryRun() {
+        // Pinned: rows already written live on these shards, so the hash must never change
+        assertThat(ShardRouter.shardFor("100000", 2)).isZero();
+        assertThat(ShardRouter.shardFor("100001", 2)).isEqualTo(1);
+        assertThat(ShardRouter.shardFor("order-1", 4)).isEqualTo(3);
+        assertThat(ShardRouter.shardFor("ORD-42", 3)).isEqualTo(2);
+        assertThat(ShardRouter.shardFor("100002", 4)).isZero();
+    }
+
+    @Test
+    void spreadsSequentialOrderIdsEvenly() {
+        int shards = 4;
+        int orders = 100_000;
+        int[] counts = new int[shards];
+        for (int i = 0; i < orders; i++) {
+            int shard = ShardRouter.shardFor(String.valueOf(100_000 + i), shards);
+            assertThat(shard).isBetween(0, shards - 1);
+            counts[shard]++;
+        }
+
+        for (int count : counts) {
+            assertThat(count).isBetween(orders / shards * 9 / 10, orders / shards * 11 / 10);
+        }
+    }
+
+    @Test
+    void singleShardTakesEverything() {
+        assertThat(IntStream.range(0, 1000).map(i -> ShardRouter.shardFor("order-" + i, 1)).distinct())
+                .containsExactly(0);
+    }
+
+    @Test
+    void runsWorkOnItsShardAndRestoresTheSelection() {
+        router = router(3);
+        ShardRoutingDataSource.selectShard(1);
+        try {
+            assertThat(router.onShard(2, ShardRoutingDataSource::currentShard)).isEqualTo(2);
+            assertThat(ShardRoutingDataSource.currentShard()).isEqualTo(1);
+
+            String orderId = "order-1";
+            assertThat(router.forOrderId(orderId, ShardRoutingDataSource::currentShard))
+                    .isEqualTo(ShardRouter.shardFor(orderId, 3));
+        } finally {
+            ShardRoutingDataSource.selectShard(null);
+        }
+    }
+
+    @Test
+    void gathersResultsInShardOrder() {
+        router = router(3);
+
+        List<Integer> shards = router.onAllShards(ShardRoutingDataSource::currentShard);
+
+        assertThat(shards).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void rethrowsTheFailureOfAShard() {
+        router = router(2);
+
+        assertThatThrownBy(() -> router.onAllShards(() -> {
+            if (ShardRoutingDataSource.currentShard() == 1) {
+                throw new IllegalStateException("shard 1 down");
+            }
+            return 0;
+        })).isInstanceOf(IllegalStateException.class).hasMessage("shard 1 down");
+    }
+
+    @Test
+    void refusesToSwitchShardInsideATransaction() {
+        router = router(2);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        assertThat(router.onShard(0, () -> "same shard")).isEqualTo("same shard");
+        assertThatThrownBy(() -> router.onShard(1, () -> "other shard"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    // Pools are never started: nothing here opens a connection
+    static ShardRouter router(int shards) {
+        List<HikariDataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            dataSources.add(new HikariDataSource());
+        }
+        return new ShardRouter(new ShardRoutingDataSource(dataSources), new SimpleMeterRegistry(), false);
+    }
+}
@@ -1,5 +1,5 @@
 import { useState } from 'react';
-import { useQuery, useMutation, useQueryClient } from '@tanstack/react-query';
+import { useQuery, useInfiniteQuery, useMutation, useQueryClient } from '@tanstack/react-query';
 import { Card, CardHeader, CardTitle, CardContent } from '../components/common/Card';
 import StatusBadge from '../components/common/StatusBadge';
 import { 
@@ -18,11 +18,21 @@ const DLQ = () => {
   const [selectedOrder, setSelectedOrder] = useState(null);
 
 
-  const { data: failedOrders, isLoading } = useQuery({
+  // Newest page first; "Load more" follows nextCursor to older ones
+  const {
+    data: failedOrderPages,
+    isLoading,
+    fetchNextPage,
+    hasNextPage,
+    isFetchingNextPage,
+  } = useInfiniteQuery({
     queryKey: ['failedOrders', filter],
-    queryFn: () => getFailedOrders(filter === 'all' ? null : filter),
+    queryFn: ({ pageParam }) => getFailedOrders(filter === 'all' ? null : filter, pageParam),
+    initialPageParam: null,
+    getNextPageParam: (lastPage) => lastPage.nextCursor ?? undefined,
     refetchInterval: 5000,
   });
+  const failedOrders = failedOrderPages?.pages.flatMap((page) => page.content);
 
 
   const { data: stats } = useQuery({
@@ -48,10 +58,7 @@ const DLQ = () => {
   const reprocessAllMutation = useMutation({
     mutationFn: () => reprocessAllPending('admin'),
     onSuccess: (data) => {
-      toast.success(` Reprocessed ${data.success} orders!`);
-      if (data.failed > 0) {
-        toast.error(` ${data.failed} orders failed to reprocess`);
-      }
+      toast.success(` Reprocessing job #${data.id} started`);
       queryClient.invalidateQueries(['failedOrders']);
       queryClient.invalidateQueries(['dlqStats']);
     },
@@ -303,6 +310,17 @@ const DLQ = () => {
                   ))}
                 </tbody>
               </table>
+              {hasNextPage && (
+                <div className="p-4 text-center border-t border-gray-200">
+                  <button
+                    onClick={() => fetchNextPage()}
+                    disabled={isFetchingNextPage}
+                    className="px-4 py-2 border border-gray-300 rounded-lg text-sm hover:bg-gray-50 disabled:opacity-50 disabled:cursor-not-allowed transition-colors"
+                  >
+                    {isFetchingNextPage ? 'Loading...' : 'Load more'}
+                  </button>
+                </div>
+              )}
             </div>
           )}
         </CardContent>
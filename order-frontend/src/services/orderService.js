@@ -22,8 +22,19 @@ export const getOrderByOrderId = async (orderId) => {
 };
 
 
-export const getOrdersByProduct = async (product) => {
-  const response = await consumerApi.get(`/api/orders/product/${product}`);
+// Keyset paged: returns { content, nextCursor, hasMore }; pass nextCursor back to get the next page
+export const getOrdersByProduct = async (product, { cursor, size = 20 } = {}) => {
+  const response = await consumerApi.get(`/api/orders/product/${product}`, {
+    params: { cursor, size }
+  });
+  return response.data;
+};
+
+
+export const scrollOrders = async ({ cursor, size = 20 } = {}) => {
+  const response = await consumerApi.get('/api/orders/scroll', {
+    params: { cursor, size }
+  });
   return response.data;
 };
 
@@ -48,9 +59,9 @@ export const getProductStatistics = async () => {
 };
 
 
-export const searchOrders = async ({ orderId, product, status }) => {
+export const searchOrders = async ({ orderId, product, status, cursor, size = 20 }) => {
   const response = await consumerApi.get('/api/orders/search', {
-    params: { orderId, product, status }
+    params: { orderId, product, status, cursor, size }
   });
   return response.data;
 };
@@ -68,16 +79,19 @@ export const createRandomOrder = async () => {
 };
 
 
-export const getFailedOrders = async (status = null) => {
+// One page: { content, nextCursor, hasMore }; pass nextCursor as cursor for the next, older one
+export const getFailedOrders = async (status = null, cursor = null, size = 100) => {
   const response = await consumerApi.get('/api/dlq/failed-orders', {
-    params: status ? { status } : {}
+    params: { status: status ?? undefined, cursor: cursor ?? undefined, size }
   });
   return response.data;
 };
 
 
-export const getFailedOrdersByType = async (failureType) => {
-  const response = await consumerApi.get(`/api/dlq/failed-orders/type/${failureType}`);
+export const getFailedOrdersByType = async (failureType, cursor = null, size = 100) => {
+  const response = await consumerApi.get(`/api/dlq/failed-orders/type/${failureType}`, {
+    params: { cursor: cursor ?? undefined, size }
+  });
   return response.data;
 };
 
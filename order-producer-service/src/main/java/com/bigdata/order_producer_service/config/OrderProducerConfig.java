@@ -1,15 +1,25 @@
 package com.bigdata.order_producer_service.config;
 
+import com.bigdata.codec.OrderCodec;
+import com.bigdata.codec.ProductDictionary;
+import com.bigdata.rules.OrderRules;
 import com.bigdata.schema.Order;
+import com.bigdata.schema.OrderBatch;
 import io.confluent.kafka.serializers.KafkaAvroSerializer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,8 +31,23 @@ public class OrderProducerConfig {
         return new KafkaTemplate<>(pf);
     }
 
+    // app.kafka.order-format: full, or compact once every consumer reads both formats
     @Bean
-    public ProducerFactory<String, Order> producerFactory() {
+    public ProducerFactory<String, Order> producerFactory(
+            OrderCodec orderCodec,
+            @Value("${app.kafka.order-format:full}") String orderFormat
+    ) {
+        return new DefaultKafkaProducerFactory<>(producerConfig(), new StringSerializer(),
+                new OrderWireSerializer(orderCodec, "compact".equalsIgnoreCase(orderFormat)));
+    }
+
+    // Batch ingestion path (POST /order/batch); records carry many orders
+    @Bean
+    public KafkaTemplate<String, OrderBatch> batchKafkaTemplate() {
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(producerConfig()));
+    }
+
+    private Map<String, Object> producerConfig() {
         Map<String, Object> config = new HashMap<>();
 
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
@@ -31,6 +56,26 @@ public class OrderProducerConfig {
 
         config.put("schema.registry.url", "http://localhost:8085");
 
-        return new DefaultKafkaProducerFactory<>(config);
+        return config;
+    }
+
+    // Same rule file as the consumer; only the validation stage is checked here
+    @Bean
+    public OrderRules orderRules(
+            @Value("${app.rules.location:classpath:" + OrderRules.DEFAULT_RESOURCE + "}") Resource location
+    ) throws IOException {
+        try (Reader reader = new InputStreamReader(location.getInputStream(), StandardCharsets.UTF_8)) {
+            return OrderRules.parse(reader);
+        }
+    }
+
+    // Product ids of the compact order format; the consumers need a dictionary at least as new
+    @Bean
+    public OrderCodec orderCodec(
+            @Value("${app.products.dictionary.location:classpath:" + ProductDictionary.DEFAULT_RESOURCE + "}") Resource location
+    ) throws IOException {
+        try (Reader reader = new InputStreamReader(location.getInputStream(), StandardCharsets.UTF_8)) {
+            return new OrderCodec(ProductDictionary.parse(reader));
+        }
     }
 }
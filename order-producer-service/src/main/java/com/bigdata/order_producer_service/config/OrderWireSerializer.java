@@ -0,0 +1,63 @@
+package com.bigdata.order_producer_service.config;
+
+import com.bigdata.codec.OrderCodec;
+import com.bigdata.schema.CompactOrder;
+import com.bigdata.schema.Order;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes orders in the format of app.kafka.order-format: "full" Order records,
+ * or "compact" CompactOrder records (see OrderCodec) with a full Order for any
+ * order the dictionary cannot carry. Compact mode registers schemas under
+ * topic-record subjects, since the two record types share the topic and are
+ * not compatible under the topic's own subject.
+ */
+public class OrderWireSerializer implements Serializer<Order> {
+
+    static final String SUBJECT_NAME_STRATEGY = "value.subject.name.strategy";
+    static final String TOPIC_RECORD_NAME_STRATEGY = "io.confluent.kafka.serializers.subject.TopicRecordNameStrategy";
+
+    private final KafkaAvroSerializer avro = new KafkaAvroSerializer();
+    private final OrderCodec codec;
+    private final boolean compact;
+
+    public OrderWireSerializer(OrderCodec codec, boolean compact) {
+        this.codec = codec;
+        this.compact = compact;
+    }
+
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Map<String, Object> avroConfigs = new HashMap<>(configs);
+        if (compact) {
+            avroConfigs.put(SUBJECT_NAME_STRATEGY, TOPIC_RECORD_NAME_STRATEGY);
+        }
+        avro.configure(avroConfigs, isKey);
+    }
+
+
+    @Override
+    public byte[] serialize(String topic, Order order) {
+        return avro.serialize(topic, wire(order));
+    }
+
+
+    private Object wire(Order order) {
+        if (!compact || order == null) {
+            return order;
+        }
+        CompactOrder compacted = codec.compact(order);
+        return compacted != null ? compacted : order;
+    }
+
+
+    @Override
+    public void close() {
+        avro.close();
+    }
+}
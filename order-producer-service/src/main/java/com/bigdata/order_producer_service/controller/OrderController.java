@@ -3,18 +3,26 @@ package com.bigdata.order_producer_service.controller;
 
 
 
+import com.bigdata.order_producer_service.dto.OrderBatchRequest;
 import com.bigdata.order_producer_service.dto.OrderRequest;
 import com.bigdata.order_producer_service.service.OrderProducer;
+import com.bigdata.rules.OrderRule;
+import com.bigdata.rules.OrderRules;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/order")
 @RequiredArgsConstructor
 public class OrderController {
 
     private final OrderProducer orderProducer;
+    private final OrderRules orderRules;
 
     @PostMapping
     public String createOrder(@Valid @RequestBody OrderRequest req) {
@@ -22,15 +30,31 @@ public class OrderController {
         return "Order sent successfully";
     }
 
+    // Many orders per Kafka record on the orders-batch topic; rejected orders are listed, not sent
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> createOrders(@Valid @RequestBody OrderBatchRequest req) {
+        return ResponseEntity.ok(orderProducer.sendBatch(req.orders()));
+    }
+
     @PostMapping("/random")
     public String randomOrder() {
         OrderRequest req = new OrderRequest(
                 String.valueOf((int)(Math.random()*9000+1000)),
                 "Item-" + (int)(Math.random()*5+1),
-                Math.round((Math.random()*1000)*100)/100.0
+                Math.round((Math.random()*1000)*100)/100.0,
+                null
         );
         orderProducer.sendOrder(req);
         return "Random order produced: " + req.orderId();
     }
+
+    // Validation rules checked before sending, with their hit counts
+    @GetMapping("/rules")
+    public List<Map<String, Object>> rules() {
+        return orderRules.rules().stream()
+                .filter(rule -> rule.stage() == OrderRule.Stage.VALIDATION)
+                .map(OrderRule::describe)
+                .toList();
+    }
 }
 
@@ -0,0 +1,13 @@
+package com.bigdata.order_producer_service.dto;
+
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record OrderBatchRequest(
+
+        @NotEmpty @Size(max = 10000) List<@Valid OrderRequest> orders
+) {}
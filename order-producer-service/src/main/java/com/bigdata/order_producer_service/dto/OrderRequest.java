@@ -8,5 +8,6 @@ public record OrderRequest(
 
         @NotBlank String orderId,
         @NotBlank String product,
-        @Positive double price
+        @Positive double price,
+        @Positive Long eventTime // epoch millis; defaults to now, set it when backfilling
 ) {}
\ No newline at end of file
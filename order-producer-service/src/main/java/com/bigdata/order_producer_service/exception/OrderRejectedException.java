@@ -0,0 +1,17 @@
+package com.bigdata.order_producer_service.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// An order rule rejected the order; nothing was sent
+@Getter
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class OrderRejectedException extends RuntimeException {
+    private final String rule;
+
+    public OrderRejectedException(String rule, String message) {
+        super(message, null, false, false);
+        this.rule = rule;
+    }
+}
@@ -1,39 +1,64 @@
 package com.bigdata.order_producer_service.service;
 
 import com.bigdata.order_producer_service.dto.OrderRequest;
+import com.bigdata.order_producer_service.exception.OrderRejectedException;
 import com.bigdata.order_producer_service.util.CorrelationId;
+import com.bigdata.rules.OrderRule;
+import com.bigdata.rules.OrderRules;
 import com.bigdata.schema.Order;
+import com.bigdata.schema.OrderBatch;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.utils.Utils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OrderProducer {
 
     private final KafkaTemplate<String, Order> kafkaTemplate;
+    private final KafkaTemplate<String, OrderBatch> batchKafkaTemplate;
+    private final OrderRules orderRules;
 
     @Value("${app.kafka.topic}")
     private String topic;
 
+    @Value("${app.kafka.batch.topic:orders-batch}")
+    private String batchTopic;
+
+    @Value("${app.kafka.batch.max-orders:100}")
+    private int maxOrdersPerRecord;
+
+    @Value("${app.rules.enabled:true}")
+    private boolean rulesEnabled;
+
     public void sendOrder(OrderRequest request) {
 
-        String cid = CorrelationId.generate();
+        // reject what the consumer would dead-letter anyway before it reaches Kafka
+        OrderRule rejected = rejectedBy(request);
+        if (rejected != null) {
+            throw new OrderRejectedException(rejected.toString(),
+                    rejected.message(request.orderId(), request.product(), (float) request.price()));
+        }
 
-        // convert DTO → Avro Order
-        Order order = Order.newBuilder()
-                .setOrderId(request.orderId())
-                .setProduct(request.product())
-                .setPrice((float) request.price())
-                .build();
+        String cid = CorrelationId.generate();
+        Order order = toOrder(request);
+        long eventTime = order.getEventTime();
 
+        // record timestamp = event time, so replays land in the right windows downstream
         ProducerRecord<String, Order> record =
-                new ProducerRecord<>(topic, request.orderId(), order);
+                new ProducerRecord<>(topic, null, eventTime, request.orderId(), order);
 
         // Add correlation ID header
         record.headers().add("cid", cid.getBytes());
@@ -43,4 +68,83 @@ public class OrderProducer {
 
         kafkaTemplate.send(record);
     }
+
+
+    /**
+     * Packs orders into OrderBatch records of up to max-orders each. Orders are
+     * grouped by the partition their orderId would be keyed to on its own, so an
+     * order lands where the single-record path would have put it. An order failing
+     * the rules is left out and reported; the rest are still sent.
+     */
+    public Map<String, Object> sendBatch(List<OrderRequest> requests) {
+        int partitions = batchKafkaTemplate.partitionsFor(batchTopic).size();
+        Map<Integer, List<Order>> byPartition = new HashMap<>();
+        List<Map<String, Object>> rejections = new ArrayList<>();
+
+        for (OrderRequest request : requests) {
+            OrderRule rejected = rejectedBy(request);
+            if (rejected != null) {
+                Map<String, Object> rejection = new HashMap<>();
+                rejection.put("orderId", request.orderId());
+                rejection.put("rule", rejected.toString());
+                rejection.put("message", rejected.message(request.orderId(), request.product(), (float) request.price()));
+                rejections.add(rejection);
+                continue;
+            }
+            int partition = Utils.toPositive(Utils.murmur2(request.orderId().getBytes(StandardCharsets.UTF_8))) % partitions;
+            byPartition.computeIfAbsent(partition, key -> new ArrayList<>()).add(toOrder(request));
+        }
+
+        String cid = CorrelationId.generate();
+        int records = 0;
+        for (Map.Entry<Integer, List<Order>> entry : byPartition.entrySet()) {
+            List<Order> orders = entry.getValue();
+            for (int from = 0; from < orders.size(); from += maxOrdersPerRecord) {
+                List<Order> chunk = orders.subList(from, Math.min(from + maxOrdersPerRecord, orders.size()));
+                long eventTime = chunk.stream().mapToLong(Order::getEventTime).max().orElseThrow();
+
+                ProducerRecord<String, OrderBatch> record = new ProducerRecord<>(batchTopic, entry.getKey(), eventTime,
+                        chunk.get(0).getOrderId().toString(), new OrderBatch(new ArrayList<>(chunk)));
+                // consumers give each order "<cid>/<index in the record>"
+                record.headers().add("cid", cid.getBytes());
+                batchKafkaTemplate.send(record);
+                records++;
+            }
+        }
+
+        int accepted = requests.size() - rejections.size();
+        log.info("Producing order batch | cid={} | orders={} | records={} | rejected={}",
+                cid, accepted, records, rejections.size());
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("cid", cid);
+        summary.put("accepted", accepted);
+        summary.put("records", records);
+        summary.put("rejected", rejections);
+        return summary;
+    }
+
+
+    private OrderRule rejectedBy(OrderRequest request) {
+        if (!rulesEnabled) {
+            return null;
+        }
+        OrderRule rejected = orderRules.check(OrderRule.Stage.VALIDATION,
+                request.orderId(), request.product(), (float) request.price());
+        if (rejected != null) {
+            log.warn("Rejected order | id={} | rule={}", request.orderId(), rejected);
+        }
+        return rejected;
+    }
+
+
+    // convert DTO → Avro Order
+    private static Order toOrder(OrderRequest request) {
+        return Order.newBuilder()
+                .setOrderId(request.orderId())
+                .setProduct(request.product())
+                .setPrice((float) request.price())
+                .setEventTime(request.eventTime() != null ? request.eventTime() : System.currentTimeMillis())
+                .build();
+    }
 }
\ No newline at end of file